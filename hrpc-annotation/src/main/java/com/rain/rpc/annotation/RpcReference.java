@@ -64,4 +64,26 @@ public @interface RpcReference {
      * 服务分组，默认为空
      */
     String group() default "";
+
+    /**
+     * 异步回调的执行方式，pool：客户端线程池，direct：在完成调用的线程中直接执行，virtual：虚拟线程
+     */
+    String callbackExecutor() default "pool";
+
+    /**
+     * 是否开启对冲请求，默认为false
+     * 请求超过方法近期延迟的p95仍未返回时，向另一个服务提供者发送相同的请求，开启后引用的所有方法都必须是幂等的
+     */
+    boolean hedging() default false;
+
+    /**
+     * 集群容错策略，failfast：快速失败，failover：失败自动切换，failsafe：失败安全，forking：并行调用
+     * failover和forking只适用于幂等的方法
+     */
+    String cluster() default "failfast";
+
+    /**
+     * failover的最大重试次数，forking的额外并行调用数，默认为2
+     */
+    int retries() default 2;
 }
@@ -1,34 +1,146 @@
 package com.rain.rpc.codec;
 
+import com.rain.rpc.codec.envelope.RpcEnvelopeCodec;
+import com.rain.rpc.codec.method.MethodIdTable;
 import com.rain.rpc.common.exception.SerializerException;
 import com.rain.rpc.common.utils.SerializationUtils;
 import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.attachment.RpcAttachment;
+import com.rain.rpc.protocol.base.RpcMessage;
+import com.rain.rpc.protocol.batch.RpcBatchEntry;
 import com.rain.rpc.protocol.enumeration.RpcType;
 import com.rain.rpc.protocol.header.RpcHeader;
 import com.rain.rpc.protocol.request.RpcRequest;
-import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
 import com.rain.rpc.serialization.api.Serialization;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.util.CharsetUtil;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * RPC协议解码器
  * 继承Netty的ByteToMessageDecoder，负责将字节流解码为RpcProtocol对象
- * 解码格式：魔数(2字节) + 消息类型(1字节) + 状态(1字节) + 请求ID(8字节) + 序列化类型(16字节) + 数据长度(4字节) + 数据(N字节)
+ * 解码格式：魔数(2字节) + 版本号(1字节) + 消息类型(1字节) + 状态(1字节) + 请求ID(8字节) + 序列化类型(16字节) + 剩余超时时间(4字节) + 数据长度(4字节) + 数据(N字节)
+ * 批量消息拆分为单独的请求或响应后再交给后续的处理器，后续处理器不需要感知批量消息
+ *
+ * 设计说明：
+ * 1. 读到协议头后先校验数据长度，超过最大帧长度或为负数时不再等待数据体，直接关闭连接，
+ *    避免损坏或恶意的长度让累积缓冲区无限增长
+ * 2. 较大的消息由RpcEncoder拆分为连续的分块帧，每个分块帧解码后立即从累积缓冲区移出，
+ *    按顺序追加到重组缓冲区，最后一块到达后再反序列化，累积缓冲区最多只保存一个分块帧
+ * 3. 重组中的消息超过分块消息的最大长度，或分块帧的请求ID与正在重组的消息不一致时，直接关闭连接
+ * 4. 协议错误关闭连接后丢弃后续收到的所有数据
+ * 5. 协议版本号与当前版本不一致时按协议错误处理，不尝试按当前格式解析不兼容的协议头
+ * 6. 带附件的消息先解码数据体，之后到达的附件数据直接从累积缓冲区移入接收缓冲区，全部到达后再交给后续的处理器；
+ *    接收缓冲区按实际到达的数据分配和扩容，不按对端声明的长度预先分配，很小的帧不能让连接占用大量内存；
+ *    附件数据不计入帧长度，总长度超过附件的最大长度时关闭连接
+ * 7. 请求按解码顺序登记方法ID，只带有方法ID的请求还原为完整的方法签名后再交给后续的处理器
+ * 8. 请求和响应的信封由RpcEnvelopeCodec直接从累积缓冲区读取，不复制数据体，只有调用参数和调用结果经过反序列化
  *
  * @author rain
  * @since 1.0.0
  */
 public class RpcDecoder extends ByteToMessageDecoder implements RpcCodec {
-    
+
+    /**
+     * 分块帧数据体中原消息类型和是否最后一块占用的字节数
+     */
+    private static final int CHUNK_PREFIX_LEN = 2;
+
+    /**
+     * 带附件的帧数据体中原消息类型和附件数占用的字节数
+     */
+    private static final int ATTACHED_PREFIX_LEN = 5;
+
+    /**
+     * 附件接收缓冲区的初始容量，之后按到达的数据至少翻倍扩容
+     */
+    private static final int ATTACHMENT_INITIAL_CAPACITY = 8 * 1024;
+
+    private final int maxFrameLength;
+
+    private final int maxChunkedMessageLength;
+
+    private final int maxAttachmentLength;
+
+    /**
+     * 正在重组的分块消息，没有时为null，只在EventLoop中访问
+     */
+    private CompositeByteBuf chunkedData;
+
+    private long chunkedRequestId;
+
+    /**
+     * 已经解码、等待附件数据的消息，没有时为null，只在EventLoop中访问
+     */
+    private RpcProtocol<?> attachedMessage;
+
+    private List<RpcAttachment> pendingAttachments;
+
+    /**
+     * 对端声明的每个附件的长度
+     */
+    private int[] attachmentLengths;
+
+    /**
+     * 每个附件的接收缓冲区，收到数据时才分配，position为已经收到的长度
+     */
+    private ByteBuffer[] attachmentBuffers;
+
+    /**
+     * 正在接收的附件下标
+     */
+    private int attachmentIndex;
+
+    /**
+     * 当前连接上已经登记的方法ID
+     */
+    private final MethodIdTable methodIds = new MethodIdTable();
+
+    private final RpcEnvelopeCodec envelopeCodec;
+
+    /**
+     * 是否已经出现协议错误，之后收到的数据全部丢弃
+     */
+    private boolean discarding;
+
+    public RpcDecoder() {
+        this(RpcConstants.MAX_FRAME_LENGTH, RpcConstants.MAX_CHUNKED_MESSAGE_LENGTH);
+    }
+
+    /**
+     * @param maxFrameLength 单个帧数据体的最大长度
+     * @param maxChunkedMessageLength 分块传输的消息重组后的最大长度
+     */
+    public RpcDecoder(int maxFrameLength, int maxChunkedMessageLength) {
+        this(maxFrameLength, maxChunkedMessageLength, RpcConstants.MAX_ATTACHMENT_LENGTH);
+    }
+
+    /**
+     * @param maxFrameLength 单个帧数据体的最大长度
+     * @param maxChunkedMessageLength 分块传输的消息重组后的最大长度
+     * @param maxAttachmentLength 一条消息所有附件的最大总长度
+     */
+    public RpcDecoder(int maxFrameLength, int maxChunkedMessageLength, int maxAttachmentLength) {
+        this.maxFrameLength = maxFrameLength;
+        this.maxChunkedMessageLength = maxChunkedMessageLength;
+        this.maxAttachmentLength = maxAttachmentLength;
+        this.envelopeCodec = new RpcEnvelopeCodec(getJdkSerialization());
+    }
+
     /**
      * 将字节流解码为RpcProtocol对象
-     * 按照RPC协议格式依次读取魔数、消息类型、状态、请求ID、序列化类型、数据长度和数据体，并构建对应的RpcProtocol对象
+     * 按照RPC协议格式依次读取魔数、版本号、消息类型、状态、请求ID、序列化类型、剩余超时时间、数据长度和数据体，并构建对应的RpcProtocol对象
      *
      * @param channelHandlerContext ChannelHandlerContext上下文
      * @param byteBuf 待解码的字节流数据
@@ -37,6 +149,18 @@ public class RpcDecoder extends ByteToMessageDecoder implements RpcCodec {
      */
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext, ByteBuf byteBuf, List<Object> out) throws Exception {
+        // 出现协议错误后连接已经关闭，丢弃剩余数据
+        if (discarding) {
+            byteBuf.skipBytes(byteBuf.readableBytes());
+            return;
+        }
+
+        // 上一条消息的附件还没有全部到达
+        if (attachedMessage != null) {
+            this.readAttachments(byteBuf, out);
+            return;
+        }
+
         // 如果可读字节数小于协议头总长度，则直接返回，等待更多数据
         if (byteBuf.readableBytes() < RpcConstants.HEADER_TOTAL_LEN) {
             return;
@@ -50,6 +174,13 @@ public class RpcDecoder extends ByteToMessageDecoder implements RpcCodec {
         if (magic != RpcConstants.MAGIC) {
             throw new SerializerException("magic number is illegal, " + magic);
         }
+
+        // 读取协议版本号，不支持的版本直接关闭连接
+        byte version = byteBuf.readByte();
+        if (version != RpcConstants.VERSION) {
+            throw this.fail(channelHandlerContext, byteBuf, new CorruptedFrameException("unsupported protocol version " + version
+                    + ", expected " + RpcConstants.VERSION));
+        }
         
         // 读取消息类型
         byte messageType = byteBuf.readByte();
@@ -61,22 +192,179 @@ public class RpcDecoder extends ByteToMessageDecoder implements RpcCodec {
         long requestId = byteBuf.readLong();
         
         // 读取序列化类型，固定长度16字节
-        ByteBuf serializationTypeByteBuf = byteBuf.readBytes(SerializationUtils.MAX_SERIALIZATION_TYPE_COUNT);
-        String serializationType = SerializationUtils.subString(serializationTypeByteBuf.toString(CharsetUtil.UTF_8));
+        // 直接从原ByteBuf读取字符串，readBytes会分配新的ByteBuf且需要手动释放
+        String serializationType = SerializationUtils.subString(byteBuf.readCharSequence(SerializationUtils.MAX_SERIALIZATION_TYPE_COUNT, CharsetUtil.UTF_8).toString());
+
+        // 读取剩余超时时间
+        int remainingTimeout = byteBuf.readInt();
         
         // 读取数据体长度
         int dataLength = byteBuf.readInt();
+
+        // 先校验长度再等待数据体，不会为非法的长度累积数据
+        if (dataLength < 0 || dataLength > maxFrameLength) {
+            throw this.fail(channelHandlerContext, byteBuf, new TooLongFrameException("frame length " + dataLength + " exceeds max frame length " + maxFrameLength));
+        }
         
         // 如果可读字节数小于数据体长度，则回退读索引，等待更多数据
         if (byteBuf.readableBytes() < dataLength) {
             byteBuf.resetReaderIndex();
             return;
         }
+
+        // 分块帧追加到重组缓冲区，最后一块到达后再按原消息类型解码
+        if (messageType == (byte) RpcType.CHUNK.getType()) {
+            this.decodeChunk(channelHandlerContext, byteBuf, dataLength, magic, status, requestId, serializationType, remainingTimeout, out);
+            return;
+        }
+
+        // 带附件的消息先解码数据体，附件数据在帧之后陆续到达
+        if (messageType == (byte) RpcType.ATTACHED.getType()) {
+            this.decodeAttached(channelHandlerContext, byteBuf, dataLength, magic, status, requestId, serializationType, remainingTimeout, out);
+            return;
+        }
         
-        // 读取数据体
-        byte[] data = new byte[dataLength];
-        byteBuf.readBytes(data);
-        
+        // 数据体在当前帧内直接解码，不复制
+        ByteBuf data = byteBuf.readSlice(dataLength);
+
+        this.decodeMessage(magic, messageType, status, requestId, serializationType, remainingTimeout, data, out);
+    }
+
+    /**
+     * 读取一个分块帧，追加到重组缓冲区，最后一块到达后还原为原消息
+     */
+    private void decodeChunk(ChannelHandlerContext ctx, ByteBuf byteBuf, int dataLength, short magic, byte status, long requestId,
+                             String serializationType, int remainingTimeout, List<Object> out) {
+        if (dataLength < CHUNK_PREFIX_LEN) {
+            throw this.fail(ctx, byteBuf, new CorruptedFrameException("chunk frame length " + dataLength + " is too short"));
+        }
+        if (chunkedData != null && chunkedRequestId != requestId) {
+            throw this.fail(ctx, byteBuf, new CorruptedFrameException("chunk of request " + requestId + " interleaved with request " + chunkedRequestId));
+        }
+        int chunkLength = dataLength - CHUNK_PREFIX_LEN;
+        long reassembledLength = (chunkedData == null ? 0 : chunkedData.readableBytes()) + (long) chunkLength;
+        if (reassembledLength > maxChunkedMessageLength) {
+            throw this.fail(ctx, byteBuf, new TooLongFrameException("chunked message exceeds max length " + maxChunkedMessageLength));
+        }
+        byte messageType = byteBuf.readByte();
+        boolean last = byteBuf.readBoolean();
+        if (chunkedData == null) {
+            chunkedData = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            chunkedRequestId = requestId;
+        }
+        // 复制分块数据，不引用累积缓冲区，累积缓冲区读完后可以立即释放或复用
+        ByteBuf chunk = ctx.alloc().buffer(chunkLength);
+        byteBuf.readBytes(chunk, chunkLength);
+        chunkedData.addComponent(true, chunk);
+        if (!last) {
+            return;
+        }
+        try {
+            this.decodeMessage(magic, messageType, status, requestId, serializationType, remainingTimeout, chunkedData, out);
+        } finally {
+            this.releaseChunkedData();
+        }
+    }
+
+    /**
+     * 读取带附件的帧，解码原消息并记录每个附件的长度，附件全部到达后再输出原消息
+     */
+    private void decodeAttached(ChannelHandlerContext ctx, ByteBuf byteBuf, int dataLength, short magic, byte status, long requestId,
+                                String serializationType, int remainingTimeout, List<Object> out) {
+        if (dataLength < ATTACHED_PREFIX_LEN) {
+            throw this.fail(ctx, byteBuf, new CorruptedFrameException("attached frame length " + dataLength + " is too short"));
+        }
+        byte messageType = byteBuf.readByte();
+        int count = byteBuf.readInt();
+        if (count <= 0 || (long) count * 4 > dataLength - ATTACHED_PREFIX_LEN) {
+            throw this.fail(ctx, byteBuf, new CorruptedFrameException("invalid attachment count " + count));
+        }
+        int[] lengths = new int[count];
+        long totalLength = 0;
+        for (int i = 0; i < count; i++) {
+            lengths[i] = byteBuf.readInt();
+            totalLength += lengths[i];
+            if (lengths[i] < 0 || totalLength > maxAttachmentLength) {
+                throw this.fail(ctx, byteBuf, new TooLongFrameException("attachments exceed max length " + maxAttachmentLength));
+            }
+        }
+        ByteBuf data = byteBuf.readSlice(dataLength - ATTACHED_PREFIX_LEN - count * 4);
+        List<Object> decoded = new ArrayList<>(1);
+        this.decodeMessage(magic, messageType, status, requestId, serializationType, remainingTimeout, data, decoded);
+        List<RpcAttachment> attachments = decoded.size() == 1 && ((RpcProtocol<?>) decoded.get(0)).getBody() instanceof RpcMessage body
+                ? RpcAttachment.collect(body) : List.of();
+        if (attachments.size() != count) {
+            throw this.fail(ctx, byteBuf, new CorruptedFrameException("attached message of request " + requestId + " declares " + count
+                    + " attachment(s) but contains " + attachments.size()));
+        }
+        this.attachedMessage = (RpcProtocol<?>) decoded.get(0);
+        this.pendingAttachments = attachments;
+        this.attachmentLengths = lengths;
+        this.attachmentBuffers = new ByteBuffer[count];
+        this.attachmentIndex = 0;
+        this.readAttachments(byteBuf, out);
+    }
+
+    /**
+     * 把已经到达的附件数据移入接收缓冲区，全部到达后输出等待附件的消息
+     */
+    private void readAttachments(ByteBuf byteBuf, List<Object> out) {
+        while (attachmentIndex < attachmentLengths.length) {
+            int length = attachmentLengths[attachmentIndex];
+            ByteBuffer target = attachmentBuffers[attachmentIndex];
+            int received = target == null ? 0 : target.position();
+            int readable = Math.min(length - received, byteBuf.readableBytes());
+            if (target == null || target.remaining() < readable) {
+                target = grow(target, length, received + readable);
+                attachmentBuffers[attachmentIndex] = target;
+            }
+            if (readable > 0) {
+                int limit = target.limit();
+                target.limit(target.position() + readable);
+                byteBuf.readBytes(target);
+                target.limit(limit);
+            }
+            if (target.position() < length) {
+                return;
+            }
+            target.flip();
+            pendingAttachments.get(attachmentIndex).bind(target);
+            attachmentIndex++;
+        }
+        out.add(attachedMessage);
+        this.clearAttachedMessage();
+    }
+
+    /**
+     * 扩容附件的接收缓冲区，容量至少翻倍以减少复制，不超过附件声明的长度
+     *
+     * @param target 当前的接收缓冲区，还没有收到数据时为null
+     * @param length 附件声明的长度
+     * @param required 需要容纳的数据长度
+     * @return 扩容后的接收缓冲区，已经收到的数据复制到其中
+     */
+    private static ByteBuffer grow(ByteBuffer target, int length, int required) {
+        long capacity = target == null ? ATTACHMENT_INITIAL_CAPACITY : (long) target.capacity() * 2;
+        ByteBuffer grown = ByteBuffer.allocate((int) Math.min(length, Math.max(capacity, required)));
+        if (target != null) {
+            target.flip();
+            grown.put(target);
+        }
+        return grown;
+    }
+
+    private void clearAttachedMessage() {
+        attachedMessage = null;
+        pendingAttachments = null;
+        attachmentLengths = null;
+        attachmentBuffers = null;
+    }
+
+    /**
+     * 按消息类型把完整的数据体还原为协议对象
+     */
+    private void decodeMessage(short magic, byte messageType, byte status, long requestId, String serializationType,
+                               int remainingTimeout, ByteBuf data, List<Object> out) {
         // 根据消息类型获取对应的枚举值
         RpcType msgTypeEnum = RpcType.findByType(messageType);
         if (msgTypeEnum == null) {
@@ -90,40 +378,133 @@ public class RpcDecoder extends ByteToMessageDecoder implements RpcCodec {
         header.setRequestId(requestId);
         header.setMessageType(messageType);
         header.setSerializationType(serializationType);
-        header.setMessageLength(dataLength);
-        
-        // TODO Serialization是扩展点，当前默认使用JDK序列化
-        Serialization serialization = getJdkSerialization();
+        header.setMessageLength(data.readableBytes());
+        // 按本地时钟换算截止时间
+        header.setRemainingTimeout(remainingTimeout);
         
         // 根据消息类型进行不同的处理
         switch (msgTypeEnum) {
             case REQUEST:
-                // 反序列化请求数据
-                RpcRequest request = serialization.deserialize(data, RpcRequest.class);
-                if (request != null) {
-                    // 构建请求协议对象
-                    RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
-                    protocol.setHeader(header);
-                    protocol.setBody(request);
-                    out.add(protocol);
-                }
-                break;
-                
             case RESPONSE:
-                // 反序列化响应数据
-                RpcResponse response = serialization.deserialize(data, RpcResponse.class);
-                if (response != null) {
-                    // 构建响应协议对象
-                    RpcProtocol<RpcResponse> protocol = new RpcProtocol<>();
-                    protocol.setHeader(header);
-                    protocol.setBody(response);
-                    out.add(protocol);
-                }
+            case STREAM_DATA:
+            case STREAM_END:
+            case STREAM_CREDIT:
+            case REQUEST_STREAM_DATA:
+            case REQUEST_STREAM_END:
+            case REQUEST_STREAM_CREDIT:
+                // 请求、响应和流式调用的消息按请求ID交给后续的处理器
+                RpcProtocol<RpcMessage> protocol = new RpcProtocol<>();
+                protocol.setHeader(header);
+                protocol.setBody(this.decodeBody(msgTypeEnum, data));
+                out.add(protocol);
                 break;
                 
+            case CANCEL:
+                // 取消请求只有协议头，交给服务提供者按请求ID处理
+                RpcProtocol<RpcRequest> cancelProtocol = new RpcProtocol<>();
+                cancelProtocol.setHeader(header);
+                out.add(cancelProtocol);
+                break;
+
+            case BATCH:
+                // 批量消息拆分为单独的请求或响应，每条消息使用自己的请求ID、状态和剩余超时时间
+                this.decodeBatch(header, data, out);
+                break;
+
             case HEARTBEAT:
-                // TODO 心跳处理逻辑待实现
+            case HEARTBEAT_PONG:
+                // 心跳只有协议头，交给RpcHeartbeatHandler处理
+                RpcProtocol<RpcRequest> heartbeatProtocol = new RpcProtocol<>();
+                heartbeatProtocol.setHeader(header);
+                out.add(heartbeatProtocol);
                 break;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 解码请求、响应或流式调用的消息的数据体，请求和响应读取信封，流式调用的消息整体反序列化
+     *
+     * @param type 消息类型
+     * @param data 数据体
+     * @return 数据体对象
+     */
+    private RpcMessage decodeBody(RpcType type, ByteBuf data) {
+        if (type == RpcType.REQUEST) {
+            RpcRequest request = envelopeCodec.readRequest(data);
+            methodIds.restore(request);
+            return request;
+        }
+        if (type == RpcType.RESPONSE) {
+            return envelopeCodec.readResponse(data);
+        }
+        // TODO Serialization是扩展点，当前默认使用JDK序列化
+        Serialization serialization = getJdkSerialization();
+        return serialization.deserialize(ByteBufUtil.getBytes(data), RpcStreamMessage.class);
+    }
+
+    /**
+     * 按RpcEncoder写出的格式读取批量消息中的每条消息
+     *
+     * @param batchHeader 批量消息的协议头
+     * @param data 批量消息的数据体
+     * @param out 解码后的对象列表
+     */
+    private void decodeBatch(RpcHeader batchHeader, ByteBuf data, List<Object> out) {
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            byte messageType = data.readByte();
+            byte status = data.readByte();
+            long requestId = data.readLong();
+            int remainingTimeout = data.readInt();
+            int length = data.readInt();
+            if (length < 0 || length > data.readableBytes()) {
+                throw new CorruptedFrameException("invalid batch entry length " + length + " of request " + requestId);
+            }
+            ByteBuf entryData = data.readSlice(length);
+            RpcType entryType = RpcType.findByType(messageType);
+            if (!RpcBatchEntry.isBatchable(entryType)) {
+                continue;
+            }
+            RpcHeader header = new RpcHeader();
+            header.setMagic(batchHeader.getMagic());
+            header.setStatus(status);
+            header.setRequestId(requestId);
+            header.setMessageType(messageType);
+            header.setSerializationType(batchHeader.getSerializationType());
+            header.setMessageLength(length);
+            header.setRemainingTimeout(remainingTimeout);
+            RpcProtocol<RpcMessage> protocol = new RpcProtocol<>();
+            protocol.setHeader(header);
+            protocol.setBody(this.decodeBody(entryType, entryData));
+            out.add(protocol);
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        this.releaseChunkedData();
+        this.clearAttachedMessage();
+        super.handlerRemoved0(ctx);
+    }
+
+    /**
+     * 出现协议错误时丢弃所有数据并关闭连接，之后的数据流已经无法再按帧解析
+     *
+     * @return 需要抛出的异常
+     */
+    private RuntimeException fail(ChannelHandlerContext ctx, ByteBuf byteBuf, RuntimeException cause) {
+        discarding = true;
+        byteBuf.skipBytes(byteBuf.readableBytes());
+        this.releaseChunkedData();
+        this.clearAttachedMessage();
+        ctx.close();
+        return cause;
+    }
+
+    private void releaseChunkedData() {
+        if (chunkedData != null) {
+            chunkedData.release();
+            chunkedData = null;
+        }
+    }
+}
@@ -1,28 +1,161 @@
 package com.rain.rpc.codec;
 
+import com.rain.rpc.codec.envelope.RpcEnvelopeCodec;
+import com.rain.rpc.codec.method.MethodIdTable;
 import com.rain.rpc.common.utils.SerializationUtils;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.attachment.RpcAttachment;
+import com.rain.rpc.protocol.base.RpcMessage;
+import com.rain.rpc.protocol.batch.RpcBatch;
+import com.rain.rpc.protocol.batch.RpcBatchEntry;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
 import com.rain.rpc.protocol.header.RpcHeader;
-import com.rain.rpc.serialization.api.Serialization;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.PromiseCombiner;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * RPC协议编码器
  * 继承Netty的MessageToByteEncoder，负责将RpcProtocol对象编码为字节流
- * 编码格式：魔数(2字节) + 消息类型(1字节) + 状态(1字节) + 请求ID(8字节) + 序列化类型(16字节) + 数据长度(4字节) + 数据(N字节)
+ * 编码格式：魔数(2字节) + 版本号(1字节) + 消息类型(1字节) + 状态(1字节) + 请求ID(8字节) + 序列化类型(16字节) + 剩余超时时间(4字节) + 数据长度(4字节) + 数据(N字节)
+ * 数据体超过分块大小的消息拆分为多个连续的CHUNK帧，接收方每次只需要缓存一个分块帧，不会因为大消息超过最大帧长度
+ * 带附件的消息编码为ATTACHED帧，附件内容不经过序列化和复制，内存中的附件包装为ByteBuf、文件附件作为FileRegion
+ * 紧跟在帧之后写出，由Channel一次性写出或通过sendfile发送
+ * 请求按连接分配方法ID，同一方法只在第一次调用时发送完整的方法签名，之后只发送方法ID
+ * 请求和响应的信封由RpcEnvelopeCodec按固定格式直接写入ByteBuf，只有调用参数和调用结果经过序列化；
+ * 批量消息的数据体为：消息数(4字节) + 每条消息的消息类型(1字节)、状态(1字节)、请求ID(8字节)、剩余超时时间(4字节)、数据长度(4字节)和数据(N字节)，
+ * 其中一条消息编码失败不影响其他消息
  *
  * @author rain
  * @since 1.0.0
  */
 public class RpcEncoder extends MessageToByteEncoder<RpcProtocol<Object>> implements RpcCodec {
-    
+
+    /**
+     * 分块大小，数据体超过该长度时分块发送
+     */
+    private final int chunkSize;
+
+    /**
+     * 当前连接上已经分配的方法ID
+     */
+    private final MethodIdTable methodIds = new MethodIdTable();
+
+    private final RpcEnvelopeCodec envelopeCodec;
+
+    public RpcEncoder() {
+        this(RpcConstants.CHUNK_SIZE);
+    }
+
+    public RpcEncoder(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.envelopeCodec = new RpcEnvelopeCodec(getJdkSerialization());
+    }
+
+    /**
+     * 带附件的消息不能写入同一个ByteBuf，单独编码后依次写出帧和每个附件；
+     * 其他消息编码为一个完整的帧，数据体超过分块大小时再拆分为分块帧
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof RpcProtocol<?> protocol) {
+            if (protocol.getBody() instanceof RpcMessage body) {
+                List<RpcAttachment> attachments = RpcAttachment.collect(body);
+                if (!attachments.isEmpty()) {
+                    this.writeAttached(ctx, protocol.getHeader(), body, attachments, promise);
+                    return;
+                }
+            }
+            this.writeFrame(ctx, protocol, promise);
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    /**
+     * 编码并写出帧，与MessageToByteEncoder的写出方式一致，编码失败时以EncoderException通知promise
+     * 数据体超过分块大小时写出由分块帧组成的CompositeByteBuf，分块帧的数据是已编码数据体的切片，不再复制
+     *
+     * @param ctx ChannelHandlerContext上下文
+     * @param protocol 待编码的消息
+     * @param promise 写出的promise
+     */
+    @SuppressWarnings("unchecked")
+    private void writeFrame(ChannelHandlerContext ctx, RpcProtocol<?> protocol, ChannelPromise promise) {
+        ByteBuf frame = ctx.alloc().ioBuffer();
+        try {
+            this.encode(ctx, (RpcProtocol<Object>) protocol, frame);
+        } catch (EncoderException e) {
+            frame.release();
+            throw e;
+        } catch (Throwable t) {
+            frame.release();
+            throw new EncoderException(t);
+        }
+        int length = frame.getInt(frame.readerIndex() + RpcConstants.HEADER_TOTAL_LEN - 4);
+        ctx.write(length > chunkSize ? this.toChunks(ctx, protocol.getHeader(), frame, length) : frame, promise);
+    }
+
+    /**
+     * 写出ATTACHED帧和附件，全部写出后才完成promise
+     * 附件写出失败时接收方已经无法按帧解析后续数据，直接关闭连接
+     *
+     * @param ctx ChannelHandlerContext上下文
+     * @param header 原消息的协议头
+     * @param body 原消息的数据体
+     * @param attachments 数据体中的附件
+     * @param promise 写出的promise
+     */
+    private void writeAttached(ChannelHandlerContext ctx, RpcHeader header, RpcMessage body, List<RpcAttachment> attachments,
+                               ChannelPromise promise) {
+        ByteBuf frame = ctx.alloc().buffer();
+        try {
+            this.writeHeader(frame, header, (byte) RpcType.ATTACHED.getType());
+            int lengthIndex = frame.writerIndex();
+            frame.writeInt(0);
+            frame.writeByte(header.getMessageType());
+            frame.writeInt(attachments.size());
+            for (RpcAttachment attachment : attachments) {
+                frame.writeInt(attachment.length());
+            }
+            this.writeBodyOrRollback(frame, body);
+            frame.setInt(lengthIndex, frame.writerIndex() - lengthIndex - 4);
+        } catch (Throwable t) {
+            frame.release();
+            promise.setFailure(t);
+            return;
+        }
+
+        PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+        combiner.add(ctx.write(frame));
+        for (RpcAttachment attachment : attachments) {
+            Object content = attachment.isFile()
+                    ? new DefaultFileRegion(attachment.getFile(), attachment.getPosition(), attachment.length())
+                    : Unpooled.wrappedBuffer(attachment.asByteBuffer());
+            combiner.add(ctx.write(content));
+        }
+        ChannelPromise aggregate = promise.unvoid();
+        aggregate.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        combiner.finish(aggregate);
+    }
+
     /**
      * 将RpcProtocol对象编码为字节流
-     * 按照RPC协议格式依次写入魔数、消息类型、状态、请求ID、序列化类型、数据长度和数据体
+     * 按照RPC协议格式依次写入魔数、版本号、消息类型、状态、请求ID、序列化类型、剩余超时时间、数据长度和数据体
      *
      * @param channelHandlerContext ChannelHandlerContext上下文
      * @param msg 待编码的RpcProtocol消息对象
@@ -33,35 +166,175 @@ public class RpcEncoder extends MessageToByteEncoder<RpcProtocol<Object>> implem
     protected void encode(ChannelHandlerContext channelHandlerContext, RpcProtocol<Object> msg, ByteBuf byteBuf) throws Exception {
         // 获取协议头部信息
         RpcHeader header = msg.getHeader();
-        
+
+        // 取消请求等消息只有协议头，数据体长度为0
+        if (msg.getBody() == null) {
+            this.writeHeader(byteBuf, header, header.getMessageType());
+            byteBuf.writeInt(0);
+            return;
+        }
+
+        // 先在协议头之后直接写出数据体，再回填数据长度
+        this.writeHeader(byteBuf, header, header.getMessageType());
+        int lengthIndex = byteBuf.writerIndex();
+        byteBuf.writeInt(0);
+        this.writeBodyOrRollback(byteBuf, msg.getBody());
+        int length = byteBuf.writerIndex() - lengthIndex - 4;
+
+        // 回填数据体长度
+        byteBuf.setInt(lengthIndex, length);
+    }
+
+    /**
+     * 写出数据体，失败时帧不会写出，撤销本次分配的方法ID
+     */
+    private void writeBodyOrRollback(ByteBuf out, Object body) {
+        int mark = methodIds.mark();
+        try {
+            this.writeBody(out, body);
+        } catch (RuntimeException e) {
+            methodIds.rollback(mark);
+            throw e;
+        }
+    }
+
+    /**
+     * 写出数据体，请求和响应写出信封，批量消息逐条写出，流式调用的消息整体序列化
+     * 请求替换为使用方法ID的请求；批量消息由RpcBatchWriteHandler为每次写出单独创建，其中的请求同样替换
+     *
+     * @param out 目标缓冲区
+     * @param body 数据体
+     */
+    private void writeBody(ByteBuf out, Object body) {
+        if (body instanceof RpcRequest request) {
+            envelopeCodec.writeRequest(out, methodIds.intern(request));
+        } else if (body instanceof RpcResponse response) {
+            envelopeCodec.writeResponse(out, response);
+        } else if (body instanceof RpcBatch batch) {
+            this.writeBatch(out, batch);
+        } else {
+            out.writeBytes(getJdkSerialization().serialize(body));
+        }
+    }
+
+    /**
+     * 逐条写出批量消息，每条消息单独回滚
+     * 某条消息编码失败时撤销这条消息已经写入的数据和分配的方法ID，在RpcBatchEntry中记录失败原因，其他消息照常写出；
+     * 响应改为写出只带错误信息的失败响应，调用方不必等到超时，请求和流式调用的消息不写出，由RpcBatchWriteHandler让它的写出失败
+     *
+     * @param out 目标缓冲区
+     * @param batch 批量消息
+     */
+    private void writeBatch(ByteBuf out, RpcBatch batch) {
+        int countIndex = out.writerIndex();
+        out.writeInt(0);
+        int count = 0;
+        for (RpcBatchEntry entry : batch.getEntries()) {
+            int entryIndex = out.writerIndex();
+            int mark = methodIds.mark();
+            try {
+                this.writeEntry(out, entry, entry.getStatus(), entry.getBody());
+                count++;
+            } catch (RuntimeException e) {
+                out.writerIndex(entryIndex);
+                methodIds.rollback(mark);
+                entry.setFailure(e instanceof EncoderException ? e : new EncoderException(e));
+                if (entry.getBody() instanceof RpcResponse response) {
+                    this.writeEntry(out, entry, (byte) RpcStatus.FAIL.getCode(), failedResponse(response, e));
+                    count++;
+                }
+            }
+        }
+        out.setInt(countIndex, count);
+    }
+
+    private void writeEntry(ByteBuf out, RpcBatchEntry entry, byte status, Object body) {
+        out.writeByte(entry.getMessageType());
+        out.writeByte(status);
+        out.writeLong(entry.getRequestId());
+        out.writeInt(entry.getRemainingTimeout());
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        this.writeBody(out, body);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+    }
+
+    /**
+     * 调用结果无法序列化时代替原响应写出的失败响应
+     */
+    private static RpcResponse failedResponse(RpcResponse response, Throwable cause) {
+        RpcResponse failed = new RpcResponse();
+        failed.setAsync(response.getAsync());
+        failed.setOneway(response.getOneway());
+        failed.setError("Failed to serialize response: " + cause);
+        return failed;
+    }
+
+    /**
+     * 写入数据体长度之前的协议头字段
+     *
+     * @param byteBuf 用于写入编码后数据的ByteBuf
+     * @param header 协议头
+     * @param messageType 帧的消息类型，分块帧使用CHUNK，其他帧与协议头相同
+     */
+    private void writeHeader(ByteBuf byteBuf, RpcHeader header, byte messageType) {
         // 写入魔数，用于验证数据包的合法性
         byteBuf.writeShort(header.getMagic());
-        
+
+        // 写入协议版本号，接收方据此拒绝不兼容的协议格式
+        byteBuf.writeByte(RpcConstants.VERSION);
+
         // 写入消息类型，标识是请求、响应还是心跳等
-        byteBuf.writeByte(header.getMessageType());
-        
+        byteBuf.writeByte(messageType);
+
         // 写入状态码，用于标识请求或响应的状态
         byteBuf.writeByte(header.getStatus());
-        
+
         // 写入请求ID，用于匹配请求和响应
         byteBuf.writeLong(header.getRequestId());
-        
-        // 获取序列化类型
-        String serializationType = header.getSerializationType();
-        
-        // TODO Serialization是扩展点，当前默认使用JDK序列化
-        Serialization serialization = getJdkSerialization();
-        
+
         // 写入序列化类型，固定长度16字节，不足部分用"0"填充
-        byteBuf.writeBytes(SerializationUtils.paddingString(serializationType).getBytes(StandardCharsets.UTF_8));
-        
-        // 序列化消息体
-        byte[] data = serialization.serialize(msg.getBody());
-        
-        // 写入数据体长度
-        byteBuf.writeInt(data.length);
-        
-        // 写入序列化后的数据体
-        byteBuf.writeBytes(data);
+        byteBuf.writeBytes(SerializationUtils.paddingString(header.getSerializationType()).getBytes(StandardCharsets.UTF_8));
+
+        // 写入剩余超时时间，在发送时计算，扣除请求在消费者端已经消耗的时间
+        byteBuf.writeInt(header.getRemainingTimeout());
+    }
+
+    /**
+     * 将已编码的帧拆分为多个连续的分块帧，每个分块帧带有与原消息相同的状态、请求ID和剩余超时时间
+     * 分块帧的协议头写入同一个ByteBuf，与数据体的切片交替组成CompositeByteBuf，数据体不再复制；
+     * 同一消息的分块帧在同一次写出中连续发送，不会与其他消息的帧交错
+     *
+     * @param ctx ChannelHandlerContext上下文
+     * @param header 原消息的协议头
+     * @param frame 已编码的完整帧，拆分后释放
+     * @param length 帧中数据体的长度
+     * @return 由分块帧组成的ByteBuf
+     */
+    private ByteBuf toChunks(ChannelHandlerContext ctx, RpcHeader header, ByteBuf frame, int length) {
+        int chunkCount = (length + chunkSize - 1) / chunkSize;
+        int chunkHeaderLength = RpcConstants.HEADER_TOTAL_LEN + 2;
+        int dataIndex = frame.readerIndex() + RpcConstants.HEADER_TOTAL_LEN;
+        ByteBuf headers = ctx.alloc().ioBuffer(chunkCount * chunkHeaderLength);
+        CompositeByteBuf chunks = ctx.alloc().compositeBuffer(chunkCount * 2);
+        try {
+            for (int offset = 0; offset < length; offset += chunkSize) {
+                int chunkLength = Math.min(chunkSize, length - offset);
+                int headerIndex = headers.writerIndex();
+                this.writeHeader(headers, header, (byte) RpcType.CHUNK.getType());
+                headers.writeInt(chunkLength + 2);
+                headers.writeByte(header.getMessageType());
+                headers.writeBoolean(offset + chunkLength == length);
+                chunks.addComponent(true, headers.retainedSlice(headerIndex, chunkHeaderLength));
+                chunks.addComponent(true, frame.retainedSlice(dataIndex + offset, chunkLength));
+            }
+            return chunks;
+        } catch (Throwable t) {
+            chunks.release();
+            throw t;
+        } finally {
+            headers.release();
+            frame.release();
+        }
     }
-}
\ No newline at end of file
+}
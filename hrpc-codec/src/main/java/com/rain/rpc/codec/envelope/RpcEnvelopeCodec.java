@@ -0,0 +1,307 @@
+package com.rain.rpc.codec.envelope;
+
+import com.rain.rpc.common.exception.SerializerException;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.serialization.api.Serialization;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 请求和响应的信封编解码器
+ * 信封字段按固定的二进制格式直接读写ByteBuf，只有调用参数和调用结果交给Serialization
+ * <p>
+ * 请求格式：
+ * <pre>
+ * 标志 1byte | 方法ID 4byte | 超时时间 8byte | 类名 | 方法名 | 版本号 | 分组 |
+ * 参数类型数 2byte | 参数类型名 * N | 参数长度 4byte | 参数 N byte
+ * </pre>
+ * 响应格式：
+ * <pre>
+ * 标志 1byte | 错误信息长度 4byte | 错误信息 N byte | 结果长度 4byte | 结果 N byte
+ * </pre>
+ * 类名等字符串为长度(2字节) + UTF-8字节，长度、参数类型数为-1表示null；参数长度为0表示没有参数
+ *
+ * 设计说明：
+ * 1. 信封不经过通用的对象序列化，不写出类描述信息，也不需要反射读写字段
+ * 2. 解码时先读出完整的信封再反序列化参数，参数反序列化失败时异常信息中带有调用的方法
+ * 3. 同一连接上反复出现的类名、方法名等字符串按UTF-8字节缓存解码结果，命中时不再解码和分配字符串；
+ *    参数类型名缓存对应的Class，命中时不再加载类
+ * 4. 编码器和解码器各持有一个实例，只在连接的EventLoop中访问，不需要同步
+ */
+public class RpcEnvelopeCodec {
+
+    private static final int FLAG_ONEWAY = 1;
+
+    private static final int FLAG_ASYNC = 1 << 1;
+
+    private static final int FLAG_STREAM = 1 << 2;
+
+    private static final int FLAG_REQUEST_STREAM = 1 << 3;
+
+    /**
+     * 字符串缓存的槽数，必须是2的幂
+     */
+    private static final int STRING_CACHE_SIZE = 256;
+
+    /**
+     * 超过该长度（字节）的字符串不缓存
+     */
+    private static final int MAX_CACHED_STRING_LENGTH = 256;
+
+    private static final Object[] EMPTY_PARAMETERS = new Object[0];
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = Map.of(
+            "boolean", boolean.class, "byte", byte.class, "char", char.class, "short", short.class,
+            "int", int.class, "long", long.class, "float", float.class, "double", double.class, "void", void.class);
+
+    private final Serialization serialization;
+
+    /**
+     * 字符串缓存，槽位由UTF-8字节的哈希值确定，冲突时直接覆盖
+     */
+    private byte[][] cachedBytes;
+
+    private String[] cachedStrings;
+
+    /**
+     * 已经加载的参数类型，key为类名
+     */
+    private Map<String, Class<?>> cachedTypes;
+
+    public RpcEnvelopeCodec(Serialization serialization) {
+        this.serialization = serialization;
+    }
+
+    /**
+     * 写出请求
+     *
+     * @param out 目标缓冲区
+     * @param request 请求
+     */
+    public void writeRequest(ByteBuf out, RpcRequest request) {
+        int flags = (request.getOneway() ? FLAG_ONEWAY : 0) | (request.getAsync() ? FLAG_ASYNC : 0)
+                | (request.getStream() ? FLAG_STREAM : 0) | (request.getRequestStream() ? FLAG_REQUEST_STREAM : 0);
+        out.writeByte(flags);
+        out.writeInt(request.getMethodId());
+        out.writeLong(request.getTimeout());
+        writeShortString(out, request.getClassName());
+        writeShortString(out, request.getMethodName());
+        writeShortString(out, request.getVersion());
+        writeShortString(out, request.getGroup());
+        Class<?>[] parameterTypes = request.getParameterTypes();
+        if (parameterTypes == null) {
+            out.writeShort(-1);
+        } else {
+            out.writeShort(parameterTypes.length);
+            for (Class<?> parameterType : parameterTypes) {
+                writeShortString(out, parameterType.getName());
+            }
+        }
+        Object[] parameters = request.getParameters();
+        if (parameters == null) {
+            out.writeInt(-1);
+        } else if (parameters.length == 0) {
+            out.writeInt(0);
+        } else {
+            this.writeBytes(out, serialization.serialize(parameters));
+        }
+    }
+
+    /**
+     * 读取请求，读完后in中不再有可读数据
+     *
+     * @param in 请求的数据体
+     * @return 请求
+     */
+    public RpcRequest readRequest(ByteBuf in) {
+        RpcRequest request = new RpcRequest();
+        int flags = in.readByte();
+        request.setOneway((flags & FLAG_ONEWAY) != 0);
+        request.setAsync((flags & FLAG_ASYNC) != 0);
+        request.setStream((flags & FLAG_STREAM) != 0);
+        request.setRequestStream((flags & FLAG_REQUEST_STREAM) != 0);
+        request.setMethodId(in.readInt());
+        request.setTimeout(in.readLong());
+        request.setClassName(this.readShortString(in));
+        request.setMethodName(this.readShortString(in));
+        request.setVersion(this.readShortString(in));
+        request.setGroup(this.readShortString(in));
+        int typeCount = in.readShort();
+        if (typeCount < -1) {
+            throw new CorruptedFrameException("invalid parameter type count " + typeCount);
+        }
+        if (typeCount >= 0) {
+            Class<?>[] parameterTypes = new Class<?>[typeCount];
+            for (int i = 0; i < typeCount; i++) {
+                parameterTypes[i] = this.loadType(this.readShortString(in));
+            }
+            request.setParameterTypes(parameterTypes);
+        }
+        byte[] parameters = readBytes(in);
+        if (parameters != null) {
+            try {
+                request.setParameters(parameters.length == 0 ? EMPTY_PARAMETERS : serialization.deserialize(parameters, Object[].class));
+            } catch (SerializerException e) {
+                throw new SerializerException("Failed to deserialize parameters of " + request.getClassName() + "#" + request.getMethodName()
+                        + ", method id " + request.getMethodId() + ": " + e.getMessage(), e);
+            }
+        }
+        return request;
+    }
+
+    /**
+     * 写出响应
+     *
+     * @param out 目标缓冲区
+     * @param response 响应
+     */
+    public void writeResponse(ByteBuf out, RpcResponse response) {
+        out.writeByte((response.getOneway() ? FLAG_ONEWAY : 0) | (response.getAsync() ? FLAG_ASYNC : 0));
+        String error = response.getError();
+        if (error == null) {
+            out.writeInt(-1);
+        } else {
+            this.writeBytes(out, error.getBytes(StandardCharsets.UTF_8));
+        }
+        Object result = response.getResult();
+        if (result == null) {
+            out.writeInt(-1);
+        } else {
+            this.writeBytes(out, serialization.serialize(result));
+        }
+    }
+
+    /**
+     * 读取响应，读完后in中不再有可读数据
+     *
+     * @param in 响应的数据体
+     * @return 响应
+     */
+    public RpcResponse readResponse(ByteBuf in) {
+        RpcResponse response = new RpcResponse();
+        int flags = in.readByte();
+        response.setOneway((flags & FLAG_ONEWAY) != 0);
+        response.setAsync((flags & FLAG_ASYNC) != 0);
+        int errorLength = readLength(in, in.readInt());
+        if (errorLength >= 0) {
+            response.setError(in.readCharSequence(errorLength, StandardCharsets.UTF_8).toString());
+        }
+        byte[] result = readBytes(in);
+        if (result != null) {
+            response.setResult(serialization.deserialize(result, Object.class));
+        }
+        return response;
+    }
+
+    private void writeBytes(ByteBuf out, byte[] bytes) {
+        out.writeInt(bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuf in) {
+        int length = readLength(in, in.readInt());
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeShortString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        int length = out.writeCharSequence(value, StandardCharsets.UTF_8);
+        if (length > Short.MAX_VALUE) {
+            throw new EncoderException("String too long for envelope: " + length + " bytes");
+        }
+        out.setShort(lengthIndex, length);
+    }
+
+    /**
+     * 读取字符串，较短的字符串先按UTF-8字节查找缓存
+     */
+    private String readShortString(ByteBuf in) {
+        int length = readLength(in, in.readShort());
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_CACHED_STRING_LENGTH) {
+            return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+        }
+        int index = in.readerIndex();
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + in.getByte(index + i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+        if (cachedBytes == null) {
+            cachedBytes = new byte[STRING_CACHE_SIZE][];
+            cachedStrings = new String[STRING_CACHE_SIZE];
+        }
+        byte[] bytes = cachedBytes[slot];
+        if (bytes != null && bytes.length == length && equals(in, index, bytes)) {
+            in.skipBytes(length);
+            return cachedStrings[slot];
+        }
+        bytes = new byte[length];
+        in.readBytes(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        cachedBytes[slot] = bytes;
+        cachedStrings[slot] = value;
+        return value;
+    }
+
+    private static boolean equals(ByteBuf in, int index, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (in.getByte(index + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 校验读到的长度，-1表示null，其他负数或超过剩余数据的长度说明数据已经损坏
+     */
+    private static int readLength(ByteBuf in, int length) {
+        if (length < -1 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("invalid envelope field length " + length + ", readable " + in.readableBytes());
+        }
+        return length;
+    }
+
+    private Class<?> loadType(String name) {
+        if (name == null) {
+            throw new CorruptedFrameException("parameter type name is null");
+        }
+        if (cachedTypes == null) {
+            cachedTypes = new HashMap<>();
+        }
+        Class<?> type = cachedTypes.get(name);
+        if (type != null) {
+            return type;
+        }
+        type = PRIMITIVE_TYPES.get(name);
+        if (type == null) {
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                type = Class.forName(name, false, loader != null ? loader : RpcEnvelopeCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new SerializerException("Parameter type not found: " + name, e);
+            }
+        }
+        cachedTypes.put(name, type);
+        return type;
+    }
+}
@@ -0,0 +1,84 @@
+package com.rain.rpc.codec.heartbeat;
+
+import com.rain.rpc.common.id.IdFactory;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 心跳处理器
+ * 与IdleStateHandler配合使用，消费者和服务提供者的管道中各有一个，连接两端都会主动探测
+ *
+ * 设计说明：
+ * 1. IdleStateHandler在读空闲时触发事件，每个空闲间隔发送一次心跳请求，对端回复心跳响应
+ * 2. 连续maxMisses个空闲间隔都没有读到任何消息时认为连接已经失效，直接关闭连接，
+ *    连接上等待响应的请求立即失败，不必等到各自超时
+ * 3. 任何消息都能证明连接可用，读到消息后重新计数；有持续流量的连接不会发送心跳
+ * 4. 心跳请求和心跳响应在这里处理，不再传递给后续的业务处理器
+ */
+public class RpcHeartbeatHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpcHeartbeatHandler.class);
+
+    private final int maxMisses;
+
+    /**
+     * 连续没有读到消息的空闲间隔数，只在EventLoop中访问
+     */
+    private int misses;
+
+    public RpcHeartbeatHandler() {
+        this(RpcConstants.HEARTBEAT_MAX_MISSES);
+    }
+
+    public RpcHeartbeatHandler(int maxMisses) {
+        this.maxMisses = maxMisses;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        misses = 0;
+        if (!(msg instanceof RpcProtocol<?> protocol) || protocol.getHeader() == null) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        RpcHeader header = protocol.getHeader();
+        if (header.getMessageType() == (byte) RpcType.HEARTBEAT.getType()) {
+            LOGGER.debug("Receive heartbeat from {}", ctx.channel().remoteAddress());
+            ctx.writeAndFlush(newHeartbeat(RpcType.HEARTBEAT_PONG, header.getRequestId()));
+            return;
+        }
+        if (header.getMessageType() == (byte) RpcType.HEARTBEAT_PONG.getType()) {
+            LOGGER.debug("Receive heartbeat pong from {}", ctx.channel().remoteAddress());
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent event) || event.state() != IdleState.READER_IDLE) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+        if (++misses >= maxMisses) {
+            LOGGER.warn("No message from {} in {} heartbeat interval(s), closing channel", ctx.channel().remoteAddress(), misses);
+            ctx.close();
+            return;
+        }
+        ctx.writeAndFlush(newHeartbeat(RpcType.HEARTBEAT, IdFactory.getId()));
+    }
+
+    private static RpcProtocol<Object> newHeartbeat(RpcType heartbeatType, long requestId) {
+        RpcProtocol<Object> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getHeartbeatHeader(RpcConstants.SERIALIZATION_JDK, heartbeatType, requestId));
+        return protocol;
+    }
+}
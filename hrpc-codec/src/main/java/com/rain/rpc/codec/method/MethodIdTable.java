@@ -0,0 +1,187 @@
+package com.rain.rpc.codec.method;
+
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.request.RpcRequest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 连接上的方法ID表
+ * 编码器和解码器各持有一个，编码器为方法签名分配ID，解码器按ID还原方法签名
+ *
+ * 设计说明：
+ * 1. 编码器第一次发送某个方法签名时分配ID，与完整的方法签名一起发送，之后的请求只发送ID；
+ *    解码器收到带有方法签名的请求时登记ID，收到只有ID的请求时还原方法签名，后续处理器不需要感知方法ID
+ * 2. 同一连接上的帧按编码顺序到达并解码，分块帧也不会与其他帧交错，解码器总是先收到方法签名再收到只有ID的请求，
+ *    不需要单独的握手往返
+ * 3. 请求对象可能同时发往多个连接，也会保留在RPCFuture中，编码时复制请求，不修改原请求
+ * 4. 每个连接最多分配MAX_METHOD_IDS个ID，之后的方法仍发送完整的方法签名；
+ *    解码器遇到没有登记的ID时保留请求原样，由服务提供者以调用失败返回
+ * 5. 编码失败时帧没有写出，编码器撤销本次编码分配的ID，之后的请求重新发送方法签名
+ * 6. 只在连接的EventLoop中访问，不需要同步
+ */
+public class MethodIdTable {
+
+    /**
+     * 编码器端已经分配的ID，key为方法签名
+     */
+    private Map<Signature, Integer> ids;
+
+    /**
+     * 解码器端已经登记的方法签名，下标为方法ID
+     */
+    private Signature[] signatures;
+
+    /**
+     * 下一个分配的ID
+     */
+    private int nextId = 1;
+
+    /**
+     * 编码前替换请求，已经分配ID的方法只保留ID，还没有分配的方法分配ID并带上完整的方法签名
+     *
+     * @param request 待编码的请求
+     * @return 用于编码的请求，ID用完时返回原请求
+     */
+    public RpcRequest intern(RpcRequest request) {
+        if (request.getClassName() == null) {
+            return request;
+        }
+        if (ids == null) {
+            ids = new HashMap<>();
+        }
+        Signature signature = new Signature(request.getClassName(), request.getMethodName(), request.getParameterTypes(),
+                request.getVersion(), request.getGroup());
+        Integer id = ids.get(signature);
+        if (id != null) {
+            return copy(request, id, false);
+        }
+        if (nextId > RpcConstants.MAX_METHOD_IDS) {
+            return request;
+        }
+        id = nextId++;
+        ids.put(signature, id);
+        return copy(request, id, true);
+    }
+
+    /**
+     * 记录当前分配到的位置，编码失败时撤销之后分配的ID
+     *
+     * @return 下一个分配的ID
+     */
+    public int mark() {
+        return nextId;
+    }
+
+    /**
+     * 撤销mark之后分配的ID
+     *
+     * @param mark mark返回的位置
+     */
+    public void rollback(int mark) {
+        if (nextId == mark) {
+            return;
+        }
+        ids.values().removeIf(id -> id >= mark);
+        nextId = mark;
+    }
+
+    /**
+     * 解码后还原请求，带有方法签名的请求登记ID，只有ID的请求按登记的方法签名补全
+     *
+     * @param request 解码得到的请求
+     */
+    public void restore(RpcRequest request) {
+        int id = request.getMethodId();
+        if (id <= 0 || id > RpcConstants.MAX_METHOD_IDS) {
+            return;
+        }
+        if (request.getClassName() != null) {
+            if (signatures == null) {
+                signatures = new Signature[RpcConstants.MAX_METHOD_IDS + 1];
+            }
+            signatures[id] = new Signature(request.getClassName(), request.getMethodName(), request.getParameterTypes(),
+                    request.getVersion(), request.getGroup());
+            return;
+        }
+        Signature signature = signatures == null ? null : signatures[id];
+        if (signature == null) {
+            return;
+        }
+        request.setClassName(signature.className);
+        request.setMethodName(signature.methodName);
+        request.setParameterTypes(signature.parameterTypes);
+        request.setVersion(signature.version);
+        request.setGroup(signature.group);
+    }
+
+    private static RpcRequest copy(RpcRequest request, int id, boolean withSignature) {
+        RpcRequest copy = new RpcRequest();
+        copy.setOneway(request.getOneway());
+        copy.setAsync(request.getAsync());
+        copy.setMethodId(id);
+        if (withSignature) {
+            copy.setClassName(request.getClassName());
+            copy.setMethodName(request.getMethodName());
+            copy.setParameterTypes(request.getParameterTypes());
+            copy.setVersion(request.getVersion());
+            copy.setGroup(request.getGroup());
+        }
+        copy.setParameters(request.getParameters());
+        copy.setTimeout(request.getTimeout());
+        copy.setStream(request.getStream());
+        copy.setRequestStream(request.getRequestStream());
+        return copy;
+    }
+
+    /**
+     * 方法签名，类名、版本号和分组确定服务，方法名和参数类型确定方法
+     */
+    private static final class Signature {
+
+        private final String className;
+
+        private final String methodName;
+
+        private final Class<?>[] parameterTypes;
+
+        private final String version;
+
+        private final String group;
+
+        private final int hash;
+
+        Signature(String className, String methodName, Class<?>[] parameterTypes, String version, String group) {
+            this.className = className;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.version = version;
+            this.group = group;
+            this.hash = Objects.hash(className, methodName, version, group) * 31 + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature that)) {
+                return false;
+            }
+            return hash == that.hash
+                    && className.equals(that.className)
+                    && Objects.equals(methodName, that.methodName)
+                    && Arrays.equals(parameterTypes, that.parameterTypes)
+                    && Objects.equals(version, that.version)
+                    && Objects.equals(group, that.group);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.rain.rpc.codec.stream;
+
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流的发送端
+ * 把Flow.Publisher或Iterator转换为同一请求ID下的多个流数据消息，最后发送一个流结束消息。
+ * 服务提供者用它发送响应流，服务消费者用它发送请求流，两个方向使用不同的消息类型
+ *
+ * 设计说明：
+ * 1. 接收方通过流额度消息授予额度，每个流数据消息消耗一个额度，没有额度时不再发送，接收方处理过慢时不会在连接上积压
+ * 2. Publisher收到的额度直接转换为Subscription.request，由Publisher按请求数量产生元素；
+ *    Subscription建立前收到的额度先累积，建立后一次性请求
+ * 3. Iterator在指定的线程池中按额度拉取元素，next可能阻塞，不能在IO线程中调用；
+ *    同一时刻只有一个线程拉取元素，额度用完后线程退出，收到新的额度后重新提交任务
+ * 4. 流只结束一次，结束时从所属连接的登记中移除；被取消的流不再发送流结束消息
+ * 5. 流不受请求超时时间的限制，由接收方取消、调用结束或连接断开结束
+ */
+public class RpcStreamSender implements Flow.Subscriber<Object> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpcStreamSender.class);
+
+    private final long requestId;
+
+    private final String serializationType;
+
+    /**
+     * 流数据消息的类型
+     */
+    private final RpcType dataType;
+
+    /**
+     * 流结束消息的类型
+     */
+    private final RpcType endType;
+
+    private final WriteQueue writeQueue;
+
+    /**
+     * 拉取Iterator元素的线程池
+     */
+    private final Executor executor;
+
+    /**
+     * 流结束时执行，用于从连接的登记中移除
+     */
+    private final Runnable onTerminate;
+
+    /**
+     * 尚未使用的额度
+     */
+    private final AtomicLong credits = new AtomicLong();
+
+    /**
+     * 拉取Iterator元素的任务计数，不为0时已经有线程在拉取
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final AtomicBoolean terminated = new AtomicBoolean();
+
+    private final Runnable drainTask = this::drain;
+
+    private volatile Iterator<?> iterator;
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param requestId         流所属调用的请求ID
+     * @param serializationType 序列化类型
+     * @param dataType          流数据消息的类型，STREAM_DATA或REQUEST_STREAM_DATA
+     * @param endType           流结束消息的类型，STREAM_END或REQUEST_STREAM_END
+     * @param writeQueue        所属连接的批量写出队列
+     * @param executor          拉取Iterator元素的线程池
+     * @param onTerminate       流结束时执行
+     */
+    public RpcStreamSender(long requestId, String serializationType, RpcType dataType, RpcType endType,
+                           WriteQueue writeQueue, Executor executor, Runnable onTerminate) {
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.dataType = dataType;
+        this.endType = endType;
+        this.writeQueue = writeQueue;
+        this.executor = executor;
+        this.onTerminate = onTerminate;
+    }
+
+    /**
+     * 判断对象能否作为流的数据来源
+     *
+     * @param source 服务方法的返回值或请求流参数
+     * @return Flow.Publisher或Iterator返回true
+     */
+    public static boolean isStreamSource(Object source) {
+        return source instanceof Flow.Publisher<?> || source instanceof Iterator<?>;
+    }
+
+    /**
+     * 开始发送流中的元素
+     *
+     * @param source Flow.Publisher或Iterator
+     */
+    @SuppressWarnings("unchecked")
+    public void start(Object source) {
+        if (source instanceof Flow.Publisher<?> publisher) {
+            ((Flow.Publisher<Object>) publisher).subscribe(this);
+            return;
+        }
+        this.iterator = (Iterator<?>) source;
+        this.scheduleDrain();
+    }
+
+    /**
+     * 收到接收方授予的额度
+     *
+     * @param n 新增的额度
+     */
+    public void addCredits(long n) {
+        if (n <= 0 || cancelled) {
+            return;
+        }
+        credits.getAndAccumulate(n, RpcStreamSender::addCap);
+        if (subscription != null) {
+            this.requestCredits();
+        } else if (iterator != null) {
+            this.scheduleDrain();
+        }
+    }
+
+    /**
+     * 接收方取消、调用结束或连接断开，停止发送
+     */
+    public void cancel() {
+        cancelled = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        this.terminate(null);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        this.requestCredits();
+    }
+
+    @Override
+    public void onNext(Object item) {
+        if (!cancelled && !terminated.get()) {
+            this.sendData(item);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.terminate(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.terminate(null);
+    }
+
+    /**
+     * 以失败结束流，用于服务方法抛出异常或数据来源不能作为流的情况
+     *
+     * @param throwable 失败原因
+     */
+    public void fail(Throwable throwable) {
+        this.terminate(throwable);
+    }
+
+    /**
+     * 把累积的额度转换为Subscription.request，额度已经被其他线程取走时不重复请求
+     */
+    private void requestCredits() {
+        long n = credits.getAndSet(0);
+        if (n > 0) {
+            subscription.request(n);
+        }
+    }
+
+    private void scheduleDrain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(drainTask);
+        }
+    }
+
+    /**
+     * 按额度拉取Iterator的元素，额度用完或没有更多元素时退出
+     */
+    private void drain() {
+        Iterator<?> it = iterator;
+        int missed = 1;
+        try {
+            for (;;) {
+                while (!cancelled && credits.get() > 0) {
+                    if (!it.hasNext()) {
+                        this.terminate(null);
+                        return;
+                    }
+                    Object item = it.next();
+                    credits.decrementAndGet();
+                    this.sendData(item);
+                }
+                if (cancelled) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        } catch (Throwable t) {
+            this.terminate(t);
+        }
+    }
+
+    private void sendData(Object item) {
+        RpcStreamMessage message = new RpcStreamMessage();
+        message.setData(item);
+        writeQueue.enqueueVoid(this.newFrame(dataType, message));
+    }
+
+    /**
+     * 结束流，只执行一次；流被取消时不再发送流结束消息
+     *
+     * @param throwable 失败原因，正常结束时为null
+     */
+    private void terminate(Throwable throwable) {
+        if (!terminated.compareAndSet(false, true)) {
+            return;
+        }
+        onTerminate.run();
+        if (cancelled) {
+            LOGGER.info("Stream cancelled. Request id: {}", requestId);
+            return;
+        }
+        RpcStreamMessage message = new RpcStreamMessage();
+        RpcProtocol<RpcStreamMessage> protocol = this.newFrame(endType, message);
+        if (throwable != null) {
+            LOGGER.error("Stream failed. Request id: {}", requestId, throwable);
+            message.setError(throwable.toString());
+            protocol.getHeader().setStatus((byte) RpcStatus.FAIL.getCode());
+        }
+        writeQueue.enqueueVoid(protocol);
+    }
+
+    private RpcProtocol<RpcStreamMessage> newFrame(RpcType streamType, RpcStreamMessage message) {
+        RpcHeader header = RpcHeaderFactory.getStreamHeader(serializationType, streamType, requestId);
+        RpcProtocol<RpcStreamMessage> protocol = new RpcProtocol<>();
+        protocol.setHeader(header);
+        protocol.setBody(message);
+        return protocol;
+    }
+
+    private static long addCap(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
@@ -0,0 +1,151 @@
+package com.rain.rpc.codec.writer;
+
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.attachment.RpcAttachment;
+import com.rain.rpc.protocol.base.RpcMessage;
+import com.rain.rpc.protocol.batch.RpcBatch;
+import com.rain.rpc.protocol.batch.RpcBatchEntry;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 批量消息写出处理器
+ * 在管道中位于RpcEncoder和业务处理器之间，把两次flush之间写出的请求、响应或流式调用的消息合并为一个批量消息
+ *
+ * 设计说明：
+ * 1. 与WriteQueue分工合并写出：WriteQueue把业务线程的写出收集到一次EventLoop任务中，决定何时flush，
+ *    减少线程切换和系统调用；本处理器决定帧的格式，把这次任务中写出的消息编码为一个帧，
+ *    接收方只需要解析一个协议头、分配一个缓冲区，批量消息中的请求共享一次解码
+ * 2. 请求、响应和流式调用的消息在write时暂存，flush时立即合并写出；不再额外提交任务等待凑批，
+ *    等待已经由WriteQueue完成，两层都推迟会让每批消息多经过一次EventLoop任务
+ * 3. 只暂存了一条消息时按原样写出，不增加批量消息的开销
+ * 4. 取消请求、带附件的消息等不能合并的消息写出前，先写出已经暂存的消息，保证消息按写出顺序到达
+ * 5. 暂存的消息达到批量上限或序列化类型不同时，先把已经暂存的消息合并写出
+ * 6. 批量消息写出完成后依次完成每条消息的Promise，voidPromise写出失败时与单独写出一样触发exceptionCaught；
+ *    RpcEncoder逐条编码，某条消息编码失败时只有这条消息的Promise以EncoderException失败，其他消息照常写出
+ * 7. 所有方法都在Channel的EventLoop中执行，不需要同步
+ */
+public class RpcBatchWriteHandler extends ChannelOutboundHandlerAdapter {
+
+    private final int maxBatchSize;
+
+    private final List<RpcProtocol<RpcMessage>> pendingMessages = new ArrayList<>();
+
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+
+    public RpcBatchWriteHandler() {
+        this(RpcConstants.BATCH_MAX_SIZE);
+    }
+
+    public RpcBatchWriteHandler(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        this.flushNow(ctx);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!isBatchable(msg)) {
+            this.writePending(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        RpcProtocol<RpcMessage> protocol = (RpcProtocol<RpcMessage>) msg;
+        if (!pendingMessages.isEmpty() && !Objects.equals(pendingMessages.get(0).getHeader().getSerializationType(),
+                protocol.getHeader().getSerializationType())) {
+            this.writePending(ctx);
+        }
+        pendingMessages.add(protocol);
+        pendingPromises.add(promise);
+        if (pendingMessages.size() >= maxBatchSize) {
+            this.writePending(ctx);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        this.flushNow(ctx);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        this.flushNow(ctx);
+        ctx.close(promise);
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        this.writePending(ctx);
+        ctx.flush();
+    }
+
+    /**
+     * 写出暂存的消息，多条消息合并为一个批量消息
+     */
+    private void writePending(ChannelHandlerContext ctx) {
+        int size = pendingMessages.size();
+        if (size == 0) {
+            return;
+        }
+        if (size == 1) {
+            ctx.write(pendingMessages.get(0), pendingPromises.get(0));
+            pendingMessages.clear();
+            pendingPromises.clear();
+            return;
+        }
+        RpcBatch batch = new RpcBatch(size);
+        for (RpcProtocol<RpcMessage> protocol : pendingMessages) {
+            RpcHeader header = protocol.getHeader();
+            RpcBatchEntry entry = new RpcBatchEntry();
+            entry.setMessageType(header.getMessageType());
+            entry.setStatus(header.getStatus());
+            entry.setRequestId(header.getRequestId());
+            entry.setRemainingTimeout(header.getRemainingTimeout());
+            entry.setBody(protocol.getBody());
+            batch.addEntry(entry);
+        }
+        RpcProtocol<RpcBatch> batchProtocol = new RpcProtocol<>();
+        batchProtocol.setHeader(RpcHeaderFactory.getBatchHeader(pendingMessages.get(0).getHeader().getSerializationType()));
+        batchProtocol.setBody(batch);
+
+        ChannelPromise[] promises = pendingPromises.toArray(new ChannelPromise[0]);
+        pendingMessages.clear();
+        pendingPromises.clear();
+        ChannelPromise batchPromise = ctx.newPromise();
+        batchPromise.addListener(future -> {
+            for (int i = 0; i < promises.length; i++) {
+                Throwable failure = batch.getEntries().get(i).getFailure();
+                if (!future.isSuccess()) {
+                    promises[i].tryFailure(future.cause());
+                } else if (failure != null) {
+                    promises[i].tryFailure(failure);
+                } else {
+                    promises[i].trySuccess();
+                }
+            }
+        });
+        ctx.write(batchProtocol, batchPromise);
+    }
+
+    /**
+     * 带有数据体的请求、响应和流式调用的消息才能合并，带附件的消息需要单独写出附件
+     */
+    private static boolean isBatchable(Object msg) {
+        if (!(msg instanceof RpcProtocol<?> protocol) || !(protocol.getBody() instanceof RpcMessage body) || protocol.getHeader() == null) {
+            return false;
+        }
+        return RpcBatchEntry.isBatchable(RpcType.findByType(protocol.getHeader().getMessageType())) && RpcAttachment.collect(body).isEmpty();
+    }
+}
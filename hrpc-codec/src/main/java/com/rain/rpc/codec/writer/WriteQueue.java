@@ -0,0 +1,137 @@
+package com.rain.rpc.codec.writer;
+
+import com.rain.rpc.constants.RpcConstants;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Channel的批量写出队列
+ * 业务线程把消息放入队列，由Channel所在的EventLoop批量写出后统一flush，多个小消息合并为一次系统调用
+ *
+ * 设计说明：
+ * 1. 使用多生产者单消费者的无锁队列，业务线程入队不加锁，只有EventLoop线程出队
+ * 2. 队列从空变为非空时才向EventLoop提交一次写出任务，并发写入时多条消息共享同一个任务和同一次flush
+ * 3. 写出任务每写出maxBatch条消息flush一次，避免大批量消息长时间占用出站缓冲区；
+ *    一次任务最多写出maxDrain条消息，剩余的消息重新提交任务，生产者持续入队时EventLoop也能及时处理读取和其他Channel
+ * 4. 不额外等待凑批，队列空闲时消息在EventLoop下一次执行任务时就会写出，低并发下不增加延迟；
+ *    并发越高，EventLoop执行写出任务前积累的消息越多，批量越大
+ * 5. 同一个Channel的消息按入队顺序写出
+ */
+public class WriteQueue {
+
+    private final Channel channel;
+
+    private final int maxBatch;
+
+    private final int maxDrain;
+
+    private final Queue<PendingWrite> queue = PlatformDependent.newMpscQueue();
+
+    /**
+     * 是否已经向EventLoop提交了写出任务
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Runnable flushTask = this::flush;
+
+    public WriteQueue(Channel channel) {
+        this(channel, RpcConstants.WRITE_QUEUE_MAX_BATCH);
+    }
+
+    public WriteQueue(Channel channel, int maxBatch) {
+        this(channel, maxBatch, RpcConstants.WRITE_QUEUE_MAX_DRAIN);
+    }
+
+    public WriteQueue(Channel channel, int maxBatch, int maxDrain) {
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        this.maxDrain = maxDrain;
+    }
+
+    /**
+     * 将消息放入队列，由EventLoop批量写出
+     *
+     * @param msg 消息
+     * @return 消息写出完成时完成的ChannelFuture
+     */
+    public ChannelFuture enqueue(Object msg) {
+        ChannelPromise promise = channel.newPromise();
+        queue.add(new PendingWrite(msg, promise));
+        this.scheduleFlush();
+        return promise;
+    }
+
+    /**
+     * 将不需要关心写出结果的消息放入队列
+     *
+     * @param msg 消息
+     */
+    public void enqueueVoid(Object msg) {
+        queue.add(new PendingWrite(msg, channel.voidPromise()));
+        this.scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                channel.eventLoop().execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                // EventLoop已经关闭，Channel不可能再写出，以失败结束队列中的消息
+                scheduled.set(false);
+                this.failAll(e);
+            }
+        }
+    }
+
+    /**
+     * 在EventLoop中写出队列中的消息，最多写出maxDrain条
+     */
+    private void flush() {
+        try {
+            int written = 0;
+            int drained = 0;
+            PendingWrite write;
+            while (drained++ < maxDrain && (write = queue.poll()) != null) {
+                channel.write(write.msg, write.promise);
+                if (++written == maxBatch) {
+                    written = 0;
+                    channel.flush();
+                }
+            }
+            if (written > 0) {
+                channel.flush();
+            }
+        } finally {
+            scheduled.set(false);
+            // 达到maxDrain后剩余的消息，以及清除标记之前入队的消息不会再提交任务，这里重新检查
+            if (!queue.isEmpty()) {
+                this.scheduleFlush();
+            }
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            write.promise.tryFailure(cause);
+        }
+    }
+
+    private static final class PendingWrite {
+
+        private final Object msg;
+
+        private final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
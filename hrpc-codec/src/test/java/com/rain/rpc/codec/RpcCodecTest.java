@@ -0,0 +1,533 @@
+package com.rain.rpc.codec;
+
+import com.rain.rpc.codec.envelope.RpcEnvelopeCodec;
+import com.rain.rpc.codec.writer.RpcBatchWriteHandler;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.attachment.RpcAttachment;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import com.rain.rpc.serialization.jdk.JdkSerialization;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcEncoder/RpcDecoder测试类
+ * 验证协议头中剩余超时时间、只有协议头的取消请求、批量消息及其中单条消息的编码失败、最大帧长度、分块传输、附件及其接收缓冲区的分配、方法ID、请求流消息以及请求和响应信封的编解码
+ */
+public class RpcCodecTest {
+
+    @Test
+    void testDeadlineRoundTrip() {
+        RpcProtocol<RpcRequest> decoded = roundTrip(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        RpcHeader header = decoded.getHeader();
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(header.getDeadline() - System.nanoTime());
+        assertTrue(remainingMillis > 9000 && remainingMillis <= 10000, "remaining: " + remainingMillis);
+        assertFalse(header.isExpired());
+        assertEquals("hello", decoded.getBody().getMethodName());
+    }
+
+    @Test
+    void testNoDeadline() {
+        RpcHeader header = roundTrip(0).getHeader();
+        assertEquals(0, header.getDeadline());
+        assertFalse(header.isExpired());
+    }
+
+    @Test
+    void testExpiredDeadline() {
+        RpcHeader header = roundTrip(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1)).getHeader();
+        assertNotEquals(0, header.getDeadline());
+        assertTrue(header.isExpired());
+    }
+
+    @Test
+    void testCancelFrame() {
+        RpcProtocol<RpcRequest> cancel = new RpcProtocol<>();
+        cancel.setHeader(RpcHeaderFactory.getCancelHeader(RpcConstants.SERIALIZATION_JDK, 42L));
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(cancel));
+        ByteBuf encoded = encoderChannel.readOutbound();
+        assertEquals(RpcConstants.HEADER_TOTAL_LEN, encoded.readableBytes());
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(encoded));
+        RpcProtocol<RpcRequest> decoded = decoderChannel.readInbound();
+        assertEquals(RpcType.CANCEL.getType(), decoded.getHeader().getMessageType());
+        assertEquals(42L, decoded.getHeader().getRequestId());
+        assertNull(decoded.getBody());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testBatchRoundTrip() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder(), new RpcBatchWriteHandler());
+        RpcProtocol<RpcRequest> first = newRequest(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        RpcProtocol<RpcRequest> second = newRequest(0);
+        RpcProtocol<RpcRequest> cancel = new RpcProtocol<>();
+        cancel.setHeader(RpcHeaderFactory.getCancelHeader(RpcConstants.SERIALIZATION_JDK, 42L));
+        RpcProtocol<RpcRequest> third = newRequest(0);
+        ChannelFuture firstFuture = encoderChannel.write(first);
+        ChannelFuture secondFuture = encoderChannel.write(second);
+        encoderChannel.write(cancel);
+        encoderChannel.write(third);
+        encoderChannel.flush();
+        encoderChannel.runPendingTasks();
+        assertTrue(firstFuture.isSuccess());
+        assertTrue(secondFuture.isSuccess());
+
+        // 取消请求之前的两个请求合并为一个批量消息，之后的请求单独写出
+        ByteBuf batch = encoderChannel.readOutbound();
+        assertEquals(RpcType.BATCH.getType(), batch.getByte(3));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(batch, encoderChannel.readOutbound(), encoderChannel.readOutbound()));
+        assertNull(encoderChannel.readOutbound());
+
+        RpcProtocol<RpcRequest> decodedFirst = decoderChannel.readInbound();
+        assertEquals(first.getHeader().getRequestId(), decodedFirst.getHeader().getRequestId());
+        assertEquals(RpcType.REQUEST.getType(), decodedFirst.getHeader().getMessageType());
+        assertEquals(RpcConstants.SERIALIZATION_JDK, decodedFirst.getHeader().getSerializationType());
+        assertNotEquals(0, decodedFirst.getHeader().getDeadline());
+        assertEquals("hello", decodedFirst.getBody().getMethodName());
+        RpcProtocol<RpcRequest> decodedSecond = decoderChannel.readInbound();
+        assertEquals(second.getHeader().getRequestId(), decodedSecond.getHeader().getRequestId());
+        assertEquals(0, decodedSecond.getHeader().getDeadline());
+        RpcProtocol<RpcRequest> decodedCancel = decoderChannel.readInbound();
+        assertEquals(RpcType.CANCEL.getType(), decodedCancel.getHeader().getMessageType());
+        RpcProtocol<RpcRequest> decodedThird = decoderChannel.readInbound();
+        assertEquals(third.getHeader().getRequestId(), decodedThird.getHeader().getRequestId());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testBatchEntryEncodeFailure() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder(), new RpcBatchWriteHandler());
+        RpcProtocol<RpcRequest> brokenRequest = newRequest(0);
+        brokenRequest.getBody().setParameters(new Object[]{new Object()});
+        RpcProtocol<RpcRequest> request = newRequest(0);
+        RpcProtocol<RpcResponse> brokenResponse = newResponse(null, new Object());
+        RpcProtocol<RpcResponse> response = newResponse(null, "ok");
+        ChannelFuture brokenRequestFuture = encoderChannel.write(brokenRequest);
+        ChannelFuture requestFuture = encoderChannel.write(request);
+        ChannelFuture brokenResponseFuture = encoderChannel.write(brokenResponse);
+        ChannelFuture responseFuture = encoderChannel.write(response);
+        encoderChannel.flush();
+        encoderChannel.runPendingTasks();
+
+        // 只有编码失败的消息写出失败，其他消息仍在同一个批量消息中写出
+        assertInstanceOf(EncoderException.class, brokenRequestFuture.cause());
+        assertInstanceOf(EncoderException.class, brokenResponseFuture.cause());
+        assertTrue(requestFuture.isSuccess());
+        assertTrue(responseFuture.isSuccess());
+        ByteBuf batch = encoderChannel.readOutbound();
+        assertEquals(RpcType.BATCH.getType(), batch.getByte(3));
+        assertNull(encoderChannel.readOutbound());
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(batch));
+        RpcProtocol<RpcRequest> decodedRequest = decoderChannel.readInbound();
+        assertEquals(request.getHeader().getRequestId(), decodedRequest.getHeader().getRequestId());
+        assertEquals("hello", decodedRequest.getBody().getMethodName());
+        // 无法序列化的响应改为失败响应写出，调用方不必等到超时
+        RpcProtocol<RpcResponse> decodedBrokenResponse = decoderChannel.readInbound();
+        assertEquals(brokenResponse.getHeader().getRequestId(), decodedBrokenResponse.getHeader().getRequestId());
+        assertEquals(RpcStatus.FAIL.getCode(), decodedBrokenResponse.getHeader().getStatus());
+        assertTrue(decodedBrokenResponse.getBody().getError().startsWith("Failed to serialize response"));
+        assertNull(decodedBrokenResponse.getBody().getResult());
+        RpcProtocol<RpcResponse> decodedResponse = decoderChannel.readInbound();
+        assertEquals(response.getHeader().getRequestId(), decodedResponse.getHeader().getRequestId());
+        assertEquals("ok", decodedResponse.getBody().getResult());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testFrameTooLongClosesChannel() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeShort(RpcConstants.MAGIC);
+        frame.writeByte(RpcConstants.VERSION);
+        frame.writeByte(RpcType.REQUEST.getType());
+        frame.writeByte(0);
+        frame.writeLong(1L);
+        frame.writeZero(16);
+        frame.writeInt(0);
+        frame.writeInt(Integer.MAX_VALUE);
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertThrows(TooLongFrameException.class, () -> decoderChannel.writeInbound(frame));
+        assertFalse(decoderChannel.isOpen());
+        assertNull(decoderChannel.readInbound());
+    }
+
+    @Test
+    void testUnsupportedVersionClosesChannel() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(newRequest(0)));
+        ByteBuf frame = encoderChannel.readOutbound();
+        assertEquals(RpcConstants.VERSION, frame.getByte(2));
+        frame.setByte(2, RpcConstants.VERSION + 1);
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertThrows(CorruptedFrameException.class, () -> decoderChannel.writeInbound(frame));
+        assertFalse(decoderChannel.isOpen());
+        assertNull(decoderChannel.readInbound());
+    }
+
+    @Test
+    void testChunkedRoundTrip() {
+        RpcProtocol<RpcRequest> protocol = newRequest(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        protocol.getBody().setParameters(new Object[]{new byte[1000]});
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder(256));
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf encoded = encoderChannel.readOutbound();
+        assertEquals(RpcType.CHUNK.getType(), encoded.getByte(3));
+        // 分块帧由协议头和已编码数据体的切片组成，数据体不再复制
+        assertInstanceOf(CompositeByteBuf.class, encoded);
+
+        // 每个分块帧都不超过最大帧长度，逐字节写入解码器也能正确重组
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder(256 + 2, 1024 * 1024));
+        while (encoded.isReadable()) {
+            decoderChannel.writeInbound(encoded.readRetainedSlice(Math.min(97, encoded.readableBytes())));
+        }
+        encoded.release();
+        RpcProtocol<RpcRequest> decoded = decoderChannel.readInbound();
+        assertEquals(RpcType.REQUEST.getType(), decoded.getHeader().getMessageType());
+        assertEquals(protocol.getHeader().getRequestId(), decoded.getHeader().getRequestId());
+        assertNotEquals(0, decoded.getHeader().getDeadline());
+        assertArrayEquals(new byte[1000], (byte[]) decoded.getBody().getParameters()[0]);
+        assertNull(decoderChannel.readInbound());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testChunkedMessageTooLong() {
+        RpcProtocol<RpcRequest> protocol = newRequest(0);
+        protocol.getBody().setParameters(new Object[]{new byte[4096]});
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder(256));
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf encoded = encoderChannel.readOutbound();
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder(256 + 2, 1024));
+        assertThrows(TooLongFrameException.class, () -> decoderChannel.writeInbound(encoded));
+        assertFalse(decoderChannel.isOpen());
+        assertNull(decoderChannel.readInbound());
+    }
+
+    @Test
+    void testAttachmentRoundTrip(@TempDir Path dir) throws Exception {
+        byte[] bytes = new byte[3000];
+        new Random(1).nextBytes(bytes);
+        Path file = dir.resolve("blob.bin");
+        Files.write(file, bytes);
+        RpcProtocol<RpcRequest> protocol = newRequest(0);
+        protocol.getBody().setParameters(new Object[]{"name", RpcAttachment.wrap(bytes), RpcAttachment.of(file.toFile(), 100, 2000)});
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder(256));
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf frame = encoderChannel.readOutbound();
+        assertEquals(RpcType.ATTACHED.getType(), frame.getByte(3));
+        // 内存中的附件直接包装原数组，文件附件作为FileRegion写出
+        ByteBuf wrapped = encoderChannel.readOutbound();
+        assertSame(bytes, wrapped.array());
+        FileRegion region = encoderChannel.readOutbound();
+        assertEquals(2000, region.count());
+        ByteArrayOutputStream fileContent = new ByteArrayOutputStream();
+        region.transferTo(Channels.newChannel(fileContent), 0);
+        region.release();
+        ByteBuf encoded = Unpooled.wrappedBuffer(frame, wrapped, Unpooled.wrappedBuffer(fileContent.toByteArray()));
+
+        // 附件数据分多次到达时，全部到达后才输出消息
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        while (encoded.isReadable()) {
+            decoderChannel.writeInbound(encoded.readRetainedSlice(Math.min(97, encoded.readableBytes())));
+        }
+        encoded.release();
+        RpcProtocol<RpcRequest> decoded = decoderChannel.readInbound();
+        assertEquals(RpcType.REQUEST.getType(), decoded.getHeader().getMessageType());
+        Object[] parameters = decoded.getBody().getParameters();
+        assertEquals("name", parameters[0]);
+        assertArrayEquals(bytes, ((RpcAttachment) parameters[1]).toByteArray());
+        assertEquals(ByteBuffer.wrap(bytes, 100, 2000), ((RpcAttachment) parameters[2]).asByteBuffer());
+        assertNull(decoderChannel.readInbound());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testAttachmentTooLong() {
+        RpcProtocol<RpcRequest> protocol = newRequest(0);
+        protocol.getBody().setParameters(new Object[]{RpcAttachment.wrap(new byte[4096])});
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf frame = encoderChannel.readOutbound();
+        ByteBuf attachment = encoderChannel.readOutbound();
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder(RpcConstants.MAX_FRAME_LENGTH, RpcConstants.MAX_CHUNKED_MESSAGE_LENGTH, 1024));
+        assertThrows(TooLongFrameException.class, () -> decoderChannel.writeInbound(frame));
+        assertFalse(decoderChannel.isOpen());
+        assertNull(decoderChannel.readInbound());
+        attachment.release();
+    }
+
+    @Test
+    void testAttachmentAllocatedOnArrival() {
+        // 很小的帧声明接近上限的附件长度，收到帧时不按声明的长度分配接收缓冲区
+        RpcProtocol<RpcRequest> declared = newRequest(0);
+        declared.getBody().setParameters(new Object[]{RpcAttachment.wrap(new byte[16])});
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(declared));
+        ByteBuf frame = encoderChannel.readOutbound();
+        ((ByteBuf) encoderChannel.readOutbound()).release();
+        frame.setInt(RpcConstants.HEADER_TOTAL_LEN + 5, RpcConstants.MAX_ATTACHMENT_LENGTH);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        assertFalse(decoderChannel.writeInbound(frame, Unpooled.wrappedBuffer(new byte[16])));
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertTrue(allocated < 1024 * 1024, "allocated: " + allocated);
+        assertTrue(decoderChannel.isOpen());
+        decoderChannel.finishAndReleaseAll();
+
+        // 附件数据分多次到达时接收缓冲区随数据扩容，内容与原附件一致
+        byte[] bytes = new byte[200 * 1024];
+        new Random(2).nextBytes(bytes);
+        RpcProtocol<RpcRequest> protocol = newRequest(0);
+        protocol.getBody().setParameters(new Object[]{RpcAttachment.wrap(bytes)});
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf attachedFrame = encoderChannel.readOutbound();
+        ByteBuf encoded = Unpooled.wrappedBuffer(attachedFrame, encoderChannel.readOutbound());
+        EmbeddedChannel growingChannel = new EmbeddedChannel(new RpcDecoder());
+        while (encoded.isReadable()) {
+            growingChannel.writeInbound(encoded.readRetainedSlice(Math.min(30000, encoded.readableBytes())));
+        }
+        encoded.release();
+        RpcProtocol<RpcRequest> decoded = growingChannel.readInbound();
+        assertArrayEquals(bytes, ((RpcAttachment) decoded.getBody().getParameters()[0]).toByteArray());
+        assertFalse(growingChannel.finish());
+        assertFalse(encoderChannel.finish());
+    }
+
+    @Test
+    void testMethodIdRoundTrip() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        RpcProtocol<RpcRequest> first = newRequest(0);
+        first.getBody().setParameterTypes(new Class<?>[]{String.class});
+        first.getBody().setParameters(new Object[]{"a"});
+        RpcProtocol<RpcRequest> second = newRequest(0);
+        second.getBody().setParameterTypes(new Class<?>[]{String.class});
+        second.getBody().setParameters(new Object[]{"b"});
+        assertTrue(encoderChannel.writeOutbound(first, second));
+        ByteBuf firstFrame = encoderChannel.readOutbound();
+        ByteBuf secondFrame = encoderChannel.readOutbound();
+        // 第二次调用只发送方法ID，原请求不被修改
+        assertTrue(secondFrame.readableBytes() < firstFrame.readableBytes());
+        assertEquals("demo.HelloService", second.getBody().getClassName());
+        assertEquals(0, second.getBody().getMethodId());
+
+        assertTrue(decoderChannel.writeInbound(firstFrame, secondFrame));
+        RpcProtocol<RpcRequest> decodedFirst = decoderChannel.readInbound();
+        RpcProtocol<RpcRequest> decodedSecond = decoderChannel.readInbound();
+        assertEquals(1, decodedFirst.getBody().getMethodId());
+        assertEquals(1, decodedSecond.getBody().getMethodId());
+        assertEquals("demo.HelloService", decodedSecond.getBody().getClassName());
+        assertEquals("hello", decodedSecond.getBody().getMethodName());
+        assertArrayEquals(new Class<?>[]{String.class}, decodedSecond.getBody().getParameterTypes());
+        assertArrayEquals(new Object[]{"b"}, decodedSecond.getBody().getParameters());
+
+        // 另一个连接的解码器没有登记该方法ID，请求保持原样
+        RpcProtocol<RpcRequest> third = newRequest(0);
+        third.getBody().setParameterTypes(new Class<?>[]{String.class});
+        assertTrue(encoderChannel.writeOutbound(third));
+        EmbeddedChannel otherDecoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(otherDecoderChannel.writeInbound((Object) encoderChannel.readOutbound()));
+        RpcProtocol<RpcRequest> decodedThird = otherDecoderChannel.readInbound();
+        assertEquals(1, decodedThird.getBody().getMethodId());
+        assertNull(decodedThird.getBody().getClassName());
+        assertFalse(decoderChannel.finish());
+        assertFalse(otherDecoderChannel.finish());
+    }
+
+    @Test
+    void testEnvelopeRoundTrip() {
+        RpcProtocol<RpcRequest> protocol = newRequest(0);
+        RpcRequest request = protocol.getBody();
+        request.setVersion("1.0.0");
+        request.setGroup("测试");
+        request.setParameterTypes(new Class<?>[]{int.class, String[].class});
+        request.setParameters(new Object[]{7, new String[]{"a", null}});
+        request.setTimeout(3000);
+        request.setAsync(true);
+        request.setStream(true);
+        RpcProtocol<RpcResponse> success = newResponse(null, List.of(1, 2));
+        RpcProtocol<RpcResponse> failure = newResponse("java.lang.IllegalStateException: 失败", null);
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(protocol, success, failure));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(encoderChannel.readOutbound(), encoderChannel.readOutbound(), encoderChannel.readOutbound()));
+
+        RpcRequest decoded = ((RpcProtocol<RpcRequest>) decoderChannel.readInbound()).getBody();
+        assertEquals("demo.HelloService", decoded.getClassName());
+        assertEquals("hello", decoded.getMethodName());
+        assertEquals("1.0.0", decoded.getVersion());
+        assertEquals("测试", decoded.getGroup());
+        assertArrayEquals(new Class<?>[]{int.class, String[].class}, decoded.getParameterTypes());
+        assertEquals(7, decoded.getParameters()[0]);
+        assertArrayEquals(new String[]{"a", null}, (String[]) decoded.getParameters()[1]);
+        assertEquals(3000, decoded.getTimeout());
+        assertTrue(decoded.getAsync());
+        assertTrue(decoded.getStream());
+        assertFalse(decoded.getOneway());
+        assertFalse(decoded.getRequestStream());
+
+        RpcResponse decodedSuccess = ((RpcProtocol<RpcResponse>) decoderChannel.readInbound()).getBody();
+        assertFalse(decodedSuccess.isError());
+        assertEquals(List.of(1, 2), decodedSuccess.getResult());
+        RpcResponse decodedFailure = ((RpcProtocol<RpcResponse>) decoderChannel.readInbound()).getBody();
+        assertEquals("java.lang.IllegalStateException: 失败", decodedFailure.getError());
+        assertNull(decodedFailure.getResult());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testInvalidParameterTypeCount() {
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(0);
+        data.writeInt(0);
+        data.writeLong(0);
+        for (int i = 0; i < 4; i++) {
+            data.writeShort(-1);
+        }
+        data.writeShort(-2);
+        data.writeInt(-1);
+        RpcEnvelopeCodec envelopeCodec = new RpcEnvelopeCodec(new JdkSerialization());
+        assertThrows(CorruptedFrameException.class, () -> envelopeCodec.readRequest(data));
+        data.release();
+    }
+
+    @Test
+    void testEncodeFailureRollsBackMethodId() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        RpcProtocol<RpcRequest> broken = newRequest(0);
+        broken.getBody().setParameters(new Object[]{new Object()});
+        assertThrows(Exception.class, () -> encoderChannel.writeOutbound(broken));
+
+        // 编码失败的请求没有写出，下一次调用仍然带有方法签名
+        assertTrue(encoderChannel.writeOutbound(newRequest(0)));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound((Object) encoderChannel.readOutbound()));
+        RpcRequest decoded = ((RpcProtocol<RpcRequest>) decoderChannel.readInbound()).getBody();
+        assertEquals(1, decoded.getMethodId());
+        assertEquals("hello", decoded.getMethodName());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    void testRequestStreamRoundTrip() {
+        RpcStreamMessage data = new RpcStreamMessage();
+        data.setData("chunk");
+        RpcStreamMessage end = new RpcStreamMessage();
+        end.setError("upload failed");
+        RpcStreamMessage credit = new RpcStreamMessage();
+        credit.setCredits(RpcConstants.STREAM_WINDOW);
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(newStreamMessage(RpcType.REQUEST_STREAM_DATA, data),
+                newStreamMessage(RpcType.REQUEST_STREAM_END, end), newStreamMessage(RpcType.REQUEST_STREAM_CREDIT, credit)));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(encoderChannel.readOutbound(), encoderChannel.readOutbound(), encoderChannel.readOutbound()));
+        assertNull(encoderChannel.readOutbound());
+
+        RpcProtocol<RpcStreamMessage> decodedData = decoderChannel.readInbound();
+        assertEquals(RpcType.REQUEST_STREAM_DATA.getType(), decodedData.getHeader().getMessageType());
+        assertEquals(42L, decodedData.getHeader().getRequestId());
+        assertEquals("chunk", decodedData.getBody().getData());
+        RpcProtocol<RpcStreamMessage> decodedEnd = decoderChannel.readInbound();
+        assertEquals(RpcType.REQUEST_STREAM_END.getType(), decodedEnd.getHeader().getMessageType());
+        assertTrue(decodedEnd.getBody().isError());
+        assertEquals("upload failed", decodedEnd.getBody().getError());
+        RpcProtocol<RpcStreamMessage> decodedCredit = decoderChannel.readInbound();
+        assertEquals(RpcType.REQUEST_STREAM_CREDIT.getType(), decodedCredit.getHeader().getMessageType());
+        assertEquals(RpcConstants.STREAM_WINDOW, decodedCredit.getBody().getCredits());
+        assertFalse(decoderChannel.finish());
+    }
+
+    private static RpcProtocol<RpcStreamMessage> newStreamMessage(RpcType type, RpcStreamMessage message) {
+        RpcProtocol<RpcStreamMessage> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getStreamHeader(RpcConstants.SERIALIZATION_JDK, type, 42L));
+        protocol.setBody(message);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcResponse> newResponse(String error, Object result) {
+        RpcHeader header = RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK);
+        header.setMessageType((byte) RpcType.RESPONSE.getType());
+        RpcResponse response = new RpcResponse();
+        response.setError(error);
+        response.setResult(result);
+        RpcProtocol<RpcResponse> protocol = new RpcProtocol<>();
+        protocol.setHeader(header);
+        protocol.setBody(response);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest(long deadline) {
+        RpcHeader header = RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK);
+        header.setDeadline(deadline);
+        RpcRequest request = new RpcRequest();
+        request.setClassName("demo.HelloService");
+        request.setMethodName("hello");
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(header);
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcRequest> roundTrip(long deadline) {
+        RpcProtocol<RpcRequest> protocol = newRequest(deadline);
+        RpcHeader header = protocol.getHeader();
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new RpcEncoder());
+        assertTrue(encoderChannel.writeOutbound(protocol));
+        ByteBuf encoded = encoderChannel.readOutbound();
+        assertEquals(RpcConstants.HEADER_TOTAL_LEN, encoded.readableBytes() - encoded.getInt(RpcConstants.HEADER_TOTAL_LEN - 4));
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new RpcDecoder());
+        assertTrue(decoderChannel.writeInbound(encoded));
+        RpcProtocol<RpcRequest> decoded = decoderChannel.readInbound();
+        assertEquals(header.getRequestId(), decoded.getHeader().getRequestId());
+        assertFalse(decoderChannel.finish());
+        return decoded;
+    }
+}
@@ -0,0 +1,64 @@
+package com.rain.rpc.codec.heartbeat;
+
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcHeartbeatHandler测试类
+ */
+public class RpcHeartbeatHandlerTest {
+
+    @Test
+    void testReplyPongToPing() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcHeartbeatHandler());
+        RpcProtocol<RpcRequest> ping = new RpcProtocol<>();
+        ping.setHeader(RpcHeaderFactory.getHeartbeatHeader(RpcConstants.SERIALIZATION_JDK, RpcType.HEARTBEAT, 7L));
+        assertFalse(channel.writeInbound(ping));
+
+        RpcProtocol<?> pong = channel.readOutbound();
+        assertEquals(RpcType.HEARTBEAT_PONG.getType(), pong.getHeader().getMessageType());
+        assertEquals(7L, pong.getHeader().getRequestId());
+        assertNull(pong.getBody());
+    }
+
+    @Test
+    void testPassOtherMessages() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcHeartbeatHandler());
+        RpcProtocol<RpcRequest> request = new RpcProtocol<>();
+        request.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        request.setBody(new RpcRequest());
+        assertTrue(channel.writeInbound(request));
+        assertSame(request, channel.readInbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void testCloseAfterMissedHeartbeats() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcHeartbeatHandler(3));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        RpcProtocol<?> ping = channel.readOutbound();
+        assertEquals(RpcType.HEARTBEAT.getType(), ping.getHeader().getMessageType());
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertNotNull(channel.readOutbound());
+        assertTrue(channel.isActive());
+
+        // 读到消息后重新计数
+        RpcProtocol<RpcRequest> pong = new RpcProtocol<>();
+        pong.setHeader(RpcHeaderFactory.getHeartbeatHeader(RpcConstants.SERIALIZATION_JDK, RpcType.HEARTBEAT_PONG, 1L));
+        channel.writeInbound(pong);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isActive());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isActive());
+    }
+}
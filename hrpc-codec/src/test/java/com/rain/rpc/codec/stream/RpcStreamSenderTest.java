@@ -0,0 +1,109 @@
+package com.rain.rpc.codec.stream;
+
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcStreamSender测试类
+ * 拉取Iterator的任务直接在调用线程中执行，写出的消息从EmbeddedChannel中读取
+ */
+public class RpcStreamSenderTest {
+
+    private static List<RpcProtocol<RpcStreamMessage>> readFrames(EmbeddedChannel channel) {
+        channel.runPendingTasks();
+        List<RpcProtocol<RpcStreamMessage>> frames = new ArrayList<>();
+        RpcProtocol<RpcStreamMessage> frame;
+        while ((frame = channel.readOutbound()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Test
+    void testIteratorSendsOnlyGrantedCredits() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicBoolean terminated = new AtomicBoolean();
+        RpcStreamSender stream = new RpcStreamSender(9L, RpcConstants.SERIALIZATION_JDK, RpcType.STREAM_DATA, RpcType.STREAM_END, new WriteQueue(channel), Runnable::run, () -> terminated.set(true));
+        stream.start(IntStream.range(0, 5).iterator());
+        assertTrue(readFrames(channel).isEmpty());
+
+        stream.addCredits(3);
+        List<RpcProtocol<RpcStreamMessage>> frames = readFrames(channel);
+        assertEquals(3, frames.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RpcType.STREAM_DATA.getType(), frames.get(i).getHeader().getMessageType());
+            assertEquals(9L, frames.get(i).getHeader().getRequestId());
+            assertEquals(i, frames.get(i).getBody().getData());
+        }
+        assertFalse(terminated.get());
+
+        stream.addCredits(10);
+        frames = readFrames(channel);
+        assertEquals(3, frames.size());
+        assertEquals(4, frames.get(1).getBody().getData());
+        RpcProtocol<RpcStreamMessage> end = frames.get(2);
+        assertEquals(RpcType.STREAM_END.getType(), end.getHeader().getMessageType());
+        assertEquals(RpcStatus.SUCCESS.getCode(), end.getHeader().getStatus());
+        assertTrue(terminated.get());
+    }
+
+    @Test
+    void testPublisherReceivesCreditsGrantedBeforeSubscribe() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RpcStreamSender stream = new RpcStreamSender(9L, RpcConstants.SERIALIZATION_JDK, RpcType.STREAM_DATA, RpcType.STREAM_END, new WriteQueue(channel), Runnable::run, () -> { });
+        AtomicLong requested = new AtomicLong();
+        stream.addCredits(2);
+        stream.start((Flow.Publisher<Object>) subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+                subscriber.onNext("item");
+            }
+
+            @Override
+            public void cancel() {
+            }
+        }));
+        stream.addCredits(5);
+        assertEquals(7, requested.get());
+        assertEquals(2, readFrames(channel).size());
+    }
+
+    @Test
+    void testCancelStopsWithoutEndFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicBoolean terminated = new AtomicBoolean();
+        RpcStreamSender stream = new RpcStreamSender(9L, RpcConstants.SERIALIZATION_JDK, RpcType.STREAM_DATA, RpcType.STREAM_END, new WriteQueue(channel), Runnable::run, () -> terminated.set(true));
+        stream.start(IntStream.range(0, 5).iterator());
+        stream.cancel();
+        stream.addCredits(10);
+        assertTrue(readFrames(channel).isEmpty());
+        assertTrue(terminated.get());
+    }
+
+    @Test
+    void testFailSendsErrorEndFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RpcStreamSender stream = new RpcStreamSender(9L, RpcConstants.SERIALIZATION_JDK, RpcType.STREAM_DATA, RpcType.STREAM_END, new WriteQueue(channel), Runnable::run, () -> { });
+        stream.fail(new IllegalStateException("boom"));
+        List<RpcProtocol<RpcStreamMessage>> frames = readFrames(channel);
+        assertEquals(1, frames.size());
+        assertEquals(RpcStatus.FAIL.getCode(), frames.get(0).getHeader().getStatus());
+        assertTrue(frames.get(0).getBody().getError().contains("boom"));
+    }
+}
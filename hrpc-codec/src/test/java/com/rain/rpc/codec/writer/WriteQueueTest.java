@@ -0,0 +1,206 @@
+package com.rain.rpc.codec.writer;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WriteQueue测试类
+ * 验证多个生产者线程入队时的写出顺序、一次写出任务的上限，以及两种入队方式的完成和失败通知
+ */
+public class WriteQueueTest {
+
+    @Test
+    void testOrderAcrossProducerThreads() throws Exception {
+        int producers = 4;
+        int perProducer = 2000;
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("write-queue-test");
+        try {
+            Channel server = new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInitializer<LocalChannel>() {
+                        @Override
+                        protected void initChannel(LocalChannel ch) {
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                    received.add((String) msg);
+                                    done.countDown();
+                                }
+                            });
+                        }
+                    }).bind(address).sync().channel();
+            Channel client = new Bootstrap().group(group).channel(LocalChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter()).connect(address).sync().channel();
+            WriteQueue writeQueue = new WriteQueue(client, 16, 64);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        if (i % 2 == 0) {
+                            writeQueue.enqueue(producer + ":" + i);
+                        } else {
+                            writeQueue.enqueueVoid(producer + ":" + i);
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // 不同生产者的消息可以交错，同一生产者的消息按入队顺序到达
+            int[] next = new int[producers];
+            synchronized (received) {
+                for (String msg : received) {
+                    int separator = msg.indexOf(':');
+                    int producer = Integer.parseInt(msg.substring(0, separator));
+                    assertEquals(next[producer]++, Integer.parseInt(msg.substring(separator + 1)));
+                }
+            }
+            for (int count : next) {
+                assertEquals(perProducer, count);
+            }
+            client.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    void testDrainIsCappedAndRescheduled() throws Exception {
+        List<Object> events = Collections.synchronizedList(new ArrayList<>());
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            // 写出和flush在记录后直接完成，不需要连接到对端
+            Channel channel = new Bootstrap().group(group).channel(LocalChannel.class)
+                    .handler(new ChannelOutboundHandlerAdapter() {
+                        @Override
+                        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                            events.add(msg);
+                            promise.trySuccess();
+                        }
+
+                        @Override
+                        public void flush(ChannelHandlerContext ctx) {
+                            events.add("flush");
+                        }
+                    }).register().sync().channel();
+            WriteQueue writeQueue = new WriteQueue(channel, 2, 3);
+            CountDownLatch done = new CountDownLatch(1);
+            channel.eventLoop().execute(() -> {
+                for (int i = 0; i < 5; i++) {
+                    writeQueue.enqueueVoid(i);
+                }
+                // 在写出任务之后提交的任务，第一次写出任务达到上限后就能执行，不需要等待队列写空
+                channel.eventLoop().execute(() -> events.add("task"));
+                channel.eventLoop().execute(done::countDown);
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            channel.eventLoop().submit(() -> { }).sync();
+
+            assertEquals(List.of(0, 1, "flush", 2, "flush", "task", 3, 4, "flush"), events);
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    void testEnqueueCompletesAfterWrite() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        WriteQueue writeQueue = new WriteQueue(channel);
+        ChannelFuture future = writeQueue.enqueue("first");
+        writeQueue.enqueueVoid("second");
+        assertFalse(future.isDone());
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        assertTrue(future.isSuccess());
+        assertEquals("first", channel.readOutbound());
+        assertEquals("second", channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void testWriteFailurePropagates() {
+        IllegalStateException failure = new IllegalStateException("write failed");
+        AtomicReference<Throwable> caught = new AtomicReference<>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                promise.setFailure(failure);
+            }
+        }, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                caught.set(cause);
+            }
+        });
+        WriteQueue writeQueue = new WriteQueue(channel);
+
+        // 关心结果的消息通过返回的Future得到失败原因
+        ChannelFuture future = writeQueue.enqueue("first");
+        channel.runPendingTasks();
+        assertSame(failure, future.cause());
+        assertNull(caught.get());
+
+        // 不关心结果的消息写出失败时与voidPromise一样触发exceptionCaught
+        writeQueue.enqueueVoid("second");
+        channel.runPendingTasks();
+        assertSame(failure, caught.get());
+        assertTrue(channel.isOpen());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testClosedEventLoopFailsPendingWrites() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        Channel channel = new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter()).register().sync().channel();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+
+        ChannelFuture future = new WriteQueue(channel).enqueue("late");
+        assertTrue(future.await(1, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertNotNull(future.cause());
+    }
+}
@@ -0,0 +1,298 @@
+package com.rain.rpc.common.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以基本类型long为键的分段并发Map
+ * 用于维护请求ID与等待响应对象的映射关系，位于每次调用的热点路径上
+ *
+ * 设计说明：
+ * 1. 键直接保存在long[]中，不对请求ID装箱，也不为每个条目分配节点对象
+ * 2. 按键的散列值划分为若干段，每段独立加锁，多个线程同时读写时只在同一段上竞争
+ * 3. 段内使用开放寻址+线性探测，删除时采用后移（backward shift）方式，不留墓碑
+ * 4. 段内装载因子超过1/2时容量翻倍，保证探测链足够短
+ * 5. 不支持null值，value为null表示槽位空闲
+ *
+ * @param <V> 值类型
+ */
+public class StripedLongObjectMap<V> {
+
+    /**
+     * 每段的初始容量，必须是2的幂
+     */
+    private static final int DEFAULT_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    private final int stripeShift;
+
+    public StripedLongObjectMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param concurrencyLevel 预期的并发写线程数，实际段数会向上取整为2的幂
+     */
+    public StripedLongObjectMap(int concurrencyLevel) {
+        int stripeCount = 1;
+        while (stripeCount < concurrencyLevel && stripeCount < (1 << 16)) {
+            stripeCount <<= 1;
+        }
+        this.stripeMask = stripeCount - 1;
+        this.stripeShift = Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(DEFAULT_STRIPE_CAPACITY, stripeShift);
+        }
+    }
+
+    /**
+     * 放入键值对
+     *
+     * @return 该键原来对应的值，不存在时返回null
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int hash = hash(key);
+        Stripe stripe = stripes[hash & stripeMask];
+        synchronized (stripe) {
+            return stripe.put(key, hash >>> stripeShift, value);
+        }
+    }
+
+    /**
+     * 获取键对应的值
+     *
+     * @return 键不存在时返回null
+     */
+    public V get(long key) {
+        int hash = hash(key);
+        Stripe stripe = stripes[hash & stripeMask];
+        synchronized (stripe) {
+            return stripe.get(key, hash >>> stripeShift);
+        }
+    }
+
+    /**
+     * 键存在时替换为新值，键不存在时不做任何修改
+     *
+     * @return 该键原来对应的值，不存在时返回null
+     */
+    public V replace(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int hash = hash(key);
+        Stripe stripe = stripes[hash & stripeMask];
+        synchronized (stripe) {
+            return stripe.replace(key, hash >>> stripeShift, value);
+        }
+    }
+
+    /**
+     * 移除键对应的值
+     *
+     * @return 被移除的值，键不存在时返回null
+     */
+    public V remove(long key) {
+        int hash = hash(key);
+        Stripe stripe = stripes[hash & stripeMask];
+        synchronized (stripe) {
+            return stripe.remove(key, hash >>> stripeShift);
+        }
+    }
+
+    /**
+     * 逐段移除并返回全部值，用于连接断开时统一处理所有未完成的请求
+     */
+    public List<V> removeAll() {
+        List<V> removed = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.drainTo(removed);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前条目数，并发修改时只是近似值
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.size > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 请求ID是连续递增的，先做一次乘法散列把相邻的键打散到不同的段和槽位
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 单个段，所有方法都在持有该段的锁时调用
+     */
+    @SuppressWarnings("unchecked")
+    private static final class Stripe {
+
+        private long[] keys;
+
+        private Object[] values;
+
+        private int mask;
+
+        private int size;
+
+        /**
+         * 段内槽位使用散列值去掉段下标后的高位部分
+         */
+        private final int shift;
+
+        Stripe(int capacity, int shift) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.shift = shift;
+        }
+
+        <V> V get(long key, int hash) {
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return (V) value;
+                }
+            }
+        }
+
+        <V> V put(long key, int hash, V value) {
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Object old = values[i];
+                    values[i] = value;
+                    return (V) old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size > (mask + 1) >>> 1) {
+                resize();
+            }
+            return null;
+        }
+
+        <V> V replace(long key, int hash, V value) {
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                Object old = values[i];
+                if (old == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return (V) old;
+                }
+            }
+        }
+
+        <V> V remove(long key, int hash) {
+            int i = hash & mask;
+            for (; ; i = (i + 1) & mask) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    shiftBack(i);
+                    size--;
+                    return (V) value;
+                }
+            }
+        }
+
+        <V> void drainTo(List<V> target) {
+            if (size == 0) {
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    target.add((V) values[i]);
+                    values[i] = null;
+                }
+            }
+            size = 0;
+        }
+
+        /**
+         * 清空槽位free，并把其后同一探测链上的条目依次前移，保证后续查找不会因为空洞而提前结束
+         */
+        private void shiftBack(int free) {
+            int i = free;
+            while (true) {
+                i = (i + 1) & mask;
+                if (values[i] == null) {
+                    break;
+                }
+                int home = slot(keys[i]);
+                // 条目的理想位置落在(free, i]区间内时不能移动，否则会移到理想位置之前
+                boolean stay = free <= i ? (free < home && home <= i) : (free < home || home <= i);
+                if (!stay) {
+                    keys[free] = keys[i];
+                    values[free] = values[i];
+                    free = i;
+                }
+            }
+            values[free] = null;
+        }
+
+        private int slot(long key) {
+            return (hash(key) >>> shift) & mask;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int capacity = oldValues.length << 1;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            for (int j = 0; j < oldValues.length; j++) {
+                Object value = oldValues[j];
+                if (value == null) {
+                    continue;
+                }
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.rain.rpc.common.context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用截止时间上下文
+ * 服务提供者执行请求时，在业务线程中保存消费者传递过来的截止时间
+ *
+ * 设计说明：
+ * 1. 截止时间使用本地的System.nanoTime()表示，由协议头中的剩余超时时间换算得到，不依赖两端时钟同步
+ * 2. 业务代码可以通过getRemainingTime获取剩余的时间预算，决定是否继续执行耗时操作
+ * 3. 在同一线程中发起的下游RPC调用会自动使用该截止时间与自身超时时间中较早的一个，截止时间已过时直接失败
+ * 4. 使用普通的ThreadLocal，截止时间只在执行请求的线程中有效，业务代码切换线程时需要自行传递
+ */
+public class DeadlineContext {
+
+    /**
+     * 私有构造函数，防止外部实例化
+     */
+    private DeadlineContext() {
+    }
+
+    private static final DeadlineContext INSTANCE = new DeadlineContext();
+
+    /**
+     * 存放截止时间（纳秒）的ThreadLocal
+     */
+    private static final ThreadLocal<Long> DEADLINE_THREAD_LOCAL = new ThreadLocal<>();
+
+    /**
+     * 获取DeadlineContext单例实例
+     *
+     * @return DeadlineContext单例
+     */
+    public static DeadlineContext getContext() {
+        return INSTANCE;
+    }
+
+    /**
+     * 设置当前线程的截止时间
+     *
+     * @param deadlineNanos 以System.nanoTime()表示的截止时间，为0时表示不限制
+     */
+    public void setDeadline(long deadlineNanos) {
+        if (deadlineNanos == 0) {
+            DEADLINE_THREAD_LOCAL.remove();
+        } else {
+            DEADLINE_THREAD_LOCAL.set(deadlineNanos);
+        }
+    }
+
+    /**
+     * 获取当前线程的截止时间
+     *
+     * @return 以System.nanoTime()表示的截止时间，未设置时为0
+     */
+    public long getDeadline() {
+        Long deadline = DEADLINE_THREAD_LOCAL.get();
+        return deadline == null ? 0 : deadline;
+    }
+
+    /**
+     * 当前线程是否设置了截止时间
+     */
+    public boolean hasDeadline() {
+        return DEADLINE_THREAD_LOCAL.get() != null;
+    }
+
+    /**
+     * 获取距离截止时间的剩余时间
+     *
+     * @param unit 时间单位
+     * @return 剩余时间，已经超过截止时间时小于等于0，未设置截止时间时为Long.MAX_VALUE
+     */
+    public long getRemainingTime(TimeUnit unit) {
+        Long deadline = DEADLINE_THREAD_LOCAL.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 是否已经超过截止时间
+     */
+    public boolean isExpired() {
+        Long deadline = DEADLINE_THREAD_LOCAL.get();
+        return deadline != null && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 清除当前线程的截止时间
+     */
+    public void removeDeadline() {
+        DEADLINE_THREAD_LOCAL.remove();
+    }
+}
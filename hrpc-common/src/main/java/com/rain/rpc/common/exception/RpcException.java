@@ -0,0 +1,33 @@
+package com.rain.rpc.common.exception;
+
+public class RpcException extends RuntimeException {
+    private static final long serialVersionUID = -2954862105396578542L;
+
+    /**
+     * Instantiates a new Rpc exception.
+     *
+     * @param e the e
+     */
+    public RpcException(final Throwable e) {
+        super(e);
+    }
+
+    /**
+     * Instantiates a new Rpc exception.
+     *
+     * @param message the message
+     */
+    public RpcException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Instantiates a new Rpc exception.
+     *
+     * @param message   the message
+     * @param throwable the throwable
+     */
+    public RpcException(final String message, final Throwable throwable) {
+        super(message, throwable);
+    }
+}
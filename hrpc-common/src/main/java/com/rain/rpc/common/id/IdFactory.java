@@ -6,7 +6,7 @@ public class IdFactory {
 
     private final static AtomicLong REQUEST_ID_GEN = new AtomicLong(0);
 
-    public static Long getId(){
+    public static long getId(){
         return REQUEST_ID_GEN.incrementAndGet();
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.rain.rpc.common.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 调用延迟统计
+ * 使用对数分桶的直方图记录延迟，用于估算近期调用延迟的分位数
+ *
+ * 设计说明：
+ * 1. 以微秒为单位分桶，每个2的幂区间再均分为8个子桶，估算的分位数相对误差不超过12.5%
+ * 2. 记录一次延迟只需要两次原子自增，不加锁，也不分配对象
+ * 3. 每记录DECAY_WINDOW个样本，所有桶的计数减半，分位数主要由最近的调用决定，能够跟随延迟的变化
+ * 4. 衰减与并发记录之间不做同步，个别样本的丢失不影响分位数的估算
+ * 5. 分位数返回所在桶的上界，宁可偏大
+ */
+public class LatencyRecorder {
+
+    /**
+     * 每个2的幂区间的子桶数为2^SUB_BUCKET_BITS
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 可记录的最大延迟（微秒），约35分钟，超过时按最大值记录
+     */
+    private static final long MAX_MICROS = Integer.MAX_VALUE;
+
+    private static final int BUCKET_COUNT = bucketIndex(MAX_MICROS) + 1;
+
+    /**
+     * 衰减窗口，每记录该数量的样本，所有桶的计数减半
+     */
+    private static final int DECAY_WINDOW = 1024;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 累计记录的样本数，不随衰减减少
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * 记录一次调用延迟
+     *
+     * @param latencyNanos 调用延迟（纳秒）
+     */
+    public void record(long latencyNanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 0), MAX_MICROS);
+        buckets.incrementAndGet(bucketIndex(micros));
+        if (count.incrementAndGet() % DECAY_WINDOW == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * 累计记录的样本数
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 估算延迟的分位数
+     *
+     * @param percentile 分位数，取值范围(0, 1]
+     * @return 延迟（纳秒），没有样本时返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return TimeUnit.MICROSECONDS.toNanos(bucketUpperBound(i));
+            }
+        }
+        // 计算期间有并发衰减时可能走到这里
+        return TimeUnit.MICROSECONDS.toNanos(MAX_MICROS);
+    }
+
+    private void decay() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long value;
+            do {
+                value = buckets.get(i);
+            } while (value != 0 && !buckets.compareAndSet(i, value, value >>> 1));
+        }
+    }
+
+    /**
+     * 小于SUB_BUCKET_COUNT的值每个值一个桶；更大的值按最高位所在的2的幂区间分组，
+     * 区间内按最高位之后的SUB_BUCKET_BITS位再分为SUB_BUCKET_COUNT个子桶
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((micros >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * 桶内的最大值（微秒）
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
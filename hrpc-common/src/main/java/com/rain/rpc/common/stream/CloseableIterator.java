@@ -0,0 +1,18 @@
+package com.rain.rpc.common.stream;
+
+import java.util.Iterator;
+
+/**
+ * 可以关闭的迭代器
+ * 流式调用的接口方法返回该类型时，调用方可以在try-with-resources中遍历，提前结束遍历时关闭迭代器取消流
+ *
+ * @param <T> 元素类型
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * 不再遍历时取消流，之后hasNext返回false
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,305 @@
+package com.rain.rpc.common.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * 流接收端的订阅
+ * 连接在IO线程中收到的流数据由该订阅转交给订阅者，订阅者的请求数量转换为发送给对端的额度。
+ * 服务消费者用它接收响应流，服务提供者用它接收请求流
+ *
+ * 设计说明：
+ * 1. onSubscribe、onNext、onError和onComplete按顺序放入队列，在回调执行器中串行执行，不占用IO线程，
+ *    同一时刻只有一个线程调用订阅者
+ * 2. 每个流有独立的窗口，已授予但还没有交给订阅者的额度不超过窗口大小，订阅者请求的数量超过窗口时分批授予，
+ *    每交给订阅者一个元素就补充一个额度；订阅者请求Long.MAX_VALUE时单个流也不会占满连接，同一连接上的其他调用不会被饿死
+ * 3. 连接绑定前订阅者请求的数量先累积，绑定后按窗口授予
+ * 4. 订阅者取消后丢弃队列中的元素，并通知对端停止发送
+ * 5. 流只结束一次，结束后不再向订阅者发送任何信号
+ */
+public class RpcStreamSubscription implements Flow.Subscription {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpcStreamSubscription.class);
+
+    /**
+     * 正常结束的信号
+     */
+    private static final Object COMPLETE = new Object();
+
+    /**
+     * 订阅者的onSubscribe信号
+     */
+    private static final Object SUBSCRIBE = new Object();
+
+    private final Flow.Subscriber<Object> subscriber;
+
+    private final Executor executor;
+
+    /**
+     * 窗口大小，即已授予但还没有交给订阅者的额度上限
+     */
+    private final long window;
+
+    private final Queue<Object> signals = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final Runnable drainTask = this::drain;
+
+    /**
+     * 向对端发送额度，连接绑定前为null
+     */
+    private LongConsumer creditSender;
+
+    /**
+     * 通知对端取消流，连接绑定前为null
+     */
+    private Runnable cancelHook;
+
+    /**
+     * 订阅者请求但还没有授予对端的数量
+     */
+    private long demand;
+
+    /**
+     * 已授予对端但还没有交给订阅者的额度
+     */
+    private long outstanding;
+
+    private volatile boolean cancelled;
+
+    /**
+     * 是否已经放入结束信号，只在放入信号时访问
+     */
+    private boolean terminated;
+
+    /**
+     * 是否已经向订阅者发送了结束信号，只在回调执行器中访问
+     */
+    private boolean done;
+
+    /**
+     * @param subscriber 订阅者
+     * @param executor   调用订阅者的回调执行器
+     * @param window     窗口大小
+     */
+    public RpcStreamSubscription(Flow.Subscriber<? super Object> subscriber, Executor executor, int window) {
+        @SuppressWarnings("unchecked")
+        Flow.Subscriber<Object> s = (Flow.Subscriber<Object>) subscriber;
+        this.subscriber = s;
+        this.executor = executor;
+        this.window = window;
+    }
+
+    /**
+     * 向订阅者发送onSubscribe，在发出请求之前调用
+     */
+    public void start() {
+        this.signal(SUBSCRIBE);
+    }
+
+    /**
+     * 绑定连接，之后订阅者的请求数量按窗口作为额度发送
+     *
+     * @param creditSender 向对端发送额度
+     * @param cancelHook   通知对端取消流
+     */
+    public void bind(LongConsumer creditSender, Runnable cancelHook) {
+        synchronized (this) {
+            this.creditSender = creditSender;
+            this.cancelHook = cancelHook;
+        }
+        if (cancelled) {
+            cancelHook.run();
+            return;
+        }
+        this.grantCredits();
+    }
+
+    /**
+     * 收到对端发送的流数据
+     *
+     * @param item 流中的一个元素
+     */
+    public void onData(Object item) {
+        this.signal(item == null ? NullItem.INSTANCE : item);
+    }
+
+    /**
+     * 对端正常结束流
+     */
+    public void onComplete() {
+        this.terminate(COMPLETE);
+    }
+
+    /**
+     * 流异常结束，包括对端返回错误、请求发送失败和连接断开
+     *
+     * @param throwable 失败原因
+     */
+    public void onError(Throwable throwable) {
+        this.terminate(new ErrorSignal(throwable, false));
+    }
+
+    @Override
+    public void request(long n) {
+        if (cancelled) {
+            return;
+        }
+        if (n <= 0) {
+            // 按Reactive Streams规范以onError结束，即使随后已经取消也要发送
+            this.terminate(new ErrorSignal(new IllegalArgumentException("non-positive subscription request: " + n), true));
+            this.cancel();
+            return;
+        }
+        synchronized (this) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+        this.grantCredits();
+    }
+
+    @Override
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        Runnable hook;
+        synchronized (this) {
+            hook = cancelHook;
+        }
+        if (hook != null) {
+            hook.run();
+        }
+        this.scheduleDrain();
+    }
+
+    /**
+     * 在窗口允许的范围内把订阅者的请求数量授予对端
+     */
+    private void grantCredits() {
+        LongConsumer sender;
+        long credits;
+        synchronized (this) {
+            sender = creditSender;
+            credits = Math.min(demand, window - outstanding);
+            if (sender == null || credits <= 0) {
+                return;
+            }
+            demand -= credits;
+            outstanding += credits;
+        }
+        if (!cancelled) {
+            sender.accept(credits);
+        }
+    }
+
+    /**
+     * 一个元素交给了订阅者，窗口中空出一个额度
+     */
+    private void onDelivered() {
+        synchronized (this) {
+            if (outstanding > 0) {
+                outstanding--;
+            }
+        }
+        this.grantCredits();
+    }
+
+    private void terminate(Object signal) {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+        }
+        this.signal(signal);
+    }
+
+    private void signal(Object signal) {
+        signals.offer(signal);
+        this.scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(drainTask);
+        }
+    }
+
+    /**
+     * 在回调执行器中按顺序向订阅者发送信号
+     */
+    private void drain() {
+        int missed = 1;
+        for (;;) {
+            Object signal;
+            while ((signal = signals.poll()) != null) {
+                if (done) {
+                    continue;
+                }
+                if (signal == SUBSCRIBE) {
+                    this.deliver(() -> subscriber.onSubscribe(this));
+                } else if (signal instanceof ErrorSignal error && (error.ignoreCancel || !cancelled)) {
+                    done = true;
+                    this.deliver(() -> subscriber.onError(error.throwable));
+                } else if (cancelled) {
+                    // 取消后不再发送onNext，也不需要发送结束信号
+                    done = true;
+                } else if (signal == COMPLETE) {
+                    done = true;
+                    this.deliver(subscriber::onComplete);
+                } else {
+                    Object item = signal == NullItem.INSTANCE ? null : signal;
+                    this.deliver(() -> subscriber.onNext(item));
+                    this.onDelivered();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 订阅者抛出异常时视为取消订阅
+     */
+    private void deliver(Runnable action) {
+        try {
+            action.run();
+        } catch (Throwable t) {
+            LOGGER.error("Stream subscriber {} throws exception, cancelling subscription", subscriber, t);
+            done = true;
+            this.cancel();
+        }
+    }
+
+    private static final class ErrorSignal {
+
+        private final Throwable throwable;
+
+        /**
+         * 订阅者的调用不合法时产生的错误，取消后仍然需要发送给订阅者
+         */
+        private final boolean ignoreCancel;
+
+        ErrorSignal(Throwable throwable, boolean ignoreCancel) {
+            this.throwable = throwable;
+            this.ignoreCancel = ignoreCancel;
+        }
+    }
+
+    /**
+     * 流中的null元素，ConcurrentLinkedQueue不能保存null
+     */
+    private enum NullItem {
+        INSTANCE
+    }
+}
@@ -0,0 +1,54 @@
+package com.rain.rpc.common.threadpool;
+
+import com.rain.rpc.constants.RpcConstants;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 异步回调执行器
+ * 根据配置的类型获取执行异步回调的Executor
+ */
+public class CallbackExecutors {
+
+    /**
+     * 在调用线程中直接执行
+     */
+    public static final Executor DIRECT = Runnable::run;
+
+    /**
+     * 每个回调一个虚拟线程，按需创建
+     */
+    private static volatile ExecutorService virtualExecutor;
+
+    /**
+     * 根据类型获取回调执行器，类型为空时使用客户端线程池
+     *
+     * @param type 回调执行器类型，pool、direct或virtual
+     * @return 回调执行器
+     */
+    public static Executor getExecutor(String type) {
+        if (type == null || type.isEmpty() || RpcConstants.CALLBACK_EXECUTOR_POOL.equals(type)) {
+            return ClientThreadPool.getExecutor();
+        }
+        if (RpcConstants.CALLBACK_EXECUTOR_DIRECT.equals(type)) {
+            return DIRECT;
+        }
+        if (RpcConstants.CALLBACK_EXECUTOR_VIRTUAL.equals(type)) {
+            return getVirtualExecutor();
+        }
+        throw new IllegalArgumentException("Unsupported callback executor type: " + type);
+    }
+
+    private static ExecutorService getVirtualExecutor() {
+        if (virtualExecutor == null) {
+            synchronized (CallbackExecutors.class) {
+                if (virtualExecutor == null) {
+                    virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("hrpc-callback-", 0).factory());
+                }
+            }
+        }
+        return virtualExecutor;
+    }
+}
@@ -1,18 +1,39 @@
 package com.rain.rpc.common.threadpool;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ClientThreadPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientThreadPool.class);
 
     private static ThreadPoolExecutor threadPoolExecutor;
 
     static{
-        threadPoolExecutor = new ThreadPoolExecutor(16, 16, 600L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(65536));
+        // 队列已满时由提交任务的线程直接执行，避免回调被丢弃
+        threadPoolExecutor = new ThreadPoolExecutor(16, 16, 600L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(65536), (task, executor) -> {
+            if (executor.isShutdown()) {
+                LOGGER.warn("Client thread pool is shutdown, task is discarded: {}", task);
+                return;
+            }
+            LOGGER.warn("Client thread pool is full, run task in caller thread: {}", Thread.currentThread().getName());
+            task.run();
+        });
     }
+
+    /**
+     * 使用execute而不是submit提交，任务抛出的异常不会被Future吞掉
+     */
     public static void submit(Runnable task){
-        threadPoolExecutor.submit(task);
+        threadPoolExecutor.execute(task);
+    }
+
+    public static Executor getExecutor() {
+        return threadPoolExecutor;
     }
 
     public static void shutdown() {
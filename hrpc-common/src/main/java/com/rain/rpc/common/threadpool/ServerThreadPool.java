@@ -1,6 +1,7 @@
 package com.rain.rpc.common.threadpool;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -21,6 +22,17 @@ public class ServerThreadPool {
         threadPoolExecutor.submit(task);
     }
 
+    /**
+     * 直接执行任务，不再包装为Future，调用方自行创建FutureTask以便取消
+     */
+    public static void execute(Runnable task) {
+        threadPoolExecutor.execute(task);
+    }
+
+    public static Executor getExecutor() {
+        return threadPoolExecutor;
+    }
+
     public static void shutdown() {
         threadPoolExecutor.shutdown();
     }
@@ -0,0 +1,48 @@
+package com.rain.rpc.common.timer;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RPC框架共享的时间轮定时器
+ * 用于请求超时清理等大量、短周期且绝大多数会被提前取消的定时任务
+ * <p>
+ * 时间轮的添加和取消都是O(1)操作，相比ScheduledThreadPoolExecutor的堆结构更适合每个请求一个定时任务的场景
+ *
+ * @author rain
+ * @since 1.0.0
+ */
+public class RpcTimer {
+
+    /**
+     * 时间轮每格的时长（毫秒），决定了超时触发的精度
+     */
+    private static final long TICK_DURATION_MS = 10;
+
+    /**
+     * 时间轮的格数
+     */
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("hrpc-timer", true),
+            TICK_DURATION_MS,
+            TimeUnit.MILLISECONDS,
+            TICKS_PER_WHEEL);
+
+    /**
+     * 在指定延迟后执行定时任务
+     *
+     * @param task 定时任务
+     * @param delay 延迟时间
+     * @param unit 时间单位
+     * @return 定时任务句柄，可用于提前取消
+     */
+    public static Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        return TIMER.newTimeout(task, delay, unit);
+    }
+}
@@ -0,0 +1,97 @@
+package com.rain.rpc.common.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 等待响应请求表的put/remove吞吐量基准测试
+ * 16个线程模拟并发发送请求的业务线程，每个线程保持固定数量的在途请求：
+ * 每次操作放入一个新的请求ID，同时移除最早放入的那个，与消费者发送请求、接收响应的过程一致
+ *
+ * 运行方式：直接运行main方法，或先执行mvn test-compile后使用JMH命令行
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class PendingTableBenchmark {
+
+    /**
+     * 每个线程的在途请求数
+     */
+    private static final int IN_FLIGHT = 64;
+
+    private static final Object VALUE = new Object();
+
+    @State(Scope.Benchmark)
+    public static class Tables {
+        final AtomicLong idGen = new AtomicLong();
+        final Map<Long, Object> concurrentHashMap = new ConcurrentHashMap<>();
+        final StripedLongObjectMap<Object> stripedMap = new StripedLongObjectMap<>();
+    }
+
+    @State(Scope.Thread)
+    public static class Window {
+        final long[] ids = new long[IN_FLIGHT];
+        int cursor;
+
+        @Setup
+        public void setup(Tables tables) {
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                long id = tables.idGen.incrementAndGet();
+                ids[i] = id;
+                tables.concurrentHashMap.put(id, VALUE);
+                tables.stripedMap.put(id, VALUE);
+            }
+        }
+
+        long next(long id) {
+            int slot = cursor++ & (IN_FLIGHT - 1);
+            long oldest = ids[slot];
+            ids[slot] = id;
+            return oldest;
+        }
+    }
+
+    @Benchmark
+    public Object concurrentHashMap(Tables tables, Window window) {
+        long id = tables.idGen.incrementAndGet();
+        tables.concurrentHashMap.put(id, VALUE);
+        return tables.concurrentHashMap.remove(window.next(id));
+    }
+
+    @Benchmark
+    public Object stripedLongObjectMap(Tables tables, Window window) {
+        long id = tables.idGen.incrementAndGet();
+        tables.stripedMap.put(id, VALUE);
+        return tables.stripedMap.remove(window.next(id));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PendingTableBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
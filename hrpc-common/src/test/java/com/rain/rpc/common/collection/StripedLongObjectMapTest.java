@@ -0,0 +1,105 @@
+package com.rain.rpc.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StripedLongObjectMap测试类
+ * 用随机操作序列与HashMap对照，覆盖扩容和后移删除的各种探测链情况
+ */
+public class StripedLongObjectMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        StripedLongObjectMap<String> map = new StripedLongObjectMap<>(4);
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertNull(map.get(2L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testReplaceOnlyWhenPresent() {
+        StripedLongObjectMap<String> map = new StripedLongObjectMap<>(4);
+        assertNull(map.replace(1L, "a"));
+        assertNull(map.get(1L));
+        map.put(1L, "a");
+        assertEquals("a", map.replace(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testRandomOperationsMatchHashMap() {
+        // 单段、键空间较小，让探测链足够长并且频繁触发后移删除
+        StripedLongObjectMap<Long> map = new StripedLongObjectMap<>(1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(512);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            if ((i & 1023) == 0) {
+                for (long k = 0; k < 512; k++) {
+                    assertEquals(expected.get(k), map.get(k));
+                }
+            }
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    void testRemoveAll() {
+        StripedLongObjectMap<Long> map = new StripedLongObjectMap<>();
+        for (long i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        List<Long> removed = map.removeAll();
+        assertEquals(1000, removed.size());
+        assertTrue(map.isEmpty());
+        assertNull(map.get(10L));
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        StripedLongObjectMap<Long> map = new StripedLongObjectMap<>();
+        AtomicLong idGen = new AtomicLong();
+        int threads = 16;
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicLong errors = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                long[] window = new long[64];
+                for (int i = 0; i < 100_000; i++) {
+                    int slot = i & 63;
+                    if (i >= 64 && !Long.valueOf(window[slot]).equals(map.remove(window[slot]))) {
+                        errors.incrementAndGet();
+                    }
+                    long id = idGen.incrementAndGet();
+                    map.put(id, id);
+                    window[slot] = id;
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        assertEquals(0, errors.get());
+        assertEquals(threads * 64, map.size());
+    }
+}
@@ -0,0 +1,51 @@
+package com.rain.rpc.common.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencyRecorder测试类
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    void testBucketsAreContiguous() {
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int index = LatencyRecorder.bucketIndex(micros);
+            assertTrue(micros <= LatencyRecorder.bucketUpperBound(index), "micros: " + micros);
+            if (index > 0) {
+                assertTrue(micros > LatencyRecorder.bucketUpperBound(index - 1), "micros: " + micros);
+            }
+        }
+        assertEquals(Integer.MAX_VALUE, LatencyRecorder.bucketUpperBound(LatencyRecorder.bucketIndex(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void testPercentileWithinBucketError() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        assertEquals(0, recorder.getPercentile(0.95));
+        // 1ms到100ms均匀分布，p95约为95ms
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(TimeUnit.MICROSECONDS.toNanos(i * 100L));
+        }
+        assertEquals(1000, recorder.getCount());
+        long p95Micros = TimeUnit.NANOSECONDS.toMicros(recorder.getPercentile(0.95));
+        assertTrue(p95Micros >= 95_000 && p95Micros <= 95_000 * 1.125, "p95: " + p95Micros);
+    }
+
+    @Test
+    void testDecayFollowsRecentLatency() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < 1024; i++) {
+            recorder.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        // 延迟下降后，经过几个衰减窗口，旧样本的影响可以忽略
+        for (int i = 0; i < 1024 * 6; i++) {
+            recorder.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertTrue(recorder.getPercentile(0.95) < TimeUnit.MILLISECONDS.toNanos(2));
+    }
+}
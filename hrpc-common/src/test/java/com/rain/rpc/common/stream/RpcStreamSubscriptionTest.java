@@ -0,0 +1,105 @@
+package com.rain.rpc.common.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcStreamSubscription测试类
+ * 回调执行器直接在调用线程中执行，授予的额度记录在列表中
+ */
+public class RpcStreamSubscriptionTest {
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<Object> {
+
+        private final long initialRequest;
+
+        private final List<Object> items = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        private boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Object item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+
+    @Test
+    void testUnboundedRequestLimitedByWindow() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        RpcStreamSubscription subscription = new RpcStreamSubscription(subscriber, Runnable::run, 4);
+        List<Long> credits = new ArrayList<>();
+        subscription.start();
+        subscription.bind(credits::add, () -> { });
+        assertEquals(List.of(4L), credits);
+
+        subscription.onData("a");
+        subscription.onData("b");
+        assertEquals(List.of("a", "b"), subscriber.items);
+        // 每交给订阅者一个元素补充一个额度
+        assertEquals(List.of(4L, 1L, 1L), credits);
+    }
+
+    @Test
+    void testCreditsNeverExceedDemand() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        RpcStreamSubscription subscription = new RpcStreamSubscription(subscriber, Runnable::run, 4);
+        List<Long> credits = new ArrayList<>();
+        subscription.start();
+        subscription.bind(credits::add, () -> { });
+        subscription.onData("a");
+        subscription.onData("b");
+        assertEquals(List.of(2L), credits);
+
+        subscriber.subscription.request(10);
+        assertEquals(List.of(2L, 4L), credits);
+        subscription.onComplete();
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void testCancelNotifiesPeerAndDropsItems() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        RpcStreamSubscription subscription = new RpcStreamSubscription(subscriber, Runnable::run, 4);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        subscription.start();
+        subscription.bind(n -> { }, () -> cancelled.set(true));
+        subscriber.subscription.cancel();
+        subscription.onData("a");
+        subscription.onError(new IllegalStateException("late"));
+        assertTrue(cancelled.get());
+        assertTrue(subscriber.items.isEmpty());
+        assertNull(subscriber.error);
+    }
+}
@@ -3,19 +3,20 @@ package com.rain.rpc.constants;
 public class RpcConstants {
 
     /**
-     * 消息头，固定32个字节
+     * 消息头，固定37个字节
      */
-    public static final int HEADER_TOTAL_LEN = 32;
+    public static final int HEADER_TOTAL_LEN = 37;
 
     /**
      * 魔数
+     * 协议头加入剩余超时时间和版本号后与0x10的旧协议不兼容，更换魔数，旧版本的节点收到后直接拒绝
      */
-    public static final short MAGIC = 0x10;
+    public static final short MAGIC = 0x11;
 
     /**
-     * 版本号
+     * 协议版本号，紧跟在魔数之后，协议格式不兼容的修改递增版本号，解码器拒绝不支持的版本
      */
-    public static final byte VERSION = 0x1;
+    public static final byte VERSION = 0x2;
 
     /**
      * REFLECT_TYPE_JDK
@@ -95,6 +96,205 @@ public class RpcConstants {
      */
     public static final String SERVICE_LOAD_BALANCER_ZKCONSISTENTHASH = "zkconsistenthash";
 
+    /**
+     * 服务消费者建立连接的超时时间（毫秒）
+     */
+    public static final int CONSUMER_CONNECT_TIMEOUT_MS = 3000;
+    /**
+     * 服务消费者重连的初始退避时间（毫秒），每次失败后翻倍
+     */
+    public static final long CONSUMER_RECONNECT_BASE_DELAY_MS = 200;
+    /**
+     * 服务消费者重连的最大退避时间（毫秒）
+     */
+    public static final long CONSUMER_RECONNECT_MAX_DELAY_MS = 30000;
+    /**
+     * 连接断开后后台自动重连的最大次数，超过后等待下一次请求按需建连
+     */
+    public static final int CONSUMER_RECONNECT_MAX_ATTEMPTS = 8;
+
+    /**
+     * 批量写出队列每写出该数量的消息flush一次
+     */
+    public static final int WRITE_QUEUE_MAX_BATCH = 128;
+
+    /**
+     * 批量写出队列的一次写出任务最多写出的消息数，剩余的消息在EventLoop执行完其他任务后继续写出
+     */
+    public static final int WRITE_QUEUE_MAX_DRAIN = 1024;
+
+    /**
+     * 一个批量消息最多包含的请求或响应数
+     */
+    public static final int BATCH_MAX_SIZE = 64;
+
+    /**
+     * 单个帧数据体的最大长度（字节），超过时认为数据已损坏或来自恶意的对端，直接关闭连接
+     */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    /**
+     * 数据体超过该长度（字节）的消息拆分为多个分块帧发送，每个分块帧的数据不超过该长度
+     */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+    /**
+     * 分块传输的消息重组后的最大长度（字节）
+     */
+    public static final int MAX_CHUNKED_MESSAGE_LENGTH = 512 * 1024 * 1024;
+    /**
+     * 一条消息所有附件的默认最大总长度（字节），需要传输更大附件的连接通过RpcDecoder的构造参数调整
+     */
+    public static final int MAX_ATTACHMENT_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * 每个连接上最多分配的方法ID数，超过后的方法每次调用都发送完整的方法签名
+     */
+    public static final int MAX_METHOD_IDS = 1024;
+
+    /**
+     * 流式调用以Iterator返回时预取的元素数，消费一半后再请求同样数量
+     */
+    public static final int STREAM_ITERATOR_PREFETCH = 64;
+    /**
+     * 每个流的窗口大小，即接收方已授予但还没有处理的额度上限，单个流在连接上最多积压这么多个流数据消息
+     */
+    public static final int STREAM_WINDOW = 128;
+
+    /**
+     * 连接上超过该时间（毫秒）没有读到任何消息时发送心跳
+     */
+    public static final long HEARTBEAT_INTERVAL_MS = 30000;
+
+    /**
+     * 连续该数量的心跳间隔内没有读到任何消息时，认为连接已经失效并关闭
+     */
+    public static final int HEARTBEAT_MAX_MISSES = 3;
+
+    /**
+     * 写缓冲区低水位（字节），待写出的数据降到该值以下时Channel恢复可写
+     */
+    public static final int WRITE_BUFFER_LOW_WATER_MARK = 512 * 1024;
+    /**
+     * 写缓冲区高水位（字节），待写出的数据超过该值时Channel变为不可写
+     */
+    public static final int WRITE_BUFFER_HIGH_WATER_MARK = 1024 * 1024;
+
+    /**
+     * 连接不可写时阻塞调用线程，直到连接恢复可写或请求超时
+     */
+    public static final String BACKPRESSURE_BLOCK = "block";
+    /**
+     * 连接不可写时请求直接失败
+     */
+    public static final String BACKPRESSURE_FAILFAST = "failfast";
+    /**
+     * 连接不可写时请求继续排队，积压超过上限后失败
+     */
+    public static final String BACKPRESSURE_QUEUE = "queue";
+    /**
+     * 默认的背压策略
+     */
+    public static final String BACKPRESSURE_DEFAULT = BACKPRESSURE_BLOCK;
+    /**
+     * queue策略下，超过低水位后最多继续积压的字节数
+     */
+    public static final long BACKPRESSURE_QUEUE_MAX_BYTES = 16 * 1024 * 1024;
+    /**
+     * block策略下请求没有超时时间时，最长阻塞的时间（毫秒）
+     */
+    public static final long BACKPRESSURE_BLOCK_MAX_WAIT_MS = 3000;
+
+    /**
+     * 异步回调在客户端线程池中执行
+     */
+    public static final String CALLBACK_EXECUTOR_POOL = "pool";
+    /**
+     * 异步回调在完成调用的线程中直接执行，通常是Netty的IO线程，回调中不能有阻塞操作
+     */
+    public static final String CALLBACK_EXECUTOR_DIRECT = "direct";
+    /**
+     * 异步回调在虚拟线程中执行
+     */
+    public static final String CALLBACK_EXECUTOR_VIRTUAL = "virtual";
+
+    /**
+     * 对冲请求的延迟取方法调用延迟的该分位数
+     */
+    public static final double HEDGING_DELAY_PERCENTILE = 0.95;
+    /**
+     * 方法累计的调用延迟样本数达到该值后才开始发送对冲请求
+     */
+    public static final int HEDGING_MIN_SAMPLES = 32;
+
+    /**
+     * 快速失败，调用失败后直接返回错误
+     */
+    public static final String CLUSTER_FAILFAST = "failfast";
+    /**
+     * 失败自动切换，请求未被服务提供者处理就失败时重试其他服务实例，只适用于幂等的方法
+     */
+    public static final String CLUSTER_FAILOVER = "failover";
+    /**
+     * 失败安全，调用失败时忽略错误，返回空结果
+     */
+    public static final String CLUSTER_FAILSAFE = "failsafe";
+    /**
+     * 并行调用多个服务实例，任意一个成功即返回，只适用于幂等的方法
+     */
+    public static final String CLUSTER_FORKING = "forking";
+    /**
+     * 默认的重试次数，forking策略下为额外并行调用的服务实例数
+     */
+    public static final int CLUSTER_DEFAULT_RETRIES = 2;
+    /**
+     * 重试预算：每个正常请求存入的令牌数，重试最多占正常请求的该比例
+     */
+    public static final double RETRY_BUDGET_RATIO = 0.2;
+    /**
+     * 重试预算：每秒固定补充的令牌数，保证请求量很小时也能重试
+     */
+    public static final int RETRY_BUDGET_MIN_PER_SECOND = 10;
+    /**
+     * 重试预算：令牌桶的容量
+     */
+    public static final int RETRY_BUDGET_MAX_TOKENS = 100;
+
+    /**
+     * 熔断：连续失败达到该次数时摘除服务节点，用于快速发现宕机的节点
+     */
+    public static final int CIRCUIT_BREAKER_CONSECUTIVE_FAILURES = 5;
+    /**
+     * 熔断：统计失败率和慢调用率的时间窗口（毫秒）
+     */
+    public static final long CIRCUIT_BREAKER_WINDOW_MS = 10000;
+    /**
+     * 熔断：时间窗口内的请求数达到该值后才按比例判断
+     */
+    public static final int CIRCUIT_BREAKER_MIN_REQUESTS = 20;
+    /**
+     * 熔断：时间窗口内的失败率达到该值时摘除服务节点
+     */
+    public static final double CIRCUIT_BREAKER_FAILURE_RATE = 0.5;
+    /**
+     * 熔断：时间窗口内的慢调用率达到该值时摘除服务节点
+     */
+    public static final double CIRCUIT_BREAKER_SLOW_CALL_RATE = 0.5;
+    /**
+     * 熔断：耗时达到请求超时时间的该比例时记为慢调用
+     */
+    public static final double CIRCUIT_BREAKER_SLOW_CALL_RATIO = 0.8;
+    /**
+     * 熔断：第一次摘除的时长（毫秒），连续摘除时翻倍
+     */
+    public static final long CIRCUIT_BREAKER_BASE_EJECTION_MS = 5000;
+    /**
+     * 熔断：最长的摘除时长（毫秒）
+     */
+    public static final long CIRCUIT_BREAKER_MAX_EJECTION_MS = 60000;
+    /**
+     * 熔断：半开状态下连续成功该次数的探测请求后恢复服务节点
+     */
+    public static final int CIRCUIT_BREAKER_HALF_OPEN_SUCCESSES = 3;
+
     public static void main(String[] args){
         String str = "test0000000000000000";
         System.out.println(str.replace("0", ""));
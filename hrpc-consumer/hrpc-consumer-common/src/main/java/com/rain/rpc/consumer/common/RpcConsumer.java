@@ -1,8 +1,11 @@
 package com.rain.rpc.consumer.common;
 
+import com.rain.rpc.common.exception.RpcException;
 import com.rain.rpc.common.helper.RpcServiceHelper;
 import com.rain.rpc.common.threadpool.ClientThreadPool;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.consumer.common.handler.RpcConsumerHandler;
+import com.rain.rpc.consumer.common.health.EndpointCircuitBreaker;
 import com.rain.rpc.consumer.common.helper.RpcConsumerHandlerHelper;
 import com.rain.rpc.consumer.common.initializer.RpcConsumerInitializer;
 import com.rain.rpc.protocol.RpcProtocol;
@@ -10,18 +13,30 @@ import com.rain.rpc.protocol.meta.ServiceMeta;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.proxy.api.consumer.Consumer;
 import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
 import com.rain.rpc.registry.api.RegistryService;
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * RPC消费者
@@ -31,6 +46,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * 1. 使用单例模式确保整个应用只有一个RpcConsumer实例
  * 2. 使用连接缓存避免重复创建连接，提高性能
  * 3. 基于Netty实现异步网络通信
+ * 4. 同一服务节点同一时刻只发起一次建连，并发调用方共享同一个建连Future
+ * 5. 建连失败或连接断开后按指数退避重连，退避期内的调用快速失败，不会重复创建Socket
+ * 6. 每个服务节点一个熔断器，根据调用结果摘除异常的节点，选择服务实例时跳过被摘除的节点；
+ *    所有可选的节点都被摘除时仍然使用注册中心选出的节点，避免误判导致服务完全不可用，
+ *    这类兜底请求没有经过熔断器放行，结果不计入熔断器，不会被当作半开状态的探测结果；
+ *    后台重连放弃后认为节点已经下线，移除节点的熔断器和退避状态，下线的节点不会一直占用内存
+ * 7. 连接上的心跳多次没有回应时由RpcHeartbeatHandler关闭连接，关闭后立即从缓存中移除并在后台重连，
+ *    后续请求不会再发往已经失效的半开连接
+ * 8. 连接设置写缓冲区高低水位，连接不可写时按背压策略阻塞调用线程、快速失败或继续排队
+ * 9. 流式调用与单向调用一样不向熔断器报告结果，只发往没有被摘除的节点
  */
 public class RpcConsumer implements Consumer {
 
@@ -43,19 +68,42 @@ public class RpcConsumer implements Consumer {
     // 使用双重检查锁定实现的单例模式
     private static volatile RpcConsumer instance;
 
-    // 连接缓存，以"地址_端口"为key缓存RpcConsumerHandler，避免重复创建连接
-    private static final Map<String, RpcConsumerHandler> CONNECTION_HANDLER_MAP = new ConcurrentHashMap<>();
+    // 正在建立或已经建立的连接，以"地址_端口"为key，保证同一服务节点的建连只有一次在进行
+    private final Map<String, CompletableFuture<RpcConsumerHandler>> connectFutureMap = new ConcurrentHashMap<>();
+
+    // 建连失败的退避状态，以"地址_端口"为key
+    private final Map<String, ReconnectBackoff> backoffMap = new ConcurrentHashMap<>();
+
+    // 服务节点的熔断器，以"地址_端口"为key
+    private final Map<String, EndpointCircuitBreaker> circuitBreakerMap = new ConcurrentHashMap<>();
+
+    // 连接不可写时的背压策略，所有连接共用
+    private volatile String backpressure = RpcConstants.BACKPRESSURE_DEFAULT;
+
+    // 是否已经关闭，关闭后不再发起后台重连
+    private volatile boolean closed;
 
     /**
      * 私有构造函数
      * 初始化Netty客户端配置
      */
     private RpcConsumer() {
-        bootstrap = new Bootstrap();
-        eventLoopGroup = new NioEventLoopGroup(4);
-        bootstrap.group(eventLoopGroup)
+        this(new Bootstrap().group(new NioEventLoopGroup(4))
                 .channel(NioSocketChannel.class)
-                .handler(new RpcConsumerInitializer());
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, RpcConstants.CONSUMER_CONNECT_TIMEOUT_MS)
+                // 待写出的数据超过高水位时连接不可写，由背压策略决定如何处理新的请求
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(RpcConstants.WRITE_BUFFER_LOW_WATER_MARK, RpcConstants.WRITE_BUFFER_HIGH_WATER_MARK))
+                .handler(new RpcConsumerInitializer()));
+    }
+
+    /**
+     * 使用指定的Bootstrap创建消费者，后台重连在Bootstrap的EventLoopGroup中调度
+     *
+     * @param bootstrap 已经配置好的客户端引导程序，处理管道中需要包含RpcConsumerHandler
+     */
+    RpcConsumer(Bootstrap bootstrap) {
+        this.bootstrap = bootstrap;
+        this.eventLoopGroup = bootstrap.config().group();
     }
 
     public static RpcConsumer getInstance() {
@@ -69,7 +117,23 @@ public class RpcConsumer implements Consumer {
         return instance;
     }
 
+    /**
+     * 设置连接不可写时的背压策略
+     *
+     * @param backpressure 背压策略，block、failfast或queue
+     */
+    public void setBackpressure(String backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public String getBackpressure() {
+        return backpressure;
+    }
+
     public void close() {
+        closed = true;
+        circuitBreakerMap.clear();
+        backoffMap.clear();
         RpcConsumerHandlerHelper.closeRpcClientHandler();
         eventLoopGroup.shutdownGracefully();
         ClientThreadPool.shutdown();
@@ -85,53 +149,338 @@ public class RpcConsumer implements Consumer {
      */
     @Override
     public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) throws Exception {
+        return this.sendRequest(protocol, registryService, Collections.emptyList());
+    }
+
+    /**
+     * 发送RPC请求，请求不会发送到被排除的服务实例
+     *
+     * @param protocol RPC请求协议
+     * @param registryService 注册服务
+     * @param excludedServices 需要排除的服务实例
+     * @return RPCFuture对象，记录了请求发送到的服务实例；没有可用的服务实例时返回null
+     * @throws Exception 连接异常
+     */
+    @Override
+    public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, Collection<ServiceMeta> excludedServices) throws Exception {
         RpcRequest request = protocol.getBody();
-        String serviceKey = RpcServiceHelper.buildServiceKey(request.getClassName(), request.getVersion(), request.getGroup());
+        // 代理端已经预先计算好服务唯一标识时直接使用
+        String serviceKey = request.getServiceKey() != null ? request.getServiceKey()
+                : RpcServiceHelper.buildServiceKey(request.getClassName(), request.getVersion(), request.getGroup());
         Object[] params = request.getParameters();
-        int invokerHashCode = (params == null || params.length <= 0) ? serviceKey.hashCode() : params[0].hashCode();
-        ServiceMeta serviceMeta = registryService.discovery(serviceKey, invokerHashCode);
-        if (serviceMeta != null) {
-            RpcConsumerHandler handler = RpcConsumerHandlerHelper.get(serviceMeta);
-            //缓存中无RpcClientHandler
-            if (handler == null) {
-                handler = getRpcConsumerHandler(serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
-                RpcConsumerHandlerHelper.put(serviceMeta, handler);
-                LOGGER.info("Created new connection to {}:{}", serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
-            } else if (!handler.getChannel().isActive()) {  //缓存中存在RpcClientHandler，但不活跃
-                handler.close();
-                handler = getRpcConsumerHandler(serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
-                RpcConsumerHandlerHelper.put(serviceMeta, handler);
-                LOGGER.info("Recreated connection to {}:{}", serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
+        int invokerHashCode = (params == null || params.length <= 0 || params[0] == null) ? serviceKey.hashCode() : params[0].hashCode();
+        EndpointSelection selection = this.selectServiceMeta(registryService, serviceKey, invokerHashCode, excludedServices, request.getOneway());
+        if (selection != null) {
+            ServiceMeta serviceMeta = selection.serviceMeta;
+            EndpointCircuitBreaker circuitBreaker = selection.circuitBreaker;
+            RpcConsumerHandler handler;
+            try {
+                handler = getRpcConsumerHandler(serviceMeta);
+            } catch (RpcException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onConnectFailure();
+                }
+                throw e;
+            }
+            // 连接不可写时按背压策略阻塞、快速失败或继续排队；请求没有发出时释放熔断器放行的探测请求
+            try {
+                handler.awaitWritable(backpressure, protocol.getHeader().getDeadline());
+            } catch (RpcException | InterruptedException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onCancel();
+                }
+                throw e;
             }
             LOGGER.debug("Sending request to {}:{}", serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
-            return handler.sendRequest(protocol, request.getAsync(), request.getOneway());
-        } else {
+            long startNanos = System.nanoTime();
+            RPCFuture rpcFuture = handler.sendRequest(protocol, request.getAsync(), request.getOneway());
+            if (rpcFuture != null) {
+                rpcFuture.setServiceMeta(serviceMeta);
+                if (circuitBreaker != null) {
+                    rpcFuture.whenComplete((result, throwable) -> {
+                        if (throwable == null || rpcFuture.isResponseReceived()) {
+                            circuitBreaker.onSuccess(System.nanoTime() - startNanos, request.getTimeout());
+                        } else if (throwable instanceof CancellationException) {
+                            circuitBreaker.onCancel();
+                        } else {
+                            circuitBreaker.onFailure();
+                        }
+                    });
+                }
+            }
+            return rpcFuture;
+        } else if (excludedServices.isEmpty()) {
             LOGGER.warn("No service found for key: {}", serviceKey);
         }
         return null;
     }
 
+    /**
+     * 发起流式调用
+     *
+     * @param protocol RPC请求协议，请求体中标记为流式调用
+     * @param registryService 注册服务
+     * @param subscription 本次流式调用的订阅
+     * @throws Exception 连接异常
+     */
+    @Override
+    public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) throws Exception {
+        RpcRequest request = protocol.getBody();
+        String serviceKey = request.getServiceKey() != null ? request.getServiceKey()
+                : RpcServiceHelper.buildServiceKey(request.getClassName(), request.getVersion(), request.getGroup());
+        Object[] params = request.getParameters();
+        int invokerHashCode = (params == null || params.length <= 0 || params[0] == null) ? serviceKey.hashCode() : params[0].hashCode();
+        // 流式调用持续时间不确定，不能作为半开状态的探测请求
+        EndpointSelection selection = this.selectServiceMeta(registryService, serviceKey, invokerHashCode, Collections.emptyList(), true);
+        if (selection == null) {
+            throw new RpcException("No service available: " + request.getClassName() + "#" + request.getMethodName());
+        }
+        ServiceMeta serviceMeta = selection.serviceMeta;
+        RpcConsumerHandler handler;
+        try {
+            handler = getRpcConsumerHandler(serviceMeta);
+        } catch (RpcException e) {
+            if (selection.circuitBreaker != null) {
+                selection.circuitBreaker.onConnectFailure();
+            }
+            throw e;
+        }
+        handler.awaitWritable(backpressure, protocol.getHeader().getDeadline());
+        LOGGER.debug("Sending stream request to {}:{}", serviceMeta.getServiceAddr(), serviceMeta.getServicePort());
+        handler.sendStreamRequest(protocol, subscription);
+    }
+
+    /**
+     * 选择服务实例，跳过被熔断器摘除的节点
+     * 单向调用收不到结果，不能作为半开状态的探测请求，只发送到没有被摘除的节点
+     *
+     * @param registryService 注册服务
+     * @param serviceKey 服务唯一标识
+     * @param invokerHashCode 调用方哈希码
+     * @param excludedServices 需要排除的服务实例
+     * @param oneway 是否单向调用，流式调用按单向调用处理
+     * @return 选中的服务实例及其熔断器，所有节点都被摘除时熔断器为null；没有可用的服务实例时返回null
+     * @throws Exception 服务发现时的异常
+     */
+    private EndpointSelection selectServiceMeta(RegistryService registryService, String serviceKey, int invokerHashCode,
+                                                Collection<ServiceMeta> excludedServices, boolean oneway) throws Exception {
+        ServiceMeta selected = excludedServices.isEmpty() ? registryService.discovery(serviceKey, invokerHashCode)
+                : registryService.discovery(serviceKey, invokerHashCode, excludedServices);
+        if (selected == null) {
+            return null;
+        }
+        EndpointCircuitBreaker circuitBreaker = this.getCircuitBreaker(selected);
+        if (isAvailable(circuitBreaker, oneway)) {
+            return new EndpointSelection(selected, circuitBreaker);
+        }
+        List<ServiceMeta> ejectedServices = new ArrayList<>(excludedServices);
+        ServiceMeta candidate = selected;
+        do {
+            ejectedServices.add(candidate);
+            candidate = registryService.discovery(serviceKey, invokerHashCode, ejectedServices);
+            if (candidate == null) {
+                // 兜底请求没有经过熔断器放行，不向熔断器报告结果
+                LOGGER.warn("All endpoints of {} are ejected, fall back to {}", serviceKey, RpcConsumerHandlerHelper.getKey(selected));
+                return new EndpointSelection(selected, null);
+            }
+            circuitBreaker = this.getCircuitBreaker(candidate);
+        } while (!isAvailable(circuitBreaker, oneway));
+        return new EndpointSelection(candidate, circuitBreaker);
+    }
+
+    private static boolean isAvailable(EndpointCircuitBreaker circuitBreaker, boolean oneway) {
+        return oneway ? circuitBreaker.isClosed() : circuitBreaker.tryAcquire();
+    }
+
+    private EndpointCircuitBreaker getCircuitBreaker(ServiceMeta serviceMeta) {
+        String key = RpcConsumerHandlerHelper.getKey(serviceMeta);
+        EndpointCircuitBreaker circuitBreaker = circuitBreakerMap.get(key);
+        return circuitBreaker != null ? circuitBreaker : circuitBreakerMap.computeIfAbsent(key, EndpointCircuitBreaker::new);
+    }
 
     /**
-     * 创建与RPC服务提供者的连接并返回RpcConsumerHandler
+     * 获取与服务提供者之间可用的RpcConsumerHandler
+     * 缓存中存在活跃连接时直接返回，否则等待该服务节点共享的建连Future；
+     * 建连本身不占用调用线程，但没有活跃连接时调用线程仍会阻塞等待建连完成，最多等待2倍的CONSUMER_CONNECT_TIMEOUT_MS，
+     * 处于退避期时立即失败
      *
-     * @param serviceAddress 服务地址
-     * @param port           服务端口
+     * @param serviceMeta 服务元数据
      * @return RpcConsumerHandler对象
-     * @throws InterruptedException 连接中断异常
+     * @throws InterruptedException 等待建连时被中断
+     */
+    private RpcConsumerHandler getRpcConsumerHandler(ServiceMeta serviceMeta) throws InterruptedException {
+        RpcConsumerHandler handler = RpcConsumerHandlerHelper.get(serviceMeta);
+        if (handler != null && handler.getChannel().isActive()) {
+            return handler;
+        }
+        CompletableFuture<RpcConsumerHandler> connectFuture = connect(serviceMeta);
+        try {
+            // 建连本身受CONNECT_TIMEOUT_MILLIS约束，这里多等待一小段时间用于兜底
+            return connectFuture.get(RpcConstants.CONSUMER_CONNECT_TIMEOUT_MS * 2L, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RpcException("connect rpc server " + RpcConsumerHandlerHelper.getKey(serviceMeta) + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RpcException("connect rpc server " + RpcConsumerHandlerHelper.getKey(serviceMeta) + " timeout", e);
+        }
+    }
+
+    /**
+     * 获取服务节点的建连Future
+     * 已有建连在进行或连接仍然活跃时复用已有Future；处于退避期时返回已失败的Future，调用方快速失败
+     *
+     * @param serviceMeta 服务元数据
+     * @return 建连Future
+     */
+    private CompletableFuture<RpcConsumerHandler> connect(ServiceMeta serviceMeta) {
+        String key = RpcConsumerHandlerHelper.getKey(serviceMeta);
+        return connectFutureMap.compute(key, (k, existing) -> {
+            if (existing != null && (!existing.isDone() || isActive(existing))) {
+                return existing;
+            }
+            ReconnectBackoff backoff = backoffMap.get(k);
+            if (backoff != null && !backoff.canAttempt()) {
+                // 退避期内直接复用上一次失败的结果，不再创建新的Socket
+                return existing != null ? existing
+                        : CompletableFuture.failedFuture(new RpcException("connect rpc server " + k + " is backing off"));
+            }
+            return doConnect(serviceMeta, k);
+        });
+    }
+
+    /**
+     * 异步建立与RPC服务提供者的连接，不阻塞调用线程
+     *
+     * @param serviceMeta 服务元数据
+     * @param key 缓存键，格式为"地址_端口"
+     * @return 建连Future，连接成功后完成为对应的RpcConsumerHandler
      */
-    private RpcConsumerHandler getRpcConsumerHandler(String serviceAddress, int port) throws InterruptedException {
-        // 建立连接并同步等待连接结果
-        ChannelFuture channelFuture = bootstrap.connect(serviceAddress, port).sync();
-        channelFuture.addListener((ChannelFutureListener) listener -> {
+    private CompletableFuture<RpcConsumerHandler> doConnect(ServiceMeta serviceMeta, String key) {
+        String serviceAddress = serviceMeta.getServiceAddr();
+        int port = serviceMeta.getServicePort();
+        CompletableFuture<RpcConsumerHandler> connectFuture = new CompletableFuture<>();
+        bootstrap.connect(serviceAddress, port).addListener((ChannelFutureListener) channelFuture -> {
             if (channelFuture.isSuccess()) {
                 LOGGER.info("connect rpc server {} on port {} success.", serviceAddress, port);
+                backoffMap.remove(key);
+                // 从Channel的处理管道中获取RpcConsumerHandler
+                RpcConsumerHandler handler = channelFuture.channel().pipeline().get(RpcConsumerHandler.class);
+                RpcConsumerHandlerHelper.put(serviceMeta, handler);
+                channelFuture.channel().closeFuture().addListener(future -> onChannelClosed(serviceMeta, key, connectFuture, handler));
+                connectFuture.complete(handler);
             } else {
-                LOGGER.error("connect rpc server {} on port {} failed.", serviceAddress, port, channelFuture.cause());
-                eventLoopGroup.shutdownGracefully();
+                ReconnectBackoff backoff = backoffMap.computeIfAbsent(key, k -> new ReconnectBackoff());
+                long delay = backoff.onFailure();
+                LOGGER.error("connect rpc server {} on port {} failed, next attempt in {} ms.", serviceAddress, port, delay, channelFuture.cause());
+                connectFuture.completeExceptionally(channelFuture.cause());
             }
         });
-        // 从Channel的处理管道中获取RpcConsumerHandler
-        return channelFuture.channel().pipeline().get(RpcConsumerHandler.class);
+        return connectFuture;
+    }
+
+    /**
+     * 连接断开后的处理：清理缓存，并按指数退避在后台重连，保证下一次调用时连接已经就绪
+     */
+    private void onChannelClosed(ServiceMeta serviceMeta, String key, CompletableFuture<RpcConsumerHandler> connectFuture, RpcConsumerHandler handler) {
+        RpcConsumerHandlerHelper.remove(serviceMeta, handler);
+        connectFutureMap.remove(key, connectFuture);
+        if (closed) {
+            return;
+        }
+        LOGGER.warn("connection to rpc server {} closed, scheduling reconnect.", key);
+        scheduleReconnect(serviceMeta, key, RpcConstants.CONSUMER_RECONNECT_BASE_DELAY_MS, 1);
+    }
+
+    /**
+     * 按指数退避调度后台重连
+     *
+     * @param serviceMeta 服务元数据
+     * @param key 缓存键
+     * @param delay 本次重连前的等待时间（毫秒）
+     * @param attempt 当前是第几次重连
+     */
+    private void scheduleReconnect(ServiceMeta serviceMeta, String key, long delay, int attempt) {
+        if (closed || eventLoopGroup.isShuttingDown()) {
+            return;
+        }
+        eventLoopGroup.schedule(() -> {
+            if (closed || RpcConsumerHandlerHelper.get(serviceMeta) != null) {
+                return;
+            }
+            connect(serviceMeta).whenComplete((handler, cause) -> {
+                if (cause == null) {
+                    LOGGER.info("reconnect rpc server {} success after {} attempt(s).", key, attempt);
+                } else if (attempt < RpcConstants.CONSUMER_RECONNECT_MAX_ATTEMPTS) {
+                    scheduleReconnect(serviceMeta, key, ReconnectBackoff.nextDelay(delay), attempt + 1);
+                } else {
+                    // 节点大概率已经下线，移除熔断器和退避状态；节点仍在注册中心时，下一次调用按需重建
+                    circuitBreakerMap.remove(key);
+                    backoffMap.remove(key);
+                    LOGGER.warn("give up reconnecting rpc server {} after {} attempts, will connect on demand.", key, attempt);
+                }
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 判断已完成的建连Future对应的连接是否仍然活跃
+     */
+    private static boolean isActive(CompletableFuture<RpcConsumerHandler> connectFuture) {
+        if (connectFuture.isCompletedExceptionally()) {
+            return false;
+        }
+        RpcConsumerHandler handler = connectFuture.getNow(null);
+        return handler != null && handler.getChannel() != null && handler.getChannel().isActive();
+    }
+
+    /**
+     * 选中的服务实例，circuitBreaker为null表示所有节点都被摘除时的兜底选择，结果不计入熔断器
+     */
+    private static final class EndpointSelection {
+
+        private final ServiceMeta serviceMeta;
+
+        private final EndpointCircuitBreaker circuitBreaker;
+
+        EndpointSelection(ServiceMeta serviceMeta, EndpointCircuitBreaker circuitBreaker) {
+            this.serviceMeta = serviceMeta;
+            this.circuitBreaker = circuitBreaker;
+        }
+    }
+
+    /**
+     * 建连失败的指数退避状态
+     */
+    private static final class ReconnectBackoff {
+        // 连续失败次数
+        private int failures;
+        // 下一次允许建连的时间点
+        private long nextAttemptTime;
+
+        synchronized boolean canAttempt() {
+            return System.currentTimeMillis() >= nextAttemptTime;
+        }
+
+        /**
+         * 记录一次建连失败
+         *
+         * @return 下一次允许建连前需要等待的时间（毫秒）
+         */
+        synchronized long onFailure() {
+            long delay = RpcConstants.CONSUMER_RECONNECT_BASE_DELAY_MS;
+            for (int i = 0; i < failures && delay < RpcConstants.CONSUMER_RECONNECT_MAX_DELAY_MS; i++) {
+                delay = nextDelay(delay);
+            }
+            failures++;
+            nextAttemptTime = System.currentTimeMillis() + delay;
+            return delay;
+        }
+
+        /**
+         * 计算下一次退避时间：翻倍并叠加少量随机抖动，避免大量消费者同时重连
+         */
+        static long nextDelay(long delay) {
+            long next = Math.min(delay * 2, RpcConstants.CONSUMER_RECONNECT_MAX_DELAY_MS);
+            return next + ThreadLocalRandom.current().nextLong(next / 10 + 1);
+        }
     }
-}
\ No newline at end of file
+}
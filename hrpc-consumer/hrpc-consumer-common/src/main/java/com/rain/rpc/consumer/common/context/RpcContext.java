@@ -10,6 +10,7 @@ import com.rain.rpc.proxy.api.future.RPCFuture;
  * 1. 使用单例模式确保全局唯一实例
  * 2. 使用InheritableThreadLocal确保子线程可以继承父线程的RPCFuture
  * 3. 提供线程安全的RPCFuture存储和获取方法
+ * 4. 线程本地变量在线程池、虚拟线程之间传递并不可靠，新接口建议直接将方法返回类型声明为CompletableFuture/CompletionStage
  */
 public class RpcContext {
 
@@ -1,12 +1,23 @@
 package com.rain.rpc.consumer.common.handler;
 
 import com.alibaba.fastjson2.JSONObject;
+import com.rain.rpc.codec.stream.RpcStreamSender;
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.common.collection.StripedLongObjectMap;
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.threadpool.ClientThreadPool;
+import com.rain.rpc.common.timer.RpcTimer;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.consumer.common.context.RpcContext;
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcType;
 import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
 import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
@@ -16,8 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.SocketAddress;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * RPC消费者处理器
@@ -27,17 +39,37 @@ import java.util.concurrent.ConcurrentHashMap;
  * 1. 继承SimpleChannelInboundHandler以处理入站消息
  * 2. 使用pendingRPC映射表维护请求ID与RPCFuture的对应关系
  * 3. 支持同步、异步和单向调用三种模式
+ * 4. 每个等待响应的请求都会在时间轮中注册超时任务，到期后从pendingRPC中移除并以超时失败结束
+ * 5. 连接断开或请求写出失败时，立即以失败结束对应的请求，避免pendingRPC无限增长
+ * 6. 请求超时或被调用方取消时，向服务提供者发送取消请求，服务提供者不再继续处理
+ * 7. 请求通过批量写出队列发送，并发请求在EventLoop中合并写出、统一flush，减少系统调用
+ * 8. 出站缓冲区超过高水位时连接不可写，发送前按背压策略阻塞、快速失败或继续排队，避免出站缓冲区无限增长
+ * 9. 流式调用使用pendingStreams维护请求ID与订阅的对应关系，收到流结束消息、取消订阅或连接断开时移除；
+ *    订阅者的请求数量以流额度消息发送，额度消息在请求之后写出
+ * 10. 带有请求流的调用在请求写出队列之后开始发送请求流，由RpcStreamSender按服务提供者授予的额度发送；
+ *    调用结束（收到响应或响应流结束）、被取消或连接断开时停止发送，不再发送请求流结束消息
  */
 public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<RpcResponse>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(RpcConsumerHandler.class);
     // 当前连接的Channel实例
     private volatile Channel channel;
+    // 当前连接的批量写出队列
+    private volatile WriteQueue writeQueue;
     // 远程服务地址
     private SocketAddress remotePeer;
 
     // 存储请求ID与RPCFuture的映射关系，用于异步处理响应
-    // 使用ConcurrentHashMap保证线程安全
-    private final Map<Long, RPCFuture> pendingRPC = new ConcurrentHashMap<>();
+    // 以基本类型long为键的分段Map，避免每次请求对ID装箱和分配节点
+    private final StripedLongObjectMap<RPCFuture> pendingRPC = new StripedLongObjectMap<>();
+
+    // 存储请求ID与流式调用订阅的映射关系
+    private final StripedLongObjectMap<RpcStreamSubscription> pendingStreams = new StripedLongObjectMap<>();
+
+    // 存储请求ID与正在发送的请求流的映射关系
+    private final StripedLongObjectMap<RpcStreamSender> requestStreams = new StripedLongObjectMap<>();
+
+    // 等待连接恢复可写的调用线程在该对象上等待
+    private final Object writableLock = new Object();
 
     /**
      * 获取当前连接的Channel
@@ -67,6 +99,43 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         super.channelRegistered(ctx);
         this.channel = ctx.channel();
+        this.writeQueue = new WriteQueue(channel);
+    }
+
+    /**
+     * 连接恢复可写时唤醒等待的调用线程
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            this.signalWritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接断开时，所有还在等待响应的请求都不可能再收到响应，直接以失败结束
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        // 等待可写的调用线程不必再等待，发送时会因为连接断开而失败
+        this.signalWritable();
+        for (RpcStreamSender sender : requestStreams.removeAll()) {
+            sender.cancel();
+        }
+        for (RpcStreamSubscription subscription : pendingStreams.removeAll()) {
+            subscription.onError(new RpcException("Channel inactive before stream completed. Remote: " + remotePeer));
+        }
+        List<RPCFuture> pending = pendingRPC.removeAll();
+        if (pending.isEmpty()) {
+            return;
+        }
+        LOGGER.warn("Channel to {} inactive, failing {} pending request(s)", remotePeer, pending.size());
+        for (RPCFuture rpcFuture : pending) {
+            long requestId = rpcFuture.getRequestProtocol().getHeader().getRequestId();
+            rpcFuture.fail(new RpcException("Channel inactive before response received. Request id: " + requestId + ". Remote: " + remotePeer));
+        }
     }
 
     /**
@@ -85,6 +154,17 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
         RpcHeader header = responseProtocol.getHeader();
         // 获取请求ID，用于匹配对应的RPCFuture
         long requestId = header.getRequestId();
+        if (header.getMessageType() == (byte) RpcType.STREAM_DATA.getType() || header.getMessageType() == (byte) RpcType.STREAM_END.getType()) {
+            this.onStreamMessage(header, (RpcStreamMessage) ((RpcProtocol<?>) responseProtocol).getBody());
+            return;
+        }
+        if (header.getMessageType() == (byte) RpcType.REQUEST_STREAM_CREDIT.getType()) {
+            RpcStreamSender sender = requestStreams.get(requestId);
+            if (sender != null) {
+                sender.addCredits(((RpcStreamMessage) ((RpcProtocol<?>) responseProtocol).getBody()).getCredits());
+            }
+            return;
+        }
         // 从待处理RPC映射中移除并获取对应的RPCFuture
         RPCFuture rpcFuture = pendingRPC.remove(requestId);
         if (rpcFuture != null) {
@@ -93,6 +173,75 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
         }
     }
 
+    /**
+     * 把流数据交给对应的订阅，收到流结束消息时移除订阅
+     *
+     * @param header 流消息的协议头
+     * @param message 流数据或流结束消息
+     */
+    private void onStreamMessage(RpcHeader header, RpcStreamMessage message) {
+        long requestId = header.getRequestId();
+        if (header.getMessageType() == (byte) RpcType.STREAM_DATA.getType()) {
+            RpcStreamSubscription subscription = pendingStreams.get(requestId);
+            if (subscription != null) {
+                subscription.onData(message.getData());
+            }
+            return;
+        }
+        RpcStreamSubscription subscription = pendingStreams.remove(requestId);
+        if (subscription == null) {
+            return;
+        }
+        this.stopRequestStream(requestId);
+        if (message.isError()) {
+            subscription.onError(new RpcException("Stream error: " + message.getError()));
+        } else {
+            subscription.onComplete();
+        }
+    }
+
+    /**
+     * 按背压策略处理不可写的连接
+     * 连接可写时直接返回；不可写时block策略等待连接恢复可写，failfast策略直接失败，
+     * queue策略在积压不超过上限时继续发送。在IO线程中调用时不能阻塞，block策略按queue策略处理
+     *
+     * @param policy 背压策略
+     * @param deadline 请求的截止时间（System.nanoTime()），0表示没有截止时间
+     * @throws InterruptedException 等待时被中断
+     * @throws RpcException 连接在允许的时间内没有恢复可写，或积压超过上限
+     */
+    public void awaitWritable(String policy, long deadline) throws InterruptedException {
+        Channel ch = this.channel;
+        if (ch.isWritable() || !ch.isActive()) {
+            return;
+        }
+        if (RpcConstants.BACKPRESSURE_FAILFAST.equals(policy)) {
+            throw new RpcException("Channel to " + remotePeer + " is not writable, pending bytes exceed the high water mark");
+        }
+        if (RpcConstants.BACKPRESSURE_QUEUE.equals(policy) || ch.eventLoop().inEventLoop()) {
+            if (ch.bytesBeforeWritable() > RpcConstants.BACKPRESSURE_QUEUE_MAX_BYTES) {
+                throw new RpcException("Channel to " + remotePeer + " is not writable, pending bytes exceed the queue limit");
+            }
+            return;
+        }
+        long waitUntil = deadline != 0 ? deadline : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RpcConstants.BACKPRESSURE_BLOCK_MAX_WAIT_MS);
+        synchronized (writableLock) {
+            while (!ch.isWritable() && ch.isActive()) {
+                long remaining = waitUntil - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new RpcException("Channel to " + remotePeer + " is still not writable after waiting for backpressure");
+                }
+                TimeUnit.NANOSECONDS.timedWait(writableLock, remaining);
+            }
+        }
+    }
+
+    private void signalWritable() {
+        synchronized (writableLock) {
+            writableLock.notifyAll();
+        }
+    }
+
     /**
      * 服务消费者向服务提供者发送请求
      *
@@ -115,7 +264,7 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
      */
     private RPCFuture sendRequestSync(RpcProtocol<RpcRequest> protocol) {
         RPCFuture rpcFuture = this.getRpcFuture(protocol);
-        channel.writeAndFlush(protocol);
+        this.writeRequest(protocol);
         return rpcFuture;
     }
 
@@ -123,14 +272,14 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
      * 异步发送请求
      *
      * @param protocol RPC请求协议
-     * @return null（异步调用通过上下文获取结果）
+     * @return RPCFuture对象，调用方同时可以通过RpcContext获取
      */
     private RPCFuture sendRequestAsync(RpcProtocol<RpcRequest> protocol) {
         RPCFuture rpcFuture = this.getRpcFuture(protocol);
         // 如果是异步调用，则将RPCFuture放入RpcContext供外部获取
         RpcContext.getContext().setRPCFuture(rpcFuture);
-        channel.writeAndFlush(protocol);
-        return null;
+        this.writeRequest(protocol);
+        return rpcFuture;
     }
 
     /**
@@ -140,12 +289,111 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
      * @return null（单向调用不关心响应）
      */
     private RPCFuture sendRequestOneway(RpcProtocol<RpcRequest> protocol) {
-        channel.writeAndFlush(protocol);
+        writeQueue.enqueueVoid(protocol);
         return null;
     }
 
+    /**
+     * 发起流式调用
+     * 先登记订阅再写出请求，请求写出后绑定订阅，之后的额度消息都排在请求之后
+     *
+     * @param protocol RPC请求协议，请求体中标记为流式调用
+     * @param subscription 本次流式调用的订阅
+     */
+    public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RpcStreamSubscription subscription) {
+        LOGGER.info("服务消费者发送的数据===>>>{}", JSONObject.toJSONString(protocol));
+        RpcHeader header = protocol.getHeader();
+        long requestId = header.getRequestId();
+        pendingStreams.put(requestId, subscription);
+        writeQueue.enqueue(protocol).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess() && pendingStreams.remove(requestId) != null) {
+                this.stopRequestStream(requestId);
+                subscription.onError(new RpcException("Send stream request failed. Request id: " + requestId, future.cause()));
+            }
+        });
+        this.startRequestStream(protocol);
+        subscription.bind(credits -> this.sendCredits(header, credits), () -> {
+            if (pendingStreams.remove(requestId) != null) {
+                this.stopRequestStream(requestId);
+                this.sendCancel(header);
+            }
+        });
+    }
+
+    /**
+     * 请求带有请求流时，在请求之后开始发送请求流
+     *
+     * @param protocol RPC请求协议，已经放入写出队列
+     */
+    private void startRequestStream(RpcProtocol<RpcRequest> protocol) {
+        RpcRequest request = protocol.getBody();
+        if (!request.getRequestStream()) {
+            return;
+        }
+        RpcHeader header = protocol.getHeader();
+        long requestId = header.getRequestId();
+        RpcStreamSender sender = new RpcStreamSender(requestId, header.getSerializationType(), RpcType.REQUEST_STREAM_DATA, RpcType.REQUEST_STREAM_END,
+                writeQueue, ClientThreadPool.getExecutor(), () -> requestStreams.remove(requestId));
+        requestStreams.put(requestId, sender);
+        sender.start(request.getRequestStreamSource());
+        if (pendingRPC.get(requestId) == null && pendingStreams.get(requestId) == null) {
+            // 调用在登记请求流之前已经结束
+            this.stopRequestStream(requestId);
+        }
+    }
+
+    /**
+     * 调用已经结束，停止发送还没有结束的请求流
+     *
+     * @param requestId 请求ID
+     */
+    private void stopRequestStream(long requestId) {
+        RpcStreamSender sender = requestStreams.remove(requestId);
+        if (sender != null) {
+            sender.cancel();
+        }
+    }
+
+    /**
+     * 向服务提供者发送流额度
+     *
+     * @param requestHeader 流式调用请求的协议头
+     * @param credits 新增的额度
+     */
+    private void sendCredits(RpcHeader requestHeader, long credits) {
+        Channel channel = this.channel;
+        if (channel == null || !channel.isActive()) {
+            return;
+        }
+        RpcStreamMessage message = new RpcStreamMessage();
+        message.setCredits(credits);
+        RpcProtocol<RpcStreamMessage> creditProtocol = new RpcProtocol<>();
+        creditProtocol.setHeader(RpcHeaderFactory.getStreamHeader(requestHeader.getSerializationType(), RpcType.STREAM_CREDIT, requestHeader.getRequestId()));
+        creditProtocol.setBody(message);
+        writeQueue.enqueueVoid(creditProtocol);
+    }
+
+    /**
+     * 写出需要等待响应的请求，写出失败时立即以失败结束对应的RPCFuture
+     *
+     * @param protocol RPC请求协议
+     */
+    private void writeRequest(RpcProtocol<RpcRequest> protocol) {
+        long requestId = protocol.getHeader().getRequestId();
+        writeQueue.enqueue(protocol).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                RPCFuture rpcFuture = pendingRPC.remove(requestId);
+                if (rpcFuture != null) {
+                    rpcFuture.fail(new RpcException("Send request failed. Request id: " + requestId, future.cause()));
+                }
+            }
+        });
+        this.startRequestStream(protocol);
+    }
+
     /**
      * 创建并注册RPCFuture
+     * 请求设置了超时时间时，同时在时间轮中注册超时清理任务；请求被取消时从pendingRPC中移除
      *
      * @param protocol RPC请求协议
      * @return 新创建的RPCFuture对象
@@ -156,13 +404,62 @@ public class RpcConsumerHandler extends SimpleChannelInboundHandler<RpcProtocol<
         // 获取请求ID，用于匹配请求和响应
         long requestId = header.getRequestId();
         pendingRPC.put(requestId, rpcFuture);
+        // 调用方取消请求后不再等待响应，同时通知服务提供者
+        rpcFuture.setCancelHook(() -> {
+            if (pendingRPC.remove(requestId) != null) {
+                this.sendCancel(header);
+            }
+        });
+        if (protocol.getBody().getRequestStream()) {
+            // 收到响应、超时或被取消后不再发送请求流
+            rpcFuture.whenComplete((result, throwable) -> this.stopRequestStream(requestId));
+        }
+        long timeout = protocol.getBody().getTimeout();
+        if (timeout > 0) {
+            rpcFuture.setTimeoutTask(RpcTimer.newTimeout(task -> this.expire(requestId, timeout), timeout, TimeUnit.MILLISECONDS));
+        }
         return rpcFuture;
     }
 
+    /**
+     * 请求到期仍未收到响应，从pendingRPC中移除并以超时失败结束
+     *
+     * @param requestId 请求ID
+     * @param timeout 超时时间（毫秒）
+     */
+    private void expire(long requestId, long timeout) {
+        RPCFuture rpcFuture = pendingRPC.remove(requestId);
+        if (rpcFuture != null) {
+            RpcRequest request = rpcFuture.getRequestProtocol().getBody();
+            rpcFuture.fail(new TimeoutException("Timeout exception. Request id: " + requestId
+                    + ". Request class name: " + request.getClassName()
+                    + ". Request method: " + request.getMethodName()
+                    + ". Timeout: " + timeout + "ms"));
+            this.sendCancel(rpcFuture.getRequestProtocol().getHeader());
+        }
+    }
+
+    /**
+     * 向服务提供者发送取消请求
+     * 取消请求只有协议头，发送失败时不做处理，服务提供者也会根据截止时间跳过过期的请求
+     *
+     * @param requestHeader 被取消请求的协议头
+     */
+    private void sendCancel(RpcHeader requestHeader) {
+        Channel channel = this.channel;
+        if (channel == null || !channel.isActive()) {
+            return;
+        }
+        RpcProtocol<RpcRequest> cancelProtocol = new RpcProtocol<>();
+        cancelProtocol.setHeader(RpcHeaderFactory.getCancelHeader(requestHeader.getSerializationType(), requestHeader.getRequestId()));
+        writeQueue.enqueueVoid(cancelProtocol);
+    }
+
     /**
      * 关闭连接
      */
     public void close() {
-        channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        // 通过写出队列关闭，保证已经入队的请求先写出
+        writeQueue.enqueue(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.rain.rpc.consumer.common.health;
+
+import com.rain.rpc.constants.RpcConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 服务节点熔断器
+ * 按服务节点（地址和端口）统计调用结果，节点异常时暂时将其从负载均衡中摘除，到期后通过探测请求恢复
+ *
+ * 设计说明：
+ * 1. 关闭状态下统计时间窗口内的请求数、失败数和慢调用数，连续失败、失败率过高或慢调用率过高时打开，摘除该节点
+ * 2. 失败指没有收到响应的调用，例如超时、连接断开和建连失败；服务提供者返回的业务错误说明节点可用，记为成功
+ * 3. 建连失败时直接打开，拒绝连接的节点不需要再用调用去试探
+ * 4. 打开后经过摘除时长进入半开状态，同一时刻只放行一个探测请求，连续成功若干次后关闭，探测失败则重新打开
+ * 5. 连续被摘除时摘除时长翻倍，直到上限；关闭后每经过一个没有打开的时间窗口，翻倍的次数减一
+ * 6. 关闭状态下判断是否可用只读取一个volatile字段，不加锁；统计和状态转换在对象锁中进行
+ * 7. 时间取自构造时传入的纳秒时钟，默认为System::nanoTime，测试中可以替换为手动推进的时钟
+ */
+public class EndpointCircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EndpointCircuitBreaker.class);
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String endpoint;
+
+    private final int consecutiveFailureThreshold;
+
+    private final long windowNanos;
+
+    private final int minRequests;
+
+    private final double failureRateThreshold;
+
+    private final double slowCallRateThreshold;
+
+    private final long baseEjectionNanos;
+
+    private final long maxEjectionNanos;
+
+    private final int halfOpenSuccesses;
+
+    /**
+     * 纳秒时钟，与System.nanoTime()的语义一致
+     */
+    private final LongSupplier nanoClock;
+
+    private volatile State state = State.CLOSED;
+
+    private long windowStart;
+
+    private int requests;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private int consecutiveFailures;
+
+    /**
+     * 连续被摘除的次数，决定摘除时长
+     */
+    private int ejections;
+
+    private long openUntil;
+
+    /**
+     * 半开状态下是否有探测请求正在进行
+     */
+    private boolean probing;
+
+    private long probeStartNanos;
+
+    private int probeSuccesses;
+
+    /**
+     * 使用默认配置创建熔断器
+     *
+     * @param endpoint 服务节点，格式为"地址_端口"
+     */
+    public EndpointCircuitBreaker(String endpoint) {
+        this(endpoint, RpcConstants.CIRCUIT_BREAKER_CONSECUTIVE_FAILURES, RpcConstants.CIRCUIT_BREAKER_WINDOW_MS,
+                RpcConstants.CIRCUIT_BREAKER_MIN_REQUESTS, RpcConstants.CIRCUIT_BREAKER_FAILURE_RATE,
+                RpcConstants.CIRCUIT_BREAKER_SLOW_CALL_RATE, RpcConstants.CIRCUIT_BREAKER_BASE_EJECTION_MS,
+                RpcConstants.CIRCUIT_BREAKER_MAX_EJECTION_MS, RpcConstants.CIRCUIT_BREAKER_HALF_OPEN_SUCCESSES, System::nanoTime);
+    }
+
+    EndpointCircuitBreaker(String endpoint, int consecutiveFailureThreshold, long windowMillis, int minRequests,
+                           double failureRateThreshold, double slowCallRateThreshold, long baseEjectionMillis,
+                           long maxEjectionMillis, int halfOpenSuccesses, LongSupplier nanoClock) {
+        this.endpoint = endpoint;
+        this.consecutiveFailureThreshold = consecutiveFailureThreshold;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.minRequests = minRequests;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(baseEjectionMillis);
+        this.maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(maxEjectionMillis);
+        this.halfOpenSuccesses = halfOpenSuccesses;
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * 获取当前状态
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 节点是否处于关闭状态，即没有被摘除
+     */
+    public boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 判断能否向该节点发送请求
+     * 摘除到期后转为半开状态，并把本次请求作为探测请求放行，调用方必须记录该请求的结果
+     *
+     * @return 可以发送返回true
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openUntil < 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = false;
+                probeSuccesses = 0;
+                LOGGER.info("Endpoint {} half open, probing.", endpoint);
+            }
+            if (state == State.HALF_OPEN) {
+                long now = nanoClock.getAsLong();
+                // 探测请求的结果一直没有记录时，超过最长摘除时长后允许重新探测
+                if (probing && now - probeStartNanos < maxEjectionNanos) {
+                    return false;
+                }
+                probing = true;
+                probeStartNanos = now;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 记录一次收到响应的调用
+     *
+     * @param latencyNanos 调用耗时（纳秒）
+     * @param timeoutMillis 请求的超时时间（毫秒），小于等于0时不判断慢调用
+     */
+    public synchronized void onSuccess(long latencyNanos, long timeoutMillis) {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (++probeSuccesses >= halfOpenSuccesses) {
+                this.close();
+            }
+            return;
+        }
+        this.rollWindow();
+        consecutiveFailures = 0;
+        requests++;
+        if (timeoutMillis > 0 && latencyNanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis) * RpcConstants.CIRCUIT_BREAKER_SLOW_CALL_RATIO) {
+            slowCalls++;
+        }
+        this.checkRates();
+    }
+
+    /**
+     * 记录一次没有收到响应的调用
+     */
+    public synchronized void onFailure() {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            this.open("probe failed");
+            return;
+        }
+        this.rollWindow();
+        requests++;
+        failures++;
+        if (++consecutiveFailures >= consecutiveFailureThreshold) {
+            this.open(consecutiveFailures + " consecutive failures");
+            return;
+        }
+        this.checkRates();
+    }
+
+    /**
+     * 记录一次建连失败，直接摘除该节点
+     */
+    public synchronized void onConnectFailure() {
+        if (state != State.OPEN) {
+            this.open("connect failed");
+        }
+    }
+
+    /**
+     * 调用被取消或因背压没有发出时无法判断节点是否正常，只释放探测请求的占用
+     */
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    private void checkRates() {
+        if (requests < minRequests) {
+            return;
+        }
+        if (failures >= requests * failureRateThreshold) {
+            this.open("failure rate " + failures + "/" + requests);
+        } else if (slowCalls >= requests * slowCallRateThreshold) {
+            this.open("slow call rate " + slowCalls + "/" + requests);
+        }
+    }
+
+    private void rollWindow() {
+        long now = nanoClock.getAsLong();
+        if (now - windowStart < windowNanos) {
+            return;
+        }
+        windowStart = now;
+        requests = 0;
+        failures = 0;
+        slowCalls = 0;
+        // 一个完整的时间窗口内没有被摘除，逐步恢复摘除时长
+        if (ejections > 0) {
+            ejections--;
+        }
+    }
+
+    private void open(String reason) {
+        long ejectionNanos = baseEjectionNanos << Math.min(ejections, 16);
+        ejectionNanos = ejectionNanos <= 0 ? maxEjectionNanos : Math.min(ejectionNanos, maxEjectionNanos);
+        ejections++;
+        openUntil = nanoClock.getAsLong() + ejectionNanos;
+        state = State.OPEN;
+        probing = false;
+        this.resetWindow();
+        LOGGER.warn("Eject endpoint {} for {} ms: {}", endpoint, TimeUnit.NANOSECONDS.toMillis(ejectionNanos), reason);
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probing = false;
+        this.resetWindow();
+        LOGGER.info("Endpoint {} recovered.", endpoint);
+    }
+
+    private void resetWindow() {
+        windowStart = nanoClock.getAsLong();
+        requests = 0;
+        failures = 0;
+        slowCalls = 0;
+        consecutiveFailures = 0;
+    }
+}
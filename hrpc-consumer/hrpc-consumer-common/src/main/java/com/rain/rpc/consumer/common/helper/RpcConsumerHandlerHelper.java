@@ -28,7 +28,7 @@ public class RpcConsumerHandlerHelper {
      * @param key 服务元数据
      * @return 缓存键，格式为"地址_端口"
      */
-    private static String getKey(ServiceMeta key) {
+    public static String getKey(ServiceMeta key) {
         return key.getServiceAddr().concat("_").concat(String.valueOf(key.getServicePort()));
     }
 
@@ -57,6 +57,20 @@ public class RpcConsumerHandlerHelper {
         return handler;
     }
 
+    /**
+     * 从缓存中移除RpcConsumerHandler实例
+     * 仅当缓存中的实例仍是传入的实例时才移除，避免误删已经重建的新连接
+     *
+     * @param key 服务元数据
+     * @param value 待移除的RpcConsumerHandler实例
+     */
+    public static void remove(ServiceMeta key, RpcConsumerHandler value) {
+        String cacheKey = getKey(key);
+        if (rpcConsumerHandlerMap.remove(cacheKey, value)) {
+            LOGGER.debug("Removed RpcConsumerHandler from cache with key: {}", cacheKey);
+        }
+    }
+
     /**
      * 关闭并清理所有RpcConsumerHandler实例
      * 
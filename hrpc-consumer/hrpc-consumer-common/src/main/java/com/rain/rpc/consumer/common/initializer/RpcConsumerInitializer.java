@@ -2,10 +2,16 @@ package com.rain.rpc.consumer.common.initializer;
 
 import com.rain.rpc.codec.RpcDecoder;
 import com.rain.rpc.codec.RpcEncoder;
+import com.rain.rpc.codec.heartbeat.RpcHeartbeatHandler;
+import com.rain.rpc.codec.writer.RpcBatchWriteHandler;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.consumer.common.handler.RpcConsumerHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * RPC消费者通道初始化器
@@ -15,6 +21,8 @@ import io.netty.channel.socket.SocketChannel;
  * 1. 继承ChannelInitializer实现通道初始化
  * 2. 按顺序添加编码器、解码器和业务处理器
  * 3. 编解码器负责处理网络传输中的序列化和反序列化
+ * 4. 批量写出处理器把同一轮EventLoop任务中发送的多个请求合并为一个批量消息
+ * 5. 读空闲时发送心跳，多次心跳都没有回应时关闭连接，连接关闭后RpcConsumer将其从缓存中移除
  */
 public class RpcConsumerInitializer extends ChannelInitializer<SocketChannel> {
     /**
@@ -26,10 +34,16 @@ public class RpcConsumerInitializer extends ChannelInitializer<SocketChannel> {
     @Override
     protected void initChannel(SocketChannel socketChannel) throws Exception {
         ChannelPipeline pipeline = socketChannel.pipeline();
+        // 添加空闲检测，读空闲时触发心跳
+        pipeline.addLast(new IdleStateHandler(RpcConstants.HEARTBEAT_INTERVAL_MS, 0, 0, TimeUnit.MILLISECONDS));
         // 添加RPC消息编码器，负责将Java对象编码为字节流
         pipeline.addLast(new RpcEncoder());
         // 添加RPC消息解码器，负责将字节流解码为Java对象
         pipeline.addLast(new RpcDecoder());
+        // 添加心跳处理器，发送心跳并回复对端的心跳
+        pipeline.addLast(new RpcHeartbeatHandler());
+        // 添加批量写出处理器，合并同一轮EventLoop任务中写出的请求
+        pipeline.addLast(new RpcBatchWriteHandler());
         // 添加RPC消费者处理器，处理具体的业务逻辑
         pipeline.addLast(new RpcConsumerHandler());
     }
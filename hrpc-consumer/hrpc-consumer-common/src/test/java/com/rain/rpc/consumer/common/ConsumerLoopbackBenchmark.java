@@ -0,0 +1,190 @@
+package com.rain.rpc.consumer.common;
+
+import com.rain.rpc.codec.RpcDecoder;
+import com.rain.rpc.codec.RpcEncoder;
+import com.rain.rpc.codec.writer.RpcBatchWriteHandler;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RpcConsumer本机回环吞吐量基准测试
+ * 在同一进程中启动只回显固定结果的Netty服务端，测量消费者在不同并发请求数下的调用吞吐量
+ *
+ * 运行方式：直接运行main方法，每次操作并发发出concurrency个请求并等待全部完成，
+ * 每秒调用次数 = 结果中的ops/s * concurrency
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsumerLoopbackBenchmark {
+
+    private static final String SERVICE_NAME = "com.rain.rpc.benchmark.DemoService";
+
+    @Param({"1", "16", "128"})
+    private int concurrency;
+
+    private EventLoopGroup serverGroup;
+
+    private Channel serverChannel;
+
+    private RpcConsumer consumer;
+
+    private RegistryService registryService;
+
+    private RPCFuture[] futures;
+
+    /**
+     * 收到请求后直接返回固定结果，读完一批请求后统一flush，避免服务端成为瓶颈
+     */
+    static class EchoHandler extends SimpleChannelInboundHandler<RpcProtocol<RpcRequest>> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, RpcProtocol<RpcRequest> protocol) {
+            RpcHeader header = protocol.getHeader();
+            if (header.getMessageType() != (byte) RpcType.REQUEST.getType()) {
+                return;
+            }
+            header.setMessageType((byte) RpcType.RESPONSE.getType());
+            header.setStatus((byte) RpcStatus.SUCCESS.getCode());
+            header.setDeadline(0);
+            RpcResponse response = new RpcResponse();
+            response.setResult("ok");
+            RpcProtocol<RpcResponse> responseProtocol = new RpcProtocol<>();
+            responseProtocol.setHeader(header);
+            responseProtocol.setBody(response);
+            ctx.write(responseProtocol);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        // 请求和响应在INFO级别会输出完整内容，基准测试只关心调用路径本身
+        LogManager.getLogger("com.rain.rpc").setLevel(Level.WARN);
+        serverGroup = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline()
+                                .addLast(new RpcDecoder())
+                                .addLast(new RpcEncoder())
+                                .addLast(new RpcBatchWriteHandler())
+                                .addLast(new EchoHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        ServiceMeta serviceMeta = new ServiceMeta(SERVICE_NAME, "1.0.0", "127.0.0.1", port, "");
+        registryService = new RegistryService() {
+            @Override
+            public void register(ServiceMeta meta) {
+            }
+
+            @Override
+            public void unRegister(ServiceMeta meta) {
+            }
+
+            @Override
+            public ServiceMeta discovery(String serviceName, int invokerHashCode) {
+                return serviceMeta;
+            }
+
+            @Override
+            public void destroy() {
+            }
+        };
+        consumer = RpcConsumer.getInstance();
+        futures = new RPCFuture[concurrency];
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        consumer.close();
+        serverChannel.close().sync();
+        serverGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public Object calls() throws Exception {
+        for (int i = 0; i < concurrency; i++) {
+            futures[i] = consumer.sendRequest(newRequest(), registryService);
+        }
+        Object result = null;
+        for (int i = 0; i < concurrency; i++) {
+            result = futures[i].get();
+        }
+        return result;
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest() {
+        RpcRequest request = new RpcRequest();
+        request.setClassName(SERVICE_NAME);
+        request.setMethodName("hello");
+        request.setParameterTypes(new Class[]{String.class});
+        request.setParameters(new Object[]{"rain"});
+        request.setVersion("1.0.0");
+        request.setGroup("");
+        request.setTimeout(3000);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.getHeader().setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(3000));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConsumerLoopbackBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,226 @@
+package com.rain.rpc.consumer.common;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.consumer.common.handler.RpcConsumerHandler;
+import com.rain.rpc.consumer.common.helper.RpcConsumerHandlerHelper;
+import com.rain.rpc.consumer.common.initializer.RpcConsumerInitializer;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.registry.api.RegistryService;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcConsumer建连测试类
+ * 在本机回环地址上启动只接受连接的Netty服务端，通过Bootstrap的初始化器统计消费者创建的Socket数，
+ * 验证并发调用共享一次建连、退避期内快速失败以及连接断开后的后台重连
+ */
+public class RpcConsumerConnectTest {
+
+    private final EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+
+    private final EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+
+    /**
+     * 消费者创建的Socket数，每次建连初始化一次
+     */
+    private final AtomicInteger connectAttempts = new AtomicInteger();
+
+    /**
+     * 服务端接受的连接
+     */
+    private final BlockingQueue<Channel> accepted = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void tearDown() {
+        clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    void testConcurrentCallersShareOneConnection() throws Exception {
+        Channel server = this.startServer();
+        RpcConsumer consumer = this.newConsumer();
+        RegistryService registryService = registryOf(((InetSocketAddress) server.localAddress()).getPort());
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return consumer.sendRequest(newRequest(), registryService);
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 所有调用方等待同一个建连Future，只创建一个Socket
+        assertEquals(1, connectAttempts.get());
+        assertNotNull(accepted.poll(2, TimeUnit.SECONDS));
+        assertNull(accepted.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testFailFastDuringBackoff() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        RpcConsumer consumer = this.newConsumer();
+        RegistryService registryService = registryOf(port);
+
+        RpcException refused = assertThrows(RpcException.class, () -> consumer.sendRequest(newRequest(), registryService));
+        assertTrue(refused.getMessage().contains("failed"), refused.getMessage());
+        assertEquals(1, connectAttempts.get());
+
+        // 退避期内直接复用上一次失败的结果，不创建新的Socket
+        long startNanos = System.nanoTime();
+        assertThrows(RpcException.class, () -> consumer.sendRequest(newRequest(), registryService));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(RpcConstants.CONSUMER_RECONNECT_BASE_DELAY_MS));
+        assertEquals(1, connectAttempts.get());
+
+        // 第一次失败后的退避时间为CONSUMER_RECONNECT_BASE_DELAY_MS，之后的调用重新建连
+        Thread.sleep(RpcConstants.CONSUMER_RECONNECT_BASE_DELAY_MS + 100);
+        assertThrows(RpcException.class, () -> consumer.sendRequest(newRequest(), registryService));
+        assertEquals(2, connectAttempts.get());
+    }
+
+    @Test
+    void testClosedChannelReconnectsInBackground() throws Exception {
+        Channel server = this.startServer();
+        RpcConsumer consumer = this.newConsumer();
+        int port = ((InetSocketAddress) server.localAddress()).getPort();
+        RegistryService registryService = registryOf(port);
+
+        consumer.sendRequest(newRequest(), registryService);
+        Channel first = accepted.poll(2, TimeUnit.SECONDS);
+        assertNotNull(first);
+        RpcConsumerHandler firstHandler = RpcConsumerHandlerHelper.get(serviceMeta(port));
+        assertNotNull(firstHandler);
+
+        // 服务端关闭连接后，消费者在没有调用的情况下自动重连
+        first.close();
+        Channel second = accepted.poll(RpcConstants.CONSUMER_RECONNECT_BASE_DELAY_MS + 2000, TimeUnit.MILLISECONDS);
+        assertNotNull(second);
+        assertEquals(2, connectAttempts.get());
+
+        // 后续调用复用重连后的连接
+        consumer.sendRequest(newRequest(), registryService);
+        assertNotSame(firstHandler, RpcConsumerHandlerHelper.get(serviceMeta(port)));
+        assertNull(accepted.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, connectAttempts.get());
+
+        // 服务端下线后按指数退避重连：第一次在CONSUMER_RECONNECT_BASE_DELAY_MS之后，之后的间隔逐次翻倍，不会持续建连
+        server.close().syncUninterruptibly();
+        second.close().syncUninterruptibly();
+        Thread.sleep(1000);
+        int reconnects = connectAttempts.get() - 2;
+        assertTrue(reconnects >= 1 && reconnects <= 3, "reconnects: " + reconnects);
+    }
+
+    private RpcConsumer newConsumer() {
+        Bootstrap bootstrap = new Bootstrap().group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, RpcConstants.CONSUMER_CONNECT_TIMEOUT_MS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        connectAttempts.incrementAndGet();
+                        channel.pipeline().addLast(new RpcConsumerInitializer());
+                    }
+                });
+        return new RpcConsumer(bootstrap);
+    }
+
+    /**
+     * 启动只接受连接的服务端，收到的数据由管道末端释放
+     */
+    private Channel startServer() {
+        return new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        accepted.add(channel);
+                    }
+                })
+                .bind(InetAddress.getLoopbackAddress(), 0).syncUninterruptibly().channel();
+    }
+
+    private static ServiceMeta serviceMeta(int port) {
+        return new ServiceMeta("demo.HelloService", "1.0.0", InetAddress.getLoopbackAddress().getHostAddress(), port, "");
+    }
+
+    private static RegistryService registryOf(int port) {
+        ServiceMeta serviceMeta = serviceMeta(port);
+        return new RegistryService() {
+            @Override
+            public void register(ServiceMeta meta) {
+            }
+
+            @Override
+            public void unRegister(ServiceMeta meta) {
+            }
+
+            @Override
+            public ServiceMeta discovery(String serviceName, int invokerHashCode) {
+                return serviceMeta;
+            }
+
+            @Override
+            public void destroy() {
+            }
+        };
+    }
+
+    /**
+     * 单向调用不等待响应，也不作为熔断器半开状态的探测请求
+     */
+    private static RpcProtocol<RpcRequest> newRequest() {
+        RpcRequest request = new RpcRequest();
+        request.setClassName("demo.HelloService");
+        request.setMethodName("hello");
+        request.setOneway(true);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+}
@@ -0,0 +1,129 @@
+package com.rain.rpc.consumer.common.handler;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.constants.RpcConstants;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcConsumerHandler背压策略测试类
+ * 写出不flush的数据使连接超过高水位，EmbeddedChannel中调用线程就是EventLoop，block策略按queue策略处理；
+ * block策略的等待和唤醒使用LocalChannel，在EventLoop之外的线程中调用
+ */
+public class RpcConsumerHandlerBackpressureTest {
+
+    private static EmbeddedChannel newChannel(RpcConsumerHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        return channel;
+    }
+
+    @Test
+    void testWritableChannelPasses() throws InterruptedException {
+        RpcConsumerHandler handler = new RpcConsumerHandler();
+        EmbeddedChannel channel = newChannel(handler);
+        assertTrue(channel.isWritable());
+        handler.awaitWritable(RpcConstants.BACKPRESSURE_FAILFAST, 0);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testFailFastRejectsWhenNotWritable() {
+        RpcConsumerHandler handler = new RpcConsumerHandler();
+        EmbeddedChannel channel = newChannel(handler);
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        assertThrows(RpcException.class, () -> handler.awaitWritable(RpcConstants.BACKPRESSURE_FAILFAST, 0));
+        channel.flush();
+        assertTrue(channel.isWritable());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testQueueLimitsPendingBytes() throws InterruptedException {
+        RpcConsumerHandler handler = new RpcConsumerHandler();
+        EmbeddedChannel channel = newChannel(handler);
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        handler.awaitWritable(RpcConstants.BACKPRESSURE_QUEUE, 0);
+        handler.awaitWritable(RpcConstants.BACKPRESSURE_BLOCK, 0);
+
+        channel.write(Unpooled.wrappedBuffer(new byte[(int) RpcConstants.BACKPRESSURE_QUEUE_MAX_BYTES]));
+        assertThrows(RpcException.class, () -> handler.awaitWritable(RpcConstants.BACKPRESSURE_QUEUE, 0));
+        assertThrows(RpcException.class, () -> handler.awaitWritable(RpcConstants.BACKPRESSURE_BLOCK, 0));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testBlockWaitsUntilWritable() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("consumer-backpressure-test");
+        try {
+            Channel server = new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ReferenceCountUtil.release(msg);
+                        }
+                    }).bind(address).sync().channel();
+            RpcConsumerHandler handler = new RpcConsumerHandler();
+            Channel channel = new Bootstrap().group(group).channel(LocalChannel.class)
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8, 16))
+                    .handler(handler).connect(address).sync().channel();
+            channel.write(Unpooled.wrappedBuffer(new byte[32])).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            channel.eventLoop().submit(() -> { }).sync();
+            assertFalse(channel.isWritable());
+
+            // 截止时间内没有恢复可写时失败
+            assertThrows(RpcException.class, () -> handler.awaitWritable(RpcConstants.BACKPRESSURE_BLOCK,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20)));
+
+            CountDownLatch returned = new CountDownLatch(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread caller = new Thread(() -> {
+                try {
+                    handler.awaitWritable(RpcConstants.BACKPRESSURE_BLOCK, System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+                returned.countDown();
+            });
+            caller.start();
+            // 调用线程在连接恢复可写之前一直等待
+            assertFalse(returned.await(100, TimeUnit.MILLISECONDS));
+            assertEquals(Thread.State.TIMED_WAITING, caller.getState());
+
+            // flush后出站缓冲区降到低水位以下，channelWritabilityChanged唤醒调用线程
+            channel.flush();
+            assertTrue(returned.await(5, TimeUnit.SECONDS));
+            assertNull(failure.get());
+            assertTrue(channel.isWritable());
+
+            channel.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+}
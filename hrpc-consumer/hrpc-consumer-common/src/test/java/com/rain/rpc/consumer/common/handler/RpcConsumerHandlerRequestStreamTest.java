@@ -0,0 +1,186 @@
+package com.rain.rpc.consumer.common.handler;
+
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcConsumerHandler请求流测试类
+ * 请求流在客户端线程池中发送，使用LocalChannel代替EmbeddedChannel；服务端直接收发RpcProtocol对象，不经过编解码器
+ */
+public class RpcConsumerHandlerRequestStreamTest {
+
+    @Test
+    void testRequestStreamFollowsCredits() throws Exception {
+        BlockingQueue<RpcProtocol<?>> received = new LinkedBlockingQueue<>();
+        AtomicReference<Channel> server = new AtomicReference<>();
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("consumer-request-stream-test");
+        try {
+            new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            server.set(ctx.channel());
+                        }
+
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            received.add((RpcProtocol<?>) msg);
+                        }
+                    }).bind(address).sync();
+            RpcConsumerHandler handler = new RpcConsumerHandler();
+            new Bootstrap().group(group).channel(LocalChannel.class).handler(handler).connect(address).sync();
+
+            RpcProtocol<RpcRequest> request = newRequest(new RangePublisher(5));
+            long requestId = request.getHeader().getRequestId();
+            RPCFuture future = handler.sendRequest(request, false, false);
+            assertEquals(RpcType.REQUEST.getType(), next(received).getHeader().getMessageType());
+            // 服务提供者授予额度之前不发送请求流数据
+            assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+            server.get().writeAndFlush(newCredit(requestId, 2));
+            assertEquals(List.of(1, 2), nextData(received, requestId, 2));
+            assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+            server.get().writeAndFlush(newCredit(requestId, RpcConstants.STREAM_WINDOW));
+            assertEquals(List.of(3, 4, 5), nextData(received, requestId, 3));
+            RpcProtocol<?> end = next(received);
+            assertEquals(RpcType.REQUEST_STREAM_END.getType(), end.getHeader().getMessageType());
+            assertFalse(((RpcStreamMessage) end.getBody()).isError());
+
+            server.get().writeAndFlush(newResponse(requestId, 15));
+            assertEquals(15, future.get(5, TimeUnit.SECONDS));
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    private static RpcProtocol<?> next(BlockingQueue<RpcProtocol<?>> received) throws InterruptedException {
+        RpcProtocol<?> protocol = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(protocol);
+        return protocol;
+    }
+
+    private static List<Object> nextData(BlockingQueue<RpcProtocol<?>> received, long requestId, int count) throws InterruptedException {
+        List<Object> data = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RpcProtocol<?> protocol = next(received);
+            assertEquals(RpcType.REQUEST_STREAM_DATA.getType(), protocol.getHeader().getMessageType());
+            assertEquals(requestId, protocol.getHeader().getRequestId());
+            data.add(((RpcStreamMessage) protocol.getBody()).getData());
+        }
+        return data;
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest(Flow.Publisher<?> source) {
+        RpcRequest request = new RpcRequest();
+        request.setClassName("demo.SumService");
+        request.setMethodName("sum");
+        request.setParameterTypes(new Class<?>[]{Flow.Publisher.class});
+        request.setParameters(new Object[]{null});
+        request.setRequestStream(true);
+        request.setRequestStreamSource(source);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcStreamMessage> newCredit(long requestId, long credits) {
+        RpcStreamMessage message = new RpcStreamMessage();
+        message.setCredits(credits);
+        RpcProtocol<RpcStreamMessage> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getStreamHeader(RpcConstants.SERIALIZATION_JDK, RpcType.REQUEST_STREAM_CREDIT, requestId));
+        protocol.setBody(message);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcResponse> newResponse(long requestId, Object result) {
+        RpcHeader header = RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK);
+        header.setRequestId(requestId);
+        header.setMessageType((byte) RpcType.RESPONSE.getType());
+        header.setStatus((byte) RpcStatus.SUCCESS.getCode());
+        RpcResponse response = new RpcResponse();
+        response.setResult(result);
+        RpcProtocol<RpcResponse> protocol = new RpcProtocol<>();
+        protocol.setHeader(header);
+        protocol.setBody(response);
+        return protocol;
+    }
+
+    /**
+     * 按订阅者的请求数量依次发送1到count
+     */
+    private static class RangePublisher implements Flow.Publisher<Integer> {
+
+        private final int count;
+
+        RangePublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next = 1;
+
+                private long demand;
+
+                private boolean emitting;
+
+                private boolean completed;
+
+                @Override
+                public synchronized void request(long n) {
+                    demand += n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (demand > 0 && next <= count) {
+                        demand--;
+                        subscriber.onNext(next++);
+                    }
+                    if (next > count && !completed) {
+                        completed = true;
+                        subscriber.onComplete();
+                    }
+                    emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+}
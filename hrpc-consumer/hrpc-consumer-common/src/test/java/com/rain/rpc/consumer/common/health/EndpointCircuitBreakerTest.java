@@ -0,0 +1,124 @@
+package com.rain.rpc.consumer.common.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EndpointCircuitBreaker测试类
+ * 使用手动推进的时钟，不依赖真实的等待时间
+ */
+public class EndpointCircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private EndpointCircuitBreaker newBreaker() {
+        // 连续失败3次打开，窗口内至少10个请求才按比例判断，摘除50ms起、最长200ms，半开成功2次后关闭
+        return new EndpointCircuitBreaker("127.0.0.1_20000", 3, 10000, 10, 0.5, 0.5, 50, 200, 2, clock::get);
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void testConsecutiveFailuresEject() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.isClosed());
+        breaker.onFailure();
+        assertEquals(EndpointCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testSlowCallRateEjects() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(900), 1000);
+        }
+        assertEquals(EndpointCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbeRecovers() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onConnectFailure();
+        assertFalse(breaker.tryAcquire());
+        advance(49);
+        assertFalse(breaker.tryAcquire());
+        advance(1);
+        // 半开状态同一时刻只放行一个探测请求
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        assertEquals(EndpointCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    void testProbeFailureDoublesEjection() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onConnectFailure();
+        advance(50);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(EndpointCircuitBreaker.State.OPEN, breaker.getState());
+        // 第二次摘除100ms
+        advance(99);
+        assertFalse(breaker.tryAcquire());
+        advance(1);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testCancelledProbeReleased() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onConnectFailure();
+        advance(50);
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancel();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testLostProbeReleasedAfterMaxEjection() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onConnectFailure();
+        advance(50);
+        assertTrue(breaker.tryAcquire());
+        // 探测请求的结果一直没有记录，超过最长摘除时长后允许重新探测
+        advance(199);
+        assertFalse(breaker.tryAcquire());
+        advance(1);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testEjectionDecaysAfterQuietWindow() {
+        EndpointCircuitBreaker breaker = newBreaker();
+        breaker.onConnectFailure();
+        advance(50);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        assertTrue(breaker.isClosed());
+        // 一个完整的时间窗口内没有被摘除，下一次摘除恢复为50ms
+        advance(10000);
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        breaker.onConnectFailure();
+        advance(50);
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -1,11 +1,14 @@
 package com.rain.rpc.consumer;
 
 import com.rain.rpc.common.exception.RegistryException;
+import com.rain.rpc.common.threadpool.CallbackExecutors;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.consumer.common.RpcConsumer;
 import com.rain.rpc.proxy.api.ProxyFactory;
 import com.rain.rpc.proxy.api.async.IAsyncObjectProxy;
 import com.rain.rpc.proxy.api.config.ProxyConfig;
 import com.rain.rpc.proxy.api.object.ObjectProxy;
+import com.rain.rpc.proxy.javassist.JavassistProxyFactory;
 import com.rain.rpc.proxy.jdk.JdkProxyFactory;
 import com.rain.rpc.registry.api.RegistryService;
 import com.rain.rpc.registry.api.config.RegistryConfig;
@@ -14,6 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
+import java.util.concurrent.Executor;
+
 /**
  * RPC客户端
  * 提供创建代理对象和管理连接的统一入口
@@ -58,6 +63,31 @@ public class RpcClient {
      */
     private boolean oneway;
 
+    /**
+     * 异步回调执行器，默认使用客户端线程池
+     */
+    private Executor callbackExecutor = CallbackExecutors.getExecutor(null);
+
+    /**
+     * 是否开启对冲请求
+     */
+    private boolean hedging;
+
+    /**
+     * 集群容错策略
+     */
+    private String cluster;
+
+    /**
+     * failover的最大重试次数，forking的额外并行调用数
+     */
+    private int retries = RpcConstants.CLUSTER_DEFAULT_RETRIES;
+
+    /**
+     * 代理类型，jdk或javassist，默认使用jdk动态代理
+     */
+    private String proxy = RpcConstants.PROXY_JDK;
+
     /**
      * 构造函数
      * 
@@ -97,6 +127,69 @@ public class RpcClient {
         return registryService;
     }
 
+    /**
+     * 按类型设置异步回调执行器
+     *
+     * @param callbackExecutorType 回调执行器类型，pool、direct或virtual
+     */
+    public void setCallbackExecutorType(String callbackExecutorType) {
+        this.callbackExecutor = CallbackExecutors.getExecutor(callbackExecutorType);
+    }
+
+    /**
+     * 设置自定义的异步回调执行器
+     *
+     * @param callbackExecutor 回调执行器
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * 设置是否开启对冲请求，开启后服务接口的所有方法都必须是幂等的
+     *
+     * @param hedging 是否开启对冲请求
+     */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    /**
+     * 设置集群容错策略
+     *
+     * @param cluster 集群容错策略，failfast、failover、failsafe或forking
+     */
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * 设置failover的最大重试次数，forking的额外并行调用数
+     *
+     * @param retries 重试次数
+     */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * 设置连接不可写时的背压策略，RpcConsumer是单例，设置对所有客户端生效
+     *
+     * @param backpressure 背压策略，block、failfast或queue
+     */
+    public void setBackpressure(String backpressure) {
+        RpcConsumer.getInstance().setBackpressure(backpressure);
+    }
+
+    /**
+     * 设置代理类型
+     *
+     * @param proxy 代理类型，jdk或javassist
+     */
+    public void setProxy(String proxy) {
+        this.proxy = proxy;
+    }
+
     /**
      * 创建同步代理对象
      * 
@@ -105,12 +198,32 @@ public class RpcClient {
      * @return 代理对象
      */
     public <T> T create(Class<T> interfaceClass) {
-        ProxyFactory proxyFactory = new JdkProxyFactory<T>();
-        proxyFactory.init(new ProxyConfig(interfaceClass, serviceVersion, serviceGroup, serializationType, timeout, registryService, RpcConsumer.getInstance(), async, oneway));
+        ProxyFactory proxyFactory = this.getProxyFactory();
+        ProxyConfig<T> proxyConfig = new ProxyConfig<>(interfaceClass, serviceVersion, serviceGroup, serializationType, timeout, registryService, RpcConsumer.getInstance(), async, oneway);
+        proxyConfig.setCallbackExecutor(callbackExecutor);
+        proxyConfig.setHedging(hedging);
+        proxyConfig.setCluster(cluster);
+        proxyConfig.setRetries(retries);
+        proxyFactory.init(proxyConfig);
         LOGGER.debug("Creating sync proxy for interface: {}", interfaceClass.getName());
         return proxyFactory.getProxy(interfaceClass);
     }
 
+    /**
+     * 根据代理类型获取代理工厂
+     *
+     * @return 代理工厂
+     */
+    private ProxyFactory getProxyFactory() {
+        if (proxy == null || proxy.isEmpty() || RpcConstants.PROXY_JDK.equals(proxy)) {
+            return new JdkProxyFactory<>();
+        }
+        if (RpcConstants.PROXY_JAVASSIST.equals(proxy)) {
+            return new JavassistProxyFactory<>();
+        }
+        throw new IllegalArgumentException("Unsupported proxy type: " + proxy);
+    }
+
     /**
      * 创建异步代理对象
      * 
@@ -120,7 +233,10 @@ public class RpcClient {
      */
     public <T> IAsyncObjectProxy createAsync(Class<T> interfaceClass) {
         LOGGER.debug("Creating async proxy for interface: {}", interfaceClass.getName());
-        return new ObjectProxy<T>(interfaceClass, serviceVersion, serviceGroup, serializationType, timeout, registryService, RpcConsumer.getInstance(), async, oneway);
+        ObjectProxy<T> objectProxy = new ObjectProxy<T>(interfaceClass, serviceVersion, serviceGroup, serializationType, timeout, registryService, RpcConsumer.getInstance(), async, oneway);
+        objectProxy.setCallbackExecutor(callbackExecutor);
+        objectProxy.setCluster(cluster, retries);
+        return objectProxy;
     }
 
     /**
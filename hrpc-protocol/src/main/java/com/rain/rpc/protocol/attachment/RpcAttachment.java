@@ -0,0 +1,203 @@
+package com.rain.rpc.protocol.attachment;
+
+import com.rain.rpc.protocol.base.RpcMessage;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 二进制附件
+ * 作为请求参数、响应结果或流中的元素时，内容不经过序列化，由编码器在数据体之后直接写出
+ *
+ * 设计说明：
+ * 1. 序列化时只写出长度，内容由编码器作为独立的缓冲区或文件区域写出：
+ *    内存中的内容直接包装为ByteBuf，文件使用FileRegion通过sendfile发送，发送端不复制内容
+ * 2. 接收端按长度分配ByteBuffer，附件数据到达后从累积缓冲区移入，不反序列化，通过asByteBuffer取得视图
+ * 3. 只识别请求的参数、响应的结果和流数据本身，嵌套在其他对象中的附件不会单独发送
+ * 4. 单个附件不超过Integer.MAX_VALUE字节，接收端需要一次性容纳整个附件
+ */
+public final class RpcAttachment implements Serializable {
+
+    private static final long serialVersionUID = -5138806154127650412L;
+
+    /**
+     * 附件长度（字节），随数据体序列化
+     */
+    private final int length;
+
+    /**
+     * 内存中的内容，发送文件时为null
+     */
+    private transient ByteBuffer content;
+
+    /**
+     * 发送的文件，只在发送端使用
+     */
+    private transient File file;
+
+    /**
+     * 文件中的起始位置
+     */
+    private transient long position;
+
+    private RpcAttachment(int length, ByteBuffer content, File file, long position) {
+        this.length = length;
+        this.content = content;
+        this.file = file;
+        this.position = position;
+    }
+
+    /**
+     * 包装字节数组，不复制内容，发送完成前不能修改数组
+     *
+     * @param bytes 附件内容
+     * @return 附件
+     */
+    public static RpcAttachment wrap(byte[] bytes) {
+        return new RpcAttachment(bytes.length, ByteBuffer.wrap(bytes), null, 0);
+    }
+
+    /**
+     * 包装ByteBuffer中position到limit之间的内容，不复制内容，也不改变buffer的position
+     *
+     * @param buffer 附件内容
+     * @return 附件
+     */
+    public static RpcAttachment wrap(ByteBuffer buffer) {
+        ByteBuffer slice = buffer.slice();
+        return new RpcAttachment(slice.remaining(), slice, null, 0);
+    }
+
+    /**
+     * 发送整个文件
+     *
+     * @param file 文件
+     * @return 附件
+     * @throws IllegalArgumentException 文件不存在或超过单个附件的最大长度
+     */
+    public static RpcAttachment of(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Attachment file does not exist: " + file);
+        }
+        return of(file, 0, file.length());
+    }
+
+    /**
+     * 发送文件中的一段内容
+     *
+     * @param file 文件
+     * @param position 起始位置
+     * @param count 字节数
+     * @return 附件
+     * @throws IllegalArgumentException 超过单个附件的最大长度
+     */
+    public static RpcAttachment of(File file, long position, long count) {
+        if (position < 0 || count < 0 || count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid attachment region of " + file + ": position " + position + ", count " + count);
+        }
+        return new RpcAttachment((int) count, null, file, position);
+    }
+
+    /**
+     * 由解码器在附件数据到达后设置内容
+     *
+     * @param content 附件内容
+     */
+    public void bind(ByteBuffer content) {
+        this.content = content;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 是否为文件附件，只在发送端为true
+     */
+    public boolean isFile() {
+        return file != null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 获取附件内容的视图，不复制内容；文件附件以只读方式映射到内存
+     *
+     * @return position为0、limit为附件长度的ByteBuffer，修改position和limit不影响附件
+     */
+    public ByteBuffer asByteBuffer() {
+        if (content != null) {
+            return content.duplicate();
+        }
+        if (file == null) {
+            throw new IllegalStateException("Attachment content not received");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 复制附件内容
+     *
+     * @return 附件内容的副本
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        this.asByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 按固定的顺序找出消息中的附件，编码器和解码器使用同样的顺序对应附件和数据
+     * 请求按参数顺序，响应只看结果，流消息只看流数据
+     *
+     * @param message 请求、响应或流消息
+     * @return 附件列表，没有附件时为空列表
+     */
+    public static List<RpcAttachment> collect(RpcMessage message) {
+        if (message instanceof RpcRequest request) {
+            Object[] parameters = request.getParameters();
+            if (parameters == null) {
+                return Collections.emptyList();
+            }
+            List<RpcAttachment> attachments = null;
+            for (Object parameter : parameters) {
+                if (parameter instanceof RpcAttachment attachment) {
+                    if (attachments == null) {
+                        attachments = new ArrayList<>(2);
+                    }
+                    attachments.add(attachment);
+                }
+            }
+            return attachments == null ? Collections.emptyList() : attachments;
+        }
+        Object value = message instanceof RpcResponse response ? response.getResult()
+                : message instanceof RpcStreamMessage streamMessage ? streamMessage.getData() : null;
+        return value instanceof RpcAttachment attachment ? List.of(attachment) : Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return "RpcAttachment{length=" + length + (file != null ? ", file=" + file + ", position=" + position : "") + "}";
+    }
+}
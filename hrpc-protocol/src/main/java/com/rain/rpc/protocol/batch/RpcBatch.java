@@ -0,0 +1,40 @@
+package com.rain.rpc.protocol.batch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量消息数据载荷类
+ * 多个请求或响应共用一个协议头，减少小消息的协议头和系统调用开销
+ * 由RpcEncoder按固定的二进制格式逐条写出，不整体序列化
+ */
+public class RpcBatch implements Serializable {
+
+    private static final long serialVersionUID = -2391575301760368927L;
+
+    /**
+     * 批量消息中的消息，按写出顺序排列
+     */
+    private List<RpcBatchEntry> entries;
+
+    public RpcBatch() {
+        this.entries = new ArrayList<>();
+    }
+
+    public RpcBatch(int initialCapacity) {
+        this.entries = new ArrayList<>(initialCapacity);
+    }
+
+    public List<RpcBatchEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<RpcBatchEntry> entries) {
+        this.entries = entries;
+    }
+
+    public void addEntry(RpcBatchEntry entry) {
+        entries.add(entry);
+    }
+}
@@ -0,0 +1,106 @@
+package com.rain.rpc.protocol.batch;
+
+import com.rain.rpc.protocol.base.RpcMessage;
+import com.rain.rpc.protocol.enumeration.RpcType;
+
+import java.io.Serializable;
+
+/**
+ * 批量消息中的一条消息
+ * 保存单条消息协议头中各不相同的字段和数据体，魔数和序列化类型与批量消息的协议头一致
+ */
+public class RpcBatchEntry implements Serializable {
+
+    private static final long serialVersionUID = 4617306419842537052L;
+
+    /**
+     * 消息类型，请求、响应或流式调用的消息
+     */
+    private byte messageType;
+
+    /**
+     * 状态码
+     */
+    private byte status;
+
+    /**
+     * 请求ID，用于匹配请求和响应
+     */
+    private long requestId;
+
+    /**
+     * 剩余超时时间（毫秒），0表示不限制，在组成批量消息时计算
+     */
+    private int remainingTimeout;
+
+    /**
+     * 数据体，RpcRequest、RpcResponse或RpcStreamMessage
+     */
+    private RpcMessage body;
+
+    /**
+     * 数据体编码失败的原因，由RpcEncoder在写出批量消息时设置，不随消息传输
+     * 编码失败的消息不写入批量消息，响应改为写出失败响应，由RpcBatchWriteHandler只让这条消息的写出失败
+     */
+    private transient Throwable failure;
+
+    public byte getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(byte messageType) {
+        this.messageType = messageType;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public void setStatus(byte status) {
+        this.status = status;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public int getRemainingTimeout() {
+        return remainingTimeout;
+    }
+
+    public void setRemainingTimeout(int remainingTimeout) {
+        this.remainingTimeout = remainingTimeout;
+    }
+
+    public RpcMessage getBody() {
+        return body;
+    }
+
+    public void setBody(RpcMessage body) {
+        this.body = body;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public void setFailure(Throwable failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * 判断消息类型能否放入批量消息
+     *
+     * @param messageType 消息类型
+     * @return 请求、响应和流式调用的消息返回true
+     */
+    public static boolean isBatchable(RpcType messageType) {
+        return messageType == RpcType.REQUEST || messageType == RpcType.RESPONSE || messageType == RpcType.STREAM_DATA
+                || messageType == RpcType.STREAM_END || messageType == RpcType.STREAM_CREDIT || messageType == RpcType.REQUEST_STREAM_DATA
+                || messageType == RpcType.REQUEST_STREAM_END || messageType == RpcType.REQUEST_STREAM_CREDIT;
+    }
+}
@@ -16,9 +16,66 @@ public enum RpcType {
     RESPONSE(2),
     
     /**
-     * 心跳消息类型
+     * 心跳请求消息类型，只有协议头，收到后回复HEARTBEAT_PONG
      */
-    HEARTBEAT(3);
+    HEARTBEAT(3),
+
+    /**
+     * 取消请求消息类型，只有协议头，按请求ID取消服务提供者端的处理
+     */
+    CANCEL(4),
+
+    /**
+     * 批量消息类型，数据体中包含多个请求或响应，每个都带有自己的请求ID，接收方解码后拆分为单独的消息
+     */
+    BATCH(5),
+
+    /**
+     * 心跳响应消息类型，只有协议头，请求ID与心跳请求相同
+     */
+    HEARTBEAT_PONG(6),
+
+    /**
+     * 分块消息类型，数据体较大的消息拆分为多个分块帧连续发送，接收方按顺序重组后还原为原消息
+     * 数据体格式：原消息类型(1字节) + 是否最后一块(1字节) + 分块数据(N字节)
+     */
+    CHUNK(7),
+
+    /**
+     * 流数据消息类型，数据体为RpcStreamMessage，携带流中的一个元素，请求ID与发起流式调用的请求相同
+     */
+    STREAM_DATA(8),
+
+    /**
+     * 流结束消息类型，数据体为RpcStreamMessage，状态为FAIL时携带错误信息，之后该请求ID上不再有流数据
+     */
+    STREAM_END(9),
+
+    /**
+     * 流额度消息类型，数据体为RpcStreamMessage，由接收方发送，允许发送方继续发送指定数量的流数据
+     */
+    STREAM_CREDIT(10),
+
+    /**
+     * 请求流数据消息类型，由消费者发送，数据体为RpcStreamMessage，携带请求流中的一个元素，请求ID与发起调用的请求相同
+     */
+    REQUEST_STREAM_DATA(11),
+
+    /**
+     * 请求流结束消息类型，由消费者发送，数据体为RpcStreamMessage，状态为FAIL时携带错误信息
+     */
+    REQUEST_STREAM_END(12),
+
+    /**
+     * 请求流额度消息类型，由服务提供者发送，数据体为RpcStreamMessage，允许消费者继续发送指定数量的请求流数据
+     */
+    REQUEST_STREAM_CREDIT(13),
+
+    /**
+     * 带附件的消息类型，原消息的数据体之后紧跟附件的原始字节，附件不计入数据长度
+     * 数据体格式：原消息类型(1字节) + 附件数(4字节) + 每个附件的长度(4字节) + 原消息的数据体(N字节)
+     */
+    ATTACHED(14);
 
     /**
      * 类型值
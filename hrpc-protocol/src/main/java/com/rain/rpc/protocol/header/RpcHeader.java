@@ -1,6 +1,7 @@
 package com.rain.rpc.protocol.header;
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RPC协议头部信息
@@ -9,11 +10,14 @@ import java.io.Serializable;
  * 协议格式:
  * <pre>
  * +---------------------------------------------------------------+
- * | 魔数 2byte | 报文类型 1byte | 状态 1byte |     消息 ID 8byte      |
+ * | 魔数 2byte | 版本号 1byte | 报文类型 1byte | 状态 1byte | 消息 ID 8byte |
  * +---------------------------------------------------------------+
- * |           序列化类型 16byte      |        数据长度 4byte          |
+ * |     序列化类型 16byte     |  剩余超时时间 4byte  |  数据长度 4byte  |
  * +---------------------------------------------------------------+
  * </pre>
+ * 剩余超时时间单位为毫秒，0表示不限制，小于0表示发送时已经超时；
+ * 接收方收到后按本地时钟换算为截止时间，两端不需要时钟同步；
+ * 版本号固定为RpcConstants.VERSION，由编解码器直接读写，不保存在协议头对象中
  */
 public class RpcHeader implements Serializable {
     private static final long serialVersionUID = 643172623893625070L;
@@ -48,6 +52,12 @@ public class RpcHeader implements Serializable {
      */
     private int messageLength;
 
+    /**
+     * 截止时间，以本地的System.nanoTime()表示，0表示不限制
+     * 不直接在网络上传输，编码时换算为剩余超时时间
+     */
+    private transient long deadline;
+
     public short getMagic() {
         return magic;
     }
@@ -95,4 +105,44 @@ public class RpcHeader implements Serializable {
     public void setMessageLength(int messageLength) {
         this.messageLength = messageLength;
     }
-}
\ No newline at end of file
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * 获取编码时使用的剩余超时时间
+     *
+     * @return 剩余超时时间（毫秒），0表示不限制，已经超时时为-1
+     */
+    public int getRemainingTimeout() {
+        if (deadline == 0) {
+            return 0;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            return -1;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 根据收到的剩余超时时间设置本地截止时间
+     *
+     * @param remainingTimeout 剩余超时时间（毫秒），0表示不限制
+     */
+    public void setRemainingTimeout(int remainingTimeout) {
+        this.deadline = remainingTimeout == 0 ? 0 : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingTimeout);
+    }
+
+    /**
+     * 是否已经超过截止时间
+     */
+    public boolean isExpired() {
+        return deadline != 0 && deadline - System.nanoTime() <= 0;
+    }
+}
@@ -2,6 +2,7 @@ package com.rain.rpc.protocol.header;
 
 import com.rain.rpc.common.id.IdFactory;
 import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
 import com.rain.rpc.protocol.enumeration.RpcType;
 
 /**
@@ -29,4 +30,72 @@ public class RpcHeaderFactory {
         header.setSerializationType(serializationType);
         return header;
     }
-}
\ No newline at end of file
+
+    /**
+     * 创建取消请求类型的RPC协议头部
+     *
+     * @param serializationType 序列化类型
+     * @param requestId 需要取消的请求ID
+     * @return 取消请求类型的RPC协议头部
+     */
+    public static RpcHeader getCancelHeader(String serializationType, long requestId) {
+        RpcHeader header = new RpcHeader();
+        header.setMagic(RpcConstants.MAGIC);
+        header.setRequestId(requestId);
+        header.setMessageType((byte) RpcType.CANCEL.getType());
+        header.setStatus((byte) 0x1);
+        header.setSerializationType(serializationType);
+        return header;
+    }
+
+    /**
+     * 创建批量消息类型的RPC协议头部
+     * 批量消息的请求ID、状态和剩余超时时间由其中的每条消息各自携带，协议头中不使用
+     *
+     * @param serializationType 序列化类型
+     * @return 批量消息类型的RPC协议头部
+     */
+    public static RpcHeader getBatchHeader(String serializationType) {
+        RpcHeader header = new RpcHeader();
+        header.setMagic(RpcConstants.MAGIC);
+        header.setMessageType((byte) RpcType.BATCH.getType());
+        header.setSerializationType(serializationType);
+        return header;
+    }
+
+    /**
+     * 创建心跳类型的RPC协议头部
+     *
+     * @param serializationType 序列化类型
+     * @param heartbeatType 心跳请求HEARTBEAT或心跳响应HEARTBEAT_PONG
+     * @param requestId 请求ID，心跳响应使用心跳请求的ID
+     * @return 心跳类型的RPC协议头部
+     */
+    public static RpcHeader getHeartbeatHeader(String serializationType, RpcType heartbeatType, long requestId) {
+        RpcHeader header = new RpcHeader();
+        header.setMagic(RpcConstants.MAGIC);
+        header.setRequestId(requestId);
+        header.setMessageType((byte) heartbeatType.getType());
+        header.setStatus((byte) 0x1);
+        header.setSerializationType(serializationType);
+        return header;
+    }
+
+    /**
+     * 创建流式调用中使用的RPC协议头部
+     *
+     * @param serializationType 序列化类型
+     * @param streamType 流数据STREAM_DATA、流结束STREAM_END或流额度STREAM_CREDIT
+     * @param requestId 发起流式调用的请求ID
+     * @return 流式调用的RPC协议头部
+     */
+    public static RpcHeader getStreamHeader(String serializationType, RpcType streamType, long requestId) {
+        RpcHeader header = new RpcHeader();
+        header.setMagic(RpcConstants.MAGIC);
+        header.setRequestId(requestId);
+        header.setMessageType((byte) streamType.getType());
+        header.setStatus((byte) RpcStatus.SUCCESS.getCode());
+        header.setSerializationType(serializationType);
+        return header;
+    }
+}
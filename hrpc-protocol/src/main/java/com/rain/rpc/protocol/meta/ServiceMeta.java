@@ -1,6 +1,7 @@
 package com.rain.rpc.protocol.meta;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * 服务元数据，注册到注册中心的元数据信息
@@ -133,4 +134,27 @@ public class ServiceMeta implements Serializable {
     public void setServiceGroup(String serviceGroup) {
         this.serviceGroup = serviceGroup;
     }
-}
\ No newline at end of file
+
+    /**
+     * 所有字段都相同时视为同一个服务实例，用于服务发现时排除指定的实例
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ServiceMeta that)) {
+            return false;
+        }
+        return servicePort == that.servicePort
+                && Objects.equals(serviceName, that.serviceName)
+                && Objects.equals(serviceVersion, that.serviceVersion)
+                && Objects.equals(serviceAddr, that.serviceAddr)
+                && Objects.equals(serviceGroup, that.serviceGroup);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serviceName, serviceVersion, serviceAddr, servicePort, serviceGroup);
+    }
+}
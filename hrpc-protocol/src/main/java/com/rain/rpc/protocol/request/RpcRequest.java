@@ -2,6 +2,8 @@ package com.rain.rpc.protocol.request;
 
 import com.rain.rpc.protocol.base.RpcMessage;
 
+import java.util.concurrent.Flow;
+
 /**
  * RPC请求数据载荷类
  * 包含远程调用所需的所有信息
@@ -24,6 +26,13 @@ public class RpcRequest extends RpcMessage {
      * 方法参数类型数组
      */
     private Class<?>[] parameterTypes;
+
+    /**
+     * 方法ID，由编码器按连接分配，0表示没有分配
+     * 连接上第一次调用某个方法时与完整的方法签名一起发送，之后只发送方法ID，
+     * 类名、方法名、参数类型、版本号和分组为null，由接收方的解码器按方法ID还原
+     */
+    private int methodId;
     
     /**
      * 方法参数值数组
@@ -40,6 +49,32 @@ public class RpcRequest extends RpcMessage {
      */
     private String group;
 
+    /**
+     * 调用超时时间（毫秒），小于等于0表示不超时
+     */
+    private long timeout;
+
+    /**
+     * 是否为流式调用，服务提供者按消费者发送的额度以多个流数据消息返回结果
+     */
+    private boolean stream;
+
+    /**
+     * 是否带有请求流，带有时类型为Flow.Publisher的参数不随请求发送，由消费者以多个请求流数据消息发送，
+     * 服务提供者把收到的请求流作为该参数传给服务方法
+     */
+    private boolean requestStream;
+
+    /**
+     * 请求流的数据来源，只在消费者端使用，不参与序列化
+     */
+    private transient Flow.Publisher<?> requestStreamSource;
+
+    /**
+     * 服务唯一标识，由消费者端预先计算，只在本地使用，不参与序列化
+     */
+    private transient String serviceKey;
+
     public String getClassName() {
         return className;
     }
@@ -64,6 +99,14 @@ public class RpcRequest extends RpcMessage {
         this.parameterTypes = parameterTypes;
     }
 
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public void setMethodId(int methodId) {
+        this.methodId = methodId;
+    }
+
     public Object[] getParameters() {
         return parameters;
     }
@@ -87,4 +130,44 @@ public class RpcRequest extends RpcMessage {
     public void setGroup(String group) {
         this.group = group;
     }
-}
\ No newline at end of file
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public boolean getStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    public boolean getRequestStream() {
+        return requestStream;
+    }
+
+    public void setRequestStream(boolean requestStream) {
+        this.requestStream = requestStream;
+    }
+
+    public Flow.Publisher<?> getRequestStreamSource() {
+        return requestStreamSource;
+    }
+
+    public void setRequestStreamSource(Flow.Publisher<?> requestStreamSource) {
+        this.requestStreamSource = requestStreamSource;
+    }
+
+    public String getServiceKey() {
+        return serviceKey;
+    }
+
+    public void setServiceKey(String serviceKey) {
+        this.serviceKey = serviceKey;
+    }
+}
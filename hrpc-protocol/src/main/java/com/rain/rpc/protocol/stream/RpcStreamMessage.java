@@ -0,0 +1,55 @@
+package com.rain.rpc.protocol.stream;
+
+import com.rain.rpc.protocol.base.RpcMessage;
+
+/**
+ * 流式调用消息数据载荷类
+ * 流数据、流结束和流额度消息共用该类，按协议头中的消息类型使用其中的字段
+ */
+public class RpcStreamMessage extends RpcMessage {
+
+    private static final long serialVersionUID = -3266458097435209462L;
+
+    /**
+     * 流中的一个元素，只在流数据消息中使用
+     */
+    private Object data;
+
+    /**
+     * 错误信息，只在异常结束的流结束消息中使用
+     */
+    private String error;
+
+    /**
+     * 新增的额度，即允许对端继续发送的流数据消息数，只在流额度消息中使用
+     */
+    private long credits;
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getCredits() {
+        return credits;
+    }
+
+    public void setCredits(long credits) {
+        this.credits = credits;
+    }
+}
@@ -1,5 +1,10 @@
 package com.rain.rpc.provider.common.handler;
 
+import com.rain.rpc.codec.stream.RpcStreamSender;
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.common.collection.StripedLongObjectMap;
+import com.rain.rpc.common.context.DeadlineContext;
+import com.rain.rpc.common.exception.RpcException;
 import com.rain.rpc.common.helper.RpcServiceHelper;
 import com.rain.rpc.common.threadpool.ServerThreadPool;
 import com.rain.rpc.constants.RpcConstants;
@@ -9,21 +14,49 @@ import com.rain.rpc.protocol.enumeration.RpcType;
 import com.rain.rpc.protocol.header.RpcHeader;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.protocol.response.RpcResponse;
-import io.netty.channel.ChannelFutureListener;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import com.rain.rpc.provider.common.stream.RequestStreamPublisher;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.EncoderException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cglib.reflect.FastClass;
 import org.springframework.cglib.reflect.FastMethod;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * RPC服务提供者处理器
  * 作为Netty管道中的一个处理节点，负责接收客户端请求并调用对应的服务实现
  * 继承SimpleChannelInboundHandler以处理RpcProtocol<RpcRequest>类型的消息
+ *
+ * 设计说明：
+ * 1. 每个连接一个处理器实例，processingRequests登记该连接上正在处理的请求
+ * 2. 收到取消请求时，尚未开始执行的任务被取消后不会再执行，正在执行的任务会被中断，服务方法返回的Future会被取消
+ * 3. 已经取消的请求不再写回响应，消费者端也不再等待该响应
+ * 4. 连接断开时取消该连接上所有正在处理的请求；单向调用不登记，不受取消和连接断开的影响
+ * 5. 业务线程产生的响应放入该连接的批量写出队列，由IO线程一次取出多个响应写出并只flush一次，
+ *    不再为每个响应向IO线程提交一个任务、执行一次flush
+ * 6. 响应超过写缓冲区高水位、连接不可写时暂停读取该连接上的新请求，恢复可写后继续读取，
+ *    消费者读取响应过慢时不会让响应在出站缓冲区中无限积压
+ * 7. 流式调用的服务方法返回Flow.Publisher或Iterator，由RpcStreamSender按消费者授予的额度发送流数据，
+ *    收到请求时就登记响应流，之后到达的额度消息都能找到对应的流；取消请求和连接断开时同时取消响应流
+ * 8. 带有请求流的调用在收到请求时登记RequestStreamPublisher，作为类型为Flow.Publisher的参数传给服务方法，
+ *    之后到达的请求流消息按请求ID交给它；调用结束、取消请求和连接断开时以异常结束还没有结束的请求流。
+ *    客户端流式调用的服务方法必须返回CompletionStage，在请求流结束后再完成；同步返回结果时调用随即结束，
+ *    服务方法来不及读取请求流，不调用服务方法，直接返回错误
+ * 9. 带有方法ID的请求第一次调用时查找服务实例和方法并按方法ID缓存，之后不再拼接服务标识、查找服务实例和反射查找方法
  */
 public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<RpcRequest>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(RpcProviderHandler.class);
@@ -36,65 +69,385 @@ public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<
     //调用采用哪种类型调用真实方法
     private final String reflectType;
 
+    /**
+     * 当前连接上正在处理的请求，key为请求ID，value为线程池中的任务或服务方法返回的CompletableFuture
+     * 并发访问的只有业务线程池和当前连接的IO线程，段数与业务线程池大小一致即可
+     */
+    private final StripedLongObjectMap<Future<?>> processingRequests = new StripedLongObjectMap<>(16);
+
+    /**
+     * 当前连接上的响应流，key为请求ID，流结束后移除
+     */
+    private final StripedLongObjectMap<RpcStreamSender> streams = new StripedLongObjectMap<>(16);
+
+    /**
+     * 当前连接上的请求流，key为请求ID，请求流结束或调用结束后移除
+     */
+    private final StripedLongObjectMap<RequestStreamPublisher> requestStreams = new StripedLongObjectMap<>(16);
+
+    /**
+     * 当前连接上按方法ID缓存的服务方法，下标为方法ID；方法ID由消费者的编码器按连接分配，在连接上不会变化
+     */
+    private final AtomicReferenceArray<ServiceMethod> serviceMethods = new AtomicReferenceArray<>(RpcConstants.MAX_METHOD_IDS + 1);
+
+    /**
+     * 当前连接的批量写出队列，业务线程写回的响应在IO线程中合并写出
+     */
+    private volatile WriteQueue writeQueue;
+
     public RpcProviderHandler(String reflectType, Map<String, Object> handlerMap) {
         this.reflectType = reflectType;
         this.handlerMap = handlerMap;
     }
 
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        super.channelRegistered(ctx);
+        this.writeQueue = new WriteQueue(ctx.channel());
+    }
+
+    /**
+     * 连接不可写时暂停读取，出站缓冲区降到低水位以下后恢复读取
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        ctx.channel().config().setAutoRead(writable);
+        if (writable) {
+            LOGGER.info("Channel {} writable again, resume reading", ctx.channel().remoteAddress());
+        } else {
+            LOGGER.warn("Channel {} not writable, pause reading until responses drain", ctx.channel().remoteAddress());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     /**
      * 处理接收到的RPC请求
      * 当Netty管道中接收到一个完整的RpcProtocol<RpcRequest>消息时，该方法会被调用
-     * 使用线程池处理请求，避免阻塞IO线程
+     * 使用线程池处理请求，避免阻塞IO线程；取消请求直接在IO线程中处理
      * 
      * @param ctx             ChannelHandlerContext上下文
      * @param requestProtocol 接收到的RPC请求协议对象
      */
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcProtocol<RpcRequest> requestProtocol) throws Exception {
+        RpcHeader header = requestProtocol.getHeader();
+        if (header.getMessageType() == (byte) RpcType.CANCEL.getType()) {
+            this.cancel(header.getRequestId());
+            return;
+        }
+        if (header.getMessageType() == (byte) RpcType.STREAM_CREDIT.getType()) {
+            this.addStreamCredits(header.getRequestId(), (RpcStreamMessage) ((RpcProtocol<?>) requestProtocol).getBody());
+            return;
+        }
+        if (header.getMessageType() == (byte) RpcType.REQUEST_STREAM_DATA.getType() || header.getMessageType() == (byte) RpcType.REQUEST_STREAM_END.getType()) {
+            this.onRequestStreamMessage(header, (RpcStreamMessage) ((RpcProtocol<?>) requestProtocol).getBody());
+            return;
+        }
         // 使用线程池异步处理请求，避免阻塞Netty的IO线程
         // IO线程需要快速处理网络事件，业务逻辑应放在其他线程中处理
-        ServerThreadPool.submit(() -> {
-            // 获取请求协议的头部信息，后续需要修改头部信息作为响应返回
-            RpcHeader requestHeader = requestProtocol.getHeader();
-            // 设置消息类型为响应类型，表明这是对请求的响应
-            requestHeader.setMessageType((byte) RpcType.RESPONSE.getType());
-            // 获取请求体，包含具体的方法调用信息
-            RpcRequest request = requestProtocol.getBody();
-            
-            // 创建响应协议对象
-            RpcProtocol<RpcResponse> responseProtocol = new RpcProtocol<>();
-            // 创建响应体
-            RpcResponse response = new RpcResponse();
-            
-            try {
-                // 调用handle方法处理请求，获取执行结果
-                Object result = handle(request);
-                // 设置响应结果
-                response.setResult(result);
-                // 保留请求中的异步标记
-                response.setAsync(request.getAsync());
-                // 保留请求中的单向调用标记
-                response.setOneway(request.getOneway());
-                // 设置响应状态为成功
-                requestHeader.setStatus((byte) RpcStatus.SUCCESS.getCode());
-                
-                LOGGER.info("RPC method {} executed successfully", request.getMethodName());
-            } catch (Throwable t) {
-                // 捕获处理过程中的异常，设置错误信息
-                response.setError(t.toString());
-                // 设置响应状态为失败
-                requestHeader.setStatus((byte) RpcStatus.FAIL.getCode());
-                
-                LOGGER.error("Error occurred while executing RPC method: {}", request.getMethodName(), t);
+        FutureTask<Void> task = new FutureTask<>(() -> this.process(ctx, requestProtocol), null);
+        RpcRequest request = requestProtocol.getBody();
+        if (request.getOneway()) {
+            ServerThreadPool.execute(task);
+            return;
+        }
+        // 先登记再提交，保证任务结束时一定能找到并移除登记
+        long requestId = header.getRequestId();
+        processingRequests.put(requestId, task);
+        if (request.getStream()) {
+            streams.put(requestId, new RpcStreamSender(requestId, header.getSerializationType(), RpcType.STREAM_DATA, RpcType.STREAM_END,
+                    writeQueue, ServerThreadPool.getExecutor(), () -> {
+                        streams.remove(requestId);
+                        this.closeRequestStream(requestId, "Response stream terminated");
+                    }));
+        }
+        if (request.getRequestStream()) {
+            requestStreams.put(requestId, new RequestStreamPublisher(requestId, header.getSerializationType(), writeQueue,
+                    ServerThreadPool.getExecutor(), () -> requestStreams.remove(requestId)));
+        }
+        try {
+            ServerThreadPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            processingRequests.remove(requestId);
+            streams.remove(requestId);
+            requestStreams.remove(requestId);
+            throw e;
+        }
+    }
+
+    /**
+     * 在业务线程中执行请求
+     * 请求在线程池中排队期间超过了消费者的截止时间时直接丢弃，消费者已经不再等待该响应
+     *
+     * @param ctx             ChannelHandlerContext上下文
+     * @param requestProtocol RPC请求协议
+     */
+    private void process(ChannelHandlerContext ctx, RpcProtocol<RpcRequest> requestProtocol) {
+        // 获取请求体，包含具体的方法调用信息
+        RpcRequest request = requestProtocol.getBody();
+        RpcHeader header = requestProtocol.getHeader();
+        long requestId = header.getRequestId();
+        if (header.isExpired()) {
+            processingRequests.remove(requestId);
+            streams.remove(requestId);
+            this.closeRequestStream(requestId, "Request expired");
+            LOGGER.warn("Skip expired request. Request id: {}. Request method: {}#{}", requestId, request.getClassName(), request.getMethodName());
+            return;
+        }
+        Object result;
+        // 业务代码及其发起的下游调用可以通过DeadlineContext获取剩余的时间预算
+        DeadlineContext.getContext().setDeadline(header.getDeadline());
+        try {
+            if (request.getRequestStream()) {
+                this.bindRequestStream(requestId, request);
             }
-            
-            // 设置响应协议的头部和体
-            responseProtocol.setHeader(requestHeader);
-            responseProtocol.setBody(response);
-            
-            // 将响应写回客户端并刷新
-            ctx.writeAndFlush(responseProtocol).addListener(ChannelFutureListener.CLOSE);
-        });
+            // 调用handle方法处理请求，获取执行结果
+            result = handle(request);
+        } catch (Throwable t) {
+            if (request.getStream()) {
+                this.startStream(requestId, null, t);
+            } else {
+                complete(ctx, requestProtocol, null, t);
+            }
+            return;
+        } finally {
+            DeadlineContext.getContext().removeDeadline();
+        }
+        if (request.getStream()) {
+            this.startStream(requestId, result, null);
+            return;
+        }
+        // 服务方法返回CompletionStage时，等其完成后再响应，不占用业务线程
+        if (result instanceof CompletionStage<?> stage) {
+            CompletableFuture<?> future = stage.toCompletableFuture();
+            // 之后的取消作用于服务方法返回的Future；请求已经被取消时直接取消该Future
+            if (!request.getOneway() && processingRequests.replace(requestId, future) == null) {
+                future.cancel(true);
+                return;
+            }
+            future.whenComplete((value, throwable) -> complete(ctx, requestProtocol, value, unwrap(throwable)));
+            return;
+        }
+        complete(ctx, requestProtocol, result, null);
+    }
+
+    /**
+     * 请求处理结束，仍在登记中时才写回响应
+     *
+     * @param ctx             ChannelHandlerContext上下文
+     * @param requestProtocol RPC请求协议
+     * @param result          方法调用结果
+     * @param throwable       方法调用抛出的异常，调用成功时为null
+     */
+    private void complete(ChannelHandlerContext ctx, RpcProtocol<RpcRequest> requestProtocol, Object result, Throwable throwable) {
+        long requestId = requestProtocol.getHeader().getRequestId();
+        this.closeRequestStream(requestId, "Call completed");
+        if (!requestProtocol.getBody().getOneway() && processingRequests.remove(requestId) == null) {
+            LOGGER.info("Request cancelled, skip response. Request id: {}", requestId);
+            return;
+        }
+        writeResponse(ctx, requestProtocol, result, throwable);
+    }
+
+    /**
+     * 把登记的请求流作为类型为Flow.Publisher的参数传给服务方法
+     *
+     * @param requestId 请求ID
+     * @param request   RPC请求
+     * @throws RpcException 请求已经被取消，或服务方法没有类型为Flow.Publisher的参数
+     */
+    private void bindRequestStream(long requestId, RpcRequest request) {
+        RequestStreamPublisher publisher = requestStreams.get(requestId);
+        if (publisher == null) {
+            throw new RpcException("Request stream closed before invoking. Request id: " + requestId);
+        }
+        Class<?>[] parameterTypes = request.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == Flow.Publisher.class) {
+                request.getParameters()[i] = publisher;
+                return;
+            }
+        }
+        throw new RpcException("Request stream requires a Flow.Publisher parameter: " + request.getClassName() + "#" + request.getMethodName());
+    }
+
+    /**
+     * 收到消费者发送的请求流消息，交给对应的请求流；收到请求流结束消息时移除
+     *
+     * @param header  请求流消息的协议头
+     * @param message 请求流数据或请求流结束消息
+     */
+    private void onRequestStreamMessage(RpcHeader header, RpcStreamMessage message) {
+        long requestId = header.getRequestId();
+        if (header.getMessageType() == (byte) RpcType.REQUEST_STREAM_DATA.getType()) {
+            RequestStreamPublisher publisher = requestStreams.get(requestId);
+            if (publisher != null) {
+                publisher.onData(message.getData());
+            }
+            return;
+        }
+        RequestStreamPublisher publisher = requestStreams.remove(requestId);
+        if (publisher == null) {
+            return;
+        }
+        if (message.isError()) {
+            publisher.onError(new RpcException("Request stream error: " + message.getError()));
+        } else {
+            publisher.onComplete();
+        }
+    }
+
+    /**
+     * 调用结束、被取消或连接断开时，以异常结束还没有结束的请求流
+     *
+     * @param requestId 请求ID
+     * @param reason    结束原因
+     */
+    private void closeRequestStream(long requestId, String reason) {
+        RequestStreamPublisher publisher = requestStreams.remove(requestId);
+        if (publisher != null) {
+            publisher.onError(new RpcException(reason + " before request stream ended. Request id: " + requestId));
+        }
+    }
+
+    /**
+     * 服务方法返回后开始发送响应流，之后的取消作用于响应流本身
+     *
+     * @param requestId 请求ID
+     * @param result    服务方法的返回值
+     * @param throwable 服务方法抛出的异常，调用成功时为null
+     */
+    private void startStream(long requestId, Object result, Throwable throwable) {
+        RpcStreamSender stream = streams.get(requestId);
+        if (processingRequests.remove(requestId) == null || stream == null) {
+            LOGGER.info("Stream request cancelled, skip stream. Request id: {}", requestId);
+            return;
+        }
+        if (throwable != null) {
+            stream.fail(throwable);
+        } else if (!RpcStreamSender.isStreamSource(result)) {
+            stream.fail(new RpcException("Stream method must return Flow.Publisher or Iterator, but returned " + (result == null ? null : result.getClass().getName())));
+        } else {
+            stream.start(result);
+        }
+    }
+
+    /**
+     * 收到消费者授予的额度，流已经结束或被取消时忽略
+     *
+     * @param requestId 请求ID
+     * @param message   流额度消息
+     */
+    private void addStreamCredits(long requestId, RpcStreamMessage message) {
+        RpcStreamSender stream = streams.get(requestId);
+        if (stream != null) {
+            stream.addCredits(message.getCredits());
+        }
+    }
+
+    /**
+     * 取消正在处理的请求
+     * 尚未开始执行的任务取消后留在线程池队列中，出队时直接结束，不会执行业务代码；
+     * 不从队列中逐个查找删除，避免在IO线程中扫描队列
+     *
+     * @param requestId 请求ID
+     */
+    private void cancel(long requestId) {
+        RpcStreamSender stream = streams.remove(requestId);
+        if (stream != null) {
+            stream.cancel();
+        }
+        this.closeRequestStream(requestId, "Request cancelled");
+        Future<?> future = processingRequests.remove(requestId);
+        if (future == null) {
+            // 请求已经处理完成
+            return;
+        }
+        future.cancel(true);
+        LOGGER.info("Request cancelled by consumer. Request id: {}", requestId);
+    }
+
+    /**
+     * 连接断开后响应无法再送达，取消该连接上所有正在处理的请求
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        for (RpcStreamSender stream : streams.removeAll()) {
+            stream.cancel();
+        }
+        for (RequestStreamPublisher publisher : requestStreams.removeAll()) {
+            publisher.onError(new RpcException("Channel inactive before request stream ended"));
+        }
+        List<Future<?>> processing = processingRequests.removeAll();
+        if (processing.isEmpty()) {
+            return;
+        }
+        LOGGER.warn("Channel {} inactive, cancelling {} processing request(s)", ctx.channel().remoteAddress(), processing.size());
+        for (Future<?> future : processing) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 构建响应并写回客户端
+     *
+     * @param ctx             ChannelHandlerContext上下文
+     * @param requestProtocol RPC请求协议，其头部信息修改后作为响应头返回
+     * @param result          方法调用结果
+     * @param throwable       方法调用抛出的异常，调用成功时为null
+     */
+    private void writeResponse(ChannelHandlerContext ctx, RpcProtocol<RpcRequest> requestProtocol, Object result, Throwable throwable) {
+        // 获取请求协议的头部信息，后续需要修改头部信息作为响应返回
+        RpcHeader requestHeader = requestProtocol.getHeader();
+        // 设置消息类型为响应类型，表明这是对请求的响应
+        requestHeader.setMessageType((byte) RpcType.RESPONSE.getType());
+        // 响应不需要携带剩余超时时间
+        requestHeader.setDeadline(0);
+        RpcRequest request = requestProtocol.getBody();
+
+        // 创建响应协议对象
+        RpcProtocol<RpcResponse> responseProtocol = new RpcProtocol<>();
+        // 创建响应体
+        RpcResponse response = new RpcResponse();
+        if (throwable == null) {
+            // 设置响应结果
+            response.setResult(result);
+            // 保留请求中的异步标记
+            response.setAsync(request.getAsync());
+            // 保留请求中的单向调用标记
+            response.setOneway(request.getOneway());
+            // 设置响应状态为成功
+            requestHeader.setStatus((byte) RpcStatus.SUCCESS.getCode());
+
+            LOGGER.info("RPC method {} executed successfully", request.getMethodName());
+        } else {
+            // 捕获处理过程中的异常，设置错误信息
+            response.setError(throwable.toString());
+            // 设置响应状态为失败
+            requestHeader.setStatus((byte) RpcStatus.FAIL.getCode());
+
+            LOGGER.error("Error occurred while executing RPC method: {}", request.getMethodName(), throwable);
+        }
+
+        // 设置响应协议的头部和体
+        responseProtocol.setHeader(requestHeader);
+        responseProtocol.setBody(response);
+
+        // 放入批量写出队列，由IO线程写回客户端并刷新；连接由消费者复用，不能在响应后关闭
+        // 不关心写出结果，使用voidPromise，写出失败时触发exceptionCaught
+        writeQueue.enqueueVoid(responseProtocol);
+    }
+
+    /**
+     * CompletionStage异常完成时，依赖阶段拿到的是CompletionException，取出真实原因
+     */
+    private static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
     }
 
     /**
@@ -105,6 +458,46 @@ public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<
      * @throws Throwable 方法调用过程中可能抛出的异常
      */
     private Object handle(RpcRequest request) throws Throwable {
+        int methodId = request.getMethodId();
+        boolean cacheable = methodId > 0 && methodId <= RpcConstants.MAX_METHOD_IDS;
+        ServiceMethod serviceMethod = cacheable ? serviceMethods.get(methodId) : null;
+        if (serviceMethod == null) {
+            serviceMethod = this.resolve(request);
+            if (cacheable) {
+                serviceMethods.set(methodId, serviceMethod);
+            }
+        }
+
+        if (request.getRequestStream() && !request.getStream() && !CompletionStage.class.isAssignableFrom(serviceMethod.returnType)) {
+            throw new RpcException("Method with request stream must return CompletionStage: " + request.getClassName() + "#" + request.getMethodName());
+        }
+
+        // 获取方法参数值数组
+        Object[] parameters = request.getParameters();
+
+        // 记录调试信息
+        if (parameters != null && parameters.length > 0) {
+            LOGGER.debug("Method {} has {} parameters:", request.getMethodName(), parameters.length);
+            for (int i = 0; i < parameters.length; ++i) {
+                LOGGER.debug("Parameter {}: {}", i, parameters[i]);
+            }
+        }
+
+        // 调用具体的方法并返回结果
+        return serviceMethod.invoke(parameters);
+    }
+
+    /**
+     * 根据请求中的方法签名查找服务实例和要调用的方法
+     *
+     * @param request RPC请求对象
+     * @return 服务实例和要调用的方法
+     * @throws Exception 服务不存在、方法ID没有登记或找不到方法
+     */
+    private ServiceMethod resolve(RpcRequest request) throws Exception {
+        if (request.getClassName() == null) {
+            throw new RpcException("Method id " + request.getMethodId() + " is not defined on this connection");
+        }
         // 根据类名、版本号和服务组构建服务唯一标识
         // 通过服务标识可以在handlerMap中快速查找对应的服务实例
         String serviceKey = RpcServiceHelper.buildServiceKey(request.getClassName(), request.getVersion(), request.getGroup());
@@ -125,8 +518,6 @@ public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<
         String methodName = request.getMethodName();
         // 获取方法参数类型数组
         Class<?>[] parameterTypes = request.getParameterTypes();
-        // 获取方法参数值数组
-        Object[] parameters = request.getParameters();
 
         // 记录调试信息
         if (parameterTypes != null && parameterTypes.length > 0) {
@@ -136,56 +527,42 @@ public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<
             }
         }
 
-        // 记录调试信息
-        if (parameters != null && parameters.length > 0) {
-            LOGGER.debug("Method {} has {} parameters:", methodName, parameters.length);
-            for (int i = 0; i < parameters.length; ++i) {
-                LOGGER.debug("Parameter {}: {}", i, parameters[i]);
-            }
-        }
-        
-        // 调用具体的方法并返回结果
-        return invokeMethod(serviceInstance, serviceClass, methodName, parameterTypes, parameters);
+        return this.resolveMethod(serviceInstance, serviceClass, methodName, parameterTypes);
     }
 
     /**
-     * 通过反射调用具体的服务方法
-     * 目前使用JDK动态代理方式
-     * todo 未来扩展其他代理方式
+     * 按反射类型查找具体的服务方法
      * 
      * @param serviceInstance 服务实例
      * @param serviceClass    服务类
      * @param methodName      方法名
      * @param parameterTypes  参数类型数组
-     * @param parameters      参数值数组
-     * @return 方法调用结果
-     * @throws Throwable 方法调用过程中可能抛出的异常
+     * @return 服务实例和要调用的方法
+     * @throws Exception 找不到方法
      */
-    private Object invokeMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes, Object[] parameters) throws Throwable {
+    private ServiceMethod resolveMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes) throws Exception {
         switch (this.reflectType) {
             case RpcConstants.REFLECT_TYPE_JDK -> {
-                return this.invokeJDKMethod(serviceInstance, serviceClass, methodName, parameterTypes, parameters);
+                return this.resolveJDKMethod(serviceInstance, serviceClass, methodName, parameterTypes);
             }
             case RpcConstants.REFLECT_TYPE_CGLIB -> {
-                return this.invokeCGLIBMethod(serviceInstance, serviceClass, methodName, parameterTypes, parameters);
+                return this.resolveCGLIBMethod(serviceInstance, serviceClass, methodName, parameterTypes);
             }
             default -> throw new RuntimeException("Invalid reflect type: " + this.reflectType);
         }
     }
 
-    private Object invokeCGLIBMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes, Object[] parameters) throws Throwable {
+    private ServiceMethod resolveCGLIBMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes) {
         // 记录使用CGLIB方式进行方法调用
         LOGGER.info("Using CGLIB reflection type to invoke method: {}", methodName);
         
         // 使用CGLIB的FastClass机制提高反射性能
         FastClass serviceFastClass = FastClass.create(serviceClass);
         FastMethod serviceFastMethod = serviceFastClass.getMethod(methodName, parameterTypes);
-        
-        // 调用目标方法并返回结果
-        return serviceFastMethod.invoke(serviceInstance, parameters);
+        return new ServiceMethod(serviceInstance, null, serviceFastMethod);
     }
 
-    private Object invokeJDKMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes, Object[] parameters) throws Throwable {
+    private ServiceMethod resolveJDKMethod(Object serviceInstance, Class<?> serviceClass, String methodName, Class<?>[] parameterTypes) throws Exception {
         // 记录使用JDK反射方式进行方法调用
         LOGGER.info("Using JDK reflection type to invoke method: {}", methodName);
         
@@ -193,19 +570,48 @@ public class RpcProviderHandler extends SimpleChannelInboundHandler<RpcProtocol<
         Method method = serviceClass.getMethod(methodName, parameterTypes);
         // 设置方法可访问（针对private方法）
         method.setAccessible(true);
-        // 调用目标方法并返回结果
-        return method.invoke(serviceInstance, parameters);
+        return new ServiceMethod(serviceInstance, method, null);
+    }
+
+    /**
+     * 服务实例和要调用的方法，JDK反射方式使用Method，CGLIB方式使用FastMethod
+     */
+    private static final class ServiceMethod {
+
+        private final Object serviceInstance;
+
+        private final Method method;
+
+        private final FastMethod fastMethod;
+
+        private final Class<?> returnType;
+
+        ServiceMethod(Object serviceInstance, Method method, FastMethod fastMethod) {
+            this.serviceInstance = serviceInstance;
+            this.method = method;
+            this.fastMethod = fastMethod;
+            this.returnType = fastMethod != null ? fastMethod.getReturnType() : method.getReturnType();
+        }
+
+        Object invoke(Object[] parameters) throws Throwable {
+            return fastMethod != null ? fastMethod.invoke(serviceInstance, parameters) : method.invoke(serviceInstance, parameters);
+        }
     }
 
     /**
      * 异常处理方法
      * 当处理请求过程中发生异常时，记录错误日志并关闭连接
+     * 响应编码失败时帧没有写出，连接上的数据仍然完整，只记录日志，不影响连接上的其他请求
      *
      * @param ctx   ChannelHandlerContext上下文
      * @param cause 异常对象
      */
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof EncoderException) {
+            LOGGER.error("Failed to encode RPC response", cause);
+            return;
+        }
         LOGGER.error("Error occurred in RPC provider handler", cause);
         // 关闭连接以释放资源
         ctx.close();
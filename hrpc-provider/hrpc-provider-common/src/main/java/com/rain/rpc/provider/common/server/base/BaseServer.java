@@ -2,6 +2,9 @@ package com.rain.rpc.provider.common.server.base;
 
 import com.rain.rpc.codec.RpcDecoder;
 import com.rain.rpc.codec.RpcEncoder;
+import com.rain.rpc.codec.heartbeat.RpcHeartbeatHandler;
+import com.rain.rpc.codec.writer.RpcBatchWriteHandler;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.provider.common.handler.RpcProviderHandler;
 import com.rain.rpc.provider.common.server.api.Server;
 import com.rain.rpc.registry.api.RegistryService;
@@ -12,15 +15,18 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RPC服务器基础实现类
@@ -48,6 +54,11 @@ public class BaseServer implements Server {
 
     private String reflectType;
 
+    /**
+     * 一条消息所有附件的最大总长度（字节），解码器在找到目标服务之前接收附件，按连接而不是按服务限制
+     */
+    private int maxAttachmentLength = RpcConstants.MAX_ATTACHMENT_LENGTH;
+
     protected RegistryService registryService;
 
     /**
@@ -68,6 +79,15 @@ public class BaseServer implements Server {
         this.registryService = this.getRegistryService(registryAddress, registryType);
     }
 
+    /**
+     * 设置一条消息所有附件的最大总长度，在startNettyServer之前调用
+     *
+     * @param maxAttachmentLength 附件的最大总长度（字节）
+     */
+    public void setMaxAttachmentLength(int maxAttachmentLength) {
+        this.maxAttachmentLength = maxAttachmentLength;
+    }
+
     /**
      * 获取注册中心服务实例
      * 目前仅支持Zookeeper注册中心
@@ -113,10 +133,15 @@ public class BaseServer implements Server {
                         @Override
                         protected void initChannel(SocketChannel socketChannel) throws Exception {
                             socketChannel.pipeline()
+                                    // 读空闲时向消费者发送心跳，多次心跳都没有回应时关闭连接，释放连接上的资源
+                                    .addLast(new IdleStateHandler(RpcConstants.HEARTBEAT_INTERVAL_MS, 0, 0, TimeUnit.MILLISECONDS))
                                     // TODO 预留编解码，需要实现自定义协议
                                     // 当前使用String编解码器仅用于测试，后续需要替换为自定义协议编解码器
-                                    .addLast(new RpcDecoder())
+                                    .addLast(new RpcDecoder(RpcConstants.MAX_FRAME_LENGTH, RpcConstants.MAX_CHUNKED_MESSAGE_LENGTH, maxAttachmentLength))
                                     .addLast(new RpcEncoder())
+                                    .addLast(new RpcHeartbeatHandler())
+                                    // 合并同一轮EventLoop任务中写出的响应，多个响应共用一个批量消息和一次flush
+                                    .addLast(new RpcBatchWriteHandler())
                                     // 添加RPC处理器，负责处理客户端请求
                                     .addLast(new RpcProviderHandler(reflectType, handlerMap));
                         }
@@ -126,7 +151,9 @@ public class BaseServer implements Server {
                     .option(ChannelOption.SO_BACKLOG, 128)
                     // 启用TCP Keep-Alive机制
                     // 检测连接是否有效，及时释放无效连接资源
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // 设置写缓冲区高低水位，响应积压超过高水位时连接不可写，暂停读取该连接上的请求
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(RpcConstants.WRITE_BUFFER_LOW_WATER_MARK, RpcConstants.WRITE_BUFFER_HIGH_WATER_MARK));
 
             // 绑定端口并同步等待，确保服务成功启动
             ChannelFuture future = bootstrap.bind(host, port).sync();
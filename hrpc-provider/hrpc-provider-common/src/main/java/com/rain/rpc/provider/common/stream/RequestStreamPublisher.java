@@ -0,0 +1,144 @@
+package com.rain.rpc.provider.common.stream;
+
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * 服务提供者端的请求流
+ * 作为类型为Flow.Publisher的参数传给服务方法，消费者发送的请求流数据交给服务方法的订阅者
+ *
+ * 设计说明：
+ * 1. 只能订阅一次，之后的订阅者直接收到onError
+ * 2. 订阅前不授予额度，消费者不会发送请求流数据；订阅前到达的结束信号先保存，订阅后再交给订阅者
+ * 3. 订阅者的请求数量由RpcStreamSubscription按窗口转换为请求流额度消息，订阅者在业务线程池中被调用，
+ *    服务方法不能在业务线程中阻塞等待请求流，否则业务线程池较小时可能没有线程向订阅者发送元素
+ * 4. 调用结束、被取消或连接断开时以异常结束请求流，订阅者不会一直等待
+ * 5. 服务方法取消订阅后不再授予额度，消费者在调用结束时停止发送
+ */
+public class RequestStreamPublisher implements Flow.Publisher<Object> {
+
+    private final long requestId;
+
+    private final String serializationType;
+
+    private final WriteQueue writeQueue;
+
+    /**
+     * 调用订阅者的执行器
+     */
+    private final Executor executor;
+
+    /**
+     * 服务方法取消订阅时执行，用于从连接的登记中移除
+     */
+    private final Runnable onCancel;
+
+    private RpcStreamSubscription subscription;
+
+    /**
+     * 订阅前是否已经结束
+     */
+    private boolean terminated;
+
+    /**
+     * 订阅前异常结束的原因，正常结束时为null
+     */
+    private Throwable error;
+
+    public RequestStreamPublisher(long requestId, String serializationType, WriteQueue writeQueue, Executor executor, Runnable onCancel) {
+        this.requestId = requestId;
+        this.serializationType = serializationType;
+        this.writeQueue = writeQueue;
+        this.executor = executor;
+        this.onCancel = onCancel;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        RpcStreamSubscription s = new RpcStreamSubscription(subscriber, executor, RpcConstants.STREAM_WINDOW);
+        s.start();
+        synchronized (this) {
+            if (subscription != null) {
+                s.onError(new IllegalStateException("Request stream can only be subscribed once. Request id: " + requestId));
+                return;
+            }
+            subscription = s;
+            if (terminated) {
+                this.terminate(error);
+                return;
+            }
+        }
+        s.bind(this::sendCredits, onCancel);
+    }
+
+    /**
+     * 收到消费者发送的请求流数据
+     *
+     * @param item 请求流中的一个元素
+     */
+    public synchronized void onData(Object item) {
+        if (subscription != null) {
+            subscription.onData(item);
+        }
+    }
+
+    /**
+     * 消费者正常结束请求流
+     */
+    public void onComplete() {
+        this.terminate(null);
+    }
+
+    /**
+     * 请求流异常结束，包括消费者发送的请求流失败、调用结束、被取消和连接断开
+     *
+     * @param throwable 失败原因
+     */
+    public void onError(Throwable throwable) {
+        this.terminate(throwable);
+    }
+
+    /**
+     * 结束请求流，订阅前结束时先保存，订阅后再交给订阅者；重复结束由RpcStreamSubscription忽略
+     *
+     * @param throwable 失败原因，正常结束时为null
+     */
+    private synchronized void terminate(Throwable throwable) {
+        if (subscription == null) {
+            if (!terminated) {
+                terminated = true;
+                error = throwable;
+            }
+            return;
+        }
+        if (throwable == null) {
+            subscription.onComplete();
+        } else {
+            subscription.onError(throwable);
+        }
+    }
+
+    /**
+     * 向消费者发送请求流额度
+     *
+     * @param credits 新增的额度
+     */
+    private void sendCredits(long credits) {
+        RpcStreamMessage message = new RpcStreamMessage();
+        message.setCredits(credits);
+        RpcProtocol<RpcStreamMessage> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getStreamHeader(serializationType, RpcType.REQUEST_STREAM_CREDIT, requestId));
+        protocol.setBody(message);
+        writeQueue.enqueueVoid(protocol);
+    }
+}
@@ -0,0 +1,238 @@
+package com.rain.rpc.provider.common.handler;
+
+import com.rain.rpc.codec.RpcDecoder;
+import com.rain.rpc.codec.RpcEncoder;
+import com.rain.rpc.codec.writer.RpcBatchWriteHandler;
+import com.rain.rpc.common.helper.RpcServiceHelper;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务提供者写回响应的基准测试
+ * 在同一进程中启动带RpcProviderHandler的Netty服务端，客户端每次操作一次性发出concurrency个请求并等待全部响应
+ *
+ * 运行方式：直接运行main方法，除吞吐量外还输出每次迭代的计数：
+ * responses为响应数，flushes为服务端到达Socket的flush次数，
+ * writeSyscalls为进程内write类系统调用次数（读取/proc/self/io，包括唤醒EventLoop的写入，只在Linux上有值）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderResponseBenchmark {
+
+    private static final String SERVICE_NAME = "com.rain.rpc.benchmark.DemoService";
+
+    private static final LongAdder FLUSHES = new LongAdder();
+
+    private static final LongAdder RESPONSES = new LongAdder();
+
+    @Param({"1", "16", "128"})
+    private int concurrency;
+
+    private EventLoopGroup serverGroup;
+
+    private EventLoopGroup clientGroup;
+
+    private Channel clientChannel;
+
+    private final Semaphore completed = new Semaphore(0);
+
+    public interface DemoService {
+        String hello(String name);
+    }
+
+    public static class DemoServiceImpl implements DemoService {
+        @Override
+        public String hello(String name) {
+            return "hello " + name;
+        }
+    }
+
+    /**
+     * 位于服务端管道最前面，统计真正到达Socket的flush次数
+     */
+    @ChannelHandler.Sharable
+    static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            FLUSHES.increment();
+            super.flush(ctx);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long responses;
+
+        public long flushes;
+
+        public long writeSyscalls;
+
+        private long responsesStart;
+
+        private long flushesStart;
+
+        private long writeSyscallsStart;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            responsesStart = RESPONSES.sum();
+            flushesStart = FLUSHES.sum();
+            writeSyscallsStart = readWriteSyscalls();
+        }
+
+        /**
+         * 迭代结束时计算整个迭代的增量，之后JMH读取计数
+         */
+        @TearDown(Level.Iteration)
+        public void stop() {
+            responses = RESPONSES.sum() - responsesStart;
+            flushes = FLUSHES.sum() - flushesStart;
+            writeSyscalls = readWriteSyscalls() - writeSyscallsStart;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        // 请求和响应在INFO级别会输出完整内容，基准测试只关心调用路径本身
+        LogManager.getLogger("com.rain.rpc").setLevel(org.apache.log4j.Level.WARN);
+        Map<String, Object> handlerMap = new HashMap<>();
+        handlerMap.put(RpcServiceHelper.buildServiceKey(SERVICE_NAME, "1.0.0", ""), new DemoServiceImpl());
+        FlushCounter flushCounter = new FlushCounter();
+        serverGroup = new NioEventLoopGroup(1);
+        Channel serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline()
+                                .addLast(flushCounter)
+                                .addLast(new RpcDecoder())
+                                .addLast(new RpcEncoder())
+                                .addLast(new RpcBatchWriteHandler())
+                                .addLast(new RpcProviderHandler(RpcConstants.REFLECT_TYPE_JDK, handlerMap));
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+
+        clientGroup = new NioEventLoopGroup(1);
+        clientChannel = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline()
+                                .addLast(new RpcEncoder())
+                                .addLast(new RpcDecoder())
+                                .addLast(new SimpleChannelInboundHandler<RpcProtocol<RpcResponse>>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, RpcProtocol<RpcResponse> msg) {
+                                        RESPONSES.increment();
+                                        completed.release();
+                                    }
+                                });
+                    }
+                })
+                .connect(serverChannel.localAddress()).sync().channel();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        clientChannel.close().sync();
+        clientGroup.shutdownGracefully().sync();
+        serverGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public void calls(Counters counters) throws Exception {
+        for (int i = 0; i < concurrency; i++) {
+            clientChannel.write(newRequest());
+        }
+        clientChannel.flush();
+        completed.acquire(concurrency);
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest() {
+        RpcRequest request = new RpcRequest();
+        request.setClassName(SERVICE_NAME);
+        request.setMethodName("hello");
+        request.setParameterTypes(new Class[]{String.class});
+        request.setParameters(new Object[]{"rain"});
+        request.setVersion("1.0.0");
+        request.setGroup("");
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static long readWriteSyscalls() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/io"))) {
+                if (line.startsWith("syscw:")) {
+                    return Long.parseLong(line.substring("syscw:".length()).trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 非Linux系统没有该文件
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProviderResponseBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
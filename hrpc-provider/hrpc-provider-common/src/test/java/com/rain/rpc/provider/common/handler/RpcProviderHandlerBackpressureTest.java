@@ -0,0 +1,34 @@
+package com.rain.rpc.provider.common.handler;
+
+import com.rain.rpc.constants.RpcConstants;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcProviderHandler背压测试类
+ * 写出不flush的数据使连接超过高水位，验证连接不可写时暂停读取、恢复可写后继续读取
+ */
+public class RpcProviderHandlerBackpressureTest {
+
+    @Test
+    void testAutoReadFollowsWritability() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcProviderHandler(RpcConstants.REFLECT_TYPE_JDK, Collections.emptyMap()));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        assertTrue(channel.config().isAutoRead());
+
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+    }
+}
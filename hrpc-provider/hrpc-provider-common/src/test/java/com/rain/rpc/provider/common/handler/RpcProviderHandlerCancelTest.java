@@ -0,0 +1,234 @@
+package com.rain.rpc.provider.common.handler;
+
+import com.rain.rpc.common.helper.RpcServiceHelper;
+import com.rain.rpc.common.threadpool.ServerThreadPool;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcProviderHandler取消请求测试类
+ * 验证排队中的任务被取消后不再执行、正在执行的任务被中断，以及服务方法返回的CompletionStage被取消后不写回响应；
+ * 服务方法在业务线程池中执行，与请求流测试一样使用LocalChannel，客户端直接收发RpcProtocol对象
+ */
+public class RpcProviderHandlerCancelTest {
+
+    private final SlowServiceImpl service = new SlowServiceImpl();
+
+    private final BlockingQueue<RpcProtocol<?>> received = new LinkedBlockingQueue<>();
+
+    private EventLoopGroup group;
+
+    private Channel client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("provider-cancel-test");
+        Map<String, Object> handlerMap = Map.of(RpcServiceHelper.buildServiceKey(SlowService.class.getName(), "1.0.0", ""), service);
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) {
+                        ch.pipeline().addLast(new RpcProviderHandler(RpcConstants.REFLECT_TYPE_JDK, handlerMap));
+                    }
+                }).bind(address).sync();
+        client = new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        received.add((RpcProtocol<?>) msg);
+                    }
+                }).connect(address).sync().channel();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.release.countDown();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    void testQueuedRequestNeverRuns() throws Exception {
+        // 占满业务线程池，之后的请求在队列中等待
+        int poolSize = ((ThreadPoolExecutor) ServerThreadPool.getExecutor()).getMaximumPoolSize();
+        Set<Long> blockingIds = new HashSet<>();
+        for (int i = 0; i < poolSize; i++) {
+            RpcProtocol<RpcRequest> blocking = newRequest("block", "blocking-" + i);
+            blockingIds.add(blocking.getHeader().getRequestId());
+            client.writeAndFlush(blocking);
+        }
+        for (int i = 0; i < poolSize; i++) {
+            assertNotNull(service.started.poll(5, TimeUnit.SECONDS));
+        }
+        RpcProtocol<RpcRequest> queued = newRequest("block", "queued");
+        client.writeAndFlush(queued);
+        client.writeAndFlush(newCancel(queued.getHeader().getRequestId())).sync();
+
+        // 取消请求在IO线程中处理，之后放行占用线程池的请求，排队中的任务出队时直接结束
+        Thread.sleep(100);
+        service.release.countDown();
+        for (int i = 0; i < poolSize; i++) {
+            RpcProtocol<?> response = this.next();
+            assertTrue(blockingIds.remove(response.getHeader().getRequestId()));
+            assertEquals(RpcStatus.SUCCESS.getCode(), response.getHeader().getStatus());
+        }
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertNull(service.started.poll());
+    }
+
+    @Test
+    void testRunningRequestInterrupted() throws Exception {
+        RpcProtocol<RpcRequest> running = newRequest("block", "running");
+        client.writeAndFlush(running);
+        assertEquals("running", service.started.poll(5, TimeUnit.SECONDS));
+
+        client.writeAndFlush(newCancel(running.getHeader().getRequestId()));
+        assertEquals("running", service.interrupted.poll(5, TimeUnit.SECONDS));
+        // 已经取消的请求不写回响应
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCancelledStageWritesNoResponse() throws Exception {
+        RpcProtocol<RpcRequest> request = newRequest("later", "stage");
+        client.writeAndFlush(request);
+        CompletableFuture<String> stage = service.stages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stage);
+
+        // 服务方法已经返回，取消作用于它返回的CompletionStage
+        client.writeAndFlush(newCancel(request.getHeader().getRequestId()));
+        assertThrows(CancellationException.class, () -> stage.get(5, TimeUnit.SECONDS));
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCancelBeforeStageHandoff() throws Exception {
+        RpcProtocol<RpcRequest> request = newRequest("laterAfterCancel", "handoff");
+        client.writeAndFlush(request);
+        CompletableFuture<String> stage = service.stages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stage);
+
+        // 取消请求在服务方法返回之前到达，业务线程登记CompletionStage时发现请求已经取消，直接取消它
+        client.writeAndFlush(newCancel(request.getHeader().getRequestId()));
+        assertEquals("handoff", service.interrupted.poll(5, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, () -> stage.get(5, TimeUnit.SECONDS));
+        // 之后再完成CompletionStage也不会写回响应
+        stage.complete("late");
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private RpcProtocol<?> next() throws InterruptedException {
+        RpcProtocol<?> protocol = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(protocol);
+        assertEquals(RpcType.RESPONSE.getType(), protocol.getHeader().getMessageType());
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest(String methodName, String id) {
+        RpcRequest request = new RpcRequest();
+        request.setClassName(SlowService.class.getName());
+        request.setMethodName(methodName);
+        request.setVersion("1.0.0");
+        request.setGroup("");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{id});
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcRequest> newCancel(long requestId) {
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getCancelHeader(RpcConstants.SERIALIZATION_JDK, requestId));
+        return protocol;
+    }
+
+    public interface SlowService {
+
+        String block(String id);
+
+        CompletionStage<String> later(String id);
+
+        CompletionStage<String> laterAfterCancel(String id);
+    }
+
+    public static class SlowServiceImpl implements SlowService {
+
+        /**
+         * 放行所有阻塞中的调用
+         */
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+
+        private final BlockingQueue<String> interrupted = new LinkedBlockingQueue<>();
+
+        private final BlockingQueue<CompletableFuture<String>> stages = new LinkedBlockingQueue<>();
+
+        @Override
+        public String block(String id) {
+            started.add(id);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.add(id);
+            }
+            return id;
+        }
+
+        @Override
+        public CompletionStage<String> later(String id) {
+            CompletableFuture<String> stage = new CompletableFuture<>();
+            stages.add(stage);
+            return stage;
+        }
+
+        /**
+         * 返回CompletionStage之前等待取消请求中断业务线程
+         */
+        @Override
+        public CompletionStage<String> laterAfterCancel(String id) {
+            CompletableFuture<String> stage = new CompletableFuture<>();
+            stages.add(stage);
+            try {
+                new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.add(id);
+            }
+            return stage;
+        }
+    }
+}
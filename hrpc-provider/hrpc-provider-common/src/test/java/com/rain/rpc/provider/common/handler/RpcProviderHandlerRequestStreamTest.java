@@ -0,0 +1,204 @@
+package com.rain.rpc.provider.common.handler;
+
+import com.rain.rpc.common.helper.RpcServiceHelper;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcStatus;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import com.rain.rpc.provider.common.stream.RequestStreamPublisher;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RpcProviderHandler请求流测试类
+ * 服务方法在业务线程池中执行，使用LocalChannel代替EmbeddedChannel，业务线程写出的消息由连接的EventLoop线程安全地写出；
+ * 客户端直接收发RpcProtocol对象，不经过编解码器
+ */
+public class RpcProviderHandlerRequestStreamTest {
+
+    private final SumServiceImpl service = new SumServiceImpl();
+
+    private final BlockingQueue<RpcProtocol<?>> received = new LinkedBlockingQueue<>();
+
+    private EventLoopGroup group;
+
+    private Channel client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("provider-request-stream-test");
+        Map<String, Object> handlerMap = Map.of(RpcServiceHelper.buildServiceKey(SumService.class.getName(), "1.0.0", ""), service);
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) {
+                        ch.pipeline().addLast(new RpcProviderHandler(RpcConstants.REFLECT_TYPE_JDK, handlerMap));
+                    }
+                }).bind(address).sync();
+        client = new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        received.add((RpcProtocol<?>) msg);
+                    }
+                }).connect(address).sync().channel();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    void testCompletionStageMethodReadsWholeStream() throws Exception {
+        RpcProtocol<RpcRequest> request = newRequest("sum");
+        long requestId = request.getHeader().getRequestId();
+        client.writeAndFlush(request).sync();
+
+        // 服务方法订阅请求流后授予一个窗口的额度，请求流参数由RequestStreamPublisher代替
+        assertEquals(RpcConstants.STREAM_WINDOW, this.nextCredit(requestId));
+        assertInstanceOf(RequestStreamPublisher.class, service.received);
+
+        for (int i = 1; i <= 3; i++) {
+            client.writeAndFlush(newStreamMessage(RpcType.REQUEST_STREAM_DATA, requestId, i, null));
+        }
+        // 每交给服务方法一个元素补充一个额度
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, this.nextCredit(requestId));
+        }
+        client.writeAndFlush(newStreamMessage(RpcType.REQUEST_STREAM_END, requestId, null, null));
+
+        RpcProtocol<?> response = this.next();
+        assertEquals(RpcType.RESPONSE.getType(), response.getHeader().getMessageType());
+        assertEquals(RpcStatus.SUCCESS.getCode(), response.getHeader().getStatus());
+        assertEquals(6, ((RpcResponse) response.getBody()).getResult());
+    }
+
+    @Test
+    void testSynchronousMethodRejected() throws Exception {
+        client.writeAndFlush(newRequest("syncSum")).sync();
+
+        // 同步返回结果的方法读不到请求流，不调用服务方法，也不授予额度
+        RpcProtocol<?> response = this.next();
+        assertEquals(RpcType.RESPONSE.getType(), response.getHeader().getMessageType());
+        assertEquals(RpcStatus.FAIL.getCode(), response.getHeader().getStatus());
+        assertTrue(((RpcResponse) response.getBody()).getError().contains("must return CompletionStage"));
+        assertFalse(service.syncInvoked);
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private RpcProtocol<?> next() throws InterruptedException {
+        RpcProtocol<?> protocol = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(protocol);
+        return protocol;
+    }
+
+    private long nextCredit(long requestId) throws InterruptedException {
+        RpcProtocol<?> protocol = this.next();
+        assertEquals(RpcType.REQUEST_STREAM_CREDIT.getType(), protocol.getHeader().getMessageType());
+        assertEquals(requestId, protocol.getHeader().getRequestId());
+        return ((RpcStreamMessage) protocol.getBody()).getCredits();
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest(String methodName) {
+        RpcRequest request = new RpcRequest();
+        request.setClassName(SumService.class.getName());
+        request.setMethodName(methodName);
+        request.setVersion("1.0.0");
+        request.setGroup("");
+        request.setParameterTypes(new Class<?>[]{Flow.Publisher.class});
+        request.setParameters(new Object[]{null});
+        request.setRequestStream(true);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static RpcProtocol<RpcStreamMessage> newStreamMessage(RpcType type, long requestId, Object data, String error) {
+        RpcStreamMessage message = new RpcStreamMessage();
+        message.setData(data);
+        message.setError(error);
+        RpcProtocol<RpcStreamMessage> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getStreamHeader(RpcConstants.SERIALIZATION_JDK, type, requestId));
+        protocol.setBody(message);
+        return protocol;
+    }
+
+    public interface SumService {
+
+        CompletionStage<Integer> sum(Flow.Publisher<Integer> numbers);
+
+        int syncSum(Flow.Publisher<Integer> numbers);
+    }
+
+    public static class SumServiceImpl implements SumService {
+
+        private volatile Flow.Publisher<Integer> received;
+
+        private volatile boolean syncInvoked;
+
+        @Override
+        public CompletionStage<Integer> sum(Flow.Publisher<Integer> numbers) {
+            received = numbers;
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            numbers.subscribe(new Flow.Subscriber<>() {
+                private int total;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Integer item) {
+                    total += item;
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    result.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    result.complete(total);
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public int syncSum(Flow.Publisher<Integer> numbers) {
+            syncInvoked = true;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.rain.rpc.provider.common.stream;
+
+import com.rain.rpc.codec.writer.WriteQueue;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.enumeration.RpcType;
+import com.rain.rpc.protocol.stream.RpcStreamMessage;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 服务提供者端请求流测试类
+ * 订阅者在当前线程中被调用，额度消息写入EmbeddedChannel
+ */
+public class RequestStreamPublisherTest {
+
+    @Test
+    void testCreditsAreWindowed() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestStreamPublisher publisher = newPublisher(channel, () -> { });
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        // 订阅者请求Long.MAX_VALUE时也只授予一个窗口的额度
+        channel.runPendingTasks();
+        assertEquals(List.of((long) RpcConstants.STREAM_WINDOW), readCredits(channel));
+
+        // 每交给订阅者一个元素补充一个额度
+        publisher.onData(1);
+        publisher.onData(null);
+        channel.runPendingTasks();
+        assertEquals(List.of(1L, 1L), readCredits(channel));
+        assertEquals(List.of(1, "null"), subscriber.items);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void testSecondSubscriberRefused() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestStreamPublisher publisher = newPublisher(channel, () -> { });
+        RecordingSubscriber first = new RecordingSubscriber(1);
+        RecordingSubscriber second = new RecordingSubscriber(1);
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        assertNull(first.error);
+        assertInstanceOf(IllegalStateException.class, second.error);
+        publisher.onData("a");
+        assertEquals(List.of("a"), first.items);
+        assertTrue(second.items.isEmpty());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void testEndBeforeSubscribe() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestStreamPublisher publisher = newPublisher(channel, () -> { });
+        publisher.onComplete();
+
+        // 订阅前到达的结束信号在订阅后交给订阅者，不再授予额度
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.completed);
+        channel.runPendingTasks();
+        assertTrue(readCredits(channel).isEmpty());
+
+        RequestStreamPublisher failed = newPublisher(channel, () -> { });
+        IllegalStateException cause = new IllegalStateException("Call completed");
+        failed.onError(cause);
+        RecordingSubscriber failedSubscriber = new RecordingSubscriber(1);
+        failed.subscribe(failedSubscriber);
+        assertSame(cause, failedSubscriber.error);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void testCancelRunsHook() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        RequestStreamPublisher publisher = newPublisher(channel, () -> cancelled.set(true));
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.cancel();
+        assertTrue(cancelled.get());
+        channel.finishAndReleaseAll();
+    }
+
+    private static RequestStreamPublisher newPublisher(EmbeddedChannel channel, Runnable onCancel) {
+        return new RequestStreamPublisher(42L, RpcConstants.SERIALIZATION_JDK, new WriteQueue(channel), Runnable::run, onCancel);
+    }
+
+    private static List<Long> readCredits(EmbeddedChannel channel) {
+        List<Long> credits = new ArrayList<>();
+        RpcProtocol<RpcStreamMessage> protocol;
+        while ((protocol = channel.readOutbound()) != null) {
+            assertEquals(RpcType.REQUEST_STREAM_CREDIT.getType(), protocol.getHeader().getMessageType());
+            assertEquals(42L, protocol.getHeader().getRequestId());
+            credits.add(protocol.getBody().getCredits());
+        }
+        return credits;
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Object> {
+
+        private final long initialRequest;
+
+        private final List<Object> items = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        private boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Object item) {
+            items.add(item == null ? "null" : item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
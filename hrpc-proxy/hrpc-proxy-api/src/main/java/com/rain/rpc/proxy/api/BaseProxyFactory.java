@@ -1,5 +1,6 @@
 package com.rain.rpc.proxy.api;
 
+import com.rain.rpc.common.threadpool.CallbackExecutors;
 import com.rain.rpc.proxy.api.config.ProxyConfig;
 import com.rain.rpc.proxy.api.object.ObjectProxy;
 
@@ -37,5 +38,10 @@ public abstract class BaseProxyFactory<T> implements ProxyFactory {
                 proxyConfig.getConsumer(),
                 proxyConfig.getAsync(),
                 proxyConfig.getOneway());
+        this.objectProxy.setCallbackExecutor(proxyConfig.getCallbackExecutor() != null
+                ? proxyConfig.getCallbackExecutor()
+                : CallbackExecutors.getExecutor(proxyConfig.getCallbackExecutorType()));
+        this.objectProxy.setCluster(proxyConfig.getCluster(), proxyConfig.getRetries());
+        this.objectProxy.setHedging(proxyConfig.getHedging());
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+
+/**
+ * 集群调用接口
+ * 位于ObjectProxy和Consumer之间，决定一次调用发送到哪些服务实例，以及调用失败后如何处理
+ */
+public interface ClusterInvoker {
+
+    /**
+     * 发送请求
+     *
+     * @param protocol RPC请求协议
+     * @return 调用完成时完成的RPCFuture，没有可用的服务实例时返回null
+     * @throws Exception 发送请求时的异常
+     */
+    RPCFuture invoke(RpcProtocol<RpcRequest> protocol) throws Exception;
+}
@@ -0,0 +1,111 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.registry.api.RegistryService;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群调用工具类
+ * 根据配置的集群容错策略创建ClusterInvoker，并提供重试、并行调用和对冲请求共用的方法
+ */
+public class ClusterInvokers {
+
+    /**
+     * 根据类型创建集群调用器，类型为空时使用快速失败
+     * 每个代理对象一个集群调用器，重试预算在同一个代理对象的所有方法之间共享
+     *
+     * @param type 集群容错策略，failfast、failover、failsafe或forking
+     * @param consumer 消费者
+     * @param registryService 注册服务
+     * @param retries failover的最大重试次数，forking的额外并行调用数
+     * @return 集群调用器
+     */
+    public static ClusterInvoker getInvoker(String type, Consumer consumer, RegistryService registryService, int retries) {
+        return getInvoker(type, consumer, registryService, retries, newRetryBudget());
+    }
+
+    /**
+     * 根据类型创建集群调用器，类型为空时使用快速失败
+     *
+     * @param type 集群容错策略，failfast、failover、failsafe或forking
+     * @param consumer 消费者
+     * @param registryService 注册服务
+     * @param retries failover的最大重试次数，forking的额外并行调用数
+     * @param retryBudget 重试预算，与同一个代理对象的对冲请求共用
+     * @return 集群调用器
+     */
+    public static ClusterInvoker getInvoker(String type, Consumer consumer, RegistryService registryService, int retries, RetryBudget retryBudget) {
+        if (type == null || type.isEmpty() || RpcConstants.CLUSTER_FAILFAST.equals(type)) {
+            return new FailfastClusterInvoker(consumer, registryService);
+        }
+        if (RpcConstants.CLUSTER_FAILOVER.equals(type)) {
+            return new FailoverClusterInvoker(consumer, registryService, retries, retryBudget);
+        }
+        if (RpcConstants.CLUSTER_FAILSAFE.equals(type)) {
+            return new FailsafeClusterInvoker(consumer, registryService);
+        }
+        if (RpcConstants.CLUSTER_FORKING.equals(type)) {
+            return new ForkingClusterInvoker(consumer, registryService, retries, retryBudget);
+        }
+        throw new IllegalArgumentException("Unsupported cluster type: " + type);
+    }
+
+    /**
+     * 按默认配置创建重试预算
+     *
+     * @return 重试预算
+     */
+    public static RetryBudget newRetryBudget() {
+        return new RetryBudget(RpcConstants.RETRY_BUDGET_RATIO, RpcConstants.RETRY_BUDGET_MIN_PER_SECOND, RpcConstants.RETRY_BUDGET_MAX_TOKENS);
+    }
+
+    /**
+     * 复制请求，用于重试、并行调用和对冲请求
+     * 复制的请求使用新的请求ID，截止时间与原请求相同，超时时间为剩余时间，所有请求同时到期
+     *
+     * @param protocol 原请求协议
+     * @return 复制的请求协议
+     */
+    public static RpcProtocol<RpcRequest> copyRequest(RpcProtocol<RpcRequest> protocol) {
+        RpcHeader header = protocol.getHeader();
+        RpcHeader copyHeader = RpcHeaderFactory.getRequestHeader(header.getSerializationType());
+        copyHeader.setDeadline(header.getDeadline());
+
+        RpcRequest request = protocol.getBody();
+        RpcRequest copyRequest = new RpcRequest();
+        copyRequest.setClassName(request.getClassName());
+        copyRequest.setMethodName(request.getMethodName());
+        copyRequest.setParameterTypes(request.getParameterTypes());
+        copyRequest.setParameters(request.getParameters());
+        copyRequest.setVersion(request.getVersion());
+        copyRequest.setGroup(request.getGroup());
+        copyRequest.setServiceKey(request.getServiceKey());
+        copyRequest.setAsync(request.getAsync());
+        copyRequest.setOneway(request.getOneway());
+        long deadline = header.getDeadline();
+        copyRequest.setTimeout(deadline == 0 ? request.getTimeout()
+                : Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+
+        RpcProtocol<RpcRequest> copyProtocol = new RpcProtocol<>();
+        copyProtocol.setHeader(copyHeader);
+        copyProtocol.setBody(copyRequest);
+        return copyProtocol;
+    }
+
+    /**
+     * 获取CompletableFuture回调中的实际异常
+     *
+     * @param throwable 回调收到的异常
+     * @return 去掉CompletionException包装后的异常
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+}
@@ -0,0 +1,28 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+
+/**
+ * 快速失败的集群调用器
+ * 只发送一次请求，调用失败后直接返回错误，适用于非幂等的方法
+ */
+public class FailfastClusterInvoker implements ClusterInvoker {
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    public FailfastClusterInvoker(Consumer consumer, RegistryService registryService) {
+        this.consumer = consumer;
+        this.registryService = registryService;
+    }
+
+    @Override
+    public RPCFuture invoke(RpcProtocol<RpcRequest> protocol) throws Exception {
+        return consumer.sendRequest(protocol, registryService);
+    }
+}
@@ -0,0 +1,178 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.common.threadpool.ClientThreadPool;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 失败自动切换的集群调用器
+ * 请求失败时换一个服务实例重试，适用于幂等的方法
+ *
+ * 设计说明：
+ * 1. 只重试没有收到响应的失败，例如发送失败、建连失败或连接断开；服务提供者返回的错误和超时不重试
+ * 2. 重试使用新的请求ID和相同的截止时间，截止时间已过时不再重试，重试不会延长调用的总耗时上限
+ * 3. 重试优先发送到没有调用过的服务实例，所有实例都调用过时允许再次发送到之前的实例，例如服务提供者重启后重新建连
+ * 4. 每次重试都要从重试预算中取出令牌，预算用完时直接失败，避免服务提供者故障时重试放大流量
+ * 5. 重试在客户端线程池中发送，不阻塞完成请求的IO线程或时间轮线程
+ * 6. 调用方取消时取消当前正在进行的请求
+ */
+public class FailoverClusterInvoker implements ClusterInvoker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FailoverClusterInvoker.class);
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    private final int retries;
+
+    private final RetryBudget retryBudget;
+
+    public FailoverClusterInvoker(Consumer consumer, RegistryService registryService, int retries, RetryBudget retryBudget) {
+        this.consumer = consumer;
+        this.registryService = registryService;
+        this.retries = Math.max(retries, 0);
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public RPCFuture invoke(RpcProtocol<RpcRequest> protocol) throws Exception {
+        retryBudget.deposit();
+        return new FailoverCall(protocol).start();
+    }
+
+    /**
+     * 一次失败自动切换调用的状态
+     * 各次请求依次发送，调用过的服务实例只在发送请求的线程中访问，前后两次发送之间由请求的完成回调建立先后关系
+     */
+    private final class FailoverCall {
+
+        private final RpcProtocol<RpcRequest> protocol;
+
+        /**
+         * 返回给调用方的结果
+         */
+        private final RPCFuture result;
+
+        private final List<ServiceMeta> invokedServices = new ArrayList<>();
+
+        private int retried;
+
+        private volatile RPCFuture current;
+
+        FailoverCall(RpcProtocol<RpcRequest> protocol) {
+            this.protocol = protocol;
+            this.result = new RPCFuture(protocol);
+        }
+
+        RPCFuture start() throws Exception {
+            RPCFuture first = this.sendAttempt(protocol);
+            if (first == null) {
+                return null;
+            }
+            result.setServiceMeta(first.getServiceMeta());
+            result.setCancelHook(() -> {
+                RPCFuture attempt = current;
+                if (attempt != null) {
+                    attempt.cancel(false);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * 发送一次请求，发送时抛出异常且允许重试时立即重新发送
+         *
+         * @return 发送的请求，没有可用的服务实例时返回null
+         */
+        private RPCFuture sendAttempt(RpcProtocol<RpcRequest> request) throws Exception {
+            while (true) {
+                RPCFuture attempt;
+                try {
+                    attempt = this.send(request);
+                } catch (Exception e) {
+                    if (!this.tryRetry()) {
+                        throw e;
+                    }
+                    LOGGER.warn("Send request failed, retry {} of {}. Request id: {}", retried, retries, request.getHeader().getRequestId(), e);
+                    request = ClusterInvokers.copyRequest(protocol);
+                    continue;
+                }
+                if (attempt == null) {
+                    return null;
+                }
+                if (attempt.getServiceMeta() != null) {
+                    invokedServices.add(attempt.getServiceMeta());
+                }
+                current = attempt;
+                if (result.isDone()) {
+                    // 调用方在发送期间取消了调用
+                    attempt.cancel(false);
+                    return attempt;
+                }
+                attempt.whenComplete((value, throwable) -> this.onAttemptComplete(attempt, value, throwable));
+                return attempt;
+            }
+        }
+
+        private RPCFuture send(RpcProtocol<RpcRequest> request) throws Exception {
+            if (invokedServices.isEmpty()) {
+                return consumer.sendRequest(request, registryService);
+            }
+            RPCFuture attempt = consumer.sendRequest(request, registryService, invokedServices);
+            return attempt != null ? attempt : consumer.sendRequest(request, registryService);
+        }
+
+        private void onAttemptComplete(RPCFuture attempt, Object value, Throwable throwable) {
+            if (throwable == null) {
+                result.complete(value);
+                return;
+            }
+            if (throwable instanceof CancellationException) {
+                // 只有调用方取消时才会取消请求，结果已经以取消结束
+                return;
+            }
+            Throwable cause = ClusterInvokers.unwrap(throwable);
+            if (attempt.isResponseReceived() || cause instanceof TimeoutException || !this.tryRetry()) {
+                result.fail(cause);
+                return;
+            }
+            LOGGER.warn("Request failed, retry {} of {}. Request id: {}. Cause: {}", retried, retries, attempt.getRequestProtocol().getHeader().getRequestId(), cause.toString());
+            ClientThreadPool.getExecutor().execute(() -> this.retry(cause));
+        }
+
+        private void retry(Throwable cause) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                if (this.sendAttempt(ClusterInvokers.copyRequest(protocol)) == null) {
+                    result.fail(cause);
+                }
+            } catch (Exception e) {
+                result.fail(e);
+            }
+        }
+
+        /**
+         * 判断是否还能重试，能重试时取出一个重试预算的令牌
+         */
+        private boolean tryRetry() {
+            if (retried >= retries || result.isDone() || protocol.getHeader().isExpired() || !retryBudget.tryWithdraw()) {
+                return false;
+            }
+            retried++;
+            return true;
+        }
+    }
+}
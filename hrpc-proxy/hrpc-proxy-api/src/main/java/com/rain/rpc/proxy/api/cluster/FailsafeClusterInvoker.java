@@ -0,0 +1,56 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 失败安全的集群调用器
+ * 调用失败时只记录日志，以null结果完成调用，适用于写审计日志等可以丢失结果的调用
+ * 调用方主动取消时仍然以取消结束
+ */
+public class FailsafeClusterInvoker implements ClusterInvoker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FailsafeClusterInvoker.class);
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    public FailsafeClusterInvoker(Consumer consumer, RegistryService registryService) {
+        this.consumer = consumer;
+        this.registryService = registryService;
+    }
+
+    @Override
+    public RPCFuture invoke(RpcProtocol<RpcRequest> protocol) throws Exception {
+        RPCFuture result = new RPCFuture(protocol);
+        RPCFuture attempt;
+        try {
+            attempt = consumer.sendRequest(protocol, registryService);
+        } catch (Exception e) {
+            LOGGER.warn("Failsafe ignore exception when sending request. Request id: {}", protocol.getHeader().getRequestId(), e);
+            result.complete(null);
+            return result;
+        }
+        if (attempt == null) {
+            return null;
+        }
+        result.setServiceMeta(attempt.getServiceMeta());
+        result.setCancelHook(() -> attempt.cancel(false));
+        attempt.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+            } else if (!(throwable instanceof CancellationException)) {
+                LOGGER.warn("Failsafe ignore exception. Request id: {}", protocol.getHeader().getRequestId(), ClusterInvokers.unwrap(throwable));
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 并行调用的集群调用器
+ * 同时向多个服务实例发送相同的请求，任意一个成功即完成调用，并取消其他请求，适用于对延迟敏感的幂等方法
+ *
+ * 设计说明：
+ * 1. 除首个请求外最多额外发送forks个请求，每个请求发送到不同的服务实例，没有其他可用实例时少发
+ * 2. 额外的请求与重试一样从重试预算中取出令牌，预算用完时退化为只发送首个请求
+ * 3. 所有请求都发出后才开始处理结果，全部失败时以最后一个失败原因结束
+ * 4. 额外的请求发送失败时只记录日志，调用结果由已经发出的请求决定
+ */
+public class ForkingClusterInvoker implements ClusterInvoker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkingClusterInvoker.class);
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    private final int forks;
+
+    private final RetryBudget retryBudget;
+
+    public ForkingClusterInvoker(Consumer consumer, RegistryService registryService, int forks, RetryBudget retryBudget) {
+        this.consumer = consumer;
+        this.registryService = registryService;
+        this.forks = Math.max(forks, 0);
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public RPCFuture invoke(RpcProtocol<RpcRequest> protocol) throws Exception {
+        retryBudget.deposit();
+        RPCFuture primary = consumer.sendRequest(protocol, registryService);
+        if (primary == null) {
+            return null;
+        }
+        List<RPCFuture> attempts = new ArrayList<>(forks + 1);
+        attempts.add(primary);
+        List<ServiceMeta> invokedServices = new ArrayList<>(forks + 1);
+        if (primary.getServiceMeta() != null) {
+            invokedServices.add(primary.getServiceMeta());
+        }
+        for (int i = 0; i < forks && !primary.isDone() && retryBudget.tryWithdraw(); i++) {
+            RPCFuture fork;
+            try {
+                fork = consumer.sendRequest(ClusterInvokers.copyRequest(protocol), registryService, invokedServices);
+            } catch (Exception e) {
+                LOGGER.warn("Send forked request failed. Request id: {}", protocol.getHeader().getRequestId(), e);
+                break;
+            }
+            if (fork == null) {
+                break;
+            }
+            attempts.add(fork);
+            if (fork.getServiceMeta() != null) {
+                invokedServices.add(fork.getServiceMeta());
+            }
+        }
+        return new ForkingCall(protocol, attempts).start();
+    }
+
+    /**
+     * 一次并行调用的状态
+     */
+    private static final class ForkingCall {
+
+        private final RPCFuture result;
+
+        private final List<RPCFuture> attempts;
+
+        /**
+         * 尚未结束的请求数
+         */
+        private int remaining;
+
+        private Throwable lastError;
+
+        ForkingCall(RpcProtocol<RpcRequest> protocol, List<RPCFuture> attempts) {
+            this.result = new RPCFuture(protocol);
+            this.attempts = attempts;
+            this.remaining = attempts.size();
+        }
+
+        RPCFuture start() {
+            result.setServiceMeta(attempts.get(0).getServiceMeta());
+            result.setCancelHook(() -> this.cancelOthers(null));
+            for (RPCFuture attempt : attempts) {
+                attempt.whenComplete((value, throwable) -> this.onAttemptComplete(attempt, value, throwable));
+            }
+            return result;
+        }
+
+        private void onAttemptComplete(RPCFuture attempt, Object value, Throwable throwable) {
+            if (throwable == null) {
+                if (result.complete(value)) {
+                    result.setServiceMeta(attempt.getServiceMeta());
+                    this.cancelOthers(attempt);
+                }
+                return;
+            }
+            if (throwable instanceof CancellationException) {
+                return;
+            }
+            Throwable failure;
+            synchronized (this) {
+                lastError = ClusterInvokers.unwrap(throwable);
+                if (--remaining > 0) {
+                    return;
+                }
+                failure = lastError;
+            }
+            result.fail(failure);
+        }
+
+        private void cancelOthers(RPCFuture winner) {
+            for (RPCFuture attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.cancel(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算
+ * 基于令牌桶限制重试的数量，避免服务提供者变慢或重启时重试放大流量，形成重试风暴
+ *
+ * 设计说明：
+ * 1. 每个正常请求存入ratio个令牌，每次重试取出1个令牌，重试量最多为正常请求量的ratio倍
+ * 2. 每秒额外补充minPerSecond个令牌，请求量很小时也能重试；补充在取令牌时按流逝的时间计算，不需要定时任务
+ * 3. 令牌数不超过maxTokens，长时间正常运行后积累的令牌有上限，故障时能够放出的重试也有上限
+ * 4. 令牌以千分之一为单位保存在AtomicLong中，存取都是无锁的CAS操作
+ */
+public class RetryBudget {
+
+    /**
+     * 一个令牌对应的内部计数
+     */
+    private static final long TOKEN = 1000;
+
+    private final long depositPerRequest;
+
+    private final int minPerSecond;
+
+    private final long capacity;
+
+    private final AtomicLong balance;
+
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * 构造函数，初始时有一秒的补充令牌
+     *
+     * @param ratio 每个正常请求存入的令牌数
+     * @param minPerSecond 每秒补充的令牌数
+     * @param maxTokens 令牌桶的容量
+     */
+    public RetryBudget(double ratio, int minPerSecond, int maxTokens) {
+        if (ratio < 0 || minPerSecond < 0 || maxTokens <= 0) {
+            throw new IllegalArgumentException("Illegal retry budget: ratio=" + ratio + ", minPerSecond=" + minPerSecond + ", maxTokens=" + maxTokens);
+        }
+        this.depositPerRequest = (long) (ratio * TOKEN);
+        this.minPerSecond = minPerSecond;
+        this.capacity = maxTokens * TOKEN;
+        this.balance = new AtomicLong(Math.min(minPerSecond * TOKEN, capacity));
+    }
+
+    /**
+     * 发起正常请求时存入令牌
+     */
+    public void deposit() {
+        if (depositPerRequest > 0) {
+            this.add(depositPerRequest);
+        }
+    }
+
+    /**
+     * 尝试为一次重试取出令牌
+     *
+     * @return 取出成功返回true，预算已经用完时返回false
+     */
+    public boolean tryWithdraw() {
+        this.refill();
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * 当前可用的令牌数
+     */
+    public double getTokens() {
+        this.refill();
+        return (double) balance.get() / TOKEN;
+    }
+
+    /**
+     * 按距离上次补充流逝的时间补充令牌，不足一个内部计数时不更新补充时间，避免频繁调用时丢失补充量
+     */
+    private void refill() {
+        if (minPerSecond == 0) {
+            return;
+        }
+        long last = lastRefillNanos.get();
+        long now = System.nanoTime();
+        // 纳秒数除以1e6为毫秒数，每毫秒补充minPerSecond个内部计数
+        long amount = (long) ((now - last) / 1e6 * minPerSecond);
+        if (amount > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            this.add(amount);
+        }
+    }
+
+    private void add(long amount) {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + amount, capacity)));
+    }
+}
@@ -1,9 +1,11 @@
 package com.rain.rpc.proxy.api.config;
 
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.proxy.api.consumer.Consumer;
 import com.rain.rpc.registry.api.RegistryService;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
 /**
  * 代理配置类
@@ -53,6 +55,31 @@ public class ProxyConfig<T> implements Serializable {
      */
     private boolean oneway;
 
+    /**
+     * 异步回调的执行方式，pool、direct或virtual
+     */
+    private String callbackExecutorType;
+
+    /**
+     * 自定义的异步回调执行器，设置后优先于callbackExecutorType
+     */
+    private transient Executor callbackExecutor;
+
+    /**
+     * 是否开启对冲请求，开启后引用的所有方法都必须是幂等的
+     */
+    private boolean hedging;
+
+    /**
+     * 集群容错策略，failfast、failover、failsafe或forking
+     */
+    private String cluster;
+
+    /**
+     * failover的最大重试次数，forking的额外并行调用数
+     */
+    private int retries = RpcConstants.CLUSTER_DEFAULT_RETRIES;
+
     public ProxyConfig() {
     }
 
@@ -139,4 +166,44 @@ public class ProxyConfig<T> implements Serializable {
     public void setOneway(boolean oneway) {
         this.oneway = oneway;
     }
+
+    public String getCallbackExecutorType() {
+        return callbackExecutorType;
+    }
+
+    public void setCallbackExecutorType(String callbackExecutorType) {
+        this.callbackExecutorType = callbackExecutorType;
+    }
+
+    public boolean getHedging() {
+        return hedging;
+    }
+
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
 }
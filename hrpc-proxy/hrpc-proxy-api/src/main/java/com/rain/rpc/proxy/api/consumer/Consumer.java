@@ -1,10 +1,14 @@
 package com.rain.rpc.proxy.api.consumer;
 
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.meta.ServiceMeta;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
 import com.rain.rpc.registry.api.RegistryService;
 
+import java.util.Collection;
+
 /**
  * 消费者接口
  * 
@@ -21,4 +25,28 @@ public interface Consumer {
      * @throws Exception 连接或处理异常
      */
     RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) throws Exception;
+
+    /**
+     * 消费者发送 request 请求，请求不会发送到被排除的服务实例
+     * 默认实现不支持排除服务实例，有需要排除的实例时直接返回null
+     *
+     * @param protocol RPC协议对象，包含请求头和请求体
+     * @param registryService 注册服务，用于服务发现
+     * @param excludedServices 需要排除的服务实例
+     * @return RPCFuture对象，没有其他可用的服务实例时返回null
+     * @throws Exception 连接或处理异常
+     */
+    default RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, Collection<ServiceMeta> excludedServices) throws Exception {
+        return excludedServices.isEmpty() ? this.sendRequest(protocol, registryService) : null;
+    }
+
+    /**
+     * 消费者发起流式调用，服务提供者返回的流数据交给subscription
+     *
+     * @param protocol RPC协议对象，请求体中标记为流式调用
+     * @param registryService 注册服务，用于服务发现
+     * @param subscription 本次流式调用的订阅
+     * @throws Exception 连接或处理异常
+     */
+    void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) throws Exception;
 }
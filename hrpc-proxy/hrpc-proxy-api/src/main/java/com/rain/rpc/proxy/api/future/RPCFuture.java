@@ -1,193 +1,231 @@
 package com.rain.rpc.proxy.api.future;
 
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.threadpool.CallbackExecutors;
 import com.rain.rpc.common.threadpool.ClientThreadPool;
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.meta.ServiceMeta;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.protocol.response.RpcResponse;
 import com.rain.rpc.proxy.api.callback.AsyncRPCCallback;
+import io.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.AbstractQueuedSynchronizer;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * RPC Future实现
  * 基于CompletableFuture扩展，用于处理RPC异步调用结果
+ *
+ * 设计说明：
+ * 1. 收到响应或调用失败时直接完成CompletableFuture本身，get/join/thenApply等组合操作都能正常工作
+ * 2. 完成过程只依赖CompletableFuture内部的CAS，不需要额外加锁
+ * 3. 服务端返回错误时以RpcException异常完成
+ * 4. 支持取消，取消时通过取消钩子清理消费者端等待响应的记录，重复取消或与完成并发时钩子只执行一次
+ * 5. 根据请求的超时时间记录截止时间，可用于计算剩余时间
+ * 6. 记录是否收到了服务提供者的响应，集群调用据此区分请求是否已经被处理，只有未被处理的失败请求才能重试
  */
 public class RPCFuture extends CompletableFuture<Object> {
     private static final Logger LOGGER = LoggerFactory.getLogger(RPCFuture.class);
 
-    // 同步器，用于控制异步操作的完成状态
-    private Sync sync;
     // 请求协议
-    private RpcProtocol<RpcRequest> requestProtocol;
-    // 响应协议
-    private RpcProtocol<RpcResponse> responseProtocol;
-    // 请求开始时间，用于性能监控
-    private long startTime;
+    private final RpcProtocol<RpcRequest> requestProtocol;
+    // 超时清理任务，正常完成时取消以尽快释放时间轮中的槽位
+    private volatile Timeout timeoutTask;
+    // 取消钩子，调用方取消请求时执行
+    private volatile Runnable cancelHook;
+    // 请求开始时间（纳秒），用于性能监控和计算截止时间
+    private final long startNanos;
+    // 截止时间（纳秒），请求未设置超时时间时为0
+    private final long deadlineNanos;
+    // 请求发送到的服务实例
+    private volatile ServiceMeta serviceMeta;
+    // 是否收到了服务提供者的响应
+    private volatile boolean responseReceived;
+    // 执行异步回调的Executor，默认使用客户端线程池
+    private volatile Executor callbackExecutor = ClientThreadPool.getExecutor();
     // 响应时间阈值（毫秒），超过该值会输出警告日志
     private long responseTimeThreshold = 5000;
 
-    private List<AsyncRPCCallback> pendingCallbacks = new ArrayList<AsyncRPCCallback>();
-    private ReentrantLock lock = new ReentrantLock();
-
     public RPCFuture(RpcProtocol<RpcRequest> requestProtocol) {
-        this.sync = new Sync();
         this.requestProtocol = requestProtocol;
-        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        long timeout = requestProtocol.getBody() == null ? 0 : requestProtocol.getBody().getTimeout();
+        this.deadlineNanos = timeout > 0 ? startNanos + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
     }
 
-    @Override
-    public boolean isDone() {
-        return sync.isDone();
+    /**
+     * 标记RPC调用完成，并设置响应结果
+     *
+     * @param responseProtocol 响应协议
+     */
+    public void done(RpcProtocol<RpcResponse> responseProtocol) {
+        RpcResponse response = responseProtocol.getBody();
+        this.responseReceived = true;
+        boolean completed = response.isError()
+                ? completeExceptionally(new RpcException("Response error: " + response.getError()))
+                : complete(response.getResult());
+        if (!completed) {
+            return;
+        }
+        cancelTimeoutTask();
+        // 性能监控：检查响应时间是否超过阈值
+        long responseTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (responseTime > this.responseTimeThreshold) {
+            LOGGER.warn("Service response time is too slow. Request id = " + responseProtocol.getHeader().getRequestId() + ". Response Time = " + responseTime + "ms");
+        }
     }
 
     /**
-     * 获取RPC调用结果（阻塞直到结果返回）
+     * 标记RPC调用失败，用于超时、连接断开等收不到响应的场景
      *
-     * @return RPC调用结果
-     * @throws InterruptedException 中断异常
-     * @throws ExecutionException 执行异常
+     * @param cause 失败原因
      */
-    @Override
-    public Object get() throws InterruptedException, ExecutionException {
-        // 等待操作完成
-        sync.acquire(-1);
-        if (this.responseProtocol != null) {
-            return this.responseProtocol.getBody().getResult();
-        } else {
-            return null;
+    public void fail(Throwable cause) {
+        if (completeExceptionally(cause)) {
+            cancelTimeoutTask();
         }
     }
 
     /**
-     * 获取RPC调用结果（带超时时间）
-     *
-     * @param timeout 超时时间
-     * @param unit 时间单位
-     * @return RPC调用结果
-     * @throws InterruptedException 中断异常
-     * @throws ExecutionException 执行异常
-     * @throws TimeoutException 超时异常
+     * 取消RPC调用，已经完成的调用无法取消
+     * CompletableFuture.cancel对已经取消的Future也返回true，这里改为CAS完成，只有实际完成取消的一次调用返回true并执行取消钩子
      */
     @Override
-    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        // 在指定时间内等待操作完成
-        boolean success = sync.tryAcquireNanos(-1, unit.toNanos(timeout));
-        if (success) {
-            if (this.responseProtocol != null) {
-                return this.responseProtocol.getBody().getResult();
-            } else {
-                return null;
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = completeExceptionally(new CancellationException());
+        if (cancelled) {
+            cancelTimeoutTask();
+            Runnable hook = this.cancelHook;
+            if (hook != null) {
+                hook.run();
             }
-        } else {
-            // 超时抛出异常，并提供详细的调试信息
-            throw new RuntimeException("Timeout exception. Request id: " + this.requestProtocol.getHeader().getRequestId()
-                    + ". Request class name: " + this.requestProtocol.getBody().getClassName()
-                    + ". Request method: " + this.requestProtocol.getBody().getMethodName());
         }
+        return cancelled;
     }
 
-    @Override
-    public boolean isCancelled() {
-        throw new UnsupportedOperationException();
+    /**
+     * 获取请求协议
+     *
+     * @return 请求协议
+     */
+    public RpcProtocol<RpcRequest> getRequestProtocol() {
+        return requestProtocol;
     }
 
-    @Override
-    public boolean cancel(boolean mayInterruptIfRunning) {
-        throw new UnsupportedOperationException();
+    /**
+     * 获取请求发送到的服务实例
+     *
+     * @return 服务实例，未知时为null
+     */
+    public ServiceMeta getServiceMeta() {
+        return serviceMeta;
     }
 
     /**
-     * 标记RPC调用完成，并设置响应结果
+     * 设置请求发送到的服务实例
      *
-     * @param responseProtocol 响应协议
+     * @param serviceMeta 服务实例
      */
-    public void done(RpcProtocol<RpcResponse> responseProtocol) {
-        this.responseProtocol = responseProtocol;
-        // 释放同步锁，标记操作完成
-        sync.release(1);
-        invokeCallbacks();
-        // 性能监控：检查响应时间是否超过阈值
-        long responseTime = System.currentTimeMillis() - startTime;
-        if (responseTime > this.responseTimeThreshold) {
-            LOGGER.warn("Service response time is too slow. Request id = " + responseProtocol.getHeader().getRequestId() + ". Response Time = " + responseTime + "ms");
-        }
+    public void setServiceMeta(ServiceMeta serviceMeta) {
+        this.serviceMeta = serviceMeta;
     }
 
-    private void invokeCallbacks() {
-        lock.lock();
-        try {
-            for (final AsyncRPCCallback callback : pendingCallbacks) {
-                runCallback(callback);
-            }
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * 是否收到了服务提供者的响应
+     * 以异常结束且未收到响应时，请求可能没有到达服务提供者，例如发送失败或连接断开
+     *
+     * @return 收到响应返回true
+     */
+    public boolean isResponseReceived() {
+        return responseReceived;
     }
 
-    public RPCFuture addCallback(AsyncRPCCallback callback) {
-        lock.lock();
-        try {
-            if (isDone()) {
-                runCallback(callback);
-            } else {
-                this.pendingCallbacks.add(callback);
-            }
-        } finally {
-            lock.unlock();
-        }
-        return this;
+    /**
+     * 设置超时清理任务
+     *
+     * @param timeoutTask 时间轮中的超时任务
+     */
+    public void setTimeoutTask(Timeout timeoutTask) {
+        this.timeoutTask = timeoutTask;
     }
 
-    private void runCallback(final AsyncRPCCallback callback) {
-        final RpcResponse res = this.responseProtocol.getBody();
-        ClientThreadPool.submit(() -> {
-            if (!res.isError()) {
-                callback.onSuccess(res.getResult());
-            } else {
-                callback.onException(new RuntimeException("Response error", new Throwable(res.getError())));
-            }
-        });
+    /**
+     * 设置取消钩子
+     *
+     * @param cancelHook 调用方取消请求时执行的清理逻辑
+     */
+    public void setCancelHook(Runnable cancelHook) {
+        this.cancelHook = cancelHook;
+    }
+
+    /**
+     * 设置执行异步回调的Executor
+     *
+     * @param callbackExecutor 回调执行器，为CallbackExecutors.DIRECT时在完成调用的线程中直接执行
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        if (callbackExecutor != null) {
+            this.callbackExecutor = callbackExecutor;
+        }
     }
 
     /**
-     * 内部同步器实现
-     * 基于AbstractQueuedSynchronizer实现RPC调用的同步控制
+     * 获取距离截止时间的剩余时间
+     *
+     * @param unit 时间单位
+     * @return 剩余时间，已过期时小于等于0，未设置超时时间时返回Long.MAX_VALUE
      */
-    static class Sync extends AbstractQueuedSynchronizer {
-        private static final long serialVersionUID = 9092188010933422653L;
+    public long getRemainingTime(TimeUnit unit) {
+        if (deadlineNanos == 0) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
 
-        // 完成状态
-        private final int done = 1;
-        // 等待状态
-        private final int pending = 0;
+    /**
+     * 是否已经超过截止时间
+     */
+    public boolean isExpired() {
+        return deadlineNanos != 0 && deadlineNanos - System.nanoTime() <= 0;
+    }
 
-        @Override
-        protected boolean tryAcquire(int arg) {
-            return getState() == done;
+    private void cancelTimeoutTask() {
+        Timeout task = this.timeoutTask;
+        if (task != null) {
+            task.cancel();
         }
+    }
 
-        @Override
-        protected boolean tryRelease(int arg) {
-            if (getState() == pending) {
-                if (compareAndSetState(pending, done)) {
-                    return true;
-                }
-            }
-            return false;
+    /**
+     * 添加回调，调用完成后在回调执行器中执行
+     * 回调执行器为CallbackExecutors.DIRECT时，在完成调用的线程（通常是Netty的IO线程）中直接执行，
+     * 添加回调时调用已经完成则在当前线程中直接执行
+     *
+     * @param callback 回调
+     * @return 当前RPCFuture
+     */
+    public RPCFuture addCallback(AsyncRPCCallback callback) {
+        Executor executor = this.callbackExecutor;
+        if (executor == CallbackExecutors.DIRECT) {
+            this.whenComplete((result, throwable) -> runCallback(callback, result, throwable));
+        } else {
+            this.whenCompleteAsync((result, throwable) -> runCallback(callback, result, throwable), executor);
         }
+        return this;
+    }
 
-        protected boolean isDone() {
-            getState();
-            return getState() == done;
+    private void runCallback(AsyncRPCCallback callback, Object result, Throwable throwable) {
+        if (throwable == null) {
+            callback.onSuccess(result);
+            return;
         }
+        Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        callback.onException(failure instanceof Exception ? (Exception) failure : new RuntimeException(failure));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package com.rain.rpc.proxy.api.hedge;
+
+import com.rain.rpc.common.stats.LatencyRecorder;
+import com.rain.rpc.common.threadpool.ClientThreadPool;
+import com.rain.rpc.common.timer.RpcTimer;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeader;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.cluster.ClusterInvokers;
+import com.rain.rpc.proxy.api.cluster.RetryBudget;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲请求调用器
+ * 请求在一段时间内没有响应时，向另一个服务实例发送相同的请求，以先返回的结果为准，并取消较慢的请求
+ *
+ * 设计说明：
+ * 1. 对冲延迟取该方法近期调用延迟的p95，样本不足或剩余超时时间不足以等待该延迟时不发送对冲请求
+ * 2. 对冲请求使用新的请求ID和相同的截止时间，发送到与首个请求不同的服务实例，没有其他可用实例时不发送
+ * 3. 任意一个请求成功即完成调用，并取消另一个请求，服务提供者收到取消请求后停止处理
+ * 4. 首个请求在对冲请求发出之前失败时直接失败，对冲不是重试；两个请求都已发出时，全部失败才失败
+ * 5. 对冲延迟由共享时间轮触发，精度为时间轮的刻度；发送对冲请求可能需要建连，放在客户端线程池中执行，不阻塞时间轮线程
+ * 6. 只有幂等的方法才能开启对冲请求，服务提供者可能会执行两次
+ * 7. 对冲请求与同一个代理对象的重试共用RetryBudget，每个首个请求存入令牌，每个对冲请求取出令牌；
+ *    服务实例普遍变慢时对冲请求的数量有上限，不会使流量翻倍
+ */
+public class HedgingInvoker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingInvoker.class);
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    private final RetryBudget retryBudget;
+
+    public HedgingInvoker(Consumer consumer, RegistryService registryService, RetryBudget retryBudget) {
+        this.consumer = consumer;
+        this.registryService = registryService;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * 发送请求，需要时在对冲延迟后发送对冲请求
+     *
+     * @param protocol RPC请求协议
+     * @param latencyRecorder 该方法的调用延迟统计
+     * @return 任意一个请求成功时完成的RPCFuture，没有可用的服务实例时返回null
+     * @throws Exception 发送首个请求时的异常
+     */
+    public RPCFuture invoke(RpcProtocol<RpcRequest> protocol, LatencyRecorder latencyRecorder) throws Exception {
+        retryBudget.deposit();
+        long startNanos = System.nanoTime();
+        RPCFuture primary = consumer.sendRequest(protocol, registryService);
+        if (primary == null) {
+            return null;
+        }
+        long delayNanos = hedgingDelay(protocol.getHeader(), latencyRecorder);
+        if (delayNanos < 0) {
+            primary.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    latencyRecorder.record(System.nanoTime() - startNanos);
+                }
+            });
+            return primary;
+        }
+        return new HedgedCall(protocol, primary, startNanos, latencyRecorder).start(delayNanos);
+    }
+
+    /**
+     * 计算对冲延迟
+     *
+     * @return 对冲延迟（纳秒），不发送对冲请求时返回-1
+     */
+    private static long hedgingDelay(RpcHeader header, LatencyRecorder latencyRecorder) {
+        if (latencyRecorder.getCount() < RpcConstants.HEDGING_MIN_SAMPLES) {
+            return -1;
+        }
+        long delayNanos = latencyRecorder.getPercentile(RpcConstants.HEDGING_DELAY_PERCENTILE);
+        long deadline = header.getDeadline();
+        if (deadline != 0 && deadline - (System.nanoTime() + delayNanos) <= 0) {
+            return -1;
+        }
+        return delayNanos;
+    }
+
+    /**
+     * 一次对冲调用的状态，两个请求的完成回调和对冲定时任务之间通过对象锁同步
+     */
+    private final class HedgedCall {
+
+        private final RpcProtocol<RpcRequest> protocol;
+
+        private final RPCFuture primary;
+
+        private final long startNanos;
+
+        private final LatencyRecorder latencyRecorder;
+
+        /**
+         * 返回给调用方的结果，任意一个请求成功时完成
+         */
+        private final RPCFuture result;
+
+        private Timeout hedgeTimer;
+
+        private RPCFuture hedge;
+
+        /**
+         * 对冲请求已经发出，或者已经确定不再发出
+         */
+        private boolean hedgeSettled;
+
+        /**
+         * 已经发出且尚未结束的请求数
+         */
+        private int inFlight = 1;
+
+        private Throwable lastError;
+
+        HedgedCall(RpcProtocol<RpcRequest> protocol, RPCFuture primary, long startNanos, LatencyRecorder latencyRecorder) {
+            this.protocol = protocol;
+            this.primary = primary;
+            this.startNanos = startNanos;
+            this.latencyRecorder = latencyRecorder;
+            this.result = new RPCFuture(protocol);
+        }
+
+        RPCFuture start(long delayNanos) {
+            result.setServiceMeta(primary.getServiceMeta());
+            result.setCancelHook(this::cancelAttempts);
+            synchronized (this) {
+                hedgeTimer = RpcTimer.newTimeout(timeout -> ClientThreadPool.getExecutor().execute(this::sendHedge), delayNanos, TimeUnit.NANOSECONDS);
+            }
+            primary.whenComplete((value, throwable) -> onAttemptComplete(primary, startNanos, value, throwable));
+            return result;
+        }
+
+        private void sendHedge() {
+            synchronized (this) {
+                if (hedgeSettled || result.isDone()) {
+                    return;
+                }
+                hedgeSettled = true;
+                if (!retryBudget.tryWithdraw()) {
+                    // 预算已经用完，结果由首个请求决定
+                    return;
+                }
+                inFlight++;
+            }
+            long hedgeStartNanos = System.nanoTime();
+            RPCFuture hedgeFuture = null;
+            try {
+                List<ServiceMeta> excludedServices = primary.getServiceMeta() == null
+                        ? Collections.emptyList() : Collections.singletonList(primary.getServiceMeta());
+                hedgeFuture = consumer.sendRequest(ClusterInvokers.copyRequest(protocol), registryService, excludedServices);
+            } catch (Exception e) {
+                LOGGER.warn("Send hedged request failed. Request id: {}", protocol.getHeader().getRequestId(), e);
+            }
+            if (hedgeFuture == null) {
+                // 没有其他可用的服务实例，结果由首个请求决定
+                onAttemptFailed(null);
+                return;
+            }
+            synchronized (this) {
+                hedge = hedgeFuture;
+            }
+            if (result.isDone()) {
+                hedgeFuture.cancel(false);
+                return;
+            }
+            RPCFuture sent = hedgeFuture;
+            sent.whenComplete((value, throwable) -> onAttemptComplete(sent, hedgeStartNanos, value, throwable));
+        }
+
+        private void onAttemptComplete(RPCFuture attempt, long attemptStartNanos, Object value, Throwable throwable) {
+            if (throwable == null) {
+                latencyRecorder.record(System.nanoTime() - attemptStartNanos);
+                if (result.complete(value)) {
+                    this.cancelLoser(attempt);
+                }
+                return;
+            }
+            if (throwable instanceof CancellationException) {
+                // 被本次调用取消的请求不影响结果
+                return;
+            }
+            this.onAttemptFailed(ClusterInvokers.unwrap(throwable));
+        }
+
+        private void onAttemptFailed(Throwable cause) {
+            Throwable failure;
+            synchronized (this) {
+                if (cause != null) {
+                    lastError = cause;
+                }
+                inFlight--;
+                if (!hedgeSettled) {
+                    hedgeSettled = true;
+                    hedgeTimer.cancel();
+                }
+                if (inFlight > 0) {
+                    return;
+                }
+                failure = lastError;
+            }
+            result.fail(failure);
+        }
+
+        /**
+         * 取消较慢的请求；被取消的首个请求以已经经过的时间记录一次延迟，实际延迟只会更长
+         */
+        private void cancelLoser(RPCFuture winner) {
+            RPCFuture loser;
+            synchronized (this) {
+                hedgeSettled = true;
+                hedgeTimer.cancel();
+                loser = winner == primary ? hedge : primary;
+            }
+            if (loser != null && loser.cancel(false) && loser == primary) {
+                latencyRecorder.record(System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * 调用方取消或等待超时时，取消所有请求
+         */
+        private void cancelAttempts() {
+            RPCFuture hedgeFuture;
+            synchronized (this) {
+                hedgeSettled = true;
+                hedgeTimer.cancel();
+                hedgeFuture = hedge;
+            }
+            primary.cancel(false);
+            if (hedgeFuture != null) {
+                hedgeFuture.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.rain.rpc.proxy.api.object;
+
+import com.rain.rpc.common.helper.RpcServiceHelper;
+import com.rain.rpc.common.stats.LatencyRecorder;
+import com.rain.rpc.common.stream.CloseableIterator;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+
+/**
+ * 远程方法描述
+ * 缓存每个接口方法在构建请求时需要的不可变信息，调用时只需要填充参数和请求ID
+ *
+ * 设计说明：
+ * 1. 类名、方法名使用intern后的字符串，多个代理对象之间共享
+ * 2. 参数类型数组只获取一次，Method.getParameterTypes()每次调用都会复制数组
+ * 3. 预先计算服务唯一标识，消费者端发现服务和负载均衡时直接使用，String会缓存自身的hash
+ * 4. 参数类型数组会被所有请求共享，任何地方都不能修改
+ * 5. 调用延迟统计是唯一的可变状态，只在开启对冲请求时按需创建
+ * 6. 第一个类型为Flow.Publisher的参数作为请求流，其下标预先计算
+ */
+public final class MethodDescriptor {
+
+    private final String className;
+
+    private final String methodName;
+
+    private final Class<?>[] parameterTypes;
+
+    private final Class<?> returnType;
+
+    private final String serviceKey;
+
+    private final boolean futureReturnType;
+
+    private final boolean streamReturnType;
+
+    private final int streamParameterIndex;
+
+    private volatile LatencyRecorder latencyRecorder;
+
+    /**
+     * @param serviceClass 请求中使用的服务接口
+     * @param method 接口方法
+     * @param serviceVersion 服务版本
+     * @param serviceGroup 服务分组
+     */
+    public MethodDescriptor(Class<?> serviceClass, Method method, String serviceVersion, String serviceGroup) {
+        this.className = serviceClass.getName().intern();
+        this.methodName = method.getName().intern();
+        this.parameterTypes = method.getParameterTypes();
+        this.returnType = method.getReturnType();
+        this.serviceKey = RpcServiceHelper.buildServiceKey(className, serviceVersion, serviceGroup).intern();
+        this.futureReturnType = returnType == CompletableFuture.class || returnType == CompletionStage.class || returnType == Future.class;
+        this.streamReturnType = returnType == Flow.Publisher.class || returnType == Iterator.class || returnType == CloseableIterator.class;
+        int index = -1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == Flow.Publisher.class) {
+                index = i;
+                break;
+            }
+        }
+        this.streamParameterIndex = index;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public Class<?> getReturnType() {
+        return returnType;
+    }
+
+    public String getServiceKey() {
+        return serviceKey;
+    }
+
+    /**
+     * 获取该方法的调用延迟统计，第一次调用时创建
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        LatencyRecorder recorder = latencyRecorder;
+        if (recorder == null) {
+            synchronized (this) {
+                recorder = latencyRecorder;
+                if (recorder == null) {
+                    recorder = new LatencyRecorder();
+                    latencyRecorder = recorder;
+                }
+            }
+        }
+        return recorder;
+    }
+
+    /**
+     * 方法的返回类型是否可以直接使用RPCFuture返回
+     */
+    public boolean isFutureReturnType() {
+        return futureReturnType;
+    }
+
+    /**
+     * 方法的返回类型是否为Flow.Publisher、Iterator或CloseableIterator，即流式调用
+     */
+    public boolean isStreamReturnType() {
+        return streamReturnType;
+    }
+
+    /**
+     * 作为请求流的参数下标，没有类型为Flow.Publisher的参数时为-1
+     */
+    public int getStreamParameterIndex() {
+        return streamParameterIndex;
+    }
+}
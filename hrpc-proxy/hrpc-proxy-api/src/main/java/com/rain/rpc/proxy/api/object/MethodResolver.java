@@ -0,0 +1,321 @@
+package com.rain.rpc.proxy.api.object;
+
+import com.rain.rpc.common.exception.RpcException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按方法名和实际参数解析接口方法
+ * 用于IAsyncObjectProxy.call这类只给出方法名的动态调用
+ *
+ * 设计说明：
+ * 1. 参数个数相同、每个实际参数都能传给形参的方法作为候选：实际参数可以赋值给形参，
+ *    包装类型的实际参数还可以匹配对应的基本类型以及能够拓宽到的基本类型（Integer匹配int、long、double等），null不能匹配基本类型
+ * 2. 动态调用的实际参数总是包装类型，无法区分调用方的本意是int还是Integer，每个参数按匹配程度排序：
+ *    对应的基本类型、相同的包装类型、拓宽的基本类型、父类型；同一级中拓宽范围更小的基本类型、更具体的引用类型优先，
+ *    因此foo(int)和foo(Integer)同时存在时总是选择foo(int)，foo(long)和foo(double)同时存在时选择foo(long)
+ * 3. 选择每个参数都不比其他候选方法差的方法，不存在这样的方法时报错，不依赖getMethods()返回的顺序
+ * 4. 解析结果按方法名和实际参数的类型组合缓存，同一组参数类型只解析一次
+ * 5. 每个方法名对应的缓存是写时复制的数组，查找时逐个比较参数类型，不需要创建任何对象
+ * 6. 解析失败直接在本地抛出异常，不会把注定失败的请求发送到服务提供者
+ * 7. 通过拓宽匹配的参数由widenArguments转换为形参的包装类型后再发送，服务提供者收到的参数与方法声明一致
+ */
+public class MethodResolver {
+
+    /**
+     * 实际参数与对应的基本类型匹配
+     */
+    private static final int PRIMITIVE = 0;
+
+    /**
+     * 实际参数与形参类型相同
+     */
+    private static final int EXACT = 1;
+
+    /**
+     * 包装类型的实际参数拓宽为形参的基本类型
+     */
+    private static final int WIDENING = 2;
+
+    /**
+     * 实际参数赋值给形参的父类型，null参数总是这一级
+     */
+    private static final int REFERENCE = 3;
+
+    private static final int NOT_APPLICABLE = Integer.MAX_VALUE;
+
+    private final Class<?> serviceClass;
+
+    private final String serviceVersion;
+
+    private final String serviceGroup;
+
+    private final Map<String, Resolution[]> resolutionCache = new ConcurrentHashMap<>();
+
+    public MethodResolver(Class<?> serviceClass, String serviceVersion, String serviceGroup) {
+        this.serviceClass = serviceClass;
+        this.serviceVersion = serviceVersion;
+        this.serviceGroup = serviceGroup;
+    }
+
+    /**
+     * 根据方法名和实际参数解析方法
+     *
+     * @param methodName 方法名
+     * @param args 实际参数，null参数按任意引用类型匹配
+     * @return 方法描述
+     */
+    public MethodDescriptor resolve(String methodName, Object[] args) {
+        Resolution[] resolutions = resolutionCache.get(methodName);
+        if (resolutions != null) {
+            for (Resolution resolution : resolutions) {
+                if (resolution.matches(args)) {
+                    return resolution.descriptor;
+                }
+            }
+        }
+        return resolveAndCache(methodName, args);
+    }
+
+    private MethodDescriptor resolveAndCache(String methodName, Object[] args) {
+        Method method = this.findMethod(methodName, args);
+        Resolution resolution = new Resolution(argumentClasses(args), new MethodDescriptor(serviceClass, method, serviceVersion, serviceGroup));
+        resolutionCache.compute(methodName, (name, current) -> {
+            if (current == null) {
+                return new Resolution[]{resolution};
+            }
+            Resolution[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = resolution;
+            return updated;
+        });
+        return resolution.descriptor;
+    }
+
+    private Method findMethod(String methodName, Object[] args) {
+        int argCount = args == null ? 0 : args.length;
+        List<Method> candidates = new ArrayList<>();
+        for (Method method : serviceClass.getMethods()) {
+            if (method.getName().equals(methodName) && method.getParameterCount() == argCount && isApplicable(method.getParameterTypes(), args)) {
+                candidates.add(method);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new RpcException("No method found: " + serviceClass.getName() + "#" + methodName + Arrays.toString(argumentClasses(args)));
+        }
+        // 选择每个参数都不比其他候选方法差的方法，参数类型完全相同的候选方法（来自不同的父接口）视为同一个方法
+        for (Method candidate : candidates) {
+            boolean mostSpecific = true;
+            for (Method other : candidates) {
+                if (other != candidate && !isAtLeastAsSpecific(candidate, other, args)) {
+                    mostSpecific = false;
+                    break;
+                }
+            }
+            if (mostSpecific) {
+                return candidate;
+            }
+        }
+        throw new RpcException("Ambiguous method call: " + serviceClass.getName() + "#" + methodName + Arrays.toString(argumentClasses(args)) + ", candidates: " + candidates);
+    }
+
+    private static boolean isApplicable(Class<?>[] parameterTypes, Object[] args) {
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (rank(parameterTypes[i], args[i]) == NOT_APPLICABLE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 实际参数传给形参的匹配程度，数值越小越匹配
+     */
+    private static int rank(Class<?> parameterType, Object arg) {
+        if (arg == null) {
+            return parameterType.isPrimitive() ? NOT_APPLICABLE : REFERENCE;
+        }
+        Class<?> argClass = arg.getClass();
+        if (parameterType.isPrimitive()) {
+            Class<?> primitive = unwrap(argClass);
+            if (primitive == parameterType) {
+                return PRIMITIVE;
+            }
+            return primitive != null && isWidening(primitive, parameterType) ? WIDENING : NOT_APPLICABLE;
+        }
+        if (parameterType == argClass) {
+            return EXACT;
+        }
+        return parameterType.isAssignableFrom(argClass) ? REFERENCE : NOT_APPLICABLE;
+    }
+
+    /**
+     * 对于这组实际参数，method的每个形参都不比other对应的形参差
+     */
+    private static boolean isAtLeastAsSpecific(Method method, Method other, Object[] args) {
+        Class<?>[] types = method.getParameterTypes();
+        Class<?>[] otherTypes = other.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            Class<?> otherType = otherTypes[i];
+            if (type == otherType) {
+                continue;
+            }
+            int rank = rank(type, args[i]);
+            int otherRank = rank(otherType, args[i]);
+            if (rank != otherRank) {
+                if (rank > otherRank) {
+                    return false;
+                }
+                continue;
+            }
+            // 同一级中比较拓宽的范围或引用类型的继承关系，相同级别的PRIMITIVE和EXACT只可能是同一个类型
+            boolean specific = rank == WIDENING ? isWidening(type, otherType) : otherType.isAssignableFrom(type);
+            if (!specific) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 基本类型from能否按Java的拓宽基本类型转换变为to
+     */
+    private static boolean isWidening(Class<?> from, Class<?> to) {
+        if (from == byte.class) {
+            return to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+        }
+        if (from == short.class || from == char.class) {
+            return to == int.class || to == long.class || to == float.class || to == double.class;
+        }
+        if (from == int.class) {
+            return to == long.class || to == float.class || to == double.class;
+        }
+        if (from == long.class) {
+            return to == float.class || to == double.class;
+        }
+        if (from == float.class) {
+            return to == double.class;
+        }
+        return false;
+    }
+
+    /**
+     * 把通过拓宽匹配的实际参数转换为形参的包装类型，例如传给long形参的Integer转换为Long
+     * 不需要转换时返回原数组
+     *
+     * @param parameterTypes 解析得到的方法的参数类型
+     * @param args 实际参数
+     * @return 与参数类型一致的实际参数
+     */
+    public static Object[] widenArguments(Class<?>[] parameterTypes, Object[] args) {
+        Object[] widened = args;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> type = parameterTypes[i];
+            Object arg = args[i];
+            if (!type.isPrimitive() || arg == null || unwrap(arg.getClass()) == type) {
+                continue;
+            }
+            if (widened == args) {
+                widened = args.clone();
+            }
+            widened[i] = widen(arg, type);
+        }
+        return widened;
+    }
+
+    private static Object widen(Object arg, Class<?> type) {
+        if (arg instanceof Character c) {
+            arg = (int) c;
+        }
+        Number number = (Number) arg;
+        if (type == short.class) {
+            return number.shortValue();
+        }
+        if (type == int.class) {
+            return number.intValue();
+        }
+        if (type == long.class) {
+            return number.longValue();
+        }
+        if (type == float.class) {
+            return number.floatValue();
+        }
+        return number.doubleValue();
+    }
+
+    private static Class<?>[] argumentClasses(Object[] args) {
+        if (args == null) {
+            return new Class<?>[0];
+        }
+        Class<?>[] classes = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            classes[i] = args[i] == null ? null : args[i].getClass();
+        }
+        return classes;
+    }
+
+    /**
+     * 包装类型对应的基本类型，不是包装类型时返回null
+     */
+    private static Class<?> unwrap(Class<?> type) {
+        if (type == Integer.class) {
+            return int.class;
+        }
+        if (type == Long.class) {
+            return long.class;
+        }
+        if (type == Boolean.class) {
+            return boolean.class;
+        }
+        if (type == Double.class) {
+            return double.class;
+        }
+        if (type == Float.class) {
+            return float.class;
+        }
+        if (type == Character.class) {
+            return char.class;
+        }
+        if (type == Short.class) {
+            return short.class;
+        }
+        if (type == Byte.class) {
+            return byte.class;
+        }
+        return null;
+    }
+
+    /**
+     * 一组实际参数类型（null参数记为null）对应的解析结果
+     */
+    private static final class Resolution {
+
+        private final Class<?>[] argumentClasses;
+
+        private final MethodDescriptor descriptor;
+
+        Resolution(Class<?>[] argumentClasses, MethodDescriptor descriptor) {
+            this.argumentClasses = argumentClasses;
+            this.descriptor = descriptor;
+        }
+
+        boolean matches(Object[] args) {
+            int argCount = args == null ? 0 : args.length;
+            if (argCount != argumentClasses.length) {
+                return false;
+            }
+            for (int i = 0; i < argCount; i++) {
+                Object arg = args[i];
+                if ((arg == null ? null : arg.getClass()) != argumentClasses[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package com.rain.rpc.proxy.api.object;
 
+import com.rain.rpc.common.context.DeadlineContext;
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.threadpool.ClientThreadPool;
+import com.rain.rpc.constants.RpcConstants;
 import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeader;
 import com.rain.rpc.protocol.header.RpcHeaderFactory;
 import com.rain.rpc.protocol.request.RpcRequest;
 import com.rain.rpc.proxy.api.async.IAsyncObjectProxy;
+import com.rain.rpc.proxy.api.cluster.ClusterInvoker;
+import com.rain.rpc.proxy.api.cluster.ClusterInvokers;
+import com.rain.rpc.proxy.api.cluster.RetryBudget;
 import com.rain.rpc.proxy.api.consumer.Consumer;
 import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.proxy.api.hedge.HedgingInvoker;
+import com.rain.rpc.proxy.api.stream.RpcStreamIterator;
+import com.rain.rpc.proxy.api.stream.RpcStreamPublisher;
 import com.rain.rpc.registry.api.RegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 对象代理类
@@ -23,6 +41,18 @@ import java.util.concurrent.TimeUnit;
  * 1. 实现InvocationHandler接口，处理同步方法调用
  * 2. 实现IAsyncObjectProxy接口，处理异步方法调用
  * 3. 封装RPC调用的通用逻辑
+ * 4. 接口方法的返回类型为CompletableFuture/CompletionStage时，直接返回收到响应后完成的Future，不阻塞调用线程
+ * 5. 在服务提供者的业务线程中发起调用时，超时时间不超过上游请求剩余的时间，上游已经超时则直接失败
+ * 6. 请求由集群调用器按配置的容错策略发送；开启对冲请求时改由HedgingInvoker发送
+ * 7. 通过RpcContext获取结果的异步调用和单向调用直接由消费者发送，RpcContext中的RPCFuture必须是实际发出的请求
+ * 8. 接口方法的返回类型为Flow.Publisher时为流式调用，返回RpcStreamPublisher，订阅时才发送请求；
+ *    返回类型为Iterator或CloseableIterator时立即发起流式调用，返回按需预取的阻塞迭代器，超时时间作为等待每个元素的最长时间，
+ *    返回类型为CloseableIterator时调用方可以提前关闭迭代器取消流。
+ *    流式调用不经过集群调用器和对冲请求，已经收到部分元素的流不能重试
+ * 9. 接口方法带有Flow.Publisher参数时，该参数作为请求流不随请求发送，由消费者按服务提供者授予的额度逐个发送；
+ *    返回Future类型时为客户端流式调用，返回Flow.Publisher或Iterator时为双向流式调用；服务方法返回后调用就结束，
+ *    同步返回结果的方法无法等到请求流结束，发送前直接拒绝。
+ *    请求流不能重放，带有请求流的调用不作为单向调用，也不经过集群调用器和对冲请求
  */
 public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ObjectProxy.class);
@@ -63,9 +93,38 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
      * 是否单向调用（不需要响应）
      */
     private boolean oneWay;
+    /**
+     * 异步回调执行器
+     */
+    private Executor callbackExecutor = ClientThreadPool.getExecutor();
+    /**
+     * 集群调用器，未设置时等同于快速失败
+     */
+    private ClusterInvoker clusterInvoker;
+    /**
+     * 对冲请求调用器，未开启对冲请求时为null
+     */
+    private HedgingInvoker hedgingInvoker;
+    /**
+     * 重试预算，集群调用器的重试、并行调用和对冲请求共用
+     */
+    private final RetryBudget retryBudget = ClusterInvokers.newRetryBudget();
+    /**
+     * 方法描述缓存，避免每次调用重复获取方法信息、拼接服务唯一标识
+     */
+    private final Map<Method, MethodDescriptor> methodDescriptorCache = new ConcurrentHashMap<>();
+    /**
+     * 按方法名解析方法，用于异步调用接口
+     */
+    private final MethodResolver methodResolver;
+    /**
+     * 按下标排列的方法描述，供生成的代理类使用
+     */
+    private volatile MethodDescriptor[] indexedMethodDescriptors = new MethodDescriptor[0];
 
     public ObjectProxy(Class<T> clazz) {
         this.clazz = clazz;
+        this.methodResolver = new MethodResolver(clazz, serviceVersion, serviceGroup);
     }
 
     /**
@@ -100,9 +159,40 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
         this.async = async;
         this.oneWay = oneWay;
         this.registryService = registryService;
+        this.methodResolver = new MethodResolver(clazz, serviceVersion, serviceGroup);
     }
 
 
+    /**
+     * 设置异步回调执行器
+     *
+     * @param callbackExecutor 回调执行器
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        if (callbackExecutor != null) {
+            this.callbackExecutor = callbackExecutor;
+        }
+    }
+
+    /**
+     * 设置集群容错策略
+     *
+     * @param cluster 集群容错策略，failfast、failover、failsafe或forking
+     * @param retries failover的最大重试次数，forking的额外并行调用数
+     */
+    public void setCluster(String cluster, int retries) {
+        this.clusterInvoker = ClusterInvokers.getInvoker(cluster, consumer, registryService, retries, retryBudget);
+    }
+
+    /**
+     * 设置是否开启对冲请求
+     *
+     * @param hedging 是否开启对冲请求，开启后代理的所有方法都必须是幂等的
+     */
+    public void setHedging(boolean hedging) {
+        this.hedgingInvoker = hedging ? new HedgingInvoker(consumer, registryService, retryBudget) : null;
+    }
+
     /**
      * 处理代理对象的方法调用
      * 
@@ -130,46 +220,184 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
             }
         }
         
-        // 构建RPC请求协议
-        RpcProtocol<RpcRequest> requestRpcProtocol = new RpcProtocol<RpcRequest>();
-        requestRpcProtocol.setHeader(RpcHeaderFactory.getRequestHeader(serializationType));
+        return this.invoke(getMethodDescriptor(method), args);
+    }
 
-        // 构建请求体
-        RpcRequest request = new RpcRequest();
-        request.setVersion(this.serviceVersion);
-        request.setClassName(method.getDeclaringClass().getName());
-        request.setMethodName(method.getName());
-        request.setParameterTypes(method.getParameterTypes());
-        request.setGroup(this.serviceGroup);
-        request.setParameters(args);
-        request.setAsync(async);
-        request.setOneway(oneWay);
-        requestRpcProtocol.setBody(request);
+    /**
+     * 按方法下标处理代理对象的方法调用
+     * 供生成的代理类直接调用，方法下标对应bindMethods时传入的方法数组，不需要通过Method查找方法描述
+     *
+     * @param proxy 代理对象
+     * @param methodIndex 方法下标
+     * @param args 方法参数
+     * @return 方法调用结果
+     * @throws Throwable 异常
+     */
+    public Object invoke(Object proxy, int methodIndex, Object[] args) throws Throwable {
+        return this.invoke(indexedMethodDescriptors[methodIndex], args);
+    }
 
-        // 记录调试日志
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Invoking method: {}#{}", method.getDeclaringClass().getName(), method.getName());
+    /**
+     * 为生成的代理类绑定方法下标，预先创建每个方法的方法描述
+     *
+     * @param methods 代理类中按下标排列的接口方法
+     */
+    public void bindMethods(Method[] methods) {
+        MethodDescriptor[] descriptors = new MethodDescriptor[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            descriptors[i] = getMethodDescriptor(methods[i]);
+        }
+        this.indexedMethodDescriptors = descriptors;
+    }
 
-            if (method.getParameterTypes() != null && method.getParameterTypes().length > 0) {
-                for (int i = 0; i < method.getParameterTypes().length; ++i) {
-                    LOGGER.debug("Parameter type {}: {}", i, method.getParameterTypes()[i].getName());
-                }
+    private Object invoke(MethodDescriptor descriptor, Object[] args) throws Throwable {
+        if (descriptor.isStreamReturnType()) {
+            RpcStreamPublisher publisher = new RpcStreamPublisher(() -> this.createStreamRequest(descriptor, args), consumer, registryService, callbackExecutor);
+            return descriptor.getReturnType() == Flow.Publisher.class ? publisher : new RpcStreamIterator(publisher, RpcConstants.STREAM_ITERATOR_PREFETCH, timeout);
+        }
+        RpcProtocol<RpcRequest> requestRpcProtocol;
+        try {
+            requestRpcProtocol = createRequest(descriptor, args);
+        } catch (RpcException e) {
+            if (descriptor.isFutureReturnType()) {
+                return CompletableFuture.failedFuture(e);
             }
+            throw e;
+        }
+        RpcRequest request = requestRpcProtocol.getBody();
+        request.setAsync(async);
+        // 带有请求流时需要等待调用结束才能停止发送请求流
+        request.setOneway(oneWay && !request.getRequestStream());
 
-            if (args != null && args.length > 0) {
-                for (int i = 0; i < args.length; ++i) {
-                    LOGGER.debug("Parameter value {}: {}", i, args[i]);
-                }
-            }
+        Class<?> returnType = descriptor.getReturnType();
+        if (descriptor.isFutureReturnType()) {
+            return this.invokeForFuture(descriptor, requestRpcProtocol);
         }
 
         // 发送请求并获取结果
-        RPCFuture rpcFuture = this.consumer.sendRequest(requestRpcProtocol, registryService);
-        return rpcFuture == null ? null : timeout > 0 ? rpcFuture.get(timeout, TimeUnit.MILLISECONDS) : rpcFuture.get();
+        RPCFuture rpcFuture = this.sendRequest(descriptor, requestRpcProtocol);
+        if (rpcFuture == null) {
+            return defaultValue(returnType);
+        }
+        rpcFuture.setCallbackExecutor(callbackExecutor);
+        // 异步调用通过RpcContext获取RPCFuture
+        if (async) {
+            return defaultValue(returnType);
+        }
+        long requestTimeout = request.getTimeout();
+        try {
+            Object result = requestTimeout > 0 ? rpcFuture.get(requestTimeout, TimeUnit.MILLISECONDS) : rpcFuture.get();
+            // failsafe策略下失败的调用以null结果完成
+            return result != null ? result : defaultValue(returnType);
+        } catch (ExecutionException e) {
+            // 超时、连接断开等失败原因不能以受检异常的形式抛出到接口调用方
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? cause : new RpcException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            // 时间轮的超时任务通常会先行结束请求，这里兜底取消，同时清理等待响应的记录
+            rpcFuture.cancel(false);
+            throw new RpcException("Timeout exception. Request id: " + requestRpcProtocol.getHeader().getRequestId()
+                    + ". Request class name: " + request.getClassName()
+                    + ". Request method: " + request.getMethodName(), e);
+        }
+    }
+
+    /**
+     * 发送返回类型为Future的方法调用，不等待响应
+     * 发送过程中的异常也通过Future返回，调用方只需要处理Future
+     *
+     * @param descriptor 方法描述
+     * @param requestRpcProtocol RPC请求协议
+     * @return 收到响应后完成的Future
+     */
+    private CompletableFuture<Object> invokeForFuture(MethodDescriptor descriptor, RpcProtocol<RpcRequest> requestRpcProtocol) {
+        RPCFuture rpcFuture;
+        try {
+            rpcFuture = this.sendRequest(descriptor, requestRpcProtocol);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e instanceof RpcException ? e : new RpcException(e.getMessage(), e));
+        }
+        if (rpcFuture == null) {
+            // 单向调用不会收到响应
+            if (oneWay) {
+                return CompletableFuture.completedFuture(null);
+            }
+            RpcRequest request = requestRpcProtocol.getBody();
+            return CompletableFuture.failedFuture(new RpcException("No service available: " + request.getClassName() + "#" + request.getMethodName()));
+        }
+        rpcFuture.setCallbackExecutor(callbackExecutor);
+        return rpcFuture;
+    }
+
+    /**
+     * 发送请求，开启对冲请求时由HedgingInvoker发送，否则由集群调用器发送
+     *
+     * @param descriptor 方法描述
+     * @param requestRpcProtocol RPC请求协议
+     * @return RPCFuture对象，没有可用的服务实例或单向调用时为null
+     * @throws Exception 发送请求时的异常
+     */
+    private RPCFuture sendRequest(MethodDescriptor descriptor, RpcProtocol<RpcRequest> requestRpcProtocol) throws Exception {
+        RpcRequest request = requestRpcProtocol.getBody();
+        if (request.getAsync() || request.getOneway() || request.getRequestStream()) {
+            return this.consumer.sendRequest(requestRpcProtocol, registryService);
+        }
+        HedgingInvoker hedging = this.hedgingInvoker;
+        if (hedging != null) {
+            return hedging.invoke(requestRpcProtocol, descriptor.getLatencyRecorder());
+        }
+        ClusterInvoker cluster = this.clusterInvoker;
+        return cluster != null ? cluster.invoke(requestRpcProtocol) : this.consumer.sendRequest(requestRpcProtocol, registryService);
+    }
+
+    /**
+     * 获取方法描述，第一次调用时创建并缓存
+     *
+     * @param method 接口方法
+     * @return 方法描述
+     */
+    private MethodDescriptor getMethodDescriptor(Method method) {
+        MethodDescriptor descriptor = methodDescriptorCache.get(method);
+        if (descriptor == null) {
+            descriptor = methodDescriptorCache.computeIfAbsent(method, m -> new MethodDescriptor(m.getDeclaringClass(), m, serviceVersion, serviceGroup));
+        }
+        return descriptor;
+    }
+
+    /**
+     * 异步或单向调用时方法不返回真实结果，基本类型返回默认值，避免代理拆箱时抛出NullPointerException
+     */
+    private static Object defaultValue(Class<?> returnType) {
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == char.class) {
+            return '\0';
+        }
+        if (returnType == byte.class) {
+            return (byte) 0;
+        }
+        if (returnType == short.class) {
+            return (short) 0;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == float.class) {
+            return 0F;
+        }
+        return 0D;
     }
 
     /**
      * 异步调用方法
+     * 按方法名和实际参数解析接口方法，请求中使用方法声明的参数类型，通过拓宽匹配的参数转换为形参的类型
      * 
      * @param funcName 方法名称
      * @param args 方法参数
@@ -177,10 +405,13 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
      */
     @Override
     public RPCFuture call(String funcName, Object... args) {
-        RpcProtocol<RpcRequest> request = createRequest(this.clazz.getName(), funcName, args);
         RPCFuture rpcFuture = null;
         try {
-            rpcFuture = this.consumer.sendRequest(request, registryService);
+            MethodDescriptor descriptor = methodResolver.resolve(funcName, args);
+            rpcFuture = this.sendRequest(descriptor, createRequest(descriptor, MethodResolver.widenArguments(descriptor.getParameterTypes(), args)));
+            if (rpcFuture != null) {
+                rpcFuture.setCallbackExecutor(callbackExecutor);
+            }
         } catch (Exception e) {
             LOGGER.error("Async call method {} throws exception", funcName, e);
         }
@@ -188,41 +419,61 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
     }
 
     /**
-     * 创建RPC请求
+     * 创建RPC请求，方法相关的信息直接取自缓存的方法描述
      * 
-     * @param className 类名
-     * @param methodName 方法名
+     * @param descriptor 方法描述
      * @param args 参数
      * @return RpcProtocol<RpcRequest> 请求协议
+     * @throws RpcException 当前线程继承的截止时间已过，作为请求流的参数为null，或带有请求流的方法同步返回结果
      */
-    private RpcProtocol<RpcRequest> createRequest(String className, String methodName, Object[] args) {
+    private RpcProtocol<RpcRequest> createRequest(MethodDescriptor descriptor, Object[] args) {
+        long requestTimeout = this.getRequestTimeout(descriptor);
 
         RpcProtocol<RpcRequest> requestRpcProtocol = new RpcProtocol<RpcRequest>();
 
-        requestRpcProtocol.setHeader(RpcHeaderFactory.getRequestHeader(serializationType));
+        RpcHeader header = RpcHeaderFactory.getRequestHeader(serializationType);
+        if (requestTimeout > 0) {
+            header.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeout));
+        }
+        requestRpcProtocol.setHeader(header);
 
         RpcRequest request = new RpcRequest();
-        request.setClassName(className);
-        request.setMethodName(methodName);
+        request.setClassName(descriptor.getClassName());
+        request.setMethodName(descriptor.getMethodName());
+        request.setParameterTypes(descriptor.getParameterTypes());
         request.setParameters(args);
         request.setVersion(this.serviceVersion);
         request.setGroup(this.serviceGroup);
-
-        Class[] parameterTypes = new Class[args.length];
-        // 获取正确的类类型
-        for (int i = 0; i < args.length; i++) {
-            parameterTypes[i] = getClassType(args[i]);
+        request.setTimeout(requestTimeout);
+        request.setServiceKey(descriptor.getServiceKey());
+        int streamParameterIndex = descriptor.getStreamParameterIndex();
+        if (streamParameterIndex >= 0) {
+            if (!descriptor.isFutureReturnType() && !descriptor.isStreamReturnType()) {
+                throw new RpcException("Method with request stream must return CompletableFuture, CompletionStage, Future, Flow.Publisher or Iterator: "
+                        + descriptor.getClassName() + "#" + descriptor.getMethodName());
+            }
+            if (!(args[streamParameterIndex] instanceof Flow.Publisher<?> publisher)) {
+                throw new RpcException("Request stream must not be null: " + descriptor.getClassName() + "#" + descriptor.getMethodName());
+            }
+            // 请求流不随请求序列化，由消费者在请求之后逐个发送
+            Object[] parameters = args.clone();
+            parameters[streamParameterIndex] = null;
+            request.setParameters(parameters);
+            request.setRequestStream(true);
+            request.setRequestStreamSource(publisher);
         }
-        request.setParameterTypes(parameterTypes);
         requestRpcProtocol.setBody(request);
 
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Creating request for method: {}#{}", className, methodName);
+            LOGGER.debug("Creating request for method: {}#{}", descriptor.getClassName(), descriptor.getMethodName());
+            Class<?>[] parameterTypes = descriptor.getParameterTypes();
             for (int i = 0; i < parameterTypes.length; ++i) {
                 LOGGER.debug("Parameter type {}: {}", i, parameterTypes[i].getName());
             }
-            for (int i = 0; i < args.length; ++i) {
-                LOGGER.debug("Parameter value {}: {}", i, args[i]);
+            if (args != null) {
+                for (int i = 0; i < args.length; ++i) {
+                    LOGGER.debug("Parameter value {}: {}", i, args[i]);
+                }
             }
         }
 
@@ -230,33 +481,36 @@ public class ObjectProxy<T> implements IAsyncObjectProxy, InvocationHandler {
     }
 
     /**
-     * 获取对象的类类型
-     * 处理基本数据类型的包装类转换
-     * 
-     * @param obj 对象
-     * @return 类类型
+     * 创建流式调用请求
+     *
+     * @param descriptor 方法描述
+     * @param args 参数
+     * @return RpcProtocol<RpcRequest> 请求协议
+     * @throws RpcException 当前线程继承的截止时间已过
      */
-    private Class<?> getClassType(Object obj) {
-        Class<?> classType = obj.getClass();
-        String typeName = classType.getName();
-        switch (typeName) {
-            case "java.lang.Integer":
-                return Integer.TYPE;
-            case "java.lang.Long":
-                return Long.TYPE;
-            case "java.lang.Float":
-                return Float.TYPE;
-            case "java.lang.Double":
-                return Double.TYPE;
-            case "java.lang.Character":
-                return Character.TYPE;
-            case "java.lang.Boolean":
-                return Boolean.TYPE;
-            case "java.lang.Short":
-                return Short.TYPE;
-            case "java.lang.Byte":
-                return Byte.TYPE;
+    private RpcProtocol<RpcRequest> createStreamRequest(MethodDescriptor descriptor, Object[] args) {
+        RpcProtocol<RpcRequest> requestRpcProtocol = this.createRequest(descriptor, args);
+        requestRpcProtocol.getBody().setStream(true);
+        return requestRpcProtocol;
+    }
+
+    /**
+     * 计算本次调用的超时时间
+     * 当前线程带有上游请求的截止时间时，取剩余时间与配置的超时时间中较小的一个
+     *
+     * @param descriptor 方法描述
+     * @return 超时时间（毫秒），小于等于0表示不超时
+     * @throws RpcException 上游请求的截止时间已过
+     */
+    private long getRequestTimeout(MethodDescriptor descriptor) {
+        long deadline = DeadlineContext.getContext().getDeadline();
+        if (deadline == 0) {
+            return timeout;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new RpcException("Deadline exceeded before invoking " + descriptor.getClassName() + "#" + descriptor.getMethodName());
         }
-        return classType;
+        return timeout > 0 ? Math.min(timeout, remaining) : remaining;
     }
 }
@@ -0,0 +1,163 @@
+package com.rain.rpc.proxy.api.stream;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.stream.CloseableIterator;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式调用的阻塞迭代器，接口方法的返回类型为Iterator或CloseableIterator时由代理对象返回
+ *
+ * 设计说明：
+ * 1. 创建时订阅流并预取prefetch个元素，调用方每消费一半就再请求同样数量，服务提供者最多领先prefetch个元素
+ * 2. hasNext在没有已到达的元素时阻塞，超过等待时间仍没有新元素时取消流并抛出RpcException
+ * 3. 流异常结束时hasNext抛出RpcException
+ * 4. 不再遍历时调用close取消流，服务提供者停止发送；接口方法声明返回CloseableIterator时调用方可以直接使用try-with-resources
+ * 5. 订阅在回调执行器中异步到达，到达之前调用close时先记下取消，订阅到达后立即取消，不再请求元素
+ */
+public class RpcStreamIterator implements CloseableIterator<Object>, Flow.Subscriber<Object> {
+
+    /**
+     * 正常结束的信号
+     */
+    private static final Object COMPLETE = new Object();
+
+    /**
+     * 流中的null元素，BlockingQueue不能保存null
+     */
+    private static final Object NULL_ITEM = new Object();
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    private final int prefetch;
+
+    /**
+     * 等待下一个元素的最长时间（毫秒），小于等于0表示一直等待
+     */
+    private final long timeout;
+
+    private final int limit;
+
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * 已经调用close，订阅到达时直接取消
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * 已经取出但还没有被next消费的信号，只在调用方线程中访问
+     */
+    private Object next;
+
+    /**
+     * 距离上次请求已经消费的元素数，只在调用方线程中访问
+     */
+    private int consumed;
+
+    public RpcStreamIterator(Flow.Publisher<Object> publisher, int prefetch, long timeout) {
+        this.prefetch = prefetch;
+        this.timeout = timeout;
+        this.limit = Math.max(1, prefetch / 2);
+        publisher.subscribe(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        // close与onSubscribe都先写自己的状态再读对方的状态，至少有一方会取消订阅
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(Object item) {
+        queue.offer(item == null ? NULL_ITEM : item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        queue.offer(new ErrorSignal(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        queue.offer(COMPLETE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = this.take();
+        }
+        if (next instanceof ErrorSignal error) {
+            Throwable cause = error.throwable;
+            throw cause instanceof RuntimeException e ? e : new RpcException(cause.getMessage(), cause);
+        }
+        return next != COMPLETE;
+    }
+
+    @Override
+    public Object next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object item = next;
+        next = null;
+        if (++consumed == limit) {
+            consumed = 0;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.request(limit);
+            }
+        }
+        return item == NULL_ITEM ? null : item;
+    }
+
+    /**
+     * 取消流，之后hasNext返回false
+     */
+    @Override
+    public void close() {
+        cancelled = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        next = COMPLETE;
+    }
+
+    private Object take() {
+        try {
+            if (timeout <= 0) {
+                return queue.take();
+            }
+            Object signal = queue.poll(timeout, TimeUnit.MILLISECONDS);
+            if (signal == null) {
+                this.close();
+                return new ErrorSignal(new RpcException("Timeout waiting for next stream element. Timeout: " + timeout + "ms"));
+            }
+            return signal;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.close();
+            return new ErrorSignal(new RpcException("Interrupted while waiting for next stream element", e));
+        }
+    }
+
+    private static final class ErrorSignal {
+
+        private final Throwable throwable;
+
+        ErrorSignal(Throwable throwable) {
+            this.throwable = throwable;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.rain.rpc.proxy.api.stream;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.registry.api.RegistryService;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * 流式调用的Publisher，接口方法的返回类型为Flow.Publisher时由代理对象返回
+ *
+ * 设计说明：
+ * 1. 调用接口方法时不发送请求，每次订阅发起一次新的流式调用，各自使用新的请求ID
+ * 2. 订阅者的request(n)按窗口转换为发送给服务提供者的额度，服务提供者最多发送订阅者请求的元素数
+ * 3. 构建请求或发送请求失败时，订阅者收到onError
+ * 4. 方法带有请求流参数时为双向流式调用，每次订阅都会重新订阅作为参数的Flow.Publisher，并与响应流同时发送
+ */
+public class RpcStreamPublisher implements Flow.Publisher<Object> {
+
+    /**
+     * 每次订阅时构建新的流式调用请求
+     */
+    private final Supplier<RpcProtocol<RpcRequest>> requestFactory;
+
+    private final Consumer consumer;
+
+    private final RegistryService registryService;
+
+    /**
+     * 向订阅者发送信号的执行器
+     */
+    private final Executor executor;
+
+    public RpcStreamPublisher(Supplier<RpcProtocol<RpcRequest>> requestFactory, Consumer consumer, RegistryService registryService, Executor executor) {
+        this.requestFactory = requestFactory;
+        this.consumer = consumer;
+        this.registryService = registryService;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        RpcStreamSubscription subscription = new RpcStreamSubscription(subscriber, executor, RpcConstants.STREAM_WINDOW);
+        subscription.start();
+        try {
+            consumer.sendStreamRequest(requestFactory.get(), registryService, subscription);
+        } catch (Exception e) {
+            subscription.onError(e instanceof RpcException ? e : new RpcException(e.getMessage(), e));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.rain.rpc.proxy.api;
+
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 不发送网络请求的Consumer，供集群调用和对冲请求的测试使用
+ * 记录每次发送的请求，按排除列表依次选择服务实例，由测试决定每个请求的结果
+ *
+ * 设计说明：
+ * 1. 请求可能在客户端线程池中发出，发出的请求先放入阻塞队列，测试线程从队列中按发送顺序取出，不需要轮询等待
+ * 2. 取出的请求只由测试线程访问
+ */
+public class StubConsumer implements Consumer {
+
+    /**
+     * 等待请求发出的最长时间
+     */
+    private static final long AWAIT_SECONDS = 2;
+
+    private final List<ServiceMeta> providers = new ArrayList<>();
+
+    private final BlockingQueue<Attempt> sent = new LinkedBlockingQueue<>();
+
+    private final List<Attempt> attempts = new ArrayList<>();
+
+    public StubConsumer(int providerCount) {
+        for (int i = 0; i < providerCount; i++) {
+            providers.add(new ServiceMeta("demo.HelloService", "1.0.0", "127.0.0.1", 20000 + i, ""));
+        }
+    }
+
+    /**
+     * 创建超时时间为5秒的请求
+     */
+    public static RpcProtocol<RpcRequest> newRequest() {
+        RpcRequest request = new RpcRequest();
+        request.setClassName("demo.HelloService");
+        request.setMethodName("hello");
+        request.setTimeout(5000);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.getHeader().setDeadline(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    @Override
+    public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) {
+        return this.sendRequest(protocol, registryService, Collections.emptyList());
+    }
+
+    @Override
+    public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, Collection<ServiceMeta> excludedServices) {
+        for (ServiceMeta provider : providers) {
+            if (!excludedServices.contains(provider)) {
+                RPCFuture future = new RPCFuture(protocol);
+                future.setServiceMeta(provider);
+                sent.add(new Attempt(future, new ArrayList<>(excludedServices)));
+                return future;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) {
+        throw new UnsupportedOperationException("stream request is not used by this test");
+    }
+
+    public ServiceMeta provider(int index) {
+        return providers.get(index);
+    }
+
+    /**
+     * 获取已经发出的请求
+     *
+     * @param index 请求的发送顺序
+     * @return 请求的RPCFuture
+     */
+    public RPCFuture attempt(int index) {
+        sent.drainTo(attempts);
+        return attempts.get(index).future;
+    }
+
+    /**
+     * 等待请求发出
+     *
+     * @param index 请求的发送顺序
+     * @return 请求的RPCFuture
+     * @throws InterruptedException 等待时被中断
+     */
+    public RPCFuture awaitAttempt(int index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(AWAIT_SECONDS);
+        sent.drainTo(attempts);
+        while (attempts.size() <= index) {
+            Attempt attempt = sent.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            assertNotNull(attempt, "attempt " + index + " was not sent");
+            attempts.add(attempt);
+        }
+        return attempts.get(index).future;
+    }
+
+    /**
+     * 获取请求发出时排除的服务实例
+     *
+     * @param index 请求的发送顺序
+     * @return 排除的服务实例
+     */
+    public List<ServiceMeta> excluded(int index) {
+        sent.drainTo(attempts);
+        return attempts.get(index).excluded;
+    }
+
+    /**
+     * 获取已经发出的请求数
+     */
+    public int attemptCount() {
+        sent.drainTo(attempts);
+        return attempts.size();
+    }
+
+    /**
+     * 一次发出的请求和发出时排除的服务实例
+     */
+    private static class Attempt {
+
+        private final RPCFuture future;
+
+        private final List<ServiceMeta> excluded;
+
+        Attempt(RPCFuture future, List<ServiceMeta> excluded) {
+            this.future = future;
+            this.excluded = excluded;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.proxy.api.StubConsumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.rain.rpc.proxy.api.StubConsumer.newRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 集群调用器测试类
+ * 使用不发送网络请求的Consumer，由测试决定每个请求的结果
+ */
+public class ClusterInvokerTest {
+
+    @Test
+    void testFailoverRetriesAnotherProvider() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        FailoverClusterInvoker invoker = new FailoverClusterInvoker(consumer, null, 2, new RetryBudget(0, 10, 10));
+        RPCFuture result = invoker.invoke(newRequest());
+
+        consumer.attempt(0).fail(new RpcException("Channel inactive"));
+        RPCFuture retry = consumer.awaitAttempt(1);
+        assertEquals(List.of(consumer.provider(0)), consumer.excluded(1));
+        assertNotEquals(consumer.attempt(0).getRequestProtocol().getHeader().getRequestId(), retry.getRequestProtocol().getHeader().getRequestId());
+
+        retry.complete("ok");
+        assertEquals("ok", result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFailoverDoesNotRetryResponseOrTimeout() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        FailoverClusterInvoker invoker = new FailoverClusterInvoker(consumer, null, 2, new RetryBudget(0, 10, 10));
+
+        RPCFuture responded = invoker.invoke(newRequest());
+        consumer.attempt(0).done(errorResponse());
+        assertThrows(ExecutionException.class, () -> responded.get(1, TimeUnit.SECONDS));
+
+        RPCFuture timedOut = invoker.invoke(newRequest());
+        consumer.attempt(1).fail(new TimeoutException("timeout"));
+        assertThrows(ExecutionException.class, () -> timedOut.get(1, TimeUnit.SECONDS));
+        assertEquals(2, consumer.attemptCount());
+    }
+
+    @Test
+    void testFailoverStopsWhenBudgetExhausted() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        FailoverClusterInvoker invoker = new FailoverClusterInvoker(consumer, null, 2, new RetryBudget(0, 0, 10));
+        RPCFuture result = invoker.invoke(newRequest());
+        consumer.attempt(0).fail(new RpcException("Channel inactive"));
+        assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertEquals(1, consumer.attemptCount());
+    }
+
+    @Test
+    void testForkingFirstSuccessCancelsOthers() throws Exception {
+        StubConsumer consumer = new StubConsumer(3);
+        ForkingClusterInvoker invoker = new ForkingClusterInvoker(consumer, null, 2, new RetryBudget(0, 10, 10));
+        RPCFuture result = invoker.invoke(newRequest());
+        assertEquals(3, consumer.attemptCount());
+
+        consumer.attempt(0).fail(new RpcException("Channel inactive"));
+        consumer.attempt(2).complete("fork");
+        assertEquals("fork", result.get(1, TimeUnit.SECONDS));
+        assertTrue(consumer.attempt(1).isCancelled());
+    }
+
+    @Test
+    void testFailsafeIgnoresFailure() throws Exception {
+        StubConsumer consumer = new StubConsumer(1);
+        RPCFuture result = new FailsafeClusterInvoker(consumer, null).invoke(newRequest());
+        consumer.attempt(0).fail(new RpcException("Channel inactive"));
+        assertNull(result.get(1, TimeUnit.SECONDS));
+    }
+
+    private static RpcProtocol<RpcResponse> errorResponse() {
+        RpcResponse response = new RpcResponse();
+        response.setError("boom");
+        RpcProtocol<RpcResponse> protocol = new RpcProtocol<>();
+        protocol.setBody(response);
+        return protocol;
+    }
+}
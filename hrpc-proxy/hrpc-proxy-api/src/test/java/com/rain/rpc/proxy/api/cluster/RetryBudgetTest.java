@@ -0,0 +1,45 @@
+package com.rain.rpc.proxy.api.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RetryBudget测试类
+ */
+public class RetryBudgetTest {
+
+    @Test
+    void testRetriesLimitedByRatio() {
+        RetryBudget budget = new RetryBudget(0.2, 0, 100);
+        assertFalse(budget.tryWithdraw());
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void testCapacity() {
+        RetryBudget budget = new RetryBudget(1, 0, 3);
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        assertEquals(3, budget.getTokens(), 0.001);
+    }
+
+    @Test
+    void testMinRetriesPerSecond() throws InterruptedException {
+        RetryBudget budget = new RetryBudget(0, 100, 100);
+        // 初始时有一秒的补充令牌
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        assertTrue(withdrawn >= 100, "withdrawn: " + withdrawn);
+        Thread.sleep(50);
+        assertTrue(budget.tryWithdraw());
+    }
+}
@@ -0,0 +1,181 @@
+package com.rain.rpc.proxy.api.future;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.threadpool.CallbackExecutors;
+import com.rain.rpc.common.timer.RpcTimer;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.response.RpcResponse;
+import com.rain.rpc.proxy.api.StubConsumer;
+import com.rain.rpc.proxy.api.callback.AsyncRPCCallback;
+import io.netty.util.Timeout;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RPCFuture测试类
+ * 验证完成后的组合操作、取消钩子、异步回调的执行线程以及响应与超时同时完成时只有一方生效
+ */
+public class RPCFutureTest {
+
+    @Test
+    void testJoinAndThenApplyAfterDone() throws Exception {
+        RPCFuture future = new RPCFuture(StubConsumer.newRequest());
+        CompletableFuture<Object> before = future.thenApply(result -> result + "!");
+        Timeout timeoutTask = RpcTimer.newTimeout(timeout -> future.fail(new TimeoutException()), 10, TimeUnit.SECONDS);
+        future.setTimeoutTask(timeoutTask);
+
+        future.done(response(null, "ok"));
+        assertEquals("ok", future.join());
+        assertEquals("ok!", before.get(1, TimeUnit.SECONDS));
+        assertEquals("ok?", future.thenApply(result -> result + "?").get(1, TimeUnit.SECONDS));
+        assertTrue(future.isResponseReceived());
+        // 正常完成时取消超时任务
+        assertTrue(timeoutTask.isCancelled());
+
+        RPCFuture failed = new RPCFuture(StubConsumer.newRequest());
+        failed.done(response("boom", null));
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(RpcException.class, e.getCause());
+        assertTrue(failed.isResponseReceived());
+    }
+
+    @Test
+    void testCancelRunsHookOnce() {
+        RPCFuture future = new RPCFuture(StubConsumer.newRequest());
+        AtomicInteger hookRuns = new AtomicInteger();
+        future.setCancelHook(hookRuns::incrementAndGet);
+        Timeout timeoutTask = RpcTimer.newTimeout(timeout -> future.fail(new TimeoutException()), 10, TimeUnit.SECONDS);
+        future.setTimeoutTask(timeoutTask);
+
+        assertTrue(future.cancel(false));
+        // 重复取消不再执行取消钩子
+        assertFalse(future.cancel(false));
+        // 取消之后到达的响应被忽略
+        future.done(response(null, "late"));
+        assertTrue(future.isCancelled());
+        assertEquals(1, hookRuns.get());
+        assertTrue(timeoutTask.isCancelled());
+
+        // 已经完成的调用无法取消，也不执行取消钩子
+        RPCFuture done = new RPCFuture(StubConsumer.newRequest());
+        done.setCancelHook(hookRuns::incrementAndGet);
+        done.done(response(null, "ok"));
+        assertFalse(done.cancel(false));
+        assertEquals(1, hookRuns.get());
+    }
+
+    @Test
+    void testCallbackRunsOnConfiguredExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "rpc-future-test-callback"));
+        try {
+            RPCFuture future = new RPCFuture(StubConsumer.newRequest());
+            future.setCallbackExecutor(executor);
+            BlockingQueue<String> events = new LinkedBlockingQueue<>();
+            future.addCallback(recordingCallback(events));
+            future.done(response(null, "ok"));
+            assertEquals("rpc-future-test-callback:success:ok", events.poll(1, TimeUnit.SECONDS));
+
+            // 失败时回调拿到的是原始异常，不是CompletionException
+            RPCFuture failed = new RPCFuture(StubConsumer.newRequest());
+            failed.setCallbackExecutor(executor);
+            failed.addCallback(recordingCallback(events));
+            failed.fail(new TimeoutException("timeout"));
+            assertEquals("rpc-future-test-callback:exception:TimeoutException", events.poll(1, TimeUnit.SECONDS));
+
+            // DIRECT在完成调用的线程中执行回调
+            RPCFuture direct = new RPCFuture(StubConsumer.newRequest());
+            direct.setCallbackExecutor(CallbackExecutors.DIRECT);
+            direct.addCallback(recordingCallback(events));
+            direct.done(response(null, "ok"));
+            assertEquals(Thread.currentThread().getName() + ":success:ok", events.poll());
+            assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCompletionRacesTimeout() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 500; i++) {
+                RPCFuture future = new RPCFuture(StubConsumer.newRequest());
+                future.setCallbackExecutor(CallbackExecutors.DIRECT);
+                AtomicInteger callbacks = new AtomicInteger();
+                future.addCallback(new AsyncRPCCallback() {
+                    @Override
+                    public void onSuccess(Object result) {
+                        callbacks.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onException(Exception e) {
+                        callbacks.incrementAndGet();
+                    }
+                });
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> response = executor.submit(() -> {
+                    barrier.await();
+                    future.done(response(null, "ok"));
+                    return null;
+                });
+                Future<?> timeout = executor.submit(() -> {
+                    barrier.await();
+                    future.fail(new TimeoutException("timeout"));
+                    return null;
+                });
+                response.get(1, TimeUnit.SECONDS);
+                timeout.get(1, TimeUnit.SECONDS);
+
+                // 响应和超时只有一方完成调用，回调只执行一次
+                assertTrue(future.isDone());
+                assertEquals(1, callbacks.get());
+                if (future.isCompletedExceptionally()) {
+                    CompletionException e = assertThrows(CompletionException.class, future::join);
+                    assertInstanceOf(TimeoutException.class, e.getCause());
+                } else {
+                    assertEquals("ok", future.join());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AsyncRPCCallback recordingCallback(BlockingQueue<String> events) {
+        return new AsyncRPCCallback() {
+            @Override
+            public void onSuccess(Object result) {
+                events.add(Thread.currentThread().getName() + ":success:" + result);
+            }
+
+            @Override
+            public void onException(Exception e) {
+                events.add(Thread.currentThread().getName() + ":exception:" + e.getClass().getSimpleName());
+            }
+        };
+    }
+
+    private static RpcProtocol<RpcResponse> response(String error, Object result) {
+        RpcResponse response = new RpcResponse();
+        response.setError(error);
+        response.setResult(result);
+        RpcProtocol<RpcResponse> protocol = new RpcProtocol<>();
+        protocol.setHeader(StubConsumer.newRequest().getHeader());
+        protocol.setBody(response);
+        return protocol;
+    }
+}
@@ -0,0 +1,145 @@
+package com.rain.rpc.proxy.api.hedge;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.stats.LatencyRecorder;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.proxy.api.StubConsumer;
+import com.rain.rpc.proxy.api.cluster.RetryBudget;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.rain.rpc.proxy.api.StubConsumer.newRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对冲请求调用器测试类
+ * 使用不发送网络请求的Consumer，由测试决定每个请求的结果；对冲延迟由预先记录的调用延迟决定
+ */
+public class HedgingInvokerTest {
+
+    /**
+     * 预先记录的调用延迟，对冲延迟取其p95所在桶的上界，不小于该值
+     */
+    private static final long LATENCY_MS = 100;
+
+    @Test
+    void testNoHedgeBeforeWarmup() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        LatencyRecorder recorder = newRecorder(RpcConstants.HEDGING_MIN_SAMPLES - 1);
+        RPCFuture result = new HedgingInvoker(consumer, null, new RetryBudget(0, 10, 10)).invoke(newRequest(), recorder);
+
+        // 样本不足时直接返回首个请求，不启动对冲定时任务
+        assertSame(consumer.attempt(0), result);
+        Thread.sleep(LATENCY_MS * 2);
+        assertEquals(1, consumer.attemptCount());
+
+        // 首个请求成功时记录延迟，样本数达到要求后开始对冲
+        consumer.attempt(0).complete("ok");
+        assertEquals(RpcConstants.HEDGING_MIN_SAMPLES, recorder.getCount());
+    }
+
+    @Test
+    void testHedgeSentAfterDelay() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        long start = System.nanoTime();
+        RPCFuture result = new HedgingInvoker(consumer, null, new RetryBudget(0, 10, 10)).invoke(newRequest(), newRecorder(RpcConstants.HEDGING_MIN_SAMPLES));
+        assertNotSame(consumer.attempt(0), result);
+
+        RPCFuture hedge = consumer.awaitAttempt(1);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(LATENCY_MS));
+        // 对冲请求使用新的请求ID，发往与首个请求不同的服务实例
+        assertEquals(List.of(consumer.provider(0)), consumer.excluded(1));
+        assertNotEquals(consumer.attempt(0).getRequestProtocol().getHeader().getRequestId(), hedge.getRequestProtocol().getHeader().getRequestId());
+        assertFalse(result.isDone());
+    }
+
+    @Test
+    void testHedgeWinsAndCancelsPrimary() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        Semaphore recorded = new Semaphore(0);
+        LatencyRecorder recorder = new LatencyRecorder() {
+            @Override
+            public void record(long latencyNanos) {
+                super.record(latencyNanos);
+                recorded.release();
+            }
+        };
+        fill(recorder, RpcConstants.HEDGING_MIN_SAMPLES);
+        recorded.drainPermits();
+        RPCFuture result = new HedgingInvoker(consumer, null, new RetryBudget(0, 10, 10)).invoke(newRequest(), recorder);
+
+        consumer.awaitAttempt(1).complete("hedge");
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS));
+        RPCFuture primary = consumer.attempt(0);
+        assertThrows(CancellationException.class, () -> primary.get(2, TimeUnit.SECONDS));
+        // 对冲请求的延迟和被取消的首个请求已经经过的时间各记录一次，首个请求由对冲线程在取消后记录
+        assertTrue(recorded.tryAcquire(2, 2, TimeUnit.SECONDS));
+        assertEquals(RpcConstants.HEDGING_MIN_SAMPLES + 2, recorder.getCount());
+    }
+
+    @Test
+    void testPrimaryWinsAndCancelsHedge() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        RPCFuture result = new HedgingInvoker(consumer, null, new RetryBudget(0, 10, 10)).invoke(newRequest(), newRecorder(RpcConstants.HEDGING_MIN_SAMPLES));
+
+        RPCFuture hedge = consumer.awaitAttempt(1);
+        consumer.attempt(0).complete("primary");
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, () -> hedge.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPrimaryBeforeDelaySkipsHedge() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        RPCFuture result = new HedgingInvoker(consumer, null, new RetryBudget(0, 10, 10)).invoke(newRequest(), newRecorder(RpcConstants.HEDGING_MIN_SAMPLES));
+
+        consumer.attempt(0).complete("primary");
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS));
+        Thread.sleep(LATENCY_MS * 3);
+        assertEquals(1, consumer.attemptCount());
+    }
+
+    @Test
+    void testHedgeDrawsFromRetryBudget() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        // 没有令牌，也不补充
+        RetryBudget retryBudget = new RetryBudget(0, 0, 10);
+        RPCFuture result = new HedgingInvoker(consumer, null, retryBudget).invoke(newRequest(), newRecorder(RpcConstants.HEDGING_MIN_SAMPLES));
+
+        Thread.sleep(LATENCY_MS * 3);
+        assertEquals(1, consumer.attemptCount());
+        // 没有发出对冲请求时，结果由首个请求决定
+        consumer.attempt(0).fail(new RpcException("Channel inactive"));
+        assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPrimaryRequestsDepositIntoRetryBudget() throws Exception {
+        StubConsumer consumer = new StubConsumer(2);
+        RetryBudget retryBudget = new RetryBudget(1, 0, 10);
+        HedgingInvoker invoker = new HedgingInvoker(consumer, null, retryBudget);
+
+        // 第一个请求存入的令牌被它的对冲请求取出
+        invoker.invoke(newRequest(), newRecorder(RpcConstants.HEDGING_MIN_SAMPLES));
+        consumer.awaitAttempt(1);
+        assertEquals(0, retryBudget.getTokens(), 0.001);
+    }
+
+    private static LatencyRecorder newRecorder(int samples) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        fill(recorder, samples);
+        return recorder;
+    }
+
+    private static void fill(LatencyRecorder recorder, int samples) {
+        for (int i = 0; i < samples; i++) {
+            recorder.record(TimeUnit.MILLISECONDS.toNanos(LATENCY_MS));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.rain.rpc.proxy.api.object;
+
+import com.rain.rpc.common.exception.RpcException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MethodResolver测试类
+ * 验证重载方法的选择、基本类型的拓宽匹配、null参数以及无法区分时的报错
+ */
+public class MethodResolverTest {
+
+    interface OverloadService {
+
+        String foo(int value);
+
+        String foo(Integer value);
+
+        String bar(long value);
+
+        String bar(double value);
+
+        String baz(String value);
+
+        String baz(Integer value);
+
+        String obj(Object value);
+
+        String obj(CharSequence value);
+
+        String mixed(Integer first, long second);
+
+        String mixed(long first, Integer second);
+    }
+
+    private final MethodResolver resolver = new MethodResolver(OverloadService.class, "1.0.0", "group");
+
+    private Class<?>[] resolve(String methodName, Object... args) {
+        return resolver.resolve(methodName, args).getParameterTypes();
+    }
+
+    @Test
+    void testPrimitiveOverloadPreferred() {
+        // 无论getMethods()返回的顺序如何，Integer参数总是选择foo(int)
+        assertArrayEquals(new Class<?>[]{int.class}, resolve("foo", 1));
+        // null不能传给基本类型，只有foo(Integer)可用
+        assertArrayEquals(new Class<?>[]{Integer.class}, resolve("foo", (Object) null));
+    }
+
+    @Test
+    void testPrimitiveWidening() {
+        assertArrayEquals(new Class<?>[]{long.class}, resolve("bar", 1));
+        assertArrayEquals(new Class<?>[]{long.class}, resolve("bar", (short) 1));
+        assertArrayEquals(new Class<?>[]{double.class}, resolve("bar", 1.5f));
+        assertArrayEquals(new Class<?>[]{double.class}, resolve("bar", 1.5d));
+        assertThrows(RpcException.class, () -> resolve("bar", true));
+
+        Object[] args = {1};
+        Object[] widened = MethodResolver.widenArguments(new Class<?>[]{long.class}, args);
+        assertEquals(1L, widened[0]);
+        assertEquals(1, args[0]);
+        Object[] exact = {1L};
+        assertSame(exact, MethodResolver.widenArguments(new Class<?>[]{long.class}, exact));
+        assertEquals(97.0d, MethodResolver.widenArguments(new Class<?>[]{double.class}, new Object[]{'a'})[0]);
+    }
+
+    @Test
+    void testNullArguments() {
+        assertArrayEquals(new Class<?>[]{CharSequence.class}, resolve("obj", (Object) null));
+        assertArrayEquals(new Class<?>[]{CharSequence.class}, resolve("obj", "rain"));
+        assertArrayEquals(new Class<?>[]{Object.class}, resolve("obj", 1));
+        // String和Integer都能接收null，无法区分
+        RpcException e = assertThrows(RpcException.class, () -> resolve("baz", (Object) null));
+        assertTrue(e.getMessage().startsWith("Ambiguous method call"));
+    }
+
+    @Test
+    void testAmbiguousAndMissing() {
+        // 第一个参数mixed(Integer, long)更匹配，第二个参数mixed(long, Integer)更匹配
+        RpcException ambiguous = assertThrows(RpcException.class, () -> resolve("mixed", 1, 2));
+        assertTrue(ambiguous.getMessage().startsWith("Ambiguous method call"));
+        assertArrayEquals(new Class<?>[]{Integer.class, long.class}, resolve("mixed", 1, 2L));
+
+        RpcException missing = assertThrows(RpcException.class, () -> resolve("foo", "rain"));
+        assertTrue(missing.getMessage().startsWith("No method found"));
+        assertThrows(RpcException.class, () -> resolve("foo", 1, 2));
+    }
+
+    @Test
+    void testResolutionCached() {
+        MethodDescriptor first = resolver.resolve("bar", new Object[]{1});
+        assertSame(first, resolver.resolve("bar", new Object[]{2}));
+        assertNotSame(first, resolver.resolve("bar", new Object[]{2.0d}));
+    }
+}
@@ -0,0 +1,102 @@
+package com.rain.rpc.proxy.api.object;
+
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.common.helper.RpcServiceHelper;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ObjectProxy调用路径的单次调用分配量基准测试
+ * 使用直接完成的Consumer替代网络发送，只测量代理层构建请求、等待结果的开销
+ *
+ * 运行方式：直接运行main方法，结果中的gc.alloc.rate.norm即为每次调用分配的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectProxyBenchmark {
+
+    public interface DemoService {
+        String hello(String name, int times);
+    }
+
+    /**
+     * 收到请求后立即以固定结果完成的Consumer
+     */
+    static class CompletedConsumer implements Consumer {
+        int invokerHashCode;
+
+        @Override
+        public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) {
+            RpcRequest request = protocol.getBody();
+            // 与RpcConsumer一致，按服务唯一标识和第一个参数计算负载均衡使用的hash
+            String serviceKey = request.getServiceKey() != null ? request.getServiceKey()
+                    : RpcServiceHelper.buildServiceKey(request.getClassName(), request.getVersion(), request.getGroup());
+            Object[] params = request.getParameters();
+            invokerHashCode = (params == null || params.length <= 0) ? serviceKey.hashCode() : params[0].hashCode();
+            RPCFuture rpcFuture = new RPCFuture(protocol);
+            rpcFuture.complete("ok");
+            return rpcFuture;
+        }
+
+        @Override
+        public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) {
+            throw new UnsupportedOperationException("stream request is not used by this benchmark");
+        }
+    }
+
+    private ObjectProxy<DemoService> objectProxy;
+
+    private Method method;
+
+    private Object[] args;
+
+    @Setup
+    public void setup() throws Exception {
+        // 默认的log4j.properties把com.rain.rpc设置为DEBUG，基准测试只关心调用路径本身
+        LogManager.getLogger("com.rain.rpc").setLevel(Level.INFO);
+        objectProxy = new ObjectProxy<>(DemoService.class, "1.0.0", "group", RpcConstants.SERIALIZATION_JDK,
+                3000, null, new CompletedConsumer(), false, false);
+        method = DemoService.class.getMethod("hello", String.class, int.class);
+        args = new Object[]{"rain", 1};
+    }
+
+    @Benchmark
+    public Object invoke() throws Throwable {
+        return objectProxy.invoke(null, method, args);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ObjectProxyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
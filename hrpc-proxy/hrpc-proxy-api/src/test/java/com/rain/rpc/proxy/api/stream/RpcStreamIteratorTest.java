@@ -0,0 +1,138 @@
+package com.rain.rpc.proxy.api.stream;
+
+import com.rain.rpc.common.exception.RpcException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式调用阻塞迭代器测试类
+ * 由测试直接调用订阅者的回调，记录迭代器发出的请求数量和取消
+ */
+public class RpcStreamIteratorTest {
+
+    @Test
+    void testPrefetchAndReplenish() {
+        TestPublisher publisher = new TestPublisher(true);
+        RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 0);
+        assertEquals(List.of(4L), publisher.subscription.requests);
+
+        for (int i = 0; i < 4; i++) {
+            iterator.onNext(i);
+        }
+        assertEquals(0, iterator.next());
+        assertEquals(List.of(4L), publisher.subscription.requests);
+        // 每消费一半就再请求同样数量
+        assertEquals(1, iterator.next());
+        assertEquals(List.of(4L, 2L), publisher.subscription.requests);
+    }
+
+    @Test
+    void testNullItemAndCompletion() {
+        TestPublisher publisher = new TestPublisher(true);
+        RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 0);
+        iterator.onNext(null);
+        iterator.onNext("a");
+        iterator.onComplete();
+
+        assertTrue(iterator.hasNext());
+        assertNull(iterator.next());
+        assertEquals("a", iterator.next());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    void testErrorThrownFromHasNext() {
+        TestPublisher publisher = new TestPublisher(true);
+        RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 0);
+        iterator.onNext("a");
+        iterator.onError(new IllegalStateException("boom"));
+
+        assertEquals("a", iterator.next());
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
+    @Test
+    void testTimeoutCancelsStream() {
+        TestPublisher publisher = new TestPublisher(true);
+        RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 50);
+
+        RpcException e = assertThrows(RpcException.class, iterator::hasNext);
+        assertTrue(e.getMessage().contains("Timeout"));
+        assertTrue(publisher.subscription.cancelled);
+    }
+
+    @Test
+    void testCloseCancelsStream() {
+        TestPublisher publisher = new TestPublisher(true);
+        try (RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 0)) {
+            iterator.onNext("a");
+            assertEquals("a", iterator.next());
+        }
+        assertTrue(publisher.subscription.cancelled);
+    }
+
+    @Test
+    void testCloseBeforeSubscribeCancelsOnArrival() {
+        TestPublisher publisher = new TestPublisher(false);
+        RpcStreamIterator iterator = new RpcStreamIterator(publisher, 4, 0);
+        iterator.close();
+        assertFalse(iterator.hasNext());
+
+        // 订阅到达后立即取消，不再请求元素
+        publisher.subscribeNow();
+        assertTrue(publisher.subscription.cancelled);
+        assertTrue(publisher.subscription.requests.isEmpty());
+    }
+
+    /**
+     * 记录订阅者，可以在订阅时或由测试稍后发送onSubscribe
+     */
+    private static class TestPublisher implements Flow.Publisher<Object> {
+
+        private final boolean immediate;
+
+        private final TestSubscription subscription = new TestSubscription();
+
+        private Flow.Subscriber<? super Object> subscriber;
+
+        TestPublisher(boolean immediate) {
+            this.immediate = immediate;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+            this.subscriber = subscriber;
+            if (immediate) {
+                this.subscribeNow();
+            }
+        }
+
+        void subscribeNow() {
+            subscriber.onSubscribe(subscription);
+        }
+    }
+
+    private static class TestSubscription implements Flow.Subscription {
+
+        private final List<Long> requests = new ArrayList<>();
+
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requests.add(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
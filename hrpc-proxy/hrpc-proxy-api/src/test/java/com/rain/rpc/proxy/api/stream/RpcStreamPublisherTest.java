@@ -0,0 +1,144 @@
+package com.rain.rpc.proxy.api.stream;
+
+import com.rain.rpc.common.exception.RpcException;
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.header.RpcHeaderFactory;
+import com.rain.rpc.protocol.meta.ServiceMeta;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式调用Publisher测试类
+ * 使用不发送网络请求的Consumer记录每次发起的流式调用，回调执行器直接在当前线程执行
+ */
+public class RpcStreamPublisherTest {
+
+    @Test
+    void testEachSubscriptionSendsNewRequest() {
+        StubConsumer consumer = new StubConsumer();
+        RpcStreamPublisher publisher = new RpcStreamPublisher(RpcStreamPublisherTest::newRequest, consumer, null, Runnable::run);
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        // 订阅时才发送请求，每次订阅使用新的请求ID
+        assertEquals(2, consumer.requests.size());
+        assertNotEquals(consumer.requests.get(0).getHeader().getRequestId(), consumer.requests.get(1).getHeader().getRequestId());
+        assertNotNull(first.subscription);
+        assertNotNull(second.subscription);
+    }
+
+    @Test
+    void testDemandBecomesCredits() {
+        StubConsumer consumer = new StubConsumer();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RpcStreamPublisher(RpcStreamPublisherTest::newRequest, consumer, null, Runnable::run).subscribe(subscriber);
+        List<Long> credits = new ArrayList<>();
+        consumer.subscriptions.get(0).bind(credits::add, () -> { });
+
+        // 订阅者请求的数量按窗口授予服务提供者
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of((long) RpcConstants.STREAM_WINDOW), credits);
+
+        consumer.subscriptions.get(0).onData("a");
+        consumer.subscriptions.get(0).onComplete();
+        assertEquals(List.of("a"), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertEquals(List.of((long) RpcConstants.STREAM_WINDOW, 1L), credits);
+    }
+
+    @Test
+    void testSendFailureSignalsError() {
+        StubConsumer consumer = new StubConsumer();
+        consumer.failure = new IllegalStateException("no connection");
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RpcStreamPublisher(RpcStreamPublisherTest::newRequest, consumer, null, Runnable::run).subscribe(subscriber);
+
+        assertNotNull(subscriber.subscription);
+        assertInstanceOf(RpcException.class, subscriber.error);
+        assertSame(consumer.failure, subscriber.error.getCause());
+    }
+
+    private static RpcProtocol<RpcRequest> newRequest() {
+        RpcRequest request = new RpcRequest();
+        request.setClassName("demo.HelloService");
+        request.setMethodName("stream");
+        request.setStream(true);
+        RpcProtocol<RpcRequest> protocol = new RpcProtocol<>();
+        protocol.setHeader(RpcHeaderFactory.getRequestHeader(RpcConstants.SERIALIZATION_JDK));
+        protocol.setBody(request);
+        return protocol;
+    }
+
+    private static class StubConsumer implements Consumer {
+
+        private final List<RpcProtocol<RpcRequest>> requests = new ArrayList<>();
+
+        private final List<RpcStreamSubscription> subscriptions = new ArrayList<>();
+
+        private Exception failure;
+
+        @Override
+        public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) {
+            throw new UnsupportedOperationException("unary request is not used by this test");
+        }
+
+        @Override
+        public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, Collection<ServiceMeta> excludedServices) {
+            throw new UnsupportedOperationException("unary request is not used by this test");
+        }
+
+        @Override
+        public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) throws Exception {
+            if (failure != null) {
+                throw failure;
+            }
+            requests.add(protocol);
+            subscriptions.add(subscription);
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Object> {
+
+        private final List<Object> items = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Object item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
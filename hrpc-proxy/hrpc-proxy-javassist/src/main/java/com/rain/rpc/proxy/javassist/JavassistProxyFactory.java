@@ -0,0 +1,185 @@
+package com.rain.rpc.proxy.javassist;
+
+import com.rain.rpc.proxy.api.BaseProxyFactory;
+import com.rain.rpc.proxy.api.ProxyFactory;
+import com.rain.rpc.proxy.api.object.ObjectProxy;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.Modifier;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Javassist代理工厂实现
+ * 为每个接口生成一个实现类，方法体直接以预先分配的方法下标调用ObjectProxy
+ *
+ * 设计说明：
+ * 1. 继承BaseProxyFactory，复用通用的代理创建逻辑
+ * 2. 生成的方法形如 return ($r) invoker.invoke(this, 下标, new Object[]{$1, $2});
+ *    不经过InvocationHandler，也不需要按Method查找方法描述
+ * 3. 生成的类按接口缓存，不同版本、分组的引用共享同一个类，每个代理对象持有自己的ObjectProxy；
+ *    缓存使用ClassValue挂在接口的Class上，不持有接口和生成类的强引用，接口所在的类加载器卸载时缓存随之回收；
+ *    并发第一次创建时可能重复生成，生成的类名不同，只有一个结果会被保留
+ * 4. 生成的类定义在接口所在的包和类加载器中；未重写的equals、hashCode、toString保持Object的默认行为，
+ *    与JDK代理中ObjectProxy对这几个方法的处理一致
+ */
+public class JavassistProxyFactory<T> extends BaseProxyFactory<T> implements ProxyFactory {
+
+    /**
+     * 生成的代理类缓存，按接口保存
+     */
+    private static final ClassValue<GeneratedProxy> PROXY_CLASSES = new ClassValue<>() {
+        @Override
+        protected GeneratedProxy computeValue(Class<?> interfaceClass) {
+            return generate(interfaceClass);
+        }
+    };
+
+    private static final AtomicInteger PROXY_CLASS_COUNTER = new AtomicInteger();
+
+    /**
+     * 获取指定接口的代理对象
+     *
+     * @param clazz 需要代理的接口
+     * @param <T> 泛型类型
+     * @return 代理对象
+     */
+    @Override
+    public <T> T getProxy(Class<T> clazz) {
+        GeneratedProxy generatedProxy = PROXY_CLASSES.get(clazz);
+        objectProxy.bindMethods(generatedProxy.methods);
+        try {
+            return clazz.cast(generatedProxy.constructor.newInstance(objectProxy));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Create javassist proxy instance failed: " + clazz.getName(), e);
+        }
+    }
+
+    private static GeneratedProxy generate(Class<?> interfaceClass) {
+        if (!interfaceClass.isInterface()) {
+            throw new IllegalArgumentException("Javassist proxy only supports interfaces: " + interfaceClass.getName());
+        }
+        Method[] methods = proxiedMethods(interfaceClass);
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(interfaceClass.getClassLoader()));
+        pool.appendClassPath(new ClassClassPath(ObjectProxy.class));
+        String proxyClassName = interfaceClass.getName() + "$HrpcJavassistProxy" + PROXY_CLASS_COUNTER.incrementAndGet();
+        try {
+            CtClass proxyClass = pool.makeClass(proxyClassName);
+            proxyClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+            proxyClass.addInterface(pool.get(interfaceClass.getName()));
+
+            CtClass invokerType = pool.get(ObjectProxy.class.getName());
+            CtField invokerField = new CtField(invokerType, "invoker", proxyClass);
+            invokerField.setModifiers(Modifier.PRIVATE | Modifier.FINAL);
+            proxyClass.addField(invokerField);
+
+            CtConstructor constructor = CtNewConstructor.make(new CtClass[]{invokerType}, new CtClass[0], "{ this.invoker = $1; }", proxyClass);
+            proxyClass.addConstructor(constructor);
+
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                CtClass returnType = pool.get(method.getReturnType().getTypeName());
+                String invocation = "invoker.invoke(this, " + i + ", " + argumentsExpression(method.getParameterTypes()) + ")";
+                String body = method.getReturnType() == void.class
+                        ? "{ " + invocation + "; }"
+                        : "{ return ($r) " + invocation + "; }";
+                CtMethod ctMethod = CtNewMethod.make(Modifier.PUBLIC, returnType, method.getName(),
+                        toCtClasses(pool, method.getParameterTypes()), toCtClasses(pool, method.getExceptionTypes()), body, proxyClass);
+                proxyClass.addMethod(ctMethod);
+            }
+
+            Class<?> generated = proxyClass.toClass(interfaceClass);
+            proxyClass.detach();
+            Constructor<?> generatedConstructor = generated.getConstructor(ObjectProxy.class);
+            return new GeneratedProxy(generatedConstructor, methods);
+        } catch (Exception e) {
+            throw new IllegalStateException("Generate javassist proxy class failed: " + interfaceClass.getName(), e);
+        }
+    }
+
+    /**
+     * 需要实现的接口方法，去掉静态方法以及多个父接口中签名相同的方法
+     */
+    private static Method[] proxiedMethods(Class<?> interfaceClass) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : interfaceClass.getMethods()) {
+            if (java.lang.reflect.Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            boolean duplicated = false;
+            for (Method existing : methods) {
+                if (existing.getName().equals(method.getName()) && Arrays.equals(existing.getParameterTypes(), method.getParameterTypes())) {
+                    duplicated = true;
+                    break;
+                }
+            }
+            if (!duplicated) {
+                methods.add(method);
+            }
+        }
+        return methods.toArray(new Method[0]);
+    }
+
+    /**
+     * 构造参数数组的表达式
+     * 不使用$args，Javassist对$args中的基本类型使用new Integer(...)装箱，无法命中包装类型的缓存；
+     * 无参方法传入null，与JDK代理一致
+     */
+    private static String argumentsExpression(Class<?>[] parameterTypes) {
+        if (parameterTypes.length == 0) {
+            return "null";
+        }
+        StringBuilder expression = new StringBuilder("new Object[]{");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                expression.append(", ");
+            }
+            Class<?> parameterType = parameterTypes[i];
+            if (parameterType.isPrimitive()) {
+                expression.append(MethodType.methodType(parameterType).wrap().returnType().getName())
+                        .append(".valueOf($").append(i + 1).append(')');
+            } else {
+                expression.append('$').append(i + 1);
+            }
+        }
+        return expression.append('}').toString();
+    }
+
+    private static CtClass[] toCtClasses(ClassPool pool, Class<?>[] classes) throws Exception {
+        CtClass[] ctClasses = new CtClass[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            // getTypeName对数组返回java.lang.String[]的形式，与ClassPool的命名方式一致
+            ctClasses[i] = pool.get(classes[i].getTypeName());
+        }
+        return ctClasses;
+    }
+
+    /**
+     * 生成的代理类及其方法下标对应的接口方法
+     */
+    private static final class GeneratedProxy {
+
+        private final Constructor<?> constructor;
+
+        private final Method[] methods;
+
+        GeneratedProxy(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.rain.rpc.proxy.javassist;
+
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.config.ProxyConfig;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.registry.api.RegistryService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JavassistProxyFactory测试类
+ * 验证生成的代理类把每个接口方法都交给ObjectProxy，参数、基本类型和void返回值，以及空结果按基本类型的默认值返回
+ */
+public class JavassistProxyFactoryTest {
+
+    public interface BaseService {
+        String hello(String name);
+    }
+
+    public interface DemoService extends BaseService {
+
+        int add(int a, int b);
+
+        long sum(long[] values);
+
+        boolean check(char c, byte b, short s, float f, double d);
+
+        double ratio();
+
+        void ping();
+
+        String hello(String name);
+
+        default String greet() {
+            return "local";
+        }
+
+        static String version() {
+            return "1.0.0";
+        }
+    }
+
+    /**
+     * 记录收到的请求，按方法名返回预先设置的结果
+     */
+    static class RecordingConsumer implements Consumer {
+
+        private final List<RpcRequest> requests = new ArrayList<>();
+
+        private final Map<String, Object> results = new HashMap<>();
+
+        @Override
+        public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) {
+            RpcRequest request = protocol.getBody();
+            requests.add(request);
+            RPCFuture rpcFuture = new RPCFuture(protocol);
+            rpcFuture.complete(results.get(request.getMethodName()));
+            return rpcFuture;
+        }
+
+        @Override
+        public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) {
+            throw new UnsupportedOperationException("stream request is not used by this test");
+        }
+
+        RpcRequest lastRequest() {
+            return requests.get(requests.size() - 1);
+        }
+    }
+
+    private static DemoService createProxy(RecordingConsumer consumer) {
+        JavassistProxyFactory<DemoService> proxyFactory = new JavassistProxyFactory<>();
+        proxyFactory.init(new ProxyConfig<>(DemoService.class, "1.0.0", "group", RpcConstants.SERIALIZATION_JDK,
+                3000, null, consumer, false, false));
+        return proxyFactory.getProxy(DemoService.class);
+    }
+
+    @Test
+    void testEveryMethodRoutesToHandler() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.results.put("hello", "hi rain");
+        consumer.results.put("add", 3);
+        consumer.results.put("sum", 6L);
+        consumer.results.put("check", true);
+        consumer.results.put("ratio", 0.5d);
+        consumer.results.put("greet", "remote");
+        DemoService proxy = createProxy(consumer);
+
+        assertEquals("hi rain", proxy.hello("rain"));
+        assertEquals("hello", consumer.lastRequest().getMethodName());
+        assertArrayEquals(new Object[]{"rain"}, consumer.lastRequest().getParameters());
+        assertEquals(DemoService.class.getName(), consumer.lastRequest().getClassName());
+
+        assertEquals(3, proxy.add(1, 2));
+        assertArrayEquals(new Class<?>[]{int.class, int.class}, consumer.lastRequest().getParameterTypes());
+        assertArrayEquals(new Object[]{1, 2}, consumer.lastRequest().getParameters());
+
+        long[] values = {1, 2, 3};
+        assertEquals(6L, proxy.sum(values));
+        assertSame(values, consumer.lastRequest().getParameters()[0]);
+
+        assertTrue(proxy.check('c', (byte) 1, (short) 2, 3.0f, 4.0d));
+        assertArrayEquals(new Object[]{'c', (byte) 1, (short) 2, 3.0f, 4.0d}, consumer.lastRequest().getParameters());
+
+        assertEquals(0.5d, proxy.ratio());
+        assertNull(consumer.lastRequest().getParameters());
+
+        proxy.ping();
+        assertEquals("ping", consumer.lastRequest().getMethodName());
+
+        // 默认方法与JDK代理一样发送到服务提供者
+        assertEquals("remote", proxy.greet());
+        assertEquals(7, consumer.requests.size());
+    }
+
+    @Test
+    void testNullResultUnboxedToDefaultValue() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        DemoService proxy = createProxy(consumer);
+
+        assertEquals(0, proxy.add(1, 2));
+        assertEquals(0L, proxy.sum(new long[0]));
+        assertFalse(proxy.check('c', (byte) 1, (short) 2, 3.0f, 4.0d));
+        assertEquals(0.0d, proxy.ratio());
+        assertNull(proxy.hello("rain"));
+    }
+
+    @Test
+    void testObjectMethodsAndClassReuse() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        DemoService first = createProxy(consumer);
+        DemoService second = createProxy(consumer);
+
+        // 同一接口只生成一个代理类，Object的方法不发送请求
+        assertSame(first.getClass(), second.getClass());
+        assertNotEquals(first, second);
+        assertEquals(first, first);
+        assertNotNull(first.toString());
+        first.hashCode();
+        assertTrue(consumer.requests.isEmpty());
+        assertEquals("1.0.0", DemoService.version());
+    }
+}
@@ -0,0 +1,114 @@
+package com.rain.rpc.proxy.javassist;
+
+import com.rain.rpc.common.stream.RpcStreamSubscription;
+import com.rain.rpc.constants.RpcConstants;
+import com.rain.rpc.protocol.RpcProtocol;
+import com.rain.rpc.protocol.request.RpcRequest;
+import com.rain.rpc.proxy.api.ProxyFactory;
+import com.rain.rpc.proxy.api.config.ProxyConfig;
+import com.rain.rpc.proxy.api.consumer.Consumer;
+import com.rain.rpc.proxy.api.future.RPCFuture;
+import com.rain.rpc.proxy.jdk.JdkProxyFactory;
+import com.rain.rpc.registry.api.RegistryService;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDK动态代理与Javassist生成代理的调用开销对比
+ * 使用直接完成的Consumer替代网络发送，只测量代理分发和构建请求的开销
+ *
+ * 运行方式：直接运行main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProxyFactoryBenchmark {
+
+    public interface DemoService {
+        String hello(String name);
+
+        int add(int a, int b);
+    }
+
+    /**
+     * 收到请求后立即以固定结果完成的Consumer
+     */
+    static class CompletedConsumer implements Consumer {
+        @Override
+        public RPCFuture sendRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService) {
+            RPCFuture rpcFuture = new RPCFuture(protocol);
+            rpcFuture.complete("add".equals(protocol.getBody().getMethodName()) ? (Object) 3 : "ok");
+            return rpcFuture;
+        }
+
+        @Override
+        public void sendStreamRequest(RpcProtocol<RpcRequest> protocol, RegistryService registryService, RpcStreamSubscription subscription) {
+            throw new UnsupportedOperationException("stream request is not used by this benchmark");
+        }
+    }
+
+    private DemoService jdkProxy;
+
+    private DemoService javassistProxy;
+
+    @Setup
+    public void setup() {
+        // 默认的log4j.properties把com.rain.rpc设置为DEBUG，基准测试只关心调用路径本身
+        LogManager.getLogger("com.rain.rpc").setLevel(Level.INFO);
+        jdkProxy = createProxy(new JdkProxyFactory<DemoService>());
+        javassistProxy = createProxy(new JavassistProxyFactory<DemoService>());
+    }
+
+    private static DemoService createProxy(ProxyFactory proxyFactory) {
+        proxyFactory.init(new ProxyConfig<>(DemoService.class, "1.0.0", "group", RpcConstants.SERIALIZATION_JDK,
+                3000, null, new CompletedConsumer(), false, false));
+        return proxyFactory.getProxy(DemoService.class);
+    }
+
+    @Benchmark
+    public String jdkHello() {
+        return jdkProxy.hello("rain");
+    }
+
+    @Benchmark
+    public String javassistHello() {
+        return javassistProxy.hello("rain");
+    }
+
+    @Benchmark
+    public int jdkAdd() {
+        return jdkProxy.add(1, 2);
+    }
+
+    @Benchmark
+    public int javassistAdd() {
+        return javassistProxy.add(1, 2);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProxyFactoryBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -3,6 +3,8 @@ package com.rain.rpc.registry.api;
 import com.rain.rpc.protocol.meta.ServiceMeta;
 import com.rain.rpc.registry.api.config.RegistryConfig;
 
+import java.util.Collection;
+
 /**
  * RPC注册服务接口
  * 定义了服务注册与发现的核心方法，用于服务的注册、注销和发现
@@ -37,6 +39,22 @@ public interface RegistryService {
      */
     ServiceMeta discovery(String serviceName, int invokerHashCode) throws Exception;
 
+    /**
+     * 服务发现，排除指定的服务实例
+     * 用于对冲请求等需要发送到其他服务实例的场景
+     * 默认实现只检查discovery选出的实例是否被排除，注册中心实现应在全部可用实例中选择
+     *
+     * @param serviceName 服务名称
+     * @param invokerHashCode 调用方哈希码，用于负载均衡策略
+     * @param excludedServices 需要排除的服务实例
+     * @return 服务元数据信息，没有其他可用实例时返回null
+     * @throws Exception 发现服务过程中可能抛出的异常
+     */
+    default ServiceMeta discovery(String serviceName, int invokerHashCode, Collection<ServiceMeta> excludedServices) throws Exception {
+        ServiceMeta serviceMeta = this.discovery(serviceName, invokerHashCode);
+        return serviceMeta == null || excludedServices.contains(serviceMeta) ? null : serviceMeta;
+    }
+
     /**
      * 销毁注册服务
      * 释放注册中心连接等资源
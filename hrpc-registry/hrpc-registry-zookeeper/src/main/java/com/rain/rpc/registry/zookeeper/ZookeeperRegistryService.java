@@ -13,6 +13,7 @@ import org.apache.curator.x.discovery.ServiceInstance;
 import org.apache.curator.x.discovery.details.JsonInstanceSerializer;
 import org.checkerframework.checker.units.qual.C;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
@@ -133,6 +134,28 @@ public class ZookeeperRegistryService implements RegistryService {
         return null;
     }
 
+    /**
+     * 服务发现，在排除指定实例后剩余的服务实例中选择
+     *
+     * @param serviceName 服务名称
+     * @param invokerHashCode 调用方哈希码
+     * @param excludedServices 需要排除的服务实例
+     * @return 服务元数据，没有其他可用实例时返回null
+     * @throws Exception 发现服务过程中可能抛出的异常
+     */
+    @Override
+    public ServiceMeta discovery(String serviceName, int invokerHashCode, Collection<ServiceMeta> excludedServices) throws Exception {
+        Collection<ServiceInstance<ServiceMeta>> serviceInstances = serviceDiscovery.queryForInstances(serviceName);
+        List<ServiceInstance<ServiceMeta>> candidates = new ArrayList<>(serviceInstances.size());
+        for (ServiceInstance<ServiceMeta> serviceInstance : serviceInstances) {
+            if (!excludedServices.contains(serviceInstance.getPayload())) {
+                candidates.add(serviceInstance);
+            }
+        }
+        ServiceInstance<ServiceMeta> instance = this.selectOneServiceInstance(candidates);
+        return instance == null ? null : instance.getPayload();
+    }
+
     /**
      * 负载均衡策略：随机选择一个服务实例
      * 